@@ -8,17 +8,11 @@ package com.microej.tool.dependencydiscoverer;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -28,15 +22,30 @@ import java.util.logging.Level;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.microej.tool.dependencydiscoverer.analysis.DependencyDiscoverer;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathEntryPoints;
+import com.microej.tool.dependencydiscoverer.classfinder.JarEntriesPrewarm;
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool;
+import com.microej.tool.dependencydiscoverer.classfinder.ZipJavaClassFinder;
+import com.microej.tool.dependencydiscoverer.filesystem.CacheLock;
+import com.microej.tool.dependencydiscoverer.filesystem.CacheManager;
+import com.microej.tool.dependencydiscoverer.filesystem.CacheManager.CacheEntry;
 import com.microej.tool.dependencydiscoverer.filesystem.FileUtils;
+import com.microej.tool.dependencydiscoverer.filesystem.HttpDownloader;
+import com.microej.tool.dependencydiscoverer.filesystem.RepositoryClasspathBuilder;
+import com.microej.tool.dependencydiscoverer.filesystem.ZipFingerprint;
 
 import picocli.CommandLine;
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Help.Ansi.Style;
 import picocli.CommandLine.Help.ColorScheme;
+import picocli.CommandLine.ITypeConverter;
 import picocli.CommandLine.IVersionProvider;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import picocli.CommandLine.TypeConversionException;
 
 
 /**
@@ -55,6 +64,15 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 	private static final String REPOSITORY_URL = "https://repository.microej.com/microej-"
 			+ DependencyDiscovererDefaultOptions.MICROEJ_VERSION + "-latest.zip";
 	private static final String REPO_NAME = "microej-" + DependencyDiscovererDefaultOptions.MICROEJ_VERSION + "-repository";
+	private static final String INDEX_FILE_EXT = ".index";
+	private static final String FINGERPRINT_FILE_EXT = ".fingerprint";
+	private static final String SUMMARIES_DIR = "summaries";
+
+	/**
+	 * Number of times a cache entry is looked up, in case it is evicted by another
+	 * process between its production and its use.
+	 */
+	private static final int MAX_CACHE_ENTRY_ATTEMPTS = 3;
 
 	@Option(names = { "-c",
 			"--classpath-dir" }, description = "Directory containing the JAR files and .class files to analyze (defaults to `[PROJECT_PATH]/"
@@ -65,14 +83,70 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 			+ DependencyDiscovererDefaultOptions.CACHE_DIR + "`).")
 	private String cacheDir = DependencyDiscovererDefaultOptions.CACHE_DIR;
 
-	@Option(names = { "--clean-cache" }, description = "Delete Dependency Discoverer cached files (defaults to "
+	@Option(names = { "--clean-cache" }, description = "Delete Dependency Discoverer cached files, including the JAR files index, except the repositories used by running processes (defaults to "
 			+ DependencyDiscovererDefaultOptions.CLEAN_CACHE + ")")
 	private boolean cleanCache = DependencyDiscovererDefaultOptions.CLEAN_CACHE;
 
+	@Option(names = {
+			"--verify-zip-crc" }, description = "Compare the central directory (entries CRC-32) of the repository ZIP file with the one recorded in the cache, instead of trusting its size and modification time, to decide whether it must be hashed again (defaults to "
+					+ DependencyDiscovererDefaultOptions.VERIFY_ZIP_CRC + ").")
+	private boolean verifyZipCrc = DependencyDiscovererDefaultOptions.VERIFY_ZIP_CRC;
+
+	@Option(names = {
+			"--cache-max-size" }, description = "Maximum size in MB of the repositories in the cache and of their index files, the least recently used repositories are evicted when it is exceeded, 0 for no limit (defaults to "
+					+ DependencyDiscovererDefaultOptions.CACHE_MAX_SIZE + ").")
+	private long cacheMaxSize = DependencyDiscovererDefaultOptions.CACHE_MAX_SIZE;
+
+	@Option(names = {
+			"--cache-stats" }, description = "Report the size of the cache directory and its repositories, from the most recently used (defaults to "
+					+ DependencyDiscovererDefaultOptions.CACHE_STATS + ").")
+	private boolean cacheStats = DependencyDiscovererDefaultOptions.CACHE_STATS;
+
+	@Option(names = {
+			"--repository-in-place" }, description = "Read the JAR files of the repository ZIP file in place, without extracting the ZIP file to the cache, which keeps all the revisions of the modules: can't be used with `--repository-latest-only` (defaults to "
+					+ DependencyDiscovererDefaultOptions.REPOSITORY_IN_PLACE + ").")
+	private boolean repositoryInPlace = DependencyDiscovererDefaultOptions.REPOSITORY_IN_PLACE;
+
+	@Option(names = {
+			"--unzip-threads" }, description = "Number of threads extracting the JAR files of the repository ZIP file, 0 for one thread per available processor (defaults to "
+					+ DependencyDiscovererDefaultOptions.UNZIP_THREADS + ").")
+	private int unzipThreads = DependencyDiscovererDefaultOptions.UNZIP_THREADS;
+
+	@Option(names = {
+			"--download-connections" }, description = "Number of connections downloading the repository by chunks, when the server accepts byte ranges (defaults to "
+					+ DependencyDiscovererDefaultOptions.DOWNLOAD_CONNECTIONS + ").")
+	private int downloadConnections = DependencyDiscovererDefaultOptions.DOWNLOAD_CONNECTIONS;
+
+	@Option(names = {
+			"--repository-sha1" }, converter = ChecksumConverter.class, description = "Expected SHA-1 of the repository ZIP file, checked when it is downloaded (defaults to the SHA-1 published at `<url>"
+					+ HttpDownloader.CHECKSUM_EXT + "`, if any).")
+	@Nullable
+	private String repositorySha1;
+
+	@Option(names = {
+			"--repository-latest-only" }, description = "Analyze only the newest revision of each module of the repository directory (`organisation/module/revision/` layout) and skip its sources and javadoc JAR files (defaults to "
+					+ DependencyDiscovererDefaultOptions.REPOSITORY_LATEST_ONLY + ").")
+	private boolean repositoryLatestOnly = DependencyDiscovererDefaultOptions.REPOSITORY_LATEST_ONLY;
+
+	@Option(names = {
+			"--repository-pinned-revisions" }, description = "Comma-separated revisions analyzed instead of the newest ones with `--repository-latest-only`: `organisation#module=revision` (defaults to none).")
+	private String repositoryPinnedRevisions = DependencyDiscovererDefaultOptions.REPOSITORY_PINNED_REVISIONS;
+
+	@Spec
+	@Nullable
+	private CommandSpec spec; // injected by picocli
+
 	@Option(names = { "-t",
 	"--output-format" }, description = "Listing output format: `json`,`text`,`xml` (defaults to `text`).")
 	private String type = DependencyDiscovererDefaultOptions.OUTPUT_TYPE;
 
+	@Option(names = { "-e",
+	"--entry-points" }, description = "Comma-separated entry points: class names (`a.b.C`, `a.b.*`), methods (`a.b.C#method(descriptor)`, `a.b.C#method`), `"
+			+ ClasspathEntryPoints.MAIN_CLASS + "` (main method of the manifests main class) or `"
+			+ ClasspathEntryPoints.SERVICES + "` (service providers) (defaults to `"
+			+ DependencyDiscovererDefaultOptions.ENTRY_POINTS + "`).")
+	private String entryPoints = DependencyDiscovererDefaultOptions.ENTRY_POINTS;
+
 	@Option(names = { "-D",
 	"--project-dir" }, description = "Project base directory (defaults to current directory).")
 	private String projectDir = DependencyDiscovererDefaultOptions.PROJECT_PATH;
@@ -109,6 +183,55 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 
 	}
 
+	@Option(names = {
+			"--jar-pool-size" }, description = "Maximum number of JAR files kept opened during the analysis (defaults to "
+					+ DependencyDiscovererDefaultOptions.JAR_POOL_SIZE + ").")
+	private int jarPoolSize = DependencyDiscovererDefaultOptions.JAR_POOL_SIZE;
+
+	@Option(names = {
+			"--threads" }, description = "Number of threads analyzing the methods, 1 for a sequential analysis (defaults to "
+					+ DependencyDiscovererDefaultOptions.THREADS + ").")
+	private int threads = DependencyDiscovererDefaultOptions.THREADS;
+
+	@Option(names = {
+			"--streaming" }, description = "Read the code of the analyzed methods from the class files instead of keeping the classes in memory, to reduce the memory used by large analyses (defaults to "
+					+ DependencyDiscovererDefaultOptions.STREAMING + ").")
+	private boolean streaming = DependencyDiscovererDefaultOptions.STREAMING;
+
+	@Option(names = {
+			"--waves" }, description = "Analyze the methods in waves, loading the classes referenced by each wave in a batch with one sweep per classpath entry; the waves are analyzed sequentially and `--threads` is ignored (defaults to "
+					+ DependencyDiscovererDefaultOptions.WAVES + ").")
+	private boolean waves = DependencyDiscovererDefaultOptions.WAVES;
+
+	@Option(names = {
+			"--provenance" }, converter = ProvenanceConverter.class, description = "Tracking of the callers and users of the dependencies, printed below each dependency: `none`, `count` (number of references) or `full` (number of references, users and callers); the state file and the JAR summaries are not used when it is tracked (defaults to `"
+					+ DependencyDiscovererDefaultOptions.PROVENANCE + "`).")
+	private String provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+
+	@Option(names = {
+			"--prewarm" }, description = "Read the entries of all the JAR files in parallel before the analysis (defaults to "
+					+ DependencyDiscovererDefaultOptions.PREWARM + ").")
+	private boolean prewarm = DependencyDiscovererDefaultOptions.PREWARM;
+
+	@Option(names = {
+			"--prewarm-threads" }, description = "Number of threads reading the JAR files entries when --prewarm is set (defaults to the number of available processors).")
+	private int prewarmThreads = DependencyDiscovererDefaultOptions.PREWARM_THREADS;
+
+	@Option(names = {
+			"--prefetch-threads" }, description = "Number of threads reading and parsing in the background the super types of the loaded classes and the classes named in their constant pool, 0 to disable the prefetch (defaults to "
+					+ DependencyDiscovererDefaultOptions.PREFETCH_THREADS + ").")
+	private int prefetchThreads = DependencyDiscovererDefaultOptions.PREFETCH_THREADS;
+
+	@Option(names = {
+			"--jar-summaries" }, description = "Summarize the code of each JAR file once per JAR file content in the cache directory, instead of reading it on each run (defaults to "
+					+ DependencyDiscovererDefaultOptions.JAR_SUMMARIES + ").")
+	private boolean jarSummaries = DependencyDiscovererDefaultOptions.JAR_SUMMARIES;
+
+	@Option(names = {
+			"--state-file" }, description = "File where the analysis state is saved, so that the next runs analyze again only the modified classes (defaults to none).")
+	@Nullable
+	private String stateFile;
+
 	@Option(names = { "-v", "--verbose" }, description = "Activate verbose information.")
 	private boolean verbose = DependencyDiscovererDefaultOptions.VERBOSE;
 
@@ -116,15 +239,17 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 	@Nullable
 	private static ColorScheme colorScheme;
 
-	@Nullable
-	private String tempPath;
-
 	// From here global variables used by the test suite get the results back
 	// may also be used to create a logger that writes to a file
 
 	@Nullable
 	private DependencyDiscovererOptions options;
 
+	/**
+	 * Shared locks of the cache entries used by the run.
+	 */
+	private final ArrayList<CacheLock> usedCacheEntries = new ArrayList<>();
+
 	/**
 	 * Main method that calls the picocli library to create a CLI interface.<br/>
 	 * Contains the color scheme informations of the CLI's interface.
@@ -147,6 +272,39 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 
 	@Override
 	public Integer call() {
+		checkRepositoryOptions();
+		try {
+			return Integer.valueOf(analyze());
+		} finally {
+			releaseCacheEntries();
+		}
+	}
+
+	/**
+	 * Rejects the options which would be ignored: the revisions are selected in a
+	 * repository directory, not in the repository ZIP file read in place, and only
+	 * a downloaded repository is checked against its SHA-1.
+	 *
+	 * @throws ParameterException if the revisions are selected with
+	 *                            <code>--repository-in-place</code>, or if the
+	 *                            SHA-1 is given with a local repository
+	 */
+	private void checkRepositoryOptions() {
+		CommandSpec localSpec = spec;
+		assert (localSpec != null);
+		if (repositoryInPlace && (repositoryLatestOnly
+				|| DependencyDiscoverer.splitRemoveEmpty(repositoryPinnedRevisions, ",").length != 0)) {
+			throw new ParameterException(localSpec.commandLine(),
+					"--repository-latest-only and --repository-pinned-revisions can't be used with --repository-in-place: extract the repository ZIP file to select its revisions.");
+		}
+		if (repositorySha1 != null && (!isEmptyOptionOrNotSet(repositoryOptions.repositoryDir)
+				|| !isEmptyOptionOrNotSet(repositoryOptions.repositoryFile))) {
+			throw new ParameterException(localSpec.commandLine(),
+					"--repository-sha1 can't be used with --repository-dir nor --repository-file: only a downloaded repository is checked.");
+		}
+	}
+
+	private int analyze() {
 
 		// Dependency discoverer initializations
 		log(Level.INFO, "Initializing Dependency Discoverer options...");
@@ -157,9 +315,6 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		// Cache declared by user
 		cacheDir = getAbsoluteFile(cacheDir);
 
-		tempPath = System.getProperty("java.io.tmpdir");
-		assert (tempPath != null);
-
 		String basedir = initializeFilePath(projectDir, DependencyDiscovererDefaultOptions.PROJECT_PATH, initbasedir,
 				"").toString();
 		assert (basedir != null);
@@ -202,10 +357,21 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 			log(Level.FINE, "Couln't load providedClasspath");
 		}
 
-		try {
-			getJars(providedClasspathVect, repoDir);
-		} catch (NullPointerException error) {
-			printPathError(repoDir);
+		if (repoDir.isFile()) {
+			// repository ZIP file read in place
+			providedClasspathVect.add(repoDir.getAbsolutePath());
+		} else if (repositoryLatestOnly) {
+			if (repoDir.isDirectory()) {
+				getRepositoryClasspathBuilder().addJars(providedClasspathVect, repoDir);
+			} else {
+				printPathError(repoDir);
+			}
+		} else {
+			try {
+				getJars(providedClasspathVect, repoDir);
+			} catch (NullPointerException error) {
+				printPathError(repoDir);
+			}
 		}
 
 		//DependencyDiscovererOptions
@@ -214,10 +380,35 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		}
 
 		assert (options != null);
+		String[] entryPointsArray = DependencyDiscoverer.splitRemoveEmpty(entryPoints, ",");
 		options.setOptions(String.join(File.pathSeparator, classpathVect),
 				String.join(File.pathSeparator, providedClasspathVect),
 				outputFile,
-				type, "*");
+				type, entryPointsArray.length == 0 ? DependencyDiscovererDefaultOptions.ENTRY_POINTS : entryPointsArray[0]);
+		for (int i = 1; i < entryPointsArray.length; ++i) {
+			String entryPoint = entryPointsArray[i];
+			assert (entryPoint != null);
+			options.addEntryPoint(entryPoint);
+		}
+		options.setJarPoolSize(jarPoolSize);
+		options.setThreads(threads);
+		options.setStreaming(streaming);
+		options.setWaves(waves);
+		options.setProvenance(provenance);
+		options.setPrewarm(prewarm);
+		options.setPrewarmThreads(prewarmThreads);
+		options.setPrefetchThreads(prefetchThreads);
+		options.setIndexFile(getIndexFile(repoDir));
+		options.setStateFile(stateFile);
+		options.setSummariesDir(jarSummaries ? new File(cacheDir, SUMMARIES_DIR).getPath() : null);
+		if (stateFile != null && !options.isReplayEnabled()) {
+			log(Level.WARNING,
+					"The state file is not used when the provenance is tracked: all the methods are read.");
+		}
+		if (jarSummaries && !options.isReplayEnabled()) {
+			log(Level.WARNING,
+					"The JAR summaries are not used when the provenance is tracked: all the methods are read.");
+		}
 
 
 		// Dependency discoverer
@@ -228,6 +419,14 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		assert (options != null);
 		instanceDD.setOptions(options);
 		instanceDD.run();
+		JarEntriesPrewarm jarEntriesPrewarm = instanceDD.getPrewarm();
+		if (jarEntriesPrewarm != null) {
+			log(Level.INFO, jarEntriesPrewarm.toString());
+		}
+		JarFilePool jarFilePool = JarFilePool.getInstance();
+		log(Level.FINE, "JAR files pool: " + jarFilePool.getHits() + " hits, " + jarFilePool.getMisses()
+				+ " misses (size " + jarFilePool.getMaxSize() + ").");
+		manageCache();
 		if (instanceDD.getErrorHandler().hasError()) {
 			instanceDD.getErrorHandler().outputError();
 			return 1;
@@ -256,16 +455,38 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 	}
 
 	/**
-	 * Delete the cache directory content, if the directory doesn't exist it's
-	 * created.
+	 * Gets the file where the JAR files entries are persisted, next to the
+	 * repository when it has been unzipped in the cache. The index is deleted with
+	 * the cache content.
+	 *
+	 * @param repoDir the repository directory
+	 * @return the index file path, or <code>null</code> if the repository is not
+	 *         in the cache or is read in place
+	 */
+	@Nullable
+	private String getIndexFile(File repoDir) {
+		File repoParentDir = repoDir.getAbsoluteFile().getParentFile();
+		if (repoDir.isFile() || repoParentDir == null || !repoParentDir.equals(new File(cacheDir).getAbsoluteFile())) {
+			return null;
+		}
+		return new File(repoParentDir, repoDir.getName() + INDEX_FILE_EXT).getPath();
+	}
+
+	/**
+	 * Delete the cache directory content, except the entries used by running
+	 * processes, if the directory doesn't exist it's created.
 	 */
 	private void cleanCache() {
 		File cacheFileDir = new File(cacheDir);
 		log(Level.FINE, "Cleaning cache...");
-		if (cacheFileDir.exists()) {
-			FileUtils.deleteFolder(cacheFileDir);
-		}
 		FileUtils.mkDirs(cacheFileDir);
+		CacheManager cacheManager = new CacheManager(cacheFileDir);
+		for (CacheEntry entry : cacheManager.clean()) {
+			log(Level.FINE, "Deleted from cache: " + entry.getName());
+		}
+		for (CacheEntry entry : cacheManager.getEntries()) {
+			log(Level.INFO, "Kept in cache, in use or not deletable: " + entry.getName());
+		}
 		log(Level.FINE, "Cache cleaned.");
 	}
 
@@ -337,7 +558,10 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		}
 
 		// Unzip handling
-		if (repoFile != null) {
+		if (repoFile != null && repositoryInPlace && repoFile.isFile() && canReadInPlace(repoFile)) {
+			log(Level.FINE, "Reading repository in place from zip file " + repoFile + " ...");
+			repoDir = repoFile;
+		} else if (repoFile != null) {
 			log(Level.FINE, "Loading repository from zip file " + repoFile + " ...");
 			repoDir = unzipFromFile(repoFile);
 		}
@@ -361,7 +585,23 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		return repoDir;
 	}
 
-	private boolean isEmptyOptionOrNotSet(@Nullable String opt) {
+	/**
+	 * Opens the given repository ZIP file to read it in place.
+	 *
+	 * @return <code>false</code> if it can't be read in place (ZIP64 or malformed)
+	 *         and must be extracted
+	 */
+	private boolean canReadInPlace(File repoFile) {
+		try {
+			ZipJavaClassFinder.open(repoFile);
+			return true;
+		} catch (IOException e) {
+			log(Level.INFO, "Couldn't read repository zip file in place (" + e.getMessage() + "), extracting it.");
+			return false;
+		}
+	}
+
+		private boolean isEmptyOptionOrNotSet(@Nullable String opt) {
 		return opt == null || opt.isEmpty();
 	}
 
@@ -372,68 +612,113 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 	}
 
 	@Nullable
-	private File unzipFromFile(File zipFile) {
-		if (!zipFile.exists()) {
+	private File unzipFromFile(final File zipFile) {
+		if (!zipFile.isFile()) {
 			log(Level.FINE, "File doesn't exist: " + zipFile.getPath());
 			return null;
 		}
-		File unzipDir = new File(tempPath + File.separatorChar + "dd-" + sha1sum(zipFile));
-		File unzipCacheDir = new File(cacheDir, unzipDir.getName());
-		if (unzipCacheDir.exists()) {
-			log(Level.FINE, "Zip already unzipped in cache: " + unzipCacheDir.getPath());
-			return unzipCacheDir;
-		} else if (zipFile.isFile()) {
-			unzipDir.mkdirs();
-			log(Level.FINE, "Unzip from file " + zipFile.getName());
-			if (!FileUtils.unZip(zipFile, unzipDir)) {
-				return null;
-			}
-			//when unzipped, moved to cache dir
-			if (moveFile(unzipDir, unzipCacheDir)) {
-				return unzipCacheDir;
-			} else {
-				log(Level.FINE, "Couln't move file " + unzipDir.getPath() + " to " + unzipCacheDir.getPath());
-				return null;
-			}
-		}else {
+		String hash = ZipFingerprint.getHash(zipFile, new File(cacheDir, zipFile.getName() + FINGERPRINT_FILE_EXT),
+				verifyZipCrc);
+		if (hash == null) {
+			log(Level.FINE, "Couldn't read file " + zipFile.getPath());
 			return null;
 		}
-
+		return getCacheEntry("dd-" + hash, new CacheEntryProducer() {// NOSONAR java 8 compliance except lambda
+			@Override
+			@Nullable
+			public File produce(CacheLock lock) throws IOException {
+				File unzipDir = lock.createStagingDirectory();
+				log(Level.FINE, "Unzip from file " + zipFile.getName());
+				// only the JAR files which may contain classes are added to the classpath
+				if (!FileUtils.unZip(zipFile, unzipDir, FileUtils.CODE_JAR_ENTRIES,
+						unzipThreads > 0 ? unzipThreads : Runtime.getRuntime().availableProcessors())) {
+					log(Level.FINE, "Couldn't unzip file " + zipFile.getPath());
+					FileUtils.deleteFolder(unzipDir);
+					return null;
+				}
+				return unzipDir;
+			}
+		});
 	}
 
-	private @Nullable String sha1sum(File zipFile) {
-		MessageDigest digest = null;
-		String sha1sum = null;
-
+	/**
+	 * Gets the given entry of the cache directory, producing it if it is not in
+	 * the cache. The entry is produced by a single process, the others wait for it.
+	 * The entry is used until the end of the run: it can't be evicted meanwhile.
+	 *
+	 * @param name     the name of the cache entry
+	 * @param producer the producer of the entry
+	 * @return the cache entry, or <code>null</code> if it can't be produced
+	 */
+	@Nullable
+	private File getCacheEntry(String name, CacheEntryProducer producer) {
+		File cacheDirFile = new File(cacheDir);
+		File entry = new File(cacheDirFile, name);
 		try {
-			digest = MessageDigest.getInstance("SHA-1");
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-			return sha1sum;
+			// the entry may be evicted between its production and its use
+			for (int attempt = 0; attempt < MAX_CACHE_ENTRY_ATTEMPTS; ++attempt) {
+				CacheLock sharedLock = CacheLock.lockShared(cacheDirFile, name);
+				if (entry.exists()) {
+					usedCacheEntries.add(sharedLock);
+					new CacheManager(cacheDirFile).recordAccess(name);
+					log(Level.FINE, "Found in cache: " + entry.getPath());
+					return entry;
+				}
+				sharedLock.close();
+				try (CacheLock lock = CacheLock.lock(cacheDirFile, name)) {
+					if (entry.exists()) {
+						log(Level.FINE, "Produced in cache by another process: " + entry.getPath());
+						continue;
+					}
+					File staging = producer.produce(lock);
+					if (staging == null) {
+						return null;
+					}
+					lock.publish(staging);
+					new CacheManager(cacheDirFile).recordAccess(name);
+				}
+			}
+			log(Level.FINE, "Couldn't use cache entry " + entry.getPath());
+			return null;
+		} catch (IOException e) {
+			log(Level.FINE, "Couldn't use cache entry " + entry.getPath() + ": " + e.getMessage());
+			return null;
 		}
+	}
 
-		try (InputStream input = new FileInputStream(zipFile)) {
-			byte[] buffer = new byte[8192];
-			int len = input.read(buffer);
-			while (len != -1) {
-				digest.update(buffer, 0, len);
-				len = input.read(buffer);
+	/**
+	 * Releases the cache entries used by the run, so that they can be evicted.
+	 */
+	private void releaseCacheEntries() {
+		for (CacheLock lock : usedCacheEntries) {
+			try {
+				lock.close();
+			} catch (IOException e) {
+				// released when the process exits
 			}
-			// Get the hash's bytes
-			byte[] bytes = digest.digest();
+		}
+		usedCacheEntries.clear();
+	}
 
-			// Convert bytes to hexadecimal format
-			StringBuilder sb = new StringBuilder();
-			for (int i = 0; i < bytes.length; i++) {
-				sb.append(Integer.toString((bytes[i] & 0xff) + 0x100, 16).substring(1));
+	/**
+	 * Evicts the least recently used cache entries if the cache is larger than
+	 * its maximum size, and reports the cache usage if requested.
+	 */
+	private void manageCache() {
+		File cacheDirFile = new File(cacheDir);
+		if (!cacheDirFile.isDirectory()) {
+			return;
+		}
+		CacheManager cacheManager = new CacheManager(cacheDirFile);
+		long maxSize = cacheMaxSize * 1024 * 1024;
+		if (maxSize > 0) {
+			for (CacheEntry entry : cacheManager.evict(maxSize)) {
+				log(Level.FINE, "Evicted from cache: " + entry.getName());
 			}
-			sha1sum = sb.toString();
-
-		} catch (IOException e) {
-			return null;
 		}
-
-		return sha1sum;
+		if (cacheStats) {
+			log(Level.INFO, cacheManager.getStats(maxSize));
+		}
 	}
 
 	private void printPathError(File path) {
@@ -499,59 +784,50 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 
 
 	@Nullable
-	private File loadUrl(@Nullable String ddlFileName, String urlString) {
-		InputStream in = null;
-		File ddlFile;
-		File cacheFile = new File(cacheDir, ddlFileName);
-		if (!cacheFile.exists()) {
-			try {
+	private File loadUrl(final String ddlFileName, final String urlString) {
+		return getCacheEntry(ddlFileName, new CacheEntryProducer() {// NOSONAR java 8 compliance except lambda
+			@Override
+			@Nullable
+			public File produce(CacheLock lock) throws IOException {
 				log(Level.INFO, "Downloading repository at: " + urlString + " ...");
-				URL url = new URL(urlString);
-				ddlFile = new File(tempPath, ddlFileName);
-				in = url.openStream();
-				Files.copy(in, ddlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-				log(Level.INFO, "Repository downloaded.");
-			} catch (IOException e) {
-				ddlFile = null;
-				log(Level.INFO, "Failed to download repository:" + e.getMessage());
-			} finally {
-				if (in != null) {
-					try {
-						in.close();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
+				// kept on failure, so that the next run resumes the download
+				File ddlFile = new File(cacheDir, ddlFileName + HttpDownloader.PARTIAL_FILE_EXT);
+				boolean checked;
+				try {
+					checked = new HttpDownloader(downloadConnections, HttpDownloader.DEFAULT_CHUNK_SIZE)
+							.download(new URL(urlString), ddlFile, repositorySha1);
+				} catch (IOException e) {
+					log(Level.INFO, "Failed to download repository:" + e.getMessage());
+					return null;
+				}
+				if (!checked) {
+					log(Level.WARNING, "Repository downloaded without integrity check: no SHA-1 published at "
+							+ urlString + HttpDownloader.CHECKSUM_EXT + " (see --repository-sha1).");
 				}
+				log(Level.INFO, "Repository downloaded.");
+				return ddlFile;
 			}
-			// After successful downloading in temporary directory moves file to cache
-			return (moveFile(ddlFile, cacheFile) ? cacheFile : null);
-		} else {
-			log(Level.FINE, "Repository already downloaded in cache: " + cacheFile.getPath());
-			return cacheFile;
-		}
+		});
 	}
 
-	private boolean moveFile(@Nullable File location, File destination) {
-		if (location != null) {
-			try {
-				Path locPath = location.toPath();
-				Path destPath = destination.toPath();
-				File parentFile = destination.getParentFile();
-				assert (parentFile != null);
-				if (!parentFile.exists()) {
-					FileUtils.mkDirs(parentFile);
-				}
-				if (destination.exists()) {
-					FileUtils.deleteFolder(destination);
-				}
-				Files.move(locPath, destPath, StandardCopyOption.REPLACE_EXISTING);
-				return true;
-			} catch (IOException e) {
-				return false;
+	private RepositoryClasspathBuilder getRepositoryClasspathBuilder() {
+		RepositoryClasspathBuilder builder = new RepositoryClasspathBuilder();
+		for (String pinnedRevision : DependencyDiscoverer.splitRemoveEmpty(repositoryPinnedRevisions, ",")) {
+			int moduleIndex = pinnedRevision.indexOf('#');
+			int revisionIndex = pinnedRevision.indexOf('=', moduleIndex + 1);
+			if (moduleIndex <= 0 || revisionIndex <= moduleIndex + 1 || revisionIndex == pinnedRevision.length() - 1) {
+				log(Level.INFO, "Ignored invalid pinned revision: " + pinnedRevision);
+				continue;
 			}
+			String organisation = pinnedRevision.substring(0, moduleIndex).trim();
+			String module = pinnedRevision.substring(moduleIndex + 1, revisionIndex).trim();
+			String revision = pinnedRevision.substring(revisionIndex + 1).trim();
+			assert (organisation != null && module != null && revision != null);
+			builder.pin(organisation, module, revision);
 		}
-		return false;
+		return builder;
 	}
+
 	private static void getJars(List<String> classpathVect, File dir) {
 
 		// Add jars
@@ -720,6 +996,87 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		this.cleanCache = cleanCache;
 	}
 
+	/**
+	 * Sets the verifyZipCrc.
+	 *
+	 * @param verifyZipCrc the verifyZipCrc to set.
+	 */
+	public void setVerifyZipCrc(boolean verifyZipCrc) {
+		this.verifyZipCrc = verifyZipCrc;
+	}
+
+	/**
+	 * Sets the cacheMaxSize.
+	 *
+	 * @param cacheMaxSize the cacheMaxSize to set.
+	 */
+	public void setCacheMaxSize(long cacheMaxSize) {
+		this.cacheMaxSize = cacheMaxSize;
+	}
+
+	/**
+	 * Sets the cacheStats.
+	 *
+	 * @param cacheStats the cacheStats to set.
+	 */
+	public void setCacheStats(boolean cacheStats) {
+		this.cacheStats = cacheStats;
+	}
+
+	/**
+	 * Sets the repositoryInPlace.
+	 *
+	 * @param repositoryInPlace the repositoryInPlace to set.
+	 */
+	public void setRepositoryInPlace(boolean repositoryInPlace) {
+		this.repositoryInPlace = repositoryInPlace;
+	}
+
+	/**
+	 * Sets the unzipThreads.
+	 *
+	 * @param unzipThreads the unzipThreads to set.
+	 */
+	public void setUnzipThreads(int unzipThreads) {
+		this.unzipThreads = unzipThreads;
+	}
+
+	/**
+	 * Sets the downloadConnections.
+	 *
+	 * @param downloadConnections the downloadConnections to set.
+	 */
+	public void setDownloadConnections(int downloadConnections) {
+		this.downloadConnections = downloadConnections;
+	}
+
+	/**
+	 * Sets the repositoryLatestOnly.
+	 *
+	 * @param repositoryLatestOnly the repositoryLatestOnly to set.
+	 */
+	public void setRepositoryLatestOnly(boolean repositoryLatestOnly) {
+		this.repositoryLatestOnly = repositoryLatestOnly;
+	}
+
+	/**
+	 * Sets the repositoryPinnedRevisions.
+	 *
+	 * @param repositoryPinnedRevisions the repositoryPinnedRevisions to set.
+	 */
+	public void setRepositoryPinnedRevisions(String repositoryPinnedRevisions) {
+		this.repositoryPinnedRevisions = repositoryPinnedRevisions;
+	}
+
+	/**
+	 * Sets the repositorySha1.
+	 *
+	 * @param repositorySha1 the repositorySha1 to set.
+	 */
+	public void setRepositorySha1(@Nullable String repositorySha1) {
+		this.repositorySha1 = repositorySha1;
+	}
+
 
 	/**
 	 * Sets the outputType.
@@ -730,6 +1087,15 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		this.type = outputType;
 	}
 
+	/**
+	 * Sets the entryPoints.
+	 *
+	 * @param entryPoints the entryPoints to set.
+	 */
+	public void setEntryPoints(String entryPoints) {
+		this.entryPoints = entryPoints;
+	}
+
 	/**
 	 * Sets the providedCachePath.
 	 *
@@ -739,6 +1105,96 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		this.cacheDir = providedCachePath;
 	}
 
+	/**
+	 * Sets the jarPoolSize.
+	 *
+	 * @param jarPoolSize the jarPoolSize to set.
+	 */
+	public void setJarPoolSize(int jarPoolSize) {
+		this.jarPoolSize = jarPoolSize;
+	}
+
+	/**
+	 * Sets the threads.
+	 *
+	 * @param threads the threads to set.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the streaming.
+	 *
+	 * @param streaming the streaming to set.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Sets the waves.
+	 *
+	 * @param waves the waves to set.
+	 */
+	public void setWaves(boolean waves) {
+		this.waves = waves;
+	}
+
+	/**
+	 * Sets the provenance.
+	 *
+	 * @param provenance the provenance to set.
+	 */
+	public void setProvenance(String provenance) {
+		this.provenance = provenance;
+	}
+
+	/**
+	 * Sets the prewarm.
+	 *
+	 * @param prewarm the prewarm to set.
+	 */
+	public void setPrewarm(boolean prewarm) {
+		this.prewarm = prewarm;
+	}
+
+	/**
+	 * Sets the prewarmThreads.
+	 *
+	 * @param prewarmThreads the prewarmThreads to set.
+	 */
+	public void setPrewarmThreads(int prewarmThreads) {
+		this.prewarmThreads = prewarmThreads;
+	}
+
+	/**
+	 * Sets the prefetchThreads.
+	 *
+	 * @param prefetchThreads the prefetchThreads to set.
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		this.prefetchThreads = prefetchThreads;
+	}
+
+	/**
+	 * Sets the jarSummaries.
+	 *
+	 * @param jarSummaries the jarSummaries to set.
+	 */
+	public void setJarSummaries(boolean jarSummaries) {
+		this.jarSummaries = jarSummaries;
+	}
+
+	/**
+	 * Sets the stateFile.
+	 *
+	 * @param stateFile the stateFile to set.
+	 */
+	public void setStateFile(@Nullable String stateFile) {
+		this.stateFile = stateFile;
+	}
+
 	/**
 	 * Sets the verbose.
 	 *
@@ -782,6 +1238,56 @@ public class DependencyDiscovererCLI implements Callable<Integer> {
 		}
 	}
 
+	/**
+	 * Produces an entry of the cache directory.
+	 */
+	private interface CacheEntryProducer {
+
+		/**
+		 * Writes the entry to a staging file or directory of the given lock.
+		 *
+		 * @param lock the exclusive lock of the entry
+		 * @return the staging file or directory, or <code>null</code> if the entry
+		 *         can't be produced
+		 * @throws IOException if the staging file can't be created
+		 */
+		@Nullable
+		File produce(CacheLock lock) throws IOException;
+	}
+
+	/**
+	 * {@link ITypeConverter} implementation that rejects the values of the
+	 * repository SHA-1 option which are not a SHA-1.
+	 */
+	static class ChecksumConverter implements ITypeConverter<String> {
+
+		@Override
+		public String convert(@Nullable String value) {
+			if (value != null && HttpDownloader.isChecksum(value)) {
+				return value;
+			}
+			throw new TypeConversionException("'" + value + "' is not a SHA-1 (40 hexadecimal digits)");
+		}
+	}
+
+	/**
+	 * {@link ITypeConverter} implementation that rejects the unknown values of the
+	 * provenance option.
+	 */
+	static class ProvenanceConverter implements ITypeConverter<String> {
+
+		@Override
+		public String convert(@Nullable String value) {
+			if (value != null && (DependencyDiscoverer.PROVENANCE_NONE.equals(value)
+					|| DependencyDiscoverer.PROVENANCE_COUNT.equals(value)
+					|| DependencyDiscoverer.PROVENANCE_FULL.equals(value))) {
+				return value;
+			}
+			throw new TypeConversionException("'" + value + "' is not one of " + DependencyDiscoverer.PROVENANCE_NONE
+					+ ", " + DependencyDiscoverer.PROVENANCE_COUNT + ", " + DependencyDiscoverer.PROVENANCE_FULL);
+		}
+	}
+
 	/**
 	 * {@link IVersionProvider} implementation that returns version information from
 	 * the picocli-x.x.jar file's {@code /resources/infos.properties} file.
@@ -6,6 +6,9 @@
  */
 package com.microej.tool.dependencydiscoverer;
 
+import com.microej.tool.dependencydiscoverer.analysis.DependencyDiscoverer;
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool;
+
 /**
  * Defines the options for the Dependency Discoverer.
  */
@@ -42,16 +45,114 @@ public abstract class DependencyDiscovererDefaultOptions {
 	 */
 	public static final String OUTPUT_TYPE = "text";
 
+	/**
+	 * Entry points of the analysis
+	 */
+	public static final String ENTRY_POINTS = "*";
+
 	/**
 	 * If the repositories cache is cleaned at start
 	 */
 	public static final boolean CLEAN_CACHE = false;
 
+	/**
+	 * If the central directory of a repository ZIP file is compared with the
+	 * recorded one to decide whether the ZIP file must be hashed again
+	 */
+	public static final boolean VERIFY_ZIP_CRC = false;
+
+	/**
+	 * If the JAR files of a repository ZIP file are read in place instead of
+	 * extracting the ZIP file in the cache
+	 */
+	public static final boolean REPOSITORY_IN_PLACE = false;
+
+	/**
+	 * Maximum size of the cache directory in MB (0 for no limit)
+	 */
+	public static final long CACHE_MAX_SIZE = 0;
+
+	/**
+	 * If the cache usage is reported
+	 */
+	public static final boolean CACHE_STATS = false;
+
+	/**
+	 * Number of threads extracting the JAR files of a repository ZIP file (0 for
+	 * one thread per available processor)
+	 */
+	public static final int UNZIP_THREADS = 0;
+
+	/**
+	 * Number of connections downloading a repository by chunks
+	 */
+	public static final int DOWNLOAD_CONNECTIONS = 4;
+
+	/**
+	 * If only the newest revision of each module of the repository is analyzed
+	 */
+	public static final boolean REPOSITORY_LATEST_ONLY = false;
+
+	/**
+	 * Comma-separated pinned revisions of the repository modules
+	 * (organisation#module=revision)
+	 */
+	public static final String REPOSITORY_PINNED_REVISIONS = "";
+
 	/**
 	 * Directory used to load cached files
 	 */
 	public static final String CACHE_DIR = "~/.microej/caches/dd";
 
+	/**
+	 * Maximum number of JAR files kept opened during the analysis
+	 */
+	public static final int JAR_POOL_SIZE = JarFilePool.DEFAULT_MAX_SIZE;
+
+	/**
+	 * Number of threads analyzing the methods (1 for the sequential analysis)
+	 */
+	public static final int THREADS = 1;
+
+	/**
+	 * If the code of the analyzed methods is streamed from the class files instead
+	 * of being kept in memory
+	 */
+	public static final boolean STREAMING = false;
+
+	/**
+	 * If the methods are analyzed in waves, each wave loading the classes it
+	 * references in a batch
+	 */
+	public static final boolean WAVES = false;
+
+	/**
+	 * Tracking of the callers and users of the dependencies
+	 */
+	public static final String PROVENANCE = DependencyDiscoverer.PROVENANCE_NONE;
+
+	/**
+	 * If the JAR files entries are read in parallel before the analysis
+	 */
+	public static final boolean PREWARM = false;
+
+	/**
+	 * Number of threads reading the JAR files entries before the analysis (0 for
+	 * one thread per available processor)
+	 */
+	public static final int PREWARM_THREADS = 0;
+
+	/**
+	 * Number of threads prefetching the classes likely to be resolved next (0 to
+	 * disable the prefetch)
+	 */
+	public static final int PREFETCH_THREADS = 0;
+
+	/**
+	 * If the summaries of the JAR files code are cached between runs
+	 */
+	public static final boolean JAR_SUMMARIES = false;
+
 	/**
 	 * If the verbose mode is active
 	 */
@@ -45,6 +45,71 @@ public class DependencyDiscovererOptions {
 	@Nullable
 	private String outputType;
 
+	/**
+	 * The maximum number of JAR files kept opened during the analysis
+	 */
+	private int jarPoolSize;
+
+	/**
+	 * The number of threads analyzing the methods (1 for the sequential analysis)
+	 */
+	private int threads;
+
+	/**
+	 * If the code of the analyzed methods is streamed from the class files instead
+	 * of being kept in memory
+	 */
+	private boolean streaming;
+
+	/**
+	 * If the methods are analyzed in waves, each wave loading the classes it
+	 * references in a batch
+	 */
+	private boolean waves;
+
+	/**
+	 * The tracking of the callers and users of the dependencies
+	 */
+	private String provenance;
+
+	/**
+	 * If the JAR files entries are read in parallel before the analysis
+	 */
+	private boolean prewarm;
+
+	/**
+	 * The number of threads reading the JAR files entries before the analysis (0
+	 * for one thread per available processor)
+	 */
+	private int prewarmThreads;
+
+	/**
+	 * The number of threads prefetching the classes likely to be resolved next (0
+	 * to disable the prefetch)
+	 */
+	private int prefetchThreads;
+
+	/**
+	 * The file where the JAR files entries are persisted between runs.
+	 * Optional. May be null.
+	 */
+	@Nullable
+	private String indexFile;
+
+	/**
+	 * The file where the analysis state is persisted between runs, to analyze
+	 * again only the modified classes. Optional. May be null.
+	 */
+	@Nullable
+	private String stateFile;
+
+	/**
+	 * The directory where the summaries of the JAR files code are cached between
+	 * runs. Optional. May be null.
+	 */
+	@Nullable
+	private String summariesDir;
+
 	/**
 	 * Constructor, only {@code entryPoints} list is initialized to prevent a
 	 * {@link NullPointerException} in the
@@ -52,6 +117,14 @@ public class DependencyDiscovererOptions {
 	 */
 	public DependencyDiscovererOptions(){
 		entryPoints = new ArrayList<>();
+		jarPoolSize = DependencyDiscovererDefaultOptions.JAR_POOL_SIZE;
+		threads = DependencyDiscovererDefaultOptions.THREADS;
+		streaming = DependencyDiscovererDefaultOptions.STREAMING;
+		waves = DependencyDiscovererDefaultOptions.WAVES;
+		provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+		prewarm = DependencyDiscovererDefaultOptions.PREWARM;
+		prewarmThreads = DependencyDiscovererDefaultOptions.PREWARM_THREADS;
+		prefetchThreads = DependencyDiscovererDefaultOptions.PREFETCH_THREADS;
 	}
 
 
@@ -163,6 +236,242 @@ public class DependencyDiscovererOptions {
 		this.outputType = outputType;
 	}
 
+	/**
+	 * Gets the jarPoolSize.
+	 *
+	 * @return the jarPoolSize.
+	 */
+	public int getJarPoolSize() {
+		return jarPoolSize;
+	}
+
+	/**
+	 * Sets the jarPoolSize.
+	 *
+	 * @param jarPoolSize the maximum number of JAR files kept opened during the
+	 *                    analysis (at least 1).
+	 */
+	public void setJarPoolSize(int jarPoolSize) {
+		this.jarPoolSize = jarPoolSize;
+	}
+
+	/**
+	 * Gets the threads.
+	 *
+	 * @return the threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the threads.
+	 *
+	 * @param threads the number of threads analyzing the methods (1 for the
+	 *                sequential analysis).
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Gets the streaming.
+	 *
+	 * @return the streaming.
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets the streaming.
+	 *
+	 * @param streaming <code>true</code> to read the code of each analyzed method
+	 *                  from its class file, and keep only the members of the
+	 *                  loaded classes in memory.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Gets the waves.
+	 *
+	 * @return the waves.
+	 */
+	public boolean isWaves() {
+		return waves;
+	}
+
+	/**
+	 * Sets the waves.
+	 *
+	 * @param waves <code>true</code> to analyze the methods in waves: the
+	 *              references of all the methods of a wave are collected first,
+	 *              then the classes they name are loaded in a batch, one sweep
+	 *              per classpath entry, and the references are resolved. The
+	 *              waves are analyzed sequentially, the threads are ignored.
+	 */
+	public void setWaves(boolean waves) {
+		this.waves = waves;
+	}
+
+	/**
+	 * Gets the provenance.
+	 *
+	 * @return the provenance.
+	 */
+	public String getProvenance() {
+		return provenance;
+	}
+
+	/**
+	 * Sets the provenance.
+	 *
+	 * @param provenance the tracking of the callers and users of the dependencies:
+	 *                   <code>none</code>, <code>count</code> (references
+	 *                   counters) or <code>full</code> (deduplicated callers and
+	 *                   users sets).
+	 */
+	public void setProvenance(String provenance) {
+		this.provenance = provenance;
+	}
+
+	/**
+	 * Tells whether the references found in the code of the methods are replayed
+	 * from the state file and the JAR summaries. The replayed references have no
+	 * provenance, so they are not replayed when the provenance is tracked.
+	 *
+	 * @return <code>true</code> if the state file and the JAR summaries are used
+	 * @see #getStateFile()
+	 * @see #getSummariesDir()
+	 */
+	public boolean isReplayEnabled() {
+		return DependencyDiscoverer.PROVENANCE_NONE.equals(provenance);
+	}
+
+	/**
+	 * Gets the prewarm.
+	 *
+	 * @return the prewarm.
+	 */
+	public boolean isPrewarm() {
+		return prewarm;
+	}
+
+	/**
+	 * Sets the prewarm.
+	 *
+	 * @param prewarm <code>true</code> to read the JAR files entries in parallel
+	 *                before the analysis.
+	 */
+	public void setPrewarm(boolean prewarm) {
+		this.prewarm = prewarm;
+	}
+
+	/**
+	 * Gets the prewarmThreads.
+	 *
+	 * @return the prewarmThreads.
+	 */
+	public int getPrewarmThreads() {
+		return prewarmThreads;
+	}
+
+	/**
+	 * Sets the prewarmThreads.
+	 *
+	 * @param prewarmThreads the number of threads reading the JAR files entries
+	 *                       before the analysis (0 for one thread per available
+	 *                       processor).
+	 */
+	public void setPrewarmThreads(int prewarmThreads) {
+		this.prewarmThreads = prewarmThreads;
+	}
+
+	/**
+	 * Gets the prefetchThreads.
+	 *
+	 * @return the prefetchThreads.
+	 */
+	public int getPrefetchThreads() {
+		return prefetchThreads;
+	}
+
+	/**
+	 * Sets the prefetchThreads.
+	 *
+	 * @param prefetchThreads the number of threads reading and parsing in the
+	 *                        background the super types of the loaded classes and
+	 *                        the classes named in their constant pool (0 to
+	 *                        disable the prefetch).
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		this.prefetchThreads = prefetchThreads;
+	}
+
+	/**
+	 * Gets the indexFile.
+	 *
+	 * @return the indexFile.
+	 */
+	@Nullable
+	public String getIndexFile() {
+		return indexFile;
+	}
+
+	/**
+	 * Sets the indexFile.
+	 *
+	 * @param indexFile the file where the JAR files entries are persisted between
+	 *                  runs, or <code>null</code> to not persist them.
+	 */
+	public void setIndexFile(@Nullable String indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * Gets the stateFile.
+	 *
+	 * @return the stateFile.
+	 */
+	@Nullable
+	public String getStateFile() {
+		return stateFile;
+	}
+
+	/**
+	 * Sets the stateFile.
+	 *
+	 * @param stateFile the file where the analysis state is persisted between
+	 *                  runs, or <code>null</code> to analyze all the methods on
+	 *                  each run.
+	 */
+	public void setStateFile(@Nullable String stateFile) {
+		this.stateFile = stateFile;
+	}
+
+	/**
+	 * Gets the summariesDir.
+	 *
+	 * @return the summariesDir.
+	 */
+	@Nullable
+	public String getSummariesDir() {
+		return summariesDir;
+	}
+
+	/**
+	 * Sets the summariesDir.
+	 *
+	 * @param summariesDir the directory where the summaries of the JAR files code
+	 *                     are cached between runs, or <code>null</code> to read
+	 *                     the code of the JAR files on each run.
+	 */
+	public void setSummariesDir(@Nullable String summariesDir) {
+		this.summariesDir = summariesDir;
+	}
+
 	@Override
 	public String toString() {
 		String res = "";
@@ -170,6 +479,16 @@ public class DependencyDiscovererOptions {
 		res = res.concat("AgainstClasspath : " + this.againstClasspath + "\n");
 		res = res.concat("Output file path : " + this.outputFile + "\n");
 		res = res.concat("Output type : " + this.outputType + "\n");
+		res = res.concat("Jar pool size : " + this.jarPoolSize + "\n");
+		res = res.concat("Threads : " + this.threads + "\n");
+		res = res.concat("Streaming : " + this.streaming + "\n");
+		res = res.concat("Waves : " + this.waves + "\n");
+		res = res.concat("Provenance : " + this.provenance + "\n");
+		res = res.concat("Prewarm : " + this.prewarm + " (" + this.prewarmThreads + " threads)\n");
+		res = res.concat("Prefetch threads : " + this.prefetchThreads + "\n");
+		res = res.concat("Index file : " + this.indexFile + "\n");
+		res = res.concat("State file : " + this.stateFile + "\n");
+		res = res.concat("Summaries directory : " + this.summariesDir + "\n");
 		for (String entryPoint : this.entryPoints) {
 			res = res.concat("EntryPoint : " + entryPoint + "\n");
 		}
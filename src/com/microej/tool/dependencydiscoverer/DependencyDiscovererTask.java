@@ -7,10 +7,13 @@
 package com.microej.tool.dependencydiscoverer;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.microej.tool.dependencydiscoverer.analysis.DependencyDiscoverer;
+import com.microej.tool.dependencydiscoverer.classfinder.JarEntriesPrewarm;
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool;
 import com.microej.tool.dependencydiscoverer.error.ErrorTaskContainer;
 
 /**
@@ -90,6 +93,141 @@ public class DependencyDiscovererTask extends Task{
 	}
 
 
+	/**
+	 * Sets the maximum number of JAR files kept opened in the
+	 * {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param jarPoolSize the maximum number of opened JAR files.
+	 *
+	 * @see DependencyDiscovererOptions#setJarPoolSize(int)
+	 */
+	public void setJarPoolSize(int jarPoolSize) {
+		options.setJarPoolSize(jarPoolSize);
+	}
+
+	/**
+	 * Sets the number of threads analyzing the methods in the
+	 * {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param threads the number of threads (1 for the sequential analysis).
+	 *
+	 * @see DependencyDiscovererOptions#setThreads(int)
+	 */
+	public void setThreads(int threads) {
+		options.setThreads(threads);
+	}
+
+	/**
+	 * Sets whether the code of the analyzed methods is streamed from the class
+	 * files in the {@link DependencyDiscovererOptions} options of the tested
+	 * dependency discoverer instance.
+	 *
+	 * @param streaming <code>true</code> to keep only the members of the loaded
+	 *                  classes in memory.
+	 *
+	 * @see DependencyDiscovererOptions#setStreaming(boolean)
+	 */
+	public void setStreaming(boolean streaming) {
+		options.setStreaming(streaming);
+	}
+
+	/**
+	 * Sets whether the methods are analyzed in waves in the
+	 * {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param waves <code>true</code> to load the classes referenced by each wave
+	 *              in a batch.
+	 *
+	 * @see DependencyDiscovererOptions#setWaves(boolean)
+	 */
+	public void setWaves(boolean waves) {
+		options.setWaves(waves);
+	}
+
+	/**
+	 * Sets the tracking of the callers and users of the dependencies in the
+	 * {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param provenance <code>none</code>, <code>count</code> or
+	 *                   <code>full</code>.
+	 *
+	 * @see DependencyDiscovererOptions#setProvenance(String)
+	 */
+	public void setProvenance(String provenance) {
+		options.setProvenance(provenance);
+	}
+
+	/**
+	 * Sets whether the JAR files entries are read in parallel before the analysis
+	 * in the {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param prewarm <code>true</code> to read the JAR files entries before the
+	 *                analysis.
+	 *
+	 * @see DependencyDiscovererOptions#setPrewarm(boolean)
+	 */
+	public void setPrewarm(boolean prewarm) {
+		options.setPrewarm(prewarm);
+	}
+
+	/**
+	 * Sets the number of threads reading the JAR files entries before the analysis
+	 * in the {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param prewarmThreads the number of threads (0 for one thread per available
+	 *                       processor).
+	 *
+	 * @see DependencyDiscovererOptions#setPrewarmThreads(int)
+	 */
+	public void setPrewarmThreads(int prewarmThreads) {
+		options.setPrewarmThreads(prewarmThreads);
+	}
+
+	/**
+	 * Sets the number of threads prefetching the classes likely to be resolved
+	 * next in the {@link DependencyDiscovererOptions} options of the tested
+	 * dependency discoverer instance.
+	 *
+	 * @param prefetchThreads the number of threads (0 to disable the prefetch).
+	 *
+	 * @see DependencyDiscovererOptions#setPrefetchThreads(int)
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		options.setPrefetchThreads(prefetchThreads);
+	}
+
+	/**
+	 * Sets the file where the analysis state is persisted between runs in the
+	 * {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param stateFile the state file path.
+	 *
+	 * @see DependencyDiscovererOptions#setStateFile(String)
+	 */
+	public void setStateFile(String stateFile) {
+		options.setStateFile(stateFile);
+	}
+
+	/**
+	 * Sets the directory where the summaries of the JAR files code are cached in
+	 * the {@link DependencyDiscovererOptions} options of the tested dependency
+	 * discoverer instance.
+	 *
+	 * @param summariesDir the summaries directory path.
+	 *
+	 * @see DependencyDiscovererOptions#setSummariesDir(String)
+	 */
+	public void setSummariesDir(String summariesDir) {
+		options.setSummariesDir(summariesDir);
+	}
+
 	/**
 	 * Sets the error task container
 	 *
@@ -116,7 +254,22 @@ public class DependencyDiscovererTask extends Task{
 
 	@Override
 	public void execute() throws BuildException {// NOSONAR keep build exception for documentation
+		if (options.getStateFile() != null && !options.isReplayEnabled()) {
+			log("The state file is not used when the provenance is tracked: all the methods are read.",
+					Project.MSG_WARN);
+		}
+		if (options.getSummariesDir() != null && !options.isReplayEnabled()) {
+			log("The JAR summaries are not used when the provenance is tracked: all the methods are read.",
+					Project.MSG_WARN);
+		}
 		dd.run();
+		JarFilePool jarFilePool = JarFilePool.getInstance();
+		log("JAR files pool: " + jarFilePool.getHits() + " hits, " + jarFilePool.getMisses() + " misses (size "
+				+ jarFilePool.getMaxSize() + ").", Project.MSG_VERBOSE);
+		JarEntriesPrewarm prewarm = dd.getPrewarm();
+		if (prewarm != null) {
+			log(prewarm.toString(), Project.MSG_INFO);
+		}
 		if(errorTask != null){
 			errorTask.outputError(dd.getErrorHandler());
 		}
@@ -0,0 +1,300 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.microej.tool.dependencydiscoverer.filesystem.BinaryFiles;
+import com.microej.tool.dependencydiscoverer.filesystem.FileUtils;
+import com.microej.tool.dependencydiscoverer.filesystem.IDataWriter;
+
+/**
+ * <p>
+ * Persistent state of the analysis, saved in a binary file so that the next
+ * runs analyze again only the classes that have been modified.
+ * </p>
+ * <p>
+ * The state records the content hash of each class which code has been
+ * analyzed, and the references found in the code of each analyzed method, in
+ * the order of its instructions. The references of a method of a class which
+ * content is unchanged are replayed instead of being read from the class file.
+ * The references are always resolved again, since a modified class may change
+ * the resolution of the references of an unchanged class.
+ * </p>
+ * <p>
+ * The state of a class is looked up in this order: its container (the JAR file
+ * or the class file in a directory) has the same size and last modification
+ * time as in the previous run, else its content has the same hash.
+ * </p>
+ * <p>
+ * File format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, int number of strings, strings
+ * int number of classes
+ * for each class: name, container, long size, long last modified, unsigned short hash length, hash
+ * int number of methods
+ * for each method: declaring class, name, descriptor, int number of strings, references
+ * references: for each reference, a kind string followed by its operands strings
+ * </pre>
+ *
+ * Strings are stored once as an unsigned short length followed by UTF-8 bytes,
+ * then referenced by their <code>int</code> index.
+ */
+class AnalysisStateFile {
+
+	/**
+	 * Kind of a type reference, followed by the type name.
+	 */
+	static final String TYPE_REFERENCE = "T";
+
+	/**
+	 * Kind of a method reference, followed by the owner, the name and the
+	 * descriptor.
+	 */
+	static final String METHOD_REFERENCE = "M";
+
+	/**
+	 * Kind of an interface method reference, followed by the owner, the name and
+	 * the descriptor.
+	 */
+	static final String INTERFACE_METHOD_REFERENCE = "I";
+
+	/**
+	 * Kind of a field reference, followed by the owner, the name and the
+	 * descriptor.
+	 */
+	static final String FIELD_REFERENCE = "F";
+
+	private static final int MAGIC = 0x44444153; // DDAS
+	private static final int VERSION = 1;
+
+	private final File file;
+
+	// state of the previous run
+	private final HashMap<String, ClassState> previousClasses;
+	private final HashMap<String, String[]> previousMethods;
+
+	// state of this run, saved when the analysis ends
+	private final ConcurrentHashMap<String, ClassState> classes;
+	private final ConcurrentHashMap<String, String[]> methods;
+
+	private AnalysisStateFile(File file) {
+		this.file = file;
+		this.previousClasses = new HashMap<>();
+		this.previousMethods = new HashMap<>();
+		this.classes = new ConcurrentHashMap<>();
+		this.methods = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Loads the state of the previous run from the given file. If the file
+	 * doesn't exist or is not a valid state, all the methods are analyzed again.
+	 *
+	 * @param file the state file
+	 * @return the loaded state
+	 */
+	static AnalysisStateFile load(File file) {
+		AnalysisStateFile state = new AnalysisStateFile(file);
+		if (file.isFile()) {
+			// not mapped, so that the file can be replaced when the state is saved
+			try {
+				state.read(BinaryFiles.read(file));
+			} catch (IOException | RuntimeException e) { // NOSONAR an invalid state is rebuilt
+				state.previousClasses.clear();
+				state.previousMethods.clear();
+			}
+		}
+		return state;
+	}
+
+	private void read(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			return;
+		}
+		String[] strings = StringTable.read(buffer);
+		for (int i = buffer.getInt(); --i >= 0;) {
+			String name = strings[buffer.getInt()];
+			String container = strings[buffer.getInt()];
+			long size = buffer.getLong();
+			long lastModified = buffer.getLong();
+			byte[] hash = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(hash);
+			assert (container != null);
+			previousClasses.put(name, new ClassState(container, size, lastModified, hash));
+		}
+		StringTable.readMethods(buffer, strings, previousMethods);
+	}
+
+	/**
+	 * Gets the state of the given class in the previous run.
+	 *
+	 * @param type the class name on the form a/b/C
+	 * @return the class state, or <code>null</code> if the code of this class has
+	 *         not been analyzed by the previous run
+	 */
+	@Nullable
+	ClassState getPreviousClass(String type) {
+		return previousClasses.get(type);
+	}
+
+	/**
+	 * Checks whether the given class is unchanged since the previous run.
+	 *
+	 * @param type  the class name on the form a/b/C
+	 * @param state the state of the class in this run
+	 * @return <code>true</code> if the class content has the same hash as in the
+	 *         previous run
+	 */
+	boolean isUnchanged(String type, ClassState state) {
+		ClassState previousState = previousClasses.get(type);
+		return previousState != null && (previousState == state || Arrays.equals(previousState.hash, state.hash));
+	}
+
+	/**
+	 * Gets the references found in the code of the given method by the previous
+	 * run.
+	 *
+	 * @param owner      the class declaring the method
+	 * @param name       the method name
+	 * @param descriptor the method descriptor
+	 * @return the references, or <code>null</code> if this method has not been
+	 *         analyzed by the previous run
+	 */
+	String @Nullable [] getPreviousReferences(String owner, String name, String descriptor) {
+		return previousMethods.get(StringTable.getMethodKey(owner, name, descriptor));
+	}
+
+	/**
+	 * Saves the state of the given class for the next run.
+	 *
+	 * @param type  the class name on the form a/b/C
+	 * @param state the state of the class in this run
+	 */
+	void putClass(String type, ClassState state) {
+		classes.put(type, state);
+	}
+
+	/**
+	 * Saves the references found in the code of the given method for the next run.
+	 *
+	 * @param owner      the class declaring the method
+	 * @param name       the method name
+	 * @param descriptor the method descriptor
+	 * @param references the references, see {@link #TYPE_REFERENCE}
+	 */
+	void putReferences(String owner, String name, String descriptor, String[] references) {
+		methods.put(StringTable.getMethodKey(owner, name, descriptor), references);
+	}
+
+	/**
+	 * Saves the state of this run in the state file. Only the classes and the
+	 * methods analyzed by this run are kept.
+	 * <p>
+	 * The state is written to a temporary file which is then moved to the state
+	 * file, so that a state file is never partially written.
+	 *
+	 * @throws IOException if the state can't be written
+	 */
+	void save() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		assert (parent != null);
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Can't create directory " + parent);
+		}
+		// sorted, so that the same analysis writes the same file
+		final List<String> classNames = new ArrayList<>(classes.keySet());
+		Collections.sort(classNames);
+		final List<String> methodKeys = new ArrayList<>(methods.keySet());
+		Collections.sort(methodKeys);
+		final StringTable strings = new StringTable();
+		for (String className : classNames) {
+			ClassState state = classes.get(className);
+			assert (className != null && state != null);
+			strings.add(className);
+			strings.add(state.container);
+		}
+		strings.addMethods(methodKeys, methods);
+
+		BinaryFiles.write(file, new IDataWriter() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				strings.write(out);
+				out.writeInt(classNames.size());
+				for (String className : classNames) {
+					ClassState state = classes.get(className);
+					assert (className != null && state != null);
+					out.writeInt(strings.getIndex(className));
+					out.writeInt(strings.getIndex(state.container));
+					out.writeLong(state.size);
+					out.writeLong(state.lastModified);
+					out.writeShort(state.hash.length);
+					out.write(state.hash);
+				}
+				strings.writeMethods(out, methodKeys, methods);
+			}
+		});
+	}
+
+	/**
+	 * Computes the hash of the given class content.
+	 *
+	 * @param bytes the class file content
+	 * @return the hash
+	 */
+	static byte[] hash(byte[] bytes) {
+		byte[] hash = FileUtils.newSha1Digest().digest(bytes);
+		assert (hash != null);
+		return hash;
+	}
+
+	/**
+	 * The state of a class which code has been analyzed: its container and the
+	 * hash of its content.
+	 */
+	static class ClassState {
+
+		final String container;
+		final long size;
+		final long lastModified;
+		final byte[] hash;
+
+		ClassState(String container, long size, long lastModified, byte[] hash) {
+			this.container = container;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		/**
+		 * Checks whether the given container has the same size and last modification
+		 * time as this state.
+		 *
+		 * @param containerPath  the container path
+		 * @param containerFile  the container file, or the class file in a directory
+		 *                       container
+		 * @return <code>true</code> if the container is unchanged
+		 */
+		boolean isUpToDate(String containerPath, File containerFile) {
+			return container.equals(containerPath) && containerFile.length() == size
+					&& containerFile.lastModified() == lastModified;
+		}
+	}
+}
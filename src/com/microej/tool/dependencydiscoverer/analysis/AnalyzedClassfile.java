@@ -6,14 +6,29 @@
  */
 package com.microej.tool.dependencydiscoverer.analysis;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
 
 class AnalyzedClassfile {
 	private final ClassNode classfile;
+	private final int id;
+	private final MemberTable<MethodNode> methods;
+	private final MemberTable<FieldNode> fields;
 
-	public AnalyzedClassfile(ClassNode c) {
+	public AnalyzedClassfile(ClassNode c, SymbolTable symbols) {
 		this.classfile = c;
-
+		this.id = symbols.getId(c.name);
+		// hashed member tables, built once
+		this.methods = new MemberTable<>(c.methods.size());
+		for (MethodNode md : c.methods) {
+			this.methods.put(symbols.getMemberId(md.name, md.desc), md);
+		}
+		this.fields = new MemberTable<>(c.fields.size());
+		for (FieldNode fd : c.fields) {
+			this.fields.put(symbols.getMemberId(fd.name, fd.desc), fd);
+		}
 	}
 
 	/**
@@ -23,4 +38,30 @@ class AnalyzedClassfile {
 	public ClassNode getClassfile() {
 		return classfile;
 	}
+
+	/**
+	 * Gets the symbol identifier of the class name.
+	 * @return the id.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the method declared by this class with the given name and descriptor.
+	 * @param memberId the identifier of the name and descriptor of the method.
+	 * @return the method, or <code>null</code> if this class doesn't declare it.
+	 */
+	public @Nullable MethodNode getMethod(int memberId) {
+		return methods.get(memberId);
+	}
+
+	/**
+	 * Gets the field declared by this class with the given name and descriptor.
+	 * @param memberId the identifier of the name and descriptor of the field.
+	 * @return the field, or <code>null</code> if this class doesn't declare it.
+	 */
+	public @Nullable FieldNode getField(int memberId) {
+		return fields.get(memberId);
+	}
 }
@@ -11,10 +11,20 @@ import org.objectweb.asm.tree.MethodNode;
 
 class AnalyzedMethod extends AnalyzedMember {
 	private final MethodNode md;
+	private final int id;
 
-	public AnalyzedMethod(ClassNode declaringType, MethodNode md) {
+	public AnalyzedMethod(ClassNode declaringType, MethodNode md, int id) {
 		super(declaringType);
 		this.md = md;
+		this.id = id;
+	}
+
+	/**
+	 * Gets the id.
+	 * @return the symbol identifier of this method, -1 if the callers are not tracked.
+	 */
+	public int getId() {
+		return id;
 	}
 
 	/**
@@ -0,0 +1,248 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathIndex;
+
+/**
+ * <p>
+ * Reads and parses in the background the classes that the analysis is likely
+ * to resolve next: the super types of a loaded class, which are looked up by
+ * the resolution of its members, and the classes named in the constant pool of
+ * a class of the classpath, which are referenced by its code.
+ * </p>
+ * <p>
+ * The classes are loaded on a bounded thread pool, from the classpath first
+ * like {@link DependencyDiscoverer}. A class which prefetch has not started
+ * when it is needed is removed from the queue and loaded by the analysis
+ * thread, so that the analysis never waits behind the queued classes.
+ * </p>
+ */
+class ClassPrefetcher {
+
+	/**
+	 * Maximum number of classes waiting to be prefetched. Classes requested when
+	 * the queue is full are not prefetched.
+	 */
+	private static final int QUEUE_SIZE = 4096;
+
+	/**
+	 * Constant pool tag of a class.
+	 */
+	private static final int CONSTANT_CLASS = 7;
+
+	private final ClasspathIndex classpathIndex;
+	private final @Nullable ClasspathIndex againstClasspathIndex;
+	private final int classpathParsingOptions;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Prefetched classes, until they are taken by the analysis.
+	 */
+	private final ConcurrentHashMap<String, FutureTask<PrefetchedClass>> classes;
+
+	/**
+	 * Creates a prefetcher.
+	 *
+	 * @param classpathIndex          the index of the classpath
+	 * @param againstClasspathIndex   the index of the against classpath, may be
+	 *                                null
+	 * @param classpathParsingOptions the parsing options of the classes of the
+	 *                                classpath, the classes of the against
+	 *                                classpath are loaded with
+	 *                                {@link ClasspathIndex#SIGNATURE_ONLY}
+	 * @param nThreads                the number of threads loading the classes
+	 */
+	ClassPrefetcher(ClasspathIndex classpathIndex, @Nullable ClasspathIndex againstClasspathIndex,
+			int classpathParsingOptions, int nThreads) {
+		this.classpathIndex = classpathIndex;
+		this.againstClasspathIndex = againstClasspathIndex;
+		this.classpathParsingOptions = classpathParsingOptions;
+		this.classes = new ConcurrentHashMap<>();
+		this.executor = new ThreadPoolExecutor(nThreads, nThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "dependency-discoverer-prefetch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Starts loading the given classes, unless they are already being prefetched.
+	 *
+	 * @param typeNames the classes names on the form a/b/C
+	 */
+	void prefetch(Collection<String> typeNames) {
+		for (final String typeName : typeNames) {
+			if (classes.containsKey(typeName)) {
+				continue;
+			}
+			FutureTask<PrefetchedClass> task = new FutureTask<>(new Callable<PrefetchedClass>() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public PrefetchedClass call() throws IOException {
+					return load(typeName);
+				}
+			});
+			if (classes.putIfAbsent(typeName, task) != null) {
+				continue; // requested concurrently
+			}
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				// queue full or prefetcher closed: the analysis loads the class
+				classes.remove(typeName, task);
+			}
+		}
+	}
+
+	/**
+	 * Takes the given class if it has been requested. If its prefetch has not
+	 * started, the class is loaded by the calling thread, otherwise its loading is
+	 * waited for.
+	 *
+	 * @param typeName the class name on the form a/b/C
+	 * @return the prefetched class, or <code>null</code> if the class has not been
+	 *         prefetched or could not be read
+	 */
+	@Nullable
+	PrefetchedClass take(String typeName) {
+		FutureTask<PrefetchedClass> task = classes.remove(typeName);
+		if (task == null) {
+			return null;
+		}
+		// does nothing if a prefetch thread has already started the task
+		executor.remove(task);
+		task.run();
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			return null; // the analysis loads the class again and reports the error
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Stops the prefetch: the classes waiting to be prefetched are dropped, and the
+	 * classes being loaded are waited for, so that no JAR file is opened once
+	 * closed.
+	 */
+	void close() {
+		executor.shutdown();
+		executor.getQueue().clear();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		classes.clear();
+	}
+
+	private PrefetchedClass load(String typeName) throws IOException {
+		ClassReader cr = classpathIndex.readType(typeName);
+		if (cr != null) {
+			ClassNode classfile = ClasspathIndex.parse(cr, classpathParsingOptions);
+			return new PrefetchedClass(classfile, true, getReferencedTypes(classfile, cr));
+		}
+		ClasspathIndex localAgainstClasspathIndex = againstClasspathIndex;
+		if (localAgainstClasspathIndex != null) {
+			cr = localAgainstClasspathIndex.readType(typeName);
+			if (cr != null) {
+				// the code of the against classpath classes is not analyzed
+				ClassNode classfile = ClasspathIndex.parse(cr, ClasspathIndex.SIGNATURE_ONLY);
+				return new PrefetchedClass(classfile, false, getReferencedTypes(classfile, null));
+			}
+		}
+		return new PrefetchedClass(null, false, Collections.<String>emptyList());
+	}
+
+	/**
+	 * Gets the classes likely to be resolved after the given class: its super
+	 * types, and the classes named in its constant pool if its reader is given.
+	 * Arrays are skipped.
+	 *
+	 * @param classfile the loaded class
+	 * @param cr        the reader of the class, or <code>null</code> to get its
+	 *                  super types only
+	 * @return the classes names on the form a/b/C
+	 */
+	static List<String> getReferencedTypes(ClassNode classfile, @Nullable ClassReader cr) {
+		ArrayList<String> types = new ArrayList<>();
+		String superName = classfile.superName;
+		if (superName != null) {
+			types.add(superName);
+		}
+		types.addAll(classfile.interfaces);
+		if (cr != null) {
+			char[] buffer = new char[cr.getMaxStringLength()];
+			for (int i = 1; i < cr.getItemCount(); ++i) {
+				int offset = cr.getItem(i);
+				// the second slot of long and double constants has no offset
+				if (offset > 0 && cr.readByte(offset - 1) == CONSTANT_CLASS) {
+					String type = cr.readUTF8(offset, buffer);
+					if (type != null && type.charAt(0) != '[' && !type.equals(classfile.name)) {
+						types.add(type);
+					}
+				}
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * A prefetched class.
+	 */
+	static class PrefetchedClass {
+
+		/**
+		 * The loaded class, <code>null</code> if it is neither in the classpath nor
+		 * in the against classpath.
+		 */
+		final @Nullable ClassNode classfile;
+
+		/**
+		 * <code>true</code> if the class has been loaded from the classpath,
+		 * <code>false</code> if it has been loaded from the against classpath.
+		 */
+		final boolean inClasspath;
+
+		/**
+		 * The classes likely to be resolved after this class.
+		 */
+		final List<String> referencedTypes;
+
+		PrefetchedClass(@Nullable ClassNode classfile, boolean inClasspath, List<String> referencedTypes) {
+			this.classfile = classfile;
+			this.inClasspath = inClasspath;
+			this.referencedTypes = referencedTypes;
+		}
+	}
+}
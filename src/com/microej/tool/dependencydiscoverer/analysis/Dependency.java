@@ -6,11 +6,17 @@
  */
 package com.microej.tool.dependencydiscoverer.analysis;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * Define a dependency,it's callers and it's users.
+ * <p>
+ * The callers and users are tracked according to the provenance option of the
+ * analysis: not tracked, counted, or kept in a deduplicated set of identifiers,
+ * resolved to names for the output.
  */
 public class Dependency {
 
@@ -29,30 +35,108 @@ public class Dependency {
 	 * printed.
 	 */
 	public static final int STATE_NOT_FOUND = 3;
-	private final List<AnalyzedClassfile> users;
-	private final List<AnalyzedMethod> callers;
+	// created on the first user or caller
+	private @Nullable IntHashSet users;
+	private @Nullable IntHashSet callers;
+	// resolved from the identifiers for the output
+	private @Nullable List<String> userNames;
+	private @Nullable List<MethodReference> callerRefs;
+	private int hits;
 	private int state;
 
 	/**
-	 * Initialize users and callers lists
+	 * @param classfile
 	 */
-	public Dependency(){
-		users = new ArrayList<>();
-		callers = new ArrayList<>();
+	public synchronized void addUser(AnalyzedClassfile classfile) {
+		IntHashSet localUsers = users;
+		if (localUsers == null) {
+			localUsers = new IntHashSet();
+			users = localUsers;
+		}
+		localUsers.add(classfile.getId());
 	}
 
 	/**
-	 * @param classfile
+	 * @param method
 	 */
-	public void addUser(AnalyzedClassfile classfile) {
-		users.add(classfile);
+	public synchronized void addCaller(AnalyzedMethod method) {
+		IntHashSet localCallers = callers;
+		if (localCallers == null) {
+			localCallers = new IntHashSet();
+			callers = localCallers;
+		}
+		localCallers.add(method.getId());
 	}
 
 	/**
-	 * @param method
+	 * Counts a reference to this dependency.
+	 */
+	public synchronized void addHit() {
+		++hits;
+	}
+
+	/**
+	 * @return the number of references to this dependency, 0 if the references are
+	 *         not counted.
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the sorted symbol identifiers of the classes that use this
+	 *         dependency, empty if the users are not tracked.
+	 */
+	synchronized int[] getUserIds() {
+		IntHashSet localUsers = users;
+		return localUsers == null ? new int[0] : localUsers.toArray();
+	}
+
+	/**
+	 * @return the sorted symbol identifiers of the methods that call this
+	 *         dependency, empty if the callers are not tracked.
+	 */
+	synchronized int[] getCallerIds() {
+		IntHashSet localCallers = callers;
+		return localCallers == null ? new int[0] : localCallers.toArray();
+	}
+
+	/**
+	 * Sets the names of the classes that use this dependency, resolved from their
+	 * identifiers once the analysis is done.
+	 *
+	 * @param users the internal names of the classes (<code>a/b/C</code>).
+	 */
+	public synchronized void setUsers(List<String> users) {
+		userNames = users;
+	}
+
+	/**
+	 * @return the internal names of the classes that use this dependency, empty if
+	 *         the users are not tracked or not resolved.
+	 */
+	public synchronized List<String> getUsers() {
+		List<String> localUserNames = userNames;
+		return localUserNames == null ? Collections.<String>emptyList() : localUserNames;
+	}
+
+	/**
+	 * Sets the methods that call this dependency, resolved from their identifiers
+	 * once the analysis is done.
+	 *
+	 * @param callers the methods.
+	 */
+	public synchronized void setCallers(List<MethodReference> callers) {
+		callerRefs = callers;
+	}
+
+	/**
+	 * @return the methods that call this dependency, empty if the callers are not
+	 *         tracked or not resolved.
 	 */
-	public void addCaller(AnalyzedMethod method) {
-		callers.add(method);
+	public synchronized List<MethodReference> getCallers() {
+		List<MethodReference> localCallerRefs = callerRefs;
+		return localCallerRefs == null ? Collections.<MethodReference>emptyList() : localCallerRefs;
 	}
 
 	/**
@@ -11,13 +11,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
@@ -25,10 +39,21 @@ import org.objectweb.asm.tree.MethodNode;
 
 import com.microej.tool.dependencydiscoverer.DependencyDiscovererError;
 import com.microej.tool.dependencydiscoverer.DependencyDiscovererOptions;
+import com.microej.tool.dependencydiscoverer.analysis.AnalysisStateFile.ClassState;
+import com.microej.tool.dependencydiscoverer.analysis.ClassPrefetcher.PrefetchedClass;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathEntryPoints;
+import com.microej.tool.dependencydiscoverer.classfinder.ClassfileReader;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathIndex;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathIndexFile;
 import com.microej.tool.dependencydiscoverer.classfinder.ExactClassfileFilter;
 import com.microej.tool.dependencydiscoverer.classfinder.IJavaClassfileFilter;
+import com.microej.tool.dependencydiscoverer.classfinder.JarEntriesPrewarm;
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool;
+import com.microej.tool.dependencydiscoverer.classfinder.JarJavaClassFinder;
 import com.microej.tool.dependencydiscoverer.classfinder.JavaClassFinder;
+import com.microej.tool.dependencydiscoverer.classfinder.JavaClassfileNoFilter;
 import com.microej.tool.dependencydiscoverer.classfinder.WildCardClassfileFilter;
+import com.microej.tool.dependencydiscoverer.classfinder.ZipJavaClassFinder;
 import com.microej.tool.dependencydiscoverer.error.ErrorHandler;
 import com.microej.tool.dependencydiscoverer.writers.IDependencyWriter;
 import com.microej.tool.dependencydiscoverer.writers.JsonDependencyWriter;
@@ -47,6 +72,29 @@ import com.microej.tool.dependencydiscoverer.writers.XmlDependencyWriter;
  */
 public class DependencyDiscoverer {
 
+	/**
+	 * Provenance option: the callers and users of the dependencies are not tracked.
+	 */
+	public static final String PROVENANCE_NONE = "none";
+
+	/**
+	 * Provenance option: the references to each dependency are counted.
+	 */
+	public static final String PROVENANCE_COUNT = "count";
+
+	/**
+	 * Provenance option: the references to each dependency are counted, and its
+	 * callers and users are kept in a deduplicated set.
+	 */
+	public static final String PROVENANCE_FULL = "full";
+
+	/**
+	 * Separator of the class name and the method of a method entry point, on the
+	 * form <code>a.b.C#method(descriptor)</code> or <code>a.b.C#method</code> (all
+	 * the methods with this name).
+	 */
+	public static final char METHOD_ENTRY_POINT_SEPARATOR = '#';
+
 	private static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
 	/**
@@ -59,18 +107,104 @@ public class DependencyDiscoverer {
 	 */
 	protected @NonNull File @Nullable [] againstClasspath;
 
-	//
-	private final HashMap<String, TypeDependency> typesDependencies;
-	private final HashMap<MethodReference, MethodDependency> methodsDependencies;
-	private final HashMap<FieldReference, FieldDependency> fieldsDependencies;
+	/**
+	 * Index of the application classpath
+	 */
+	private @Nullable ClasspathIndex classpathIndex;
+
+	/**
+	 * Index of the classpath on which the application is running against
+	 */
+	private @Nullable ClasspathIndex againstClasspathIndex;
+
+	// concurrent tables: in parallel mode, a dependency is locked by the thread that
+	// resolves it, the other threads wait for its resolution
+	private final ConcurrentHashMap<String, TypeDependency> typesDependencies;
+	// methods and fields are keyed by their interned symbols
+	private final SymbolTable symbols;
+	private final LongHashMap<MethodDependency> methodsDependencies;
+	private final LongHashMap<FieldDependency> fieldsDependencies;
+
+	/**
+	 * Members resolved from a class (keyed by the class and member symbols),
+	 * including the members not found in its hierarchy.
+	 */
+	private final LongHashMap<Resolution> methodsResolutions;
+	private final LongHashMap<Resolution> fieldsResolutions;
 
-	private final HashMap<String, AnalyzedClassfile> loadedClassNodes;
+	private final ConcurrentHashMap<String, AnalyzedClassfile> loadedClassNodes;
+	/**
+	 * Classes of the against classpath reloaded with their code, because one of
+	 * their methods is inherited by a class of the classpath.
+	 */
+	private final ConcurrentHashMap<String, ClassNode> againstClassNodesWithCode;
+	/**
+	 * Classes of the classpath and of the against classpath loaded in a batch
+	 * before their type dependency is resolved, when the methods are analyzed in
+	 * waves. Classes of the against classpath found by the prefetch are kept
+	 * there too.
+	 */
+	private final ConcurrentHashMap<String, ClassNode> preloadedClassNodes;
+	private final ConcurrentHashMap<String, ClassNode> preloadedAgainstClassNodes;
 	private final ArrayList<AnalyzedMethod> analyzedMethods;
 
 	private int nextMethodToAnalyzePtr;
 
+	// provenance tracking, see the PROVENANCE_* options
+	private boolean countHits;
+	private boolean trackCallers;
+
+	/**
+	 * The method being analyzed by the current thread, to which the found
+	 * dependencies are attributed.
+	 */
+	private final ThreadLocal<@Nullable AnalyzedMethod> currentMethod;
+
+	/**
+	 * The class last read by the current thread to stream the code of a method, in
+	 * streaming mode.
+	 */
+	private final ThreadLocal<@Nullable ClassfileReader> lastReadClass;
+
+	/**
+	 * The state of the previous run, <code>null</code> when the analysis is not
+	 * incremental.
+	 */
+	private @Nullable AnalysisStateFile stateFile;
+
+	/**
+	 * Classes which code is analyzed to their state in this run, in incremental
+	 * mode.
+	 */
+	private final ConcurrentHashMap<String, ClassState> codeClasses;
+
+	/**
+	 * The cached summaries of the JAR files code, <code>null</code> when the JAR
+	 * files are not summarized.
+	 */
+	private @Nullable JarSummaries jarSummaries;
+
+	/**
+	 * Classes which code is analyzed to the classpath entry (directory or JAR file)
+	 * that contains them.
+	 */
+	private final ConcurrentHashMap<String, File> codeContainers;
+
+	/**
+	 * The methods analysis tasks, <code>null</code> when the search is sequential.
+	 */
+	private @Nullable ParallelSearch parallelSearch;
+
+	/**
+	 * The background loading of the classes likely to be resolved next,
+	 * <code>null</code> when the classes are not prefetched.
+	 */
+	private @Nullable ClassPrefetcher prefetcher;
+
 	private DependencyDiscovererOptions options;
 
+	private @Nullable JarEntriesPrewarm prewarm;
+
 	private final ErrorHandler errorHandler;
 
 	/**
@@ -81,12 +215,22 @@ public class DependencyDiscoverer {
 	 * method.
 	 */
 	public DependencyDiscoverer() {
-		typesDependencies = new HashMap<>();
-		methodsDependencies = new HashMap<>();
-		fieldsDependencies = new HashMap<>();
-		loadedClassNodes = new HashMap<>();
+		typesDependencies = new ConcurrentHashMap<>();
+		symbols = new SymbolTable();
+		methodsDependencies = new LongHashMap<>();
+		fieldsDependencies = new LongHashMap<>();
+		methodsResolutions = new LongHashMap<>();
+		fieldsResolutions = new LongHashMap<>();
+		loadedClassNodes = new ConcurrentHashMap<>();
+		againstClassNodesWithCode = new ConcurrentHashMap<>();
+		preloadedClassNodes = new ConcurrentHashMap<>();
+		preloadedAgainstClassNodes = new ConcurrentHashMap<>();
 		analyzedMethods = new ArrayList<>();
 		nextMethodToAnalyzePtr = 0;
+		currentMethod = new ThreadLocal<>();
+		lastReadClass = new ThreadLocal<>();
+		codeClasses = new ConcurrentHashMap<>();
+		codeContainers = new ConcurrentHashMap<>();
 		options = new DependencyDiscovererOptions();
 		errorHandler = new ErrorHandler();
 	}
@@ -121,8 +265,105 @@ public class DependencyDiscoverer {
 	 * either the method
 	 * {@link DependencyDiscoverer#setOptions(DependencyDiscovererOptions)} or
 	 * {@link DependencyDiscoverer#setOptions(String, String, String, String, String)}
+	 * <p>
+	 * The JAR files opened during the analysis are closed when it ends. If an index
+	 * file is set in the options, the JAR files entries are looked up in it and it
+	 * is updated when the analysis ends.
+	 * <p>
+	 * If a state file is set in the options, only the methods of the classes
+	 * modified since the previous run are read again, and the state file is
+	 * updated when the analysis succeeds. The references of the other methods are
+	 * replayed and resolved again like the references read from the code: all the
+	 * dependencies are resolved by each run, so that the output is the same as a
+	 * full analysis.
+	 * <p>
+	 * If a summaries directory is set in the options, the code of the JAR files
+	 * is summarized once per JAR file content, and the summaries are replayed
+	 * instead of reading the code of the JAR files again.
 	 */
 	public void run() {
+		JarFilePool jarFilePool = JarFilePool.getInstance();
+		jarFilePool.setMaxSize(Math.max(1, options.getJarPoolSize()));
+		String indexFilePath = options.getIndexFile();
+		ClasspathIndexFile indexFile = indexFilePath == null ? null
+				: ClasspathIndexFile.load(new File(indexFilePath));
+		JarJavaClassFinder.setIndexFile(indexFile);
+		boolean replay = options.isReplayEnabled();
+		String stateFilePath = options.getStateFile();
+		AnalysisStateFile localStateFile = stateFilePath == null || !replay ? null
+				: AnalysisStateFile.load(new File(stateFilePath));
+		stateFile = localStateFile;
+		String summariesDirPath = options.getSummariesDir();
+		JarSummaries localJarSummaries = summariesDirPath == null || !replay ? null
+				: JarSummaries.open(new File(summariesDirPath));
+		jarSummaries = localJarSummaries;
+		try {
+			analyze();
+			if (localStateFile != null && !errorHandler.hasError()) {
+				saveStateFile(localStateFile);
+			}
+		} finally {
+			stateFile = null;
+			jarSummaries = null;
+			if (localJarSummaries != null) {
+				saveJarSummaries(localJarSummaries);
+			}
+			jarFilePool.close();
+			ZipJavaClassFinder.close();
+			JarJavaClassFinder.setIndexFile(null);
+			if (indexFile != null) {
+				saveIndexFile(indexFile);
+			}
+		}
+	}
+
+	private void prewarm(File[] classpath, File @Nullable [] againstClasspath, int nThreads) {
+		ArrayList<File> paths = new ArrayList<>(Arrays.asList(classpath));
+		if (againstClasspath != null) {
+			paths.addAll(Arrays.asList(againstClasspath));
+		}
+		File[] pathsArray = paths.toArray(new File[paths.size()]);
+		assert (pathsArray != null);
+		prewarm = JarEntriesPrewarm.run(pathsArray,
+				nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Gets the report of the JAR files entries read before the analysis.
+	 *
+	 * @return the prewarm report, or <code>null</code> if the prewarm is not
+	 *         enabled in the options
+	 * @see DependencyDiscovererOptions#isPrewarm()
+	 */
+	public @Nullable JarEntriesPrewarm getPrewarm() {
+		return prewarm;
+	}
+
+	private static void saveIndexFile(ClasspathIndexFile indexFile) {
+		try {
+			indexFile.save();
+		} catch (IOException e) {
+			// the index is a cache: it will be rebuilt by the next run
+		}
+	}
+
+	private static void saveStateFile(AnalysisStateFile stateFile) {
+		try {
+			stateFile.save();
+		} catch (IOException e) {
+			// the next run analyzes all the methods again
+		}
+	}
+
+	private static void saveJarSummaries(JarSummaries jarSummaries) {
+		try {
+			jarSummaries.save();
+		} catch (IOException e) {
+			// the JAR files are hashed again by the next run
+		}
+	}
+
+	private void analyze() {// NOSONAR keep legacy processing function
 		DependencyDiscovererOptions localOptions = this.options;
 		String classpathStr = localOptions.getClasspath();
 
@@ -139,26 +380,66 @@ public class DependencyDiscoverer {
 		if (errorHandler.hasError()) {
 			return;
 		}
-		List<String> entryPoints = options.getEntryPoints();
-		int nbEntryPoints = entryPoints.size();
-		if (nbEntryPoints == 0) {
+		if (localOptions.isPrewarm()) {
+			prewarm(splitAndCheck, againstClasspath, localOptions.getPrewarmThreads());
+		}
+		try {
+			classpathIndex = ClasspathIndex.getIndex(splitAndCheck, errorHandler);
+			@NonNull
+			File[] localAgainstClasspath = againstClasspath;
+			assert (localAgainstClasspath != null);
+			againstClasspathIndex = ClasspathIndex.getIndex(localAgainstClasspath, errorHandler);
+		} catch (IOException e) {
+			String message = e.getMessage();
+			assert (message != null);
+			errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+			return;
+		}
+		String provenance = localOptions.getProvenance();
+		trackCallers = PROVENANCE_FULL.equals(provenance);
+		countHits = trackCallers || PROVENANCE_COUNT.equals(provenance);
+
+		if (options.getEntryPoints().isEmpty()) {
 			errorHandler.addNoFile(new DependencyDiscovererError().missingEntryPoint());
 			return;
 		}
+		// classes entry points are analyzed entirely, methods entry points are
+		// grouped by class
+		ArrayList<String> entryPoints = new ArrayList<>();
+		HashMap<String, List<String>> methodsEntryPoints = new HashMap<>();
+		try {
+			splitEntryPoints(splitAndCheck, entryPoints, methodsEntryPoints);
+		} catch (IOException e) {
+			String message = e.getMessage();
+			assert (message != null);
+			errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+			return;
+		}
+		int nbEntryPoints = entryPoints.size();
 
 		// VERSION
 		Map<String, ClassNode> allClassNodes = new HashMap<>();
-		for (String entryPoint : entryPoints) {
+		// consecutive entry points of the same kind are found with a single filter
+		int entryPointIndex = 0;
+		while (entryPointIndex < nbEntryPoints) {
+			boolean wildcard = entryPoints.get(entryPointIndex).endsWith("*");
+			ArrayList<String> filterEntryPoints = new ArrayList<>();
+			while (entryPointIndex < nbEntryPoints
+					&& entryPoints.get(entryPointIndex).endsWith("*") == wildcard) {
+				filterEntryPoints.add(entryPoints.get(entryPointIndex++));
+			}
+			String[] filterEntryPointsArray = filterEntryPoints.toArray(new String[filterEntryPoints.size()]);
+			assert (filterEntryPointsArray != null);
 			IJavaClassfileFilter filter;
-			if (entryPoint.endsWith("*")) {
-				filter = new WildCardClassfileFilter(new String[] { entryPoint });
+			if (wildcard) {
+				filter = new WildCardClassfileFilter(filterEntryPointsArray);
 			} else {
-				filter = new ExactClassfileFilter(new String[] { entryPoint });
+				filter = new ExactClassfileFilter(filterEntryPointsArray);
 			}
 			try {
 				assert (null != classpath);
 				File[] classpath2 = classpath;
-				JavaClassFinder.find(allClassNodes, classpath2, filter, errorHandler);
+				JavaClassFinder.find(allClassNodes, classpath2, filter, errorHandler, getClasspathParsingOptions());
 			} catch (Exception e) {
 				String message = e.getMessage();
 				assert (message != null);
@@ -166,10 +447,19 @@ public class DependencyDiscoverer {
 				return;
 			}
 		}
-		if (allClassNodes.size() == 0) {
-			errorHandler.addNoFile(new DependencyDiscovererError()
-					.noMatchingEntryPoints(String.join(",", entryPoints), classpathStr));
-			return;
+		Map<String, ClassNode> methodsClassNodes = new HashMap<>();
+		if (!methodsEntryPoints.isEmpty()) {
+			String[] classNames = methodsEntryPoints.keySet().toArray(new String[methodsEntryPoints.size()]);
+			assert (classNames != null);
+			try {
+				JavaClassFinder.find(methodsClassNodes, splitAndCheck, new ExactClassfileFilter(classNames),
+						errorHandler, getClasspathParsingOptions());
+			} catch (Exception e) {
+				String message = e.getMessage();
+				assert (message != null);
+				errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+				return;
+			}
 		}
 
 		// Dependency search process:
@@ -177,49 +467,45 @@ public class DependencyDiscoverer {
 		// then for each method search all its dependencies
 		// Dependency discoverer dumps all dependencies that cannot be loaded
 
+		int nbRoots = allClassNodes.size();
 		for (ClassNode c : allClassNodes.values()) {
-			AnalyzedClassfile loadedClassNode = loadedClassNodes.get(c.name);
-			if (loadedClassNode != null) {
-				continue; // duplicate entry point in command line
-			}
-			loadedClassNode = new AnalyzedClassfile(c);
-			loadedClassNodes.put(c.name, loadedClassNode);
-
-			// add hierarchy dependencies
-			String superClassName = c.superName;
-
-			if (superClassName != null) {
-				addTypeDependency(superClassName, loadedClassNode);
-			}
-			List<@NonNull String> interfacesName = c.interfaces;
-			assert (interfacesName != null);
-			for (String interfaceName : interfacesName) {
-				addTypeDependency(interfaceName, loadedClassNode);
-			}
-			for (MethodNode md : c.methods) {
-				MethodNode md2 = md;
-				addMethodToAnalyze(new AnalyzedMethod(c, md2));
+			assert (c != null);
+			addEntryPoint(c, null);
+		}
+		for (ClassNode c : methodsClassNodes.values()) {
+			assert (c != null);
+			if (!allClassNodes.containsKey(c.name)) {
+				nbRoots += addEntryPoint(c, methodsEntryPoints.get(c.name.replace('/', '.')));
 			}
 		}
+		if (nbRoots == 0) {
+			errorHandler.addNoFile(new DependencyDiscovererError()
+					.noMatchingEntryPoints(String.join(",", options.getEntryPoints()), classpathStr));
+			return;
+		}
 
 		DependencyOpcodeGenerator mdFinder = new DependencyOpcodeGenerator(this);
 
-		// search loop
-		while (nextMethodToAnalyzePtr < analyzedMethods.size()) {
-			AnalyzedMethod method = getCurrentAnalyzedMethod();
-			assert (method != null);
-			MethodNode md = method.getMd();
-			md.accept(mdFinder);
-
-			// If in flags combinations with 'native method' flag
-			if (Opcodes.ACC_NATIVE <= md.access && md.access < Opcodes.ACC_INTERFACE) {
-				addNativeMethodDependency(method.getDeclaringType(), md);
-			}
-
-			if (errorHandler.hasError()) {
-				return;
+		int prefetchThreads = localOptions.getPrefetchThreads();
+		if (prefetchThreads > 0) {
+			ClasspathIndex localClasspathIndex = classpathIndex;
+			assert (localClasspathIndex != null);
+			prefetcher = new ClassPrefetcher(localClasspathIndex, againstClasspathIndex, getClasspathParsingOptions(),
+					prefetchThreads);
+		}
+		try {
+			search(localOptions, mdFinder);
+		} finally {
+			ClassPrefetcher localPrefetcher = prefetcher;
+			if (localPrefetcher != null) {
+				prefetcher = null;
+				localPrefetcher.close();
+				preloadedClassNodes.clear();
+				preloadedAgainstClassNodes.clear();
 			}
-			++nextMethodToAnalyzePtr;
+		}
+		if (errorHandler.hasError()) {
+			return;
 		}
 
 		ArrayList<@NonNull TypeDependency> typesDep = new ArrayList<>();
@@ -265,7 +551,13 @@ public class DependencyDiscoverer {
 				if (typeCompareResult != 0) {
 					return typeCompareResult;
 				}
-				return arg0.getFieldReference().getFieldName().compareTo(arg1.getFieldReference().getFieldName());
+				int nameCompareResult = arg0.getFieldReference().getFieldName()
+						.compareTo(arg1.getFieldReference().getFieldName());
+				if (nameCompareResult != 0) {
+					return nameCompareResult;
+				}
+				// total order, so that the output doesn't depend on the tables order
+				return arg0.getFieldReference().getTypeName().compareTo(arg1.getFieldReference().getTypeName());
 			}
 		});
 
@@ -281,37 +573,590 @@ public class DependencyDiscoverer {
 		} else {
 			out = System.out;// NOSONAR fallback to default output
 		}
-
-		IDependencyWriter writer = null;
-		String outputType = options.getOutputType();
-		if (outputType != null) {
-			if (outputType.equals("text")) {
-				writer = new TextDependencyWriter();
-			} else if (outputType.equals("xml")) {
-				writer = new XmlDependencyWriter();
-			} else if (outputType.equals("json")) {
-				writer = new JsonDependencyWriter();
-			} else {
-				writer = new TextDependencyWriter();
+
+		IDependencyWriter writer = null;
+		String outputType = options.getOutputType();
+		if (outputType != null) {
+			if (outputType.equals("text")) {
+				writer = new TextDependencyWriter();
+			} else if (outputType.equals("xml")) {
+				writer = new XmlDependencyWriter();
+			} else if (outputType.equals("json")) {
+				writer = new JsonDependencyWriter();
+			} else {
+				writer = new TextDependencyWriter();
+			}
+		} else {
+			writer = new TextDependencyWriter();
+		}
+
+		if (trackCallers) {
+			// only the printed dependencies are resolved
+			String[] symbolNames = symbols.getSymbols();
+			for (TypeDependency dep : typesDep) {
+				if (dep.isNotFound()) {
+					resolveProvenance(dep, symbolNames);
+				}
+			}
+			for (FieldDependency dep : fieldsDep) {
+				if (dep.isNotFound()) {
+					resolveProvenance(dep, symbolNames);
+				}
+			}
+			for (MethodDependency dep : methodsRef) {
+				if (dep.isNotFound() || dep.isNative()) {
+					resolveProvenance(dep, symbolNames);
+				}
+			}
+		}
+
+		writer.setTypeDependencies(typesDep);
+		writer.setMethodDependencies(methodsRef);
+		writer.setFieldDependencies(fieldsDep);
+		writer.setProvenance(options.getProvenance());
+		assert (out != null);
+		writer.write(out);
+		out.close();
+	}
+
+	/**
+	 * Analyzes the methods to analyze, and the methods they depend on.
+	 */
+	private void search(DependencyDiscovererOptions localOptions, DependencyOpcodeGenerator mdFinder) {
+		int nThreads = localOptions.getThreads();
+		if (localOptions.isWaves()) {
+			// the waves are analyzed sequentially
+			try {
+				analyzeWaves(mdFinder.getMemberKeys());
+			} finally {
+				preloadedClassNodes.clear();
+				preloadedAgainstClassNodes.clear();
+				lastReadClass.remove();
+			}
+		} else if (nThreads > 1) {
+			ParallelSearch localParallelSearch = new ParallelSearch(nThreads);
+			parallelSearch = localParallelSearch;
+			try {
+				localParallelSearch.run(analyzedMethods);
+			} finally {
+				parallelSearch = null;
+			}
+		} else {
+			while (nextMethodToAnalyzePtr < analyzedMethods.size()) {
+				AnalyzedMethod method = analyzedMethods.get(nextMethodToAnalyzePtr);
+				assert (method != null);
+				analyzeMethod(method, mdFinder);
+				if (errorHandler.hasError()) {
+					return;
+				}
+				++nextMethodToAnalyzePtr;
+			}
+			lastReadClass.remove();
+		}
+	}
+
+	/**
+	 * Splits the entry points of the options in classes entry points and methods
+	 * entry points. The {@link ClasspathEntryPoints#MAIN_CLASS} and
+	 * {@link ClasspathEntryPoints#SERVICES} entry points are replaced by the
+	 * entry points declared by the classpath.
+	 */
+	private void splitEntryPoints(File[] classpath, List<String> classesEntryPoints,
+			Map<String, List<String>> methodsEntryPoints) throws IOException {
+		for (String entryPoint : options.getEntryPoints()) {
+			if (ClasspathEntryPoints.MAIN_CLASS.equals(entryPoint)) {
+				for (String mainClass : ClasspathEntryPoints.getMainClasses(classpath)) {
+					addMethodEntryPoint(methodsEntryPoints, mainClass, ClasspathEntryPoints.MAIN_METHOD);
+				}
+			} else if (ClasspathEntryPoints.SERVICES.equals(entryPoint)) {
+				// a provider is instantiated by reflection then used through its
+				// service interface: all its methods are entry points
+				classesEntryPoints.addAll(ClasspathEntryPoints.getServiceProviders(classpath));
+			} else {
+				int separatorIndex = entryPoint.indexOf(METHOD_ENTRY_POINT_SEPARATOR);
+				if (separatorIndex == -1) {
+					classesEntryPoints.add(entryPoint);
+				} else {
+					String className = entryPoint.substring(0, separatorIndex);
+					String method = entryPoint.substring(separatorIndex + 1);
+					assert (className != null && method != null);
+					addMethodEntryPoint(methodsEntryPoints, className, method);
+				}
+			}
+		}
+	}
+
+	private static void addMethodEntryPoint(Map<String, List<String>> methodsEntryPoints, String className,
+			String method) {
+		List<String> methods = methodsEntryPoints.get(className);
+		if (methods == null) {
+			methods = new ArrayList<>();
+			methodsEntryPoints.put(className, methods);
+		}
+		methods.add(method);
+	}
+
+	/**
+	 * Adds the given methods of the given class to the methods to analyze.
+	 *
+	 * @param c       the entry point class
+	 * @param methods the methods on the form <code>name(descriptor)</code> or
+	 *                <code>name</code>, or <code>null</code> for all the methods
+	 * @return the number of added methods
+	 */
+	private int addEntryPoint(ClassNode c, @Nullable List<String> methods) {
+		AnalyzedClassfile loadedClassNode = loadedClassNodes.get(c.name);
+		if (loadedClassNode != null) {
+			return 0; // duplicate entry point in command line
+		}
+		loadedClassNode = new AnalyzedClassfile(c, symbols);
+		loadedClassNodes.put(c.name, loadedClassNode);
+
+		// add hierarchy dependencies
+		String superClassName = c.superName;
+
+		if (superClassName != null) {
+			addTypeDependency(superClassName, loadedClassNode);
+		}
+		List<@NonNull String> interfacesName = c.interfaces;
+		assert (interfacesName != null);
+		for (String interfaceName : interfacesName) {
+			addTypeDependency(interfaceName, loadedClassNode);
+		}
+		int nbMethods = 0;
+		for (MethodNode md : c.methods) {
+			MethodNode md2 = md;
+			if (methods == null || matchesEntryPoint(md2, methods)) {
+				addMethodToAnalyze(newAnalyzedMethod(c, md2));
+				++nbMethods;
+			}
+		}
+		return nbMethods;
+	}
+
+	private static boolean matchesEntryPoint(MethodNode md, List<String> methods) {
+		for (String method : methods) {
+			if (method.indexOf('(') == -1 ? method.equals(md.name)
+					: method.length() == md.name.length() + md.desc.length() && method.startsWith(md.name)
+							&& method.endsWith(md.desc)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Analyzes the code of the given method. The found dependencies are attributed
+	 * to this method.
+	 */
+	private void analyzeMethod(AnalyzedMethod method, DependencyOpcodeGenerator mdFinder) {
+		currentMethod.set(method);
+		try {
+			MethodNode md = method.getMd();
+			if (stateFile != null || jarSummaries != null) {
+				String @Nullable [] references = collectReferences(method);
+				if (references != null) {
+					replayReferences(references, mdFinder.getMemberKeys());
+				}
+			} else if (isStreaming()) {
+				streamMethod(method.getDeclaringType(), md, mdFinder);
+			} else {
+				md.accept(mdFinder);
+			}
+			addNativeMethodDependency(method);
+		} finally {
+			currentMethod.remove();
+		}
+	}
+
+	private void addNativeMethodDependency(AnalyzedMethod method) {
+		MethodNode md = method.getMd();
+		// If in flags combinations with 'native method' flag
+		if (Opcodes.ACC_NATIVE <= md.access && md.access < Opcodes.ACC_INTERFACE) {
+			addNativeMethodDependency(method.getDeclaringType(), md);
+		}
+	}
+
+	/**
+	 * Analyzes the methods in waves: the references found in the code of all the
+	 * methods of a wave are collected first, the classes they name (and their
+	 * super types) are loaded in a batch, then the references are resolved. The
+	 * methods found while resolving a wave make the next wave.
+	 */
+	private void analyzeWaves(MemberKeys memberKeys) {
+		while (nextMethodToAnalyzePtr < analyzedMethods.size()) {
+			int waveEnd = analyzedMethods.size();
+			ArrayList<String @Nullable []> waveReferences = new ArrayList<>();
+			LinkedHashSet<String> waveTypes = new LinkedHashSet<>();
+			for (int i = nextMethodToAnalyzePtr; i < waveEnd; ++i) {
+				AnalyzedMethod method = analyzedMethods.get(i);
+				assert (method != null);
+				String @Nullable [] references = collectReferences(method);
+				if (references != null) {
+					addReferencedTypes(references, waveTypes);
+				}
+				waveReferences.add(references);
+			}
+			if (errorHandler.hasError()) {
+				return;
+			}
+			preloadTypes(waveTypes);
+			for (String @Nullable [] references : waveReferences) {
+				AnalyzedMethod method = analyzedMethods.get(nextMethodToAnalyzePtr);
+				assert (method != null);
+				currentMethod.set(method);
+				try {
+					if (references != null) {
+						replayReferences(references, memberKeys);
+					}
+					addNativeMethodDependency(method);
+				} finally {
+					currentMethod.remove();
+				}
+				if (errorHandler.hasError()) {
+					return;
+				}
+				++nextMethodToAnalyzePtr;
+			}
+		}
+	}
+
+	/**
+	 * Collects the references found in the code of the given method, without
+	 * resolving them: from the summary of its JAR file, from the previous run if
+	 * its class is unchanged, or else by reading its code.
+	 *
+	 * @return the references, or <code>null</code> if the method has no code or its
+	 *         class is not found
+	 */
+	private String @Nullable [] collectReferences(AnalyzedMethod method) {
+		MethodNode md = method.getMd();
+		if ((md.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+			return null; // no code
+		}
+		String codeType = getCodeType(method.getDeclaringType(), md);
+		JarSummaries localJarSummaries = jarSummaries;
+		if (localJarSummaries != null) {
+			File container = getCodeContainer(codeType);
+			if (container != null && !container.isDirectory()) {
+				String[] references = localJarSummaries.getReferences(container, codeType, md.name, md.desc);
+				if (references != null) {
+					return references; // code summarized with its JAR file
+				}
+			}
+		}
+		AnalysisStateFile localStateFile = stateFile;
+		ClassState classState = null;
+		String @Nullable [] references = null;
+		if (localStateFile != null) {
+			classState = getCodeClassState(codeType, localStateFile);
+			if (classState == null) {
+				return null; // class not found, as in streaming mode
+			}
+			if (localStateFile.isUnchanged(codeType, classState)) {
+				references = localStateFile.getPreviousReferences(codeType, md.name, md.desc);
+			}
+		}
+		if (references == null) {
+			DependencyOpcodeGenerator recorder = new DependencyOpcodeGenerator(null, true);
+			if (isStreaming()) {
+				streamMethod(codeType, md, recorder);
+			} else {
+				md.accept(recorder);
+			}
+			references = recorder.getReferences();
+		}
+		if (localStateFile != null) {
+			assert (classState != null);
+			localStateFile.putClass(codeType, classState);
+			localStateFile.putReferences(codeType, md.name, md.desc, references);
+		}
+		return references;
+	}
+
+	/**
+	 * Adds the types named by the given references that are not resolved yet.
+	 */
+	private void addReferencedTypes(String[] references, Set<String> types) {
+		int i = 0;
+		while (i < references.length) {
+			String kind = references[i++];
+			String type = references[i++];
+			if (!AnalysisStateFile.TYPE_REFERENCE.equals(kind)) {
+				i += 2; // name and descriptor
+			}
+			assert (type != null);
+			if (!isArray(type) && !typesDependencies.containsKey(type)) {
+				types.add(type);
+			}
+		}
+	}
+
+	/**
+	 * Loads the given classes and their super types in a batch, from the
+	 * classpath first like {@link #resolveTypeDependency(TypeDependency, String)}.
+	 * The loaded classes are kept until their type dependency is resolved.
+	 */
+	private void preloadTypes(Set<String> types) {
+		ClasspathIndex localClasspathIndex = this.classpathIndex;
+		ClasspathIndex localAgainstClasspathIndex = this.againstClasspathIndex;
+		assert (localClasspathIndex != null);
+		HashSet<String> visitedTypes = new HashSet<>();
+		Set<String> pendingTypes = types;
+		while (!pendingTypes.isEmpty()) {
+			visitedTypes.addAll(pendingTypes);
+			Map<String, ClassNode> loadedTypes;
+			try {
+				loadedTypes = localClasspathIndex.loadTypes(pendingTypes, getClasspathParsingOptions());
+				preloadedClassNodes.putAll(loadedTypes);
+				if (localAgainstClasspathIndex != null && loadedTypes.size() < pendingTypes.size()) {
+					ArrayList<String> missingTypes = new ArrayList<>();
+					for (String type : pendingTypes) {
+						if (!loadedTypes.containsKey(type)) {
+							missingTypes.add(type);
+						}
+					}
+					// the code of the against classpath classes is not analyzed
+					Map<String, ClassNode> againstTypes = localAgainstClasspathIndex.loadTypes(missingTypes,
+							ClasspathIndex.SIGNATURE_ONLY);
+					preloadedAgainstClassNodes.putAll(againstTypes);
+					loadedTypes = new HashMap<>(loadedTypes);
+					loadedTypes.putAll(againstTypes);
+				}
+			} catch (IOException e) {
+				String message = e.getMessage();
+				assert (message != null);
+				errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+				return;
+			}
+			LinkedHashSet<String> superTypes = new LinkedHashSet<>();
+			for (ClassNode classfile : loadedTypes.values()) {
+				String superName = classfile.superName;
+				if (superName != null) {
+					superTypes.add(superName);
+				}
+				superTypes.addAll(classfile.interfaces);
+			}
+			superTypes.removeAll(visitedTypes);
+			superTypes.removeAll(typesDependencies.keySet());
+			superTypes.removeAll(loadedClassNodes.keySet());
+			pendingTypes = superTypes;
+		}
+	}
+
+	/**
+	 * Adds the references recorded by {@link DependencyOpcodeGenerator}, in the
+	 * same order.
+	 */
+	private void replayReferences(String[] references, MemberKeys memberKeys) {
+		int i = 0;
+		while (i < references.length) {
+			String kind = references[i++];
+			if (AnalysisStateFile.TYPE_REFERENCE.equals(kind)) {
+				String type = references[i++];
+				assert (type != null);
+				addTypeDependency(type);
+				continue;
+			}
+			String owner = references[i++];
+			String name = references[i++];
+			String descriptor = references[i++];
+			assert (owner != null && name != null && descriptor != null);
+			if (AnalysisStateFile.FIELD_REFERENCE.equals(kind)) {
+				addFieldDependency(memberKeys, owner, name, descriptor);
+			} else {
+				addMethodDependency(memberKeys, owner, name, descriptor,
+						AnalysisStateFile.INTERFACE_METHOD_REFERENCE.equals(kind));
+			}
+		}
+	}
+
+	/**
+	 * Gets the classpath entry that contains the given class, from the classpath
+	 * first like {@link #readClass(String)}.
+	 */
+	private @Nullable File getCodeContainer(String typeName) {
+		File container = codeContainers.get(typeName);
+		if (container != null) {
+			return container;
+		}
+		String classfileName = typeName + JavaClassfileNoFilter.CLASS_EXT;
+		ClasspathIndex localClasspathIndex = this.classpathIndex;
+		ClasspathIndex localAgainstClasspathIndex = this.againstClasspathIndex;
+		assert (localClasspathIndex != null);
+		try {
+			container = localClasspathIndex.getContainer(classfileName);
+			if (container == null && localAgainstClasspathIndex != null) {
+				container = localAgainstClasspathIndex.getContainer(classfileName);
+			}
+		} catch (IOException e) {
+			String message = e.getMessage();
+			assert (message != null);
+			errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+			return null;
+		}
+		if (container != null) {
+			codeContainers.put(typeName, container);
+		}
+		return container;
+	}
+
+	/**
+	 * Gets the state of the given class in this run. The class is hashed only if
+	 * its container has been modified since the previous run.
+	 */
+	private @Nullable ClassState getCodeClassState(String typeName, AnalysisStateFile localStateFile) {
+		ClassState classState = codeClasses.get(typeName);
+		if (classState != null) {
+			return classState;
+		}
+		File container = getCodeContainer(typeName);
+		if (container == null) {
+			return null;
+		}
+		String classfileName = typeName + JavaClassfileNoFilter.CLASS_EXT;
+		String containerPath = container.getAbsolutePath();
+		assert (containerPath != null);
+		File containerFile = container.isDirectory() ? new File(container, classfileName) : container;
+		ClassState previousState = localStateFile.getPreviousClass(typeName);
+		if (previousState != null && previousState.isUpToDate(containerPath, containerFile)) {
+			classState = previousState;
+		} else {
+			long size = containerFile.length();
+			long lastModified = containerFile.lastModified();
+			ClassfileReader cr = readClass(typeName);
+			if (cr == null) {
+				return null;
+			}
+			classState = new ClassState(containerPath, size, lastModified, AnalysisStateFile.hash(cr.getContent()));
+		}
+		ClassState existingClassState = codeClasses.putIfAbsent(typeName, classState);
+		return existingClassState == null ? classState : existingClassState;
+	}
+
+	/**
+	 * Gets the class which code contains the given method: an inherited method is
+	 * read from the class that declares it.
+	 */
+	private String getCodeType(ClassNode declaringType, MethodNode md) {
+		ClassNode declaringClassfile = getDeclaringClassfile(declaringType, md);
+		String codeType = declaringClassfile == null ? declaringType.name : declaringClassfile.name;
+		assert (codeType != null);
+		return codeType;
+	}
+
+	/**
+	 * Reads the code of the given method from its class file and sends it to the
+	 * given visitor. The instructions are not kept once visited.
+	 */
+	private void streamMethod(ClassNode declaringType, final MethodNode md, final MethodVisitor mv) {
+		if ((md.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+			return; // no code
+		}
+		streamMethod(getCodeType(declaringType, md), md, mv);
+	}
+
+	private void streamMethod(String codeType, final MethodNode md, final MethodVisitor mv) {
+		ClassReader cr = readClass(codeType);
+		if (cr == null) {
+			return;
+		}
+		cr.accept(new ClassVisitor(Opcodes.ASM9) {// NOSONAR java 8 compliance except lambda
+			@Override
+			public @Nullable MethodVisitor visitMethod(int access, String name, String descriptor,
+					@Nullable String signature, String @Nullable [] exceptions) {
+				return name.equals(md.name) && descriptor.equals(md.desc) ? mv : null;
+			}
+		}, ClassReader.SKIP_FRAMES);
+	}
+
+	/**
+	 * Reads the given class, from the classpath first like
+	 * {@link #resolveTypeDependency(TypeDependency, String)}. The last read class
+	 * is kept by each thread, since the methods of a class are often analyzed one
+	 * after the other.
+	 */
+	private @Nullable ClassfileReader readClass(String typeName) {
+		ClassfileReader cr = lastReadClass.get();
+		if (cr != null && cr.getClassName().equals(typeName)) {
+			return cr;
+		}
+		ClasspathIndex localClasspathIndex = this.classpathIndex;
+		ClasspathIndex localAgainstClasspathIndex = this.againstClasspathIndex;
+		assert (localClasspathIndex != null);
+		try {
+			cr = localClasspathIndex.readType(typeName);
+			if (cr == null && localAgainstClasspathIndex != null) {
+				cr = localAgainstClasspathIndex.readType(typeName);
 			}
-		} else {
-			writer = new TextDependencyWriter();
+		} catch (IOException e) {
+			String message = e.getMessage();
+			assert (message != null);
+			errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+			return null;
 		}
+		lastReadClass.set(cr);
+		return cr;
+	}
 
-		writer.setTypeDependencies(typesDep);
-		writer.setMethodDependencies(methodsRef);
-		writer.setFieldDependencies(fieldsDep);
-		assert (out != null);
-		writer.write(out);
-		out.close();
+	/**
+	 * Gets the parsing options of the classes of the classpath: in streaming or
+	 * incremental mode, or when the JAR files are summarized, only their members
+	 * are loaded, their code is read again when a method is analyzed.
+	 */
+	private int getClasspathParsingOptions() {
+		return isStreaming() ? ClasspathIndex.SIGNATURE_ONLY : 0;
+	}
+
+	private boolean isStreaming() {
+		return options.isStreaming() || stateFile != null || jarSummaries != null;
 	}
 
 	private TypeDependency addTypeDependency(String className, AnalyzedClassfile loadedClassfile) {
 		TypeDependency dependency = addTypeDependency(className);
-		dependency.addUser(loadedClassfile);
+		if (countHits) {
+			dependency.addHit();
+			if (trackCallers) {
+				dependency.addUser(loadedClassfile);
+			}
+		}
 		return dependency;
 	}
 
+	private AnalyzedMethod newAnalyzedMethod(ClassNode declaringType, MethodNode md) {
+		// the callers are identified by the symbol of their printable reference
+		int id = trackCallers ? symbols.getId(new MethodReference(declaringType.name, md.name, md.desc).toString())
+				: -1;
+		return new AnalyzedMethod(declaringType, md, id);
+	}
+
+	/**
+	 * Resolves the identifiers of the users and callers of the given dependency to
+	 * their names.
+	 */
+	private static void resolveProvenance(Dependency dep, String[] symbolNames) {
+		ArrayList<String> users = new ArrayList<>();
+		for (int id : dep.getUserIds()) {
+			users.add(symbolNames[id]);
+		}
+		Collections.sort(users);
+		dep.setUsers(users);
+		ArrayList<MethodReference> callers = new ArrayList<>();
+		ArrayList<String> callerNames = new ArrayList<>();
+		for (int id : dep.getCallerIds()) {
+			callerNames.add(symbolNames[id]);
+		}
+		Collections.sort(callerNames);
+		for (String callerName : callerNames) {
+			// owner.name(descriptor): internal names and member names have no dot
+			int descriptorStart = callerName.indexOf('(');
+			int nameStart = callerName.lastIndexOf('.', descriptorStart);
+			callers.add(new MethodReference(callerName.substring(0, nameStart),
+					callerName.substring(nameStart + 1, descriptorStart), callerName.substring(descriptorStart)));
+		}
+		dep.setCallers(callers);
+	}
+
 	/**
 	 * Split classpath and check if classath elements exist.
 	 *
@@ -366,38 +1211,96 @@ public class DependencyDiscoverer {
 	}
 
 	@Nullable
-	private AnalyzedClassfile loadClassfile(@NonNull File[] classpath, String typeName) {
+	private AnalyzedClassfile loadClassfile(ClasspathIndex index, String typeName, int parsingOptions) {
 
 		AnalyzedClassfile loadedClassfile = loadedClassNodes.get(typeName);
 		if (loadedClassfile != null) {
 			return loadedClassfile; // already loaded
 		}
-		AnalyzedClassfile c = loadClassfilePart2(classpath, new ExactClassfileFilter(new String[] { typeName }));
-
-		if (c != null) {
-			loadedClassNodes.put(typeName, c);
+		boolean inClasspath = index == classpathIndex;
+		ClassNode classfile = (inClasspath ? preloadedClassNodes : preloadedAgainstClassNodes).remove(typeName);
+		ClassPrefetcher localPrefetcher = prefetcher;
+		if (classfile == null && localPrefetcher != null && inClasspath) {
+			return loadPrefetchedClassfile(index, typeName, parsingOptions, localPrefetcher);
+		}
+		if (classfile == null) {
+			try {
+				classfile = index.loadType(typeName, parsingOptions);
+			} catch (IOException e) {
+				String message = e.getMessage();
+				assert (message != null);
+				errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+				return null;
+			}
+		}
+		if (classfile == null) {
+			return null;
+		}
+		if (localPrefetcher != null) {
+			prefetch(ClassPrefetcher.getReferencedTypes(classfile, null), localPrefetcher);
 		}
+		AnalyzedClassfile c = new AnalyzedClassfile(classfile, symbols);
+		loadedClassNodes.put(typeName, c);
 		return c;
 	}
 
-	private @Nullable AnalyzedClassfile loadClassfilePart2(@NonNull File[] classpath,
-			ExactClassfileFilter filter) {
-		HashMap<String, ClassNode> classFileContainer = new HashMap<>();
-		try {
-			JavaClassFinder.find(classFileContainer, classpath, filter, errorHandler);
-		} catch (IOException e) {
-			String message = e.getMessage();
-			assert (message != null);
-			errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
-			return null;
+	/**
+	 * Loads the given class of the classpath when the classes are prefetched: the
+	 * prefetched class is taken if any, else the class is read by the current
+	 * thread. The prefetch of the classes it references is then started.
+	 */
+	@Nullable
+	private AnalyzedClassfile loadPrefetchedClassfile(ClasspathIndex index, String typeName, int parsingOptions,
+			ClassPrefetcher localPrefetcher) {
+		ClassNode classfile;
+		List<String> referencedTypes;
+		PrefetchedClass prefetchedClass = localPrefetcher.take(typeName);
+		if (prefetchedClass != null) {
+			classfile = prefetchedClass.classfile;
+			if (classfile != null && !prefetchedClass.inClasspath) {
+				// found in the against classpath, loaded from there by the caller
+				preloadedAgainstClassNodes.put(typeName, classfile);
+				classfile = null;
+			}
+			referencedTypes = prefetchedClass.referencedTypes;
+		} else {
+			ClassReader cr;
+			try {
+				cr = index.readType(typeName);
+			} catch (IOException e) {
+				String message = e.getMessage();
+				assert (message != null);
+				errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+				return null;
+			}
+			if (cr == null) {
+				return null;
+			}
+			classfile = ClasspathIndex.parse(cr, parsingOptions);
+			referencedTypes = ClassPrefetcher.getReferencedTypes(classfile, cr);
 		}
-		if (classFileContainer.size() == 0) {
+		if (classfile == null) {
 			return null;
-		} else {
-			ClassNode classfile = (ClassNode) classFileContainer.values().toArray()[0];
-			assert (classfile != null);
-			return new AnalyzedClassfile(classfile);
 		}
+		prefetch(referencedTypes, localPrefetcher);
+		AnalyzedClassfile c = new AnalyzedClassfile(classfile, symbols);
+		loadedClassNodes.put(typeName, c);
+		return c;
+	}
+
+	/**
+	 * Starts the prefetch of the given classes which are not resolved nor loaded
+	 * yet.
+	 */
+	private void prefetch(List<String> types, ClassPrefetcher localPrefetcher) {
+		ArrayList<String> unresolvedTypes = new ArrayList<>();
+		for (String type : types) {
+			if (!typesDependencies.containsKey(type) && !loadedClassNodes.containsKey(type)
+					&& !preloadedClassNodes.containsKey(type)) {
+				unresolvedTypes.add(type);
+			}
+		}
+		localPrefetcher.prefetch(unresolvedTypes);
 	}
 
 	/**
@@ -412,6 +1315,8 @@ public class DependencyDiscoverer {
 		TypeDependency dep = typesDependencies.get(type);
 		if (dep == null) {
 			dep = newTypeDependency(type);
+		} else {
+			waitResolution(dep);
 		}
 		addCurrentMethodDependency(dep);
 		return dep;
@@ -420,48 +1325,101 @@ public class DependencyDiscoverer {
 	private TypeDependency newTypeDependency(String type) {
 		TypeDependency dep;
 		dep = new TypeDependency(type);
-		typesDependencies.put(type, dep);
+		synchronized (dep) {
+			TypeDependency existingDep = typesDependencies.putIfAbsent(type, dep);
+			if (existingDep != null) {
+				// added concurrently
+				waitResolution(existingDep);
+				return existingDep;
+			}
+			AnalyzedMethod method = suspendCurrentMethod();
+			try {
+				resolveTypeDependency(dep, type);
+			} finally {
+				resumeCurrentMethod(method);
+			}
+		}
+		return dep;
+	}
+
+	private void resolveTypeDependency(TypeDependency dep, String type) {
 
 		// find type
-		@NonNull
-		File[] localClasspath = this.classpath;
-		assert (localClasspath != null);
-		AnalyzedClassfile classfile = loadClassfile(localClasspath, type);
+		ClasspathIndex localClasspathIndex = this.classpathIndex;
+		assert (localClasspathIndex != null);
+		AnalyzedClassfile classfile = loadClassfile(localClasspathIndex, type, getClasspathParsingOptions());
 		if (classfile == null) {
 			// type not found
 			// try to load it from againstClasspath
 
-			@NonNull
-			File[] localAgainstClasspath = againstClasspath;
-			if (localAgainstClasspath != null) {
-				classfile = loadClassfile(localAgainstClasspath, type);
+			ClasspathIndex localAgainstClasspathIndex = againstClasspathIndex;
+			if (localAgainstClasspathIndex != null) {
+				// the code of the against classpath classes is not analyzed
+				classfile = loadClassfile(localAgainstClasspathIndex, type, ClasspathIndex.SIGNATURE_ONLY);
 			}
 			if (classfile == null) {
 				dep.setState(Dependency.STATE_NOT_FOUND);
 			} else {
 				dep.classfile = classfile.getClassfile();
+				dep.analyzedClassfile = classfile;
 				dep.setState(Dependency.STATE_FOUND_IN_AGAINST_CLASSPATH);
 			}
 		} else {
 			dep.classfile = classfile.getClassfile();
+			dep.analyzedClassfile = classfile;
 			dep.setState(Dependency.STATE_FOUND_IN_CLASSPATH);
 		}
-		return dep;
 	}
 
-	private void addCurrentMethodDependency(Dependency dep) {
-		AnalyzedMethod currentMethod = getCurrentAnalyzedMethod();
-		if (currentMethod != null) {
-			dep.addCaller(currentMethod);
+	/**
+	 * Waits until the given dependency is resolved. In parallel mode, a dependency
+	 * is locked by the thread that resolves it.
+	 */
+	private void waitResolution(Dependency dep) {
+		if (parallelSearch != null) {
+			synchronized (dep) { // NOSONAR the lock is only taken to wait for the resolving thread
+				// resolved
+			}
 		}
 	}
 
-	private @Nullable AnalyzedMethod getCurrentAnalyzedMethod() {
-		try {
-			return analyzedMethods.get(nextMethodToAnalyzePtr);
-		} catch (Exception e) {
-			// not yet initialized, or something else?
-			return null;
+	/**
+	 * Stops attributing the found dependencies to the method being analyzed by the
+	 * current thread, while a dependency is resolved: only the first method that
+	 * adds a dependency resolves it, so the dependencies found by the resolution
+	 * (super types, declaring classes) would be attributed depending on the order
+	 * of the analysis.
+	 *
+	 * @return the method being analyzed, to give to
+	 *         {@link #resumeCurrentMethod(AnalyzedMethod)}
+	 */
+	private @Nullable AnalyzedMethod suspendCurrentMethod() {
+		if (!countHits) {
+			return null; // provenance not tracked
+		}
+		AnalyzedMethod method = currentMethod.get();
+		if (method != null) {
+			currentMethod.remove();
+		}
+		return method;
+	}
+
+	private void resumeCurrentMethod(@Nullable AnalyzedMethod method) {
+		if (method != null) {
+			currentMethod.set(method);
+		}
+	}
+
+	private void addCurrentMethodDependency(Dependency dep) {
+		if (!countHits) {
+			return; // provenance not tracked
+		}
+		AnalyzedMethod method = currentMethod.get();
+		if (method != null) {
+			dep.addHit();
+			if (trackCallers) {
+				dep.addCaller(method);
+			}
 		}
 	}
 
@@ -471,10 +1429,49 @@ public class DependencyDiscoverer {
 	 * @param ref , method reference.
 	 */
 	public void addMethodDependency(MethodReference ref) {
-		MethodDependency dep = addMethodDependency0(ref);
+		addMethodDependency(ref.getOwner(), ref.getName(), ref.getDescriptor(), ref.isInterface());
+	}
+
+	/**
+	 * Add a dependency on the current method being analyzed. The method reference
+	 * is created only the first time the method is added.
+	 *
+	 * @param owner       type of the class containing the method
+	 * @param name        of the method
+	 * @param descriptor  of the method, input and output in class file format
+	 * @param isInterface if the method's owner class is an interface
+	 */
+	public void addMethodDependency(String owner, String name, String descriptor, boolean isInterface) {
+		MethodDependency dep = addMethodDependency0(null, owner, name, descriptor, isInterface);
 		addCurrentMethodDependency(dep);
 	}
 
+	/**
+	 * Add a dependency on the current method being analyzed, looking up the method
+	 * key in the given cache of the current thread.
+	 *
+	 * @param memberKeys  the keys of the members referenced by the analyzed code
+	 * @param owner       type of the class containing the method
+	 * @param name        of the method
+	 * @param descriptor  of the method, input and output in class file format
+	 * @param isInterface if the method's owner class is an interface
+	 */
+	void addMethodDependency(MemberKeys memberKeys, String owner, String name, String descriptor,
+			boolean isInterface) {
+		MethodDependency dep = addMethodDependency0(memberKeys, owner, name, descriptor, isInterface);
+		addCurrentMethodDependency(dep);
+	}
+
+	/**
+	 * Creates a cache of the keys of the members referenced by the code analyzed by
+	 * a thread.
+	 *
+	 * @return the cache
+	 */
+	MemberKeys createMemberKeys() {
+		return new MemberKeys(symbols);
+	}
+
 	/**
 	 * Create a {@link MethodDependency} object from parameters and sets it to
 	 * native. Then add it to the method dependency list.
@@ -486,40 +1483,59 @@ public class DependencyDiscoverer {
 		String desc = md.desc;
 		String name = md.name;
 		String owner = declaringType.name;
-		MethodReference ref = new MethodReference(owner, name, desc);
-		MethodDependency dep = addMethodDependency0(ref);
+		MethodDependency dep = addMethodDependency0(null, owner, name, desc, false);
 		dep.setNative();
 
 	}
 
-	private MethodDependency addMethodDependency0(MethodReference ref) {
-
-		MethodDependency dep = methodsDependencies.get(ref);
+	private MethodDependency addMethodDependency0(@Nullable MemberKeys memberKeys, String owner, String name,
+			String descriptor, boolean isInterface) {
+		if (isArray(owner)) {
+			// method call on an array is on java.lang.Object for sure
+			owner = JAVA_LANG_OBJECT;
+		}
+		long key = memberKeys == null ? symbols.getMemberKey(owner, name, descriptor)
+				: memberKeys.getKey(owner, name, descriptor);
+		MethodDependency dep = methodsDependencies.get(key);
 		if (dep == null) {
-			dep = newMethodDependency(ref);
+			dep = newMethodDependency(key, new MethodReference(owner, name, descriptor, isInterface));
+		} else {
+			waitResolution(dep);
 		}
 		return dep;
 	}
 
-	private MethodDependency newMethodDependency(MethodReference ref) {// NOSONAR keep legacy processing function
-		if (isArray(ref.getOwner())) {
-			// method call on an array is on java.lang.Object for sure
-			String typeDependencyChars = JAVA_LANG_OBJECT;
-			ref = new MethodReference(typeDependencyChars, ref.getName(), ref.getDescriptor(), ref.isInterface());
-		}
-
+	private MethodDependency newMethodDependency(long key, MethodReference ref) {
 		MethodDependency dep = new MethodDependency(ref);
-		methodsDependencies.put(ref, dep);
+		synchronized (dep) {
+			MethodDependency existingDep = methodsDependencies.putIfAbsent(key, dep);
+			if (existingDep != null) {
+				// added concurrently
+				waitResolution(existingDep);
+				return existingDep;
+			}
+			AnalyzedMethod method = suspendCurrentMethod();
+			try {
+				resolveMethodDependency(dep, ref);
+			} finally {
+				resumeCurrentMethod(method);
+			}
+		}
+		return dep;
+	}
 
+	private void resolveMethodDependency(MethodDependency dep, MethodReference ref) {// NOSONAR keep legacy processing function
 		TypeDependency typeDep = addTypeDependency(ref.getOwner());
 		if (typeDep.isNotFound()) {
 			dep.setState(Dependency.STATE_NOT_FOUND);
 		} else {
 			// here, classfile has been found
 			// find method
-			ClassNode classfileDep = typeDep.classfile;
+			AnalyzedClassfile classfileDep = typeDep.analyzedClassfile;
 			assert (classfileDep != null);
-			MethodNode md = getMethodInHierarchy(classfileDep, ref);
+			Resolution resolution = getMethodResolution(classfileDep,
+					symbols.getMemberId(ref.getName(), ref.getDescriptor()));
+			MethodNode md = (MethodNode) resolution.member;
 			if (md == null) {
 				// type is in the classpath (as long as it is found just before!),
 				// consider it is a invoke virtual of a not redefined method from the first not
@@ -532,9 +1548,8 @@ public class DependencyDiscoverer {
 						// first not in classpath superclass
 						dep.setState(typeDep.getState());
 						String classValue = currentTypeDependency.getName();
-						MethodReference methodrefValue = new MethodReference(classValue, dep.getMethodRef().getName(),
-								dep.getMethodRef().getDescriptor());
-						addMethodDependency(methodrefValue);
+						addMethodDependency(classValue, dep.getMethodRef().getName(), dep.getMethodRef().getDescriptor(),
+								false);
 						break;
 					}
 					String superclass = classfile.superName;
@@ -554,16 +1569,78 @@ public class DependencyDiscoverer {
 				if (typeDep.isLoadedFromClasspath()) {
 					// transitive dependency search
 					ClassNode classfile = typeDep.classfile;
-					assert (classfile != null);
-					addMethodToAnalyze(new AnalyzedMethod(classfile, md));
+					AnalyzedClassfile declaringClassfile = resolution.declaringClassfile;
+					assert (classfile != null && declaringClassfile != null);
+					addMethodToAnalyze(
+							newAnalyzedMethod(classfile, getMethodWithCode(declaringClassfile.getClassfile(), md)));
 				}
 			}
 		}
-		return dep;
+	}
+
+	/**
+	 * Gets the given method with its code. A method inherited from a class of the
+	 * against classpath has been loaded without its code, so its class is loaded
+	 * again with the code. In streaming or incremental mode, the code is read when
+	 * the method is analyzed.
+	 */
+	private MethodNode getMethodWithCode(ClassNode declaringClassfile, MethodNode md) {
+		if (isStreaming() || (md.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0
+				|| md.instructions.size() != 0) {
+			return md; // no code or code already loaded
+		}
+		ClasspathIndex localAgainstClasspathIndex = againstClasspathIndex;
+		if (localAgainstClasspathIndex == null) {
+			return md;
+		}
+		String typeName = declaringClassfile.name;
+		ClassNode classfileWithCode = againstClassNodesWithCode.get(typeName);
+		if (classfileWithCode == null) {
+			try {
+				classfileWithCode = localAgainstClasspathIndex.loadType(typeName);
+			} catch (IOException e) {
+				String message = e.getMessage();
+				assert (message != null);
+				errorHandler.addNoFile(new DependencyDiscovererError().unexpectedIOError(message));
+				return md;
+			}
+			if (classfileWithCode == null) {
+				return md;
+			}
+			ClassNode existingClassfile = againstClassNodesWithCode.putIfAbsent(typeName, classfileWithCode);
+			if (existingClassfile != null) {
+				classfileWithCode = existingClassfile; // loaded concurrently
+			}
+		}
+		for (MethodNode m : classfileWithCode.methods) {
+			if (m.name.equals(md.name) && m.desc.equals(md.desc)) {
+				return m;
+			}
+		}
+		return md;
+	}
+
+	/**
+	 * Gets the class of the hierarchy of the given class that declares the given
+	 * method. The method must have been resolved from the given class.
+	 */
+	private @Nullable ClassNode getDeclaringClassfile(ClassNode classfile, MethodNode md) {
+		AnalyzedClassfile analyzedClassfile = loadedClassNodes.get(classfile.name);
+		if (analyzedClassfile == null) {
+			return null;
+		}
+		AnalyzedClassfile declaringClassfile = getMethodResolution(analyzedClassfile,
+				symbols.getMemberId(md.name, md.desc)).declaringClassfile;
+		return declaringClassfile == null ? null : declaringClassfile.getClassfile();
 	}
 
 	private void addMethodToAnalyze(AnalyzedMethod analyzedMethod) {
-		analyzedMethods.add(analyzedMethod);
+		ParallelSearch localParallelSearch = parallelSearch;
+		if (localParallelSearch != null) {
+			localParallelSearch.submit(analyzedMethod);
+		} else {
+			analyzedMethods.add(analyzedMethod);
+		}
 	}
 
 
@@ -579,17 +1656,66 @@ public class DependencyDiscoverer {
 	 * @param ref the field reference to add
 	 */
 	public void addFieldDependency(FieldReference ref) {
-		FieldDependency dep = fieldsDependencies.get(ref);
+		addFieldDependency(ref.getTypeName(), ref.getFieldName(), ref.getFieldType());
+	}
+
+	/**
+	 * Check if a dependency on the given field has already been added to the list,
+	 * if not, create a dependence and adds it. The field reference is created only
+	 * the first time the field is added.
+	 *
+	 * @param owner      type of the class containing the field
+	 * @param name       name of the field
+	 * @param descriptor type of the field
+	 */
+	public void addFieldDependency(String owner, String name, String descriptor) {
+		addFieldDependency(symbols.getMemberKey(owner, name, descriptor), owner, name, descriptor);
+	}
+
+	/**
+	 * Adds a dependency on the given field, looking up the field key in the given
+	 * cache of the current thread.
+	 *
+	 * @param memberKeys the keys of the members referenced by the analyzed code
+	 * @param owner      type of the class containing the field
+	 * @param name       name of the field
+	 * @param descriptor type of the field
+	 */
+	void addFieldDependency(MemberKeys memberKeys, String owner, String name, String descriptor) {
+		addFieldDependency(memberKeys.getKey(owner, name, descriptor), owner, name, descriptor);
+	}
+
+	private void addFieldDependency(long key, String owner, String name, String descriptor) {
+		FieldDependency dep = fieldsDependencies.get(key);
 		if (dep == null) {
-			dep = newFieldDependency(ref);
+			dep = newFieldDependency(key, new FieldReference(owner, descriptor, name));
+		} else {
+			waitResolution(dep);
 		}
 		addCurrentMethodDependency(dep);
 	}
 
-	private FieldDependency newFieldDependency(FieldReference ref) {
+	private FieldDependency newFieldDependency(long key, FieldReference ref) {
 		FieldDependency dep;
 		dep = new FieldDependency(ref);
-		fieldsDependencies.put(ref, dep);
+		synchronized (dep) {
+			FieldDependency existingDep = fieldsDependencies.putIfAbsent(key, dep);
+			if (existingDep != null) {
+				// added concurrently
+				waitResolution(existingDep);
+				return existingDep;
+			}
+			AnalyzedMethod method = suspendCurrentMethod();
+			try {
+				resolveFieldDependency(dep, ref);
+			} finally {
+				resumeCurrentMethod(method);
+			}
+		}
+		return dep;
+	}
+
+	private void resolveFieldDependency(FieldDependency dep, FieldReference ref) {
 
 		TypeDependency typeDep = addTypeDependency(ref.getTypeName());
 		if (typeDep.isNotFound()) {
@@ -597,112 +1723,126 @@ public class DependencyDiscoverer {
 		} else {
 			// here, classfile has been found
 			// find field
-			ClassNode classfile = typeDep.classfile;
+			AnalyzedClassfile classfile = typeDep.analyzedClassfile;
 			assert (classfile != null);
-			FieldNode fd = getFieldInHierarchy(classfile, ref);
-			if (fd == null) {
+			Resolution resolution = getFieldResolution(classfile,
+					symbols.getMemberId(ref.getFieldName(), ref.getFieldType()));
+			if (resolution.member == null) {
 				dep.setState(Dependency.STATE_NOT_FOUND);
 			} else {
 				dep.setState(typeDep.getState());
 			}
 		}
-		return dep;
 	}
 
 	/**
-	 * @return null if not found
+	 * Gets the resolution of the given method from the given class, resolves it if
+	 * it has not been resolved yet from this class.
 	 */
-	private static @Nullable MethodNode getMethod(ClassNode classfile, MethodReference ref) {
-		MethodNode[] methods = new MethodNode[classfile.methods.size()];
-		classfile.methods.toArray(methods);
-		for (int i = methods.length; --i >= 0;) {
-
-			MethodNode md = methods[i];
-
-			if (md.desc.equals(ref.getDescriptor()) && md.name.equals(ref.getName())) {
-				return md;
+	private Resolution getMethodResolution(AnalyzedClassfile classfile, int memberId) {
+		long key = SymbolTable.pack(classfile.getId(), memberId);
+		Resolution resolution = methodsResolutions.get(key);
+		if (resolution == null) {
+			AnalyzedMethod method = suspendCurrentMethod();
+			try {
+				resolution = resolveMethodInHierarchy(classfile, memberId);
+			} finally {
+				resumeCurrentMethod(method);
+			}
+			Resolution existingResolution = methodsResolutions.putIfAbsent(key, resolution);
+			if (existingResolution != null) {
+				resolution = existingResolution; // resolved concurrently
 			}
 		}
-		return null;
+		return resolution;
 	}
 
-	private @Nullable MethodNode getMethodInHierarchy(ClassNode classfile, MethodReference ref) {
-		MethodNode m = getMethod(classfile, ref);
+	private Resolution resolveMethodInHierarchy(AnalyzedClassfile classfile, int memberId) {
+		MethodNode m = classfile.getMethod(memberId);
 		if (m != null) {
-			return m;
+			return new Resolution(classfile, m);
 		}
-		String superclass = classfile.superName;
+		ClassNode classNode = classfile.getClassfile();
+		String superclass = classNode.superName;
 		if (superclass == null) {
-			return null;
+			return Resolution.NOT_FOUND;
 		}
-		TypeDependency superTypeDependency = addTypeDependency(superclass);
-		if (superTypeDependency.classfile != null) {
-			m = getMethodInHierarchy(superTypeDependency.classfile, ref);
-			if (m != null) {
-				return m;
+		AnalyzedClassfile superClassfile = addTypeDependency(superclass).analyzedClassfile;
+		if (superClassfile != null) {
+			Resolution resolution = getMethodResolution(superClassfile, memberId);
+			if (resolution != Resolution.NOT_FOUND) {
+				return resolution;
 			}
 		}
-		String[] interfaces = new String[classfile.interfaces.size()];
-		classfile.interfaces.toArray(interfaces);
+		String[] interfaces = new String[classNode.interfaces.size()];
+		classNode.interfaces.toArray(interfaces);
 		for (int i = interfaces.length; --i >= 0;) {
 			String type = interfaces[i];
 			assert (type != null);
-			TypeDependency superInterfaceDependency = addTypeDependency(type);
-			if (superInterfaceDependency.classfile != null) {
-				m = getMethodInHierarchy(superInterfaceDependency.classfile, ref);
-				if (m != null) {
-					return m;
+			AnalyzedClassfile superInterfaceClassfile = addTypeDependency(type).analyzedClassfile;
+			if (superInterfaceClassfile != null) {
+				Resolution resolution = getMethodResolution(superInterfaceClassfile, memberId);
+				if (resolution != Resolution.NOT_FOUND) {
+					return resolution;
 				}
 			}
 		}
-		return null;
+		return Resolution.NOT_FOUND;
+	}
+
+	/**
+	 * Gets the resolution of the given field from the given class, resolves it if
+	 * it has not been resolved yet from this class.
+	 */
+	private Resolution getFieldResolution(AnalyzedClassfile classfile, int memberId) {
+		long key = SymbolTable.pack(classfile.getId(), memberId);
+		Resolution resolution = fieldsResolutions.get(key);
+		if (resolution == null) {
+			AnalyzedMethod method = suspendCurrentMethod();
+			try {
+				resolution = resolveFieldInHierarchy(classfile, memberId);
+			} finally {
+				resumeCurrentMethod(method);
+			}
+			Resolution existingResolution = fieldsResolutions.putIfAbsent(key, resolution);
+			if (existingResolution != null) {
+				resolution = existingResolution; // resolved concurrently
+			}
+		}
+		return resolution;
 	}
 
-	private @Nullable FieldNode getFieldInHierarchy(ClassNode classfile, FieldReference ref) {
-		FieldNode f = getField(classfile, ref);
+	private Resolution resolveFieldInHierarchy(AnalyzedClassfile classfile, int memberId) {
+		FieldNode f = classfile.getField(memberId);
 		if (f != null) {
-			return f;
+			return new Resolution(classfile, f);
 		}
-		String superclass = classfile.superName;
+		ClassNode classNode = classfile.getClassfile();
+		String superclass = classNode.superName;
 		if (superclass == null) {
-			return null;
+			return Resolution.NOT_FOUND;
 		}
-		TypeDependency superTypeDependency = addTypeDependency(superclass);
-		if (superTypeDependency.classfile != null) {
-			f = getFieldInHierarchy(superTypeDependency.classfile, ref);
-			if (f != null) {
-				return f;
+		AnalyzedClassfile superClassfile = addTypeDependency(superclass).analyzedClassfile;
+		if (superClassfile != null) {
+			Resolution resolution = getFieldResolution(superClassfile, memberId);
+			if (resolution != Resolution.NOT_FOUND) {
+				return resolution;
 			}
 		}
-		String[] interfaces = new String[classfile.interfaces.size()];
-		classfile.interfaces.toArray(interfaces);
+		String[] interfaces = new String[classNode.interfaces.size()];
+		classNode.interfaces.toArray(interfaces);
 		for (int i = interfaces.length; --i >= 0;) {
 			String type = interfaces[i];
 			assert (type != null);
-			TypeDependency superInterfaceDependency = addTypeDependency(type);
-			if (superInterfaceDependency.classfile != null) {
-				f = getFieldInHierarchy(superInterfaceDependency.classfile, ref);
-				if (f != null) {
-					return f;
+			AnalyzedClassfile superInterfaceClassfile = addTypeDependency(type).analyzedClassfile;
+			if (superInterfaceClassfile != null) {
+				Resolution resolution = getFieldResolution(superInterfaceClassfile, memberId);
+				if (resolution != Resolution.NOT_FOUND) {
+					return resolution;
 				}
 			}
 		}
-		return null;
-	}
-
-	/**
-	 * @return null if not found
-	 */
-	private static @Nullable FieldNode getField(ClassNode classfile, FieldReference ref) {
-		FieldNode[] fields = new FieldNode[classfile.fields.size()];
-		classfile.fields.toArray(fields);
-		for (int i = fields.length; --i >= 0;) {
-			FieldNode fd = fields[i];
-			if (fd.desc.equals(ref.getFieldType()) && fd.name.equals(ref.getFieldName())) {
-				return fd;
-			}
-		}
-		return null;
+		return Resolution.NOT_FOUND;
 	}
 
 	/**
@@ -722,4 +1862,140 @@ public class DependencyDiscoverer {
 		return errorHandler;
 	}
 
+	/**
+	 * A member resolved from a class: the class of its hierarchy that declares it,
+	 * or {@link #NOT_FOUND}.
+	 */
+	private static class Resolution {
+
+		static final Resolution NOT_FOUND = new Resolution(null, null);
+
+		final @Nullable AnalyzedClassfile declaringClassfile;
+		final @Nullable Object member;
+
+		Resolution(@Nullable AnalyzedClassfile declaringClassfile, @Nullable Object member) {
+			this.declaringClassfile = declaringClassfile;
+			this.member = member;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Parallel search loop: each method is analyzed by a task of a work-stealing
+	 * pool, and the methods found by a task are forked in the same pool.
+	 * </p>
+	 * <p>
+	 * The dependencies tables are shared by the tasks. The result doesn't depend
+	 * on the order of the analysis, so the output is the same as the sequential
+	 * search.
+	 * </p>
+	 */
+	private class ParallelSearch {
+
+		private final ForkJoinPool pool;
+
+		/**
+		 * Generator of each thread of the pool, which caches the keys of the members
+		 * referenced by the code it analyzes.
+		 */
+		private final ThreadLocal<DependencyOpcodeGenerator> mdFinders;
+
+		/**
+		 * Number of submitted tasks not yet done.
+		 */
+		private final AtomicInteger pendingTasks;
+
+		/**
+		 * First unexpected exception thrown by a task.
+		 */
+		private final AtomicReference<@Nullable Throwable> failure;
+
+		ParallelSearch(int nThreads) {
+			this.pool = new ForkJoinPool(nThreads);
+			this.mdFinders = new ThreadLocal<DependencyOpcodeGenerator>() {// NOSONAR java 8 compliance except lambda
+				@Override
+				protected DependencyOpcodeGenerator initialValue() {
+					return new DependencyOpcodeGenerator(DependencyDiscoverer.this);
+				}
+			};
+			this.pendingTasks = new AtomicInteger();
+			this.failure = new AtomicReference<>();
+		}
+
+		/**
+		 * Analyzes the given methods and the methods they depend on, and waits until
+		 * all the tasks are done.
+		 */
+		void run(List<AnalyzedMethod> methods) {
+			try {
+				for (AnalyzedMethod method : methods) {
+					assert (method != null);
+					submit(method);
+				}
+				synchronized (this) {
+					while (pendingTasks.get() > 0) {
+						wait();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				pool.shutdownNow();
+			}
+			Throwable localFailure = failure.get();
+			if (localFailure instanceof RuntimeException) {
+				throw (RuntimeException) localFailure;
+			} else if (localFailure instanceof Error) {
+				throw (Error) localFailure;
+			}
+		}
+
+		void submit(AnalyzedMethod method) {
+			pendingTasks.incrementAndGet();
+			MethodAnalysisTask task = new MethodAnalysisTask(method);
+			if (ForkJoinTask.inForkJoinPool()) {
+				task.fork(); // work-stealing
+			} else {
+				pool.execute(task);
+			}
+		}
+
+		private void done() {
+			if (pendingTasks.decrementAndGet() == 0) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Analysis of a method. A task never waits for another task, so it can't run
+		 * another task on its thread while the method is analyzed.
+		 */
+		private class MethodAnalysisTask extends RecursiveAction {
+
+			private static final long serialVersionUID = 1L;
+
+			private final transient AnalyzedMethod method;
+
+			MethodAnalysisTask(AnalyzedMethod method) {
+				this.method = method;
+			}
+
+			@Override
+			protected void compute() {
+				try {
+					if (failure.get() == null && !errorHandler.hasError()) {
+						DependencyOpcodeGenerator mdFinder = mdFinders.get();
+						assert (mdFinder != null);
+						analyzeMethod(method, mdFinder);
+					}
+				} catch (RuntimeException | Error e) {// NOSONAR rethrown by the search loop
+					failure.compareAndSet(null, e);
+				} finally {
+					done();
+				}
+			}
+		}
+	}
 }
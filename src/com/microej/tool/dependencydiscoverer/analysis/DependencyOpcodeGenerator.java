@@ -6,6 +6,8 @@
  */
 package com.microej.tool.dependencydiscoverer.analysis;
 
+import java.util.ArrayList;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.objectweb.asm.Label;
@@ -14,11 +16,64 @@ import org.objectweb.asm.Type;
 
 class DependencyOpcodeGenerator extends MethodVisitor {
 
-	private final DependencyDiscoverer dd;
+	/**
+	 * The dependency discoverer to which the references are added,
+	 * <code>null</code> if they are only recorded (see {@link JarSummaries}).
+	 */
+	private final @Nullable DependencyDiscoverer dd;
+
+	/**
+	 * The references found in the visited code, in the order of the instructions,
+	 * <code>null</code> if they are not recorded (see {@link AnalysisStateFile}).
+	 */
+	private final @Nullable ArrayList<String> references;
+
+	/**
+	 * The keys of the members referenced by the visited code, <code>null</code>
+	 * if the references are only recorded. A generator is used by a single thread.
+	 */
+	private final @Nullable MemberKeys memberKeys;
 
 	public DependencyOpcodeGenerator(DependencyDiscoverer dd) {
+		this(dd, false);
+	}
+
+	/**
+	 * @param dd     the dependency discoverer to which the references are added,
+	 *               or <code>null</code> to only record them
+	 * @param record <code>true</code> to record the references found in the
+	 *               visited code, for an incremental analysis
+	 */
+	public DependencyOpcodeGenerator(@Nullable DependencyDiscoverer dd, boolean record) {
 		super(org.objectweb.asm.Opcodes.ASM9);
 		this.dd = dd;
+		this.references = record ? new ArrayList<String>() : null;
+		this.memberKeys = dd == null ? null : dd.createMemberKeys();
+	}
+
+	/**
+	 * Gets the cache of the keys of the members referenced by the analyzed code,
+	 * to add references which have not been found by this generator.
+	 *
+	 * @return the keys of the members
+	 */
+	MemberKeys getMemberKeys() {
+		MemberKeys localMemberKeys = memberKeys;
+		assert (localMemberKeys != null);
+		return localMemberKeys;
+	}
+
+	/**
+	 * Gets the references found in the visited code.
+	 *
+	 * @return the recorded references, see {@link AnalysisStateFile#TYPE_REFERENCE}
+	 */
+	String[] getReferences() {
+		ArrayList<String> localReferences = references;
+		assert (localReferences != null);
+		String[] array = localReferences.toArray(new String[localReferences.size()]);
+		assert (array != null);
+		return array;
 	}
 
 	@Override
@@ -54,20 +109,53 @@ class DependencyOpcodeGenerator extends MethodVisitor {
 		if (type.length() > 0 && type.charAt(type.length() - 1) == ';') {
 			String typeFiltered = type.substring(type.indexOf("L") + 1, type.length() - 1);
 			assert (typeFiltered != null);
-			dd.addTypeDependency(typeFiltered);
+			addTypeDependency(typeFiltered);
+		}
+	}
+
+	private void addTypeDependency(String type) {
+		ArrayList<String> localReferences = references;
+		if (localReferences != null) {
+			localReferences.add(AnalysisStateFile.TYPE_REFERENCE);
+			localReferences.add(type);
+		}
+		DependencyDiscoverer localDd = dd;
+		if (localDd != null) {
+			localDd.addTypeDependency(type);
 		}
 	}
 
 	@Override
 	public void visitMethodInsn(int opcode, String owner, String name, String descriptor,
 			boolean isInterface) {
-		dd.addMethodDependency(new MethodReference(owner, name, descriptor, isInterface));
+		ArrayList<String> localReferences = references;
+		if (localReferences != null) {
+			localReferences.add(isInterface ? AnalysisStateFile.INTERFACE_METHOD_REFERENCE
+					: AnalysisStateFile.METHOD_REFERENCE);
+			localReferences.add(owner);
+			localReferences.add(name);
+			localReferences.add(descriptor);
+		}
+		DependencyDiscoverer localDd = dd;
+		if (localDd != null) {
+			localDd.addMethodDependency(getMemberKeys(), owner, name, descriptor, isInterface);
+		}
 	}
 
 	@Override
 	public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
 		addFilteredSimpleType(descriptor);
-		dd.addFieldDependency(new FieldReference(owner, descriptor, name));
+		ArrayList<String> localReferences = references;
+		if (localReferences != null) {
+			localReferences.add(AnalysisStateFile.FIELD_REFERENCE);
+			localReferences.add(owner);
+			localReferences.add(name);
+			localReferences.add(descriptor);
+		}
+		DependencyDiscoverer localDd = dd;
+		if (localDd != null) {
+			localDd.addFieldDependency(getMemberKeys(), owner, name, descriptor);
+		}
 	}
 
 	@Override
@@ -85,7 +173,7 @@ class DependencyOpcodeGenerator extends MethodVisitor {
 
 			String substring = descriptorBuff.substring(1, endIndex);
 			assert (substring != null);
-			dd.addTypeDependency(substring);
+			addTypeDependency(substring);
 		}
 	}
 
@@ -93,7 +181,7 @@ class DependencyOpcodeGenerator extends MethodVisitor {
 	public void visitTryCatchBlock(@Nullable Label start, @Nullable Label end, @Nullable Label handler,
 			@Nullable String type) {
 		if (type != null) {
-			dd.addTypeDependency(type);
+			addTypeDependency(type);
 		}
 	}
 
@@ -0,0 +1,99 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Set of positive or zero <code>int</code> values, stored in an open
+ * addressing table of primitives.
+ * </p>
+ * <p>
+ * This set is not thread-safe.
+ * </p>
+ */
+class IntHashSet {
+
+	private static final int INITIAL_CAPACITY = 4; // power of 2
+
+	private int[] values; // values + 1, 0 slots are free
+	private int size;
+
+	IntHashSet() {
+		values = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Adds the given value to the set.
+	 *
+	 * @param value the value to add (positive or zero)
+	 * @return <code>true</code> if the value has been added, <code>false</code>
+	 *         if it is already in the set
+	 */
+	boolean add(int value) {
+		int slotValue = value + 1;
+		int mask = values.length - 1;
+		int i = hash(slotValue) & mask;
+		while (values[i] != 0) {
+			if (values[i] == slotValue) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		values[i] = slotValue;
+		if (++size * 2 > values.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of values of the set.
+	 *
+	 * @return the size of the set
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the values of the set.
+	 *
+	 * @return the sorted values
+	 */
+	int[] toArray() {
+		int[] result = new int[size];
+		int j = 0;
+		for (int slotValue : values) {
+			if (slotValue != 0) {
+				result[j++] = slotValue - 1;
+			}
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	private void grow() {
+		int[] oldValues = values;
+		values = new int[oldValues.length * 2];
+		int mask = values.length - 1;
+		for (int slotValue : oldValues) {
+			if (slotValue != 0) {
+				int i = hash(slotValue) & mask;
+				while (values[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				values[i] = slotValue;
+			}
+		}
+	}
+
+	private static int hash(int value) {
+		return value * 0x9E3779B9;
+	}
+}
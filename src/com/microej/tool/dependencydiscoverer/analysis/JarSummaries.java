@@ -0,0 +1,424 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.microej.tool.dependencydiscoverer.classfinder.JavaClassfileNoFilter;
+import com.microej.tool.dependencydiscoverer.filesystem.BinaryFiles;
+import com.microej.tool.dependencydiscoverer.filesystem.FileUtils;
+import com.microej.tool.dependencydiscoverer.filesystem.IDataWriter;
+
+/**
+ * <p>
+ * Summaries of the code of JAR files, computed once per JAR file content and
+ * cached in a directory, so that the code of the libraries that don't change
+ * between runs is not parsed again.
+ * </p>
+ * <p>
+ * The summary of a JAR file lists the classes it exports and, for each method
+ * with code, the references found in its code in the order of its
+ * instructions (see {@link AnalysisStateFile#TYPE_REFERENCE}).
+ * </p>
+ * <p>
+ * A summary is only a cache of the references of each method: it holds no
+ * reachability between the methods of the JAR file, and the summaries of
+ * several JAR files are not composed. The analysis walks the methods from the
+ * entry points as without summaries, replays the references of each reached
+ * method instead of reading its code, and resolves them again, since a class of
+ * the JAR file may be hidden by a previous classpath entry. The summaries are
+ * not used when the provenance is tracked (see
+ * {@link com.microej.tool.dependencydiscoverer.DependencyDiscovererOptions#isReplayEnabled()}).
+ * </p>
+ * <p>
+ * A summary is stored in a file named after the SHA-1 of the JAR file content.
+ * The hashes of the JAR files are kept in an index with their size and last
+ * modification time, so that an unchanged JAR file is not hashed again.
+ * </p>
+ * <p>
+ * Summary file format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, int number of strings, strings
+ * int number of exported classes, classes names
+ * int number of methods
+ * for each method: declaring class, name, descriptor, int number of strings, references
+ * </pre>
+ *
+ * Hashes index file format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, int number of JAR files
+ * for each JAR file: path, long size, long last modified, hash
+ * </pre>
+ *
+ * Strings are stored as an unsigned short length followed by UTF-8 bytes. In a
+ * summary, strings are stored once then referenced by their <code>int</code>
+ * index (see {@link StringTable}).
+ * </p>
+ * <p>
+ * Each JAR file is summarized once: the threads which need the summary of a JAR
+ * file being summarized wait for it, the other JAR files are summarized in
+ * parallel.
+ * </p>
+ */
+class JarSummaries {
+
+	private static final int SUMMARY_MAGIC = 0x44444A53; // DDJS
+	private static final int HASHES_MAGIC = 0x44444A48; // DDJH
+	private static final int VERSION = 1;
+	private static final String SUMMARY_EXT = ".summary";
+	private static final String HASHES_FILE = "hashes.index";
+
+	private final File directory;
+
+	/**
+	 * JAR file path to its hash record, guarded by itself.
+	 */
+	private final HashMap<String, HashRecord> hashes;
+	private boolean hashesModified;
+
+	/**
+	 * JAR file path to its summary, loaded or computed by this run.
+	 */
+	private final ConcurrentHashMap<String, FutureTask<Summary>> summaries;
+
+	private JarSummaries(File directory) {
+		this.directory = directory;
+		this.hashes = new HashMap<>();
+		this.summaries = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Opens the summaries cached in the given directory. The directory is created
+	 * when the first summary is saved.
+	 *
+	 * @param directory the summaries directory
+	 * @return the summaries
+	 */
+	static JarSummaries open(File directory) {
+		JarSummaries jarSummaries = new JarSummaries(directory);
+		File hashesFile = new File(directory, HASHES_FILE);
+		if (hashesFile.isFile()) {
+			try {
+				jarSummaries.readHashes(BinaryFiles.read(hashesFile));
+			} catch (IOException | RuntimeException e) { // NOSONAR an invalid index is rebuilt
+				jarSummaries.hashes.clear();
+			}
+		}
+		return jarSummaries;
+	}
+
+	private void readHashes(ByteBuffer buffer) {
+		if (buffer.getInt() != HASHES_MAGIC || buffer.getInt() != VERSION) {
+			return;
+		}
+		for (int i = buffer.getInt(); --i >= 0;) {
+			String path = BinaryFiles.getString(buffer);
+			long size = buffer.getLong();
+			long lastModified = buffer.getLong();
+			String hash = BinaryFiles.getString(buffer);
+			hashes.put(path, new HashRecord(size, lastModified, hash));
+		}
+	}
+
+	/**
+	 * Gets the references found in the code of the given method of the given JAR
+	 * file. The summary of the JAR file is loaded from the cache, or computed and
+	 * saved the first time the JAR file content is summarized.
+	 *
+	 * @param jarFile    the JAR file
+	 * @param owner      the class declaring the method
+	 * @param name       the method name
+	 * @param descriptor the method descriptor
+	 * @return the references, or <code>null</code> if the summary of the JAR file
+	 *         can't be computed or if the method is not in the summary
+	 */
+	String @Nullable [] getReferences(File jarFile, String owner, String name, String descriptor) {
+		Summary summary = getSummary(jarFile);
+		if (summary == null || !summary.exports.contains(owner)) {
+			return null;
+		}
+		return summary.methods.get(StringTable.getMethodKey(owner, name, descriptor));
+	}
+
+	private @Nullable Summary getSummary(final File jarFile) {
+		String path = jarFile.getAbsolutePath();
+		FutureTask<Summary> task = summaries.get(path);
+		if (task == null) {
+			FutureTask<Summary> newTask = new FutureTask<>(new Callable<Summary>() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public Summary call() {
+					return loadOrSummarize(jarFile);
+				}
+			});
+			task = summaries.putIfAbsent(path, newTask);
+			if (task == null) {
+				task = newTask;
+			}
+		}
+		// a JAR file is summarized once, the other threads wait for its summary
+		task.run();
+		Summary summary;
+		try {
+			summary = task.get();
+		} catch (ExecutionException e) {
+			summary = Summary.NONE;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			summary = Summary.NONE;
+		}
+		return summary == Summary.NONE ? null : summary;
+	}
+
+	private Summary loadOrSummarize(File jarFile) {
+		try {
+			String hash = getHash(jarFile);
+			File summaryFile = new File(directory, hash + SUMMARY_EXT);
+			Summary summary = loadSummary(summaryFile);
+			if (summary == null) {
+				summary = summarize(jarFile);
+				saveSummary(summary, summaryFile);
+			}
+			return summary;
+		} catch (IOException | RuntimeException e) { // NOSONAR the code of the JAR file is read by the analysis
+			return Summary.NONE;
+		}
+	}
+
+	private String getHash(File jarFile) throws IOException {
+		String path = jarFile.getAbsolutePath();
+		long size = jarFile.length();
+		long lastModified = jarFile.lastModified();
+		HashRecord record;
+		synchronized (hashes) {
+			record = hashes.get(path);
+		}
+		if (record != null && record.size == size && record.lastModified == lastModified) {
+			return record.hash;
+		}
+		MessageDigest digest = FileUtils.newSha1Digest();
+		try (InputStream input = new FileInputStream(jarFile)) {
+			byte[] buffer = new byte[65536];
+			int len = input.read(buffer);
+			while (len != -1) {
+				digest.update(buffer, 0, len);
+				len = input.read(buffer);
+			}
+		}
+		String hash = FileUtils.toHex(digest.digest());
+		synchronized (hashes) {
+			hashes.put(path, new HashRecord(size, lastModified, hash));
+			hashesModified = true;
+		}
+		return hash;
+	}
+
+	/**
+	 * Reads the code of all the classes of the given JAR file. The JAR file is
+	 * opened without the JAR files pool, which may be used by another thread.
+	 */
+	private static Summary summarize(File jarFile) throws IOException {
+		final Summary summary = new Summary();
+		try (JarFile jf = new JarFile(jarFile, false)) {
+			Enumeration<JarEntry> entries = jf.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String entryName = entry.getName();
+				if (!entryName.endsWith(JavaClassfileNoFilter.CLASS_EXT)) {
+					continue;
+				}
+				ClassReader cr;
+				try (InputStream in = jf.getInputStream(entry)) {
+					cr = new ClassReader(in);
+				} catch (IOException | RuntimeException e) { // NOSONAR an invalid class is not summarized
+					continue;
+				}
+				final String className = cr.getClassName();
+				if (!entryName.equals(className + JavaClassfileNoFilter.CLASS_EXT)
+						|| summary.exports.contains(className)) {
+					continue; // not on the classpath (e.g. a versioned class)
+				}
+				summary.exports.add(className);
+				cr.accept(new ClassVisitor(Opcodes.ASM9) {// NOSONAR java 8 compliance except lambda
+					@Override
+					public @Nullable MethodVisitor visitMethod(int access, final String name,
+							final String descriptor, @Nullable String signature, String @Nullable [] exceptions) {
+						if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+							return null; // no code
+						}
+						return new DependencyOpcodeGenerator(null, true) {// NOSONAR java 8 compliance except lambda
+							@Override
+							public void visitEnd() {
+								summary.methods.put(StringTable.getMethodKey(className, name, descriptor), getReferences());
+							}
+						};
+					}
+				}, ClassReader.SKIP_FRAMES);
+			}
+		}
+		return summary;
+	}
+
+	private static @Nullable Summary loadSummary(File summaryFile) {
+		if (!summaryFile.isFile()) {
+			return null;
+		}
+		try {
+			return readSummary(BinaryFiles.read(summaryFile));
+		} catch (IOException | RuntimeException e) { // NOSONAR an invalid summary is computed again
+			return null;
+		}
+	}
+
+	private static @Nullable Summary readSummary(ByteBuffer buffer) {
+		if (buffer.getInt() != SUMMARY_MAGIC || buffer.getInt() != VERSION) {
+			return null;
+		}
+		String[] strings = StringTable.read(buffer);
+		Summary summary = new Summary();
+		for (int i = buffer.getInt(); --i >= 0;) {
+			summary.exports.add(strings[buffer.getInt()]);
+		}
+		StringTable.readMethods(buffer, strings, summary.methods);
+		return summary;
+	}
+
+	/**
+	 * Saves the given summary. It is written to a temporary file which is then
+	 * moved to the summary file, so that a summary file is never partially
+	 * written.
+	 */
+	private void saveSummary(final Summary summary, File summaryFile) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Can't create directory " + directory);
+		}
+		final List<String> exports = new ArrayList<>(summary.exports);
+		Collections.sort(exports);
+		final List<String> methodKeys = new ArrayList<>(summary.methods.keySet());
+		Collections.sort(methodKeys);
+		final StringTable strings = new StringTable();
+		for (String export : exports) {
+			assert (export != null);
+			strings.add(export);
+		}
+		strings.addMethods(methodKeys, summary.methods);
+
+		BinaryFiles.write(summaryFile, new IDataWriter() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(SUMMARY_MAGIC);
+				out.writeInt(VERSION);
+				strings.write(out);
+				out.writeInt(exports.size());
+				for (String export : exports) {
+					assert (export != null);
+					out.writeInt(strings.getIndex(export));
+				}
+				strings.writeMethods(out, methodKeys, summary.methods);
+			}
+		});
+	}
+
+	/**
+	 * Saves the hashes of the JAR files if a JAR file has been hashed by this run.
+	 * JAR files that don't exist anymore are removed.
+	 *
+	 * @throws IOException if the hashes index can't be written
+	 */
+	void save() throws IOException {
+		synchronized (hashes) {
+			if (!hashesModified) {
+				return;
+			}
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Can't create directory " + directory);
+			}
+			final ArrayList<String> paths = new ArrayList<>();
+			for (String path : hashes.keySet()) {
+				if (new File(path).isFile()) {
+					paths.add(path);
+				}
+			}
+			BinaryFiles.write(new File(directory, HASHES_FILE), new IDataWriter() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public void write(DataOutputStream out) throws IOException {
+					out.writeInt(HASHES_MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(paths.size());
+					for (String path : paths) {
+						assert (path != null);
+						HashRecord record = hashes.get(path);
+						assert (record != null);
+						BinaryFiles.putString(out, path);
+						out.writeLong(record.size);
+						out.writeLong(record.lastModified);
+						BinaryFiles.putString(out, record.hash);
+					}
+				}
+			});
+			hashesModified = false;
+		}
+	}
+
+	/**
+	 * The summary of a JAR file, or {@link #NONE} if it can't be computed.
+	 */
+	private static class Summary {
+
+		static final Summary NONE = new Summary();
+
+		final HashSet<String> exports;
+		final HashMap<String, String[]> methods;
+
+		Summary() {
+			exports = new HashSet<>();
+			methods = new HashMap<>();
+		}
+	}
+
+	/**
+	 * The hash of a JAR file content, valid while its size and last modification
+	 * time are unchanged.
+	 */
+	private static class HashRecord {
+
+		final long size;
+		final long lastModified;
+		final String hash;
+
+		HashRecord(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
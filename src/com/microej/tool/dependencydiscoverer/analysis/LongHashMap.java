@@ -0,0 +1,189 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Thread-safe map with primitive <code>long</code> keys, used to look up the
+ * dependencies by their packed symbols (see {@link SymbolTable}) without
+ * allocating a key object.
+ * </p>
+ * <p>
+ * The map is split in segments, each segment is an open addressing table with
+ * linear probing. The lookups are lock-free: a key is written before its value,
+ * which is published by a volatile write, and a grown table is published once
+ * filled. A lookup concurrent with the insertion of its key may miss it, then
+ * {@link #putIfAbsent(long, Object)} returns the inserted value. The insertions
+ * lock their segment. Values can't be removed.
+ * </p>
+ *
+ * @param <V> the type of the values
+ */
+class LongHashMap<V> {
+
+	private static final int SEGMENTS = 16; // power of 2
+	private static final int INITIAL_CAPACITY = 64; // power of 2
+
+	private final Segment[] segments;
+
+	LongHashMap() {
+		segments = new Segment[SEGMENTS];
+		for (int i = SEGMENTS; --i >= 0;) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Gets the value of the given key, without locking.
+	 *
+	 * @param key the key
+	 * @return the value, or <code>null</code> if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	V get(long key) {
+		int hash = hash(key);
+		return (V) getSegment(hash).table.get(key, hash);
+	}
+
+	/**
+	 * Puts the given value if the given key is not in the map yet.
+	 *
+	 * @param key   the key
+	 * @param value the value
+	 * @return the value already in the map, or <code>null</code> if the given value
+	 *         has been put
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	V putIfAbsent(long key, V value) {
+		int hash = hash(key);
+		return (V) getSegment(hash).putIfAbsent(key, hash, value);
+	}
+
+	/**
+	 * Gets the values of the map.
+	 *
+	 * @return a snapshot of the values, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	List<V> values() {
+		ArrayList<V> values = new ArrayList<>();
+		for (Segment segment : segments) {
+			AtomicReferenceArray<@Nullable Object> tableValues = segment.table.values;
+			for (int i = tableValues.length(); --i >= 0;) {
+				Object value = tableValues.get(i);
+				if (value != null) {
+					values.add((V) value);
+				}
+			}
+		}
+		return values;
+	}
+
+	private Segment getSegment(int hash) {
+		// the high bits select the segment, the low bits the slot
+		Segment segment = segments[hash >>> 28];
+		assert (segment != null);
+		return segment;
+	}
+
+	/**
+	 * Hashes the given key. Also used by {@link LongIntHashMap}.
+	 *
+	 * @param key the key
+	 * @return the hash
+	 */
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static class Segment {
+
+		volatile Table table;
+
+		Segment() {
+			table = new Table(INITIAL_CAPACITY);
+		}
+
+		synchronized @Nullable Object putIfAbsent(long key, int hash, Object value) {
+			Table localTable = table;
+			int mask = localTable.keys.length - 1;
+			int i = hash & mask;
+			for (;; i = (i + 1) & mask) {
+				Object existingValue = localTable.values.get(i);
+				if (existingValue == null) {
+					break;
+				}
+				if (localTable.keys[i] == key) {
+					return existingValue;
+				}
+			}
+			localTable.put(i, key, value);
+			if (++localTable.size * 2 > localTable.keys.length) {
+				table = localTable.grow();
+			}
+			return null;
+		}
+	}
+
+	private static class Table {
+
+		final long[] keys;
+		final AtomicReferenceArray<@Nullable Object> values; // null slots are free
+		int size; // guarded by the segment
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new AtomicReferenceArray<>(capacity);
+		}
+
+		@Nullable
+		Object get(long key, int hash) {
+			int mask = keys.length - 1;
+			for (int i = hash & mask;; i = (i + 1) & mask) {
+				Object value = values.get(i);
+				if (value == null || keys[i] == key) {
+					return value;
+				}
+			}
+		}
+
+		void put(int i, long key, Object value) {
+			keys[i] = key;
+			// publishes the key
+			values.set(i, value);
+		}
+
+		/**
+		 * Copies this table to a table twice larger, not yet visible to the lookups.
+		 */
+		Table grow() {
+			Table newTable = new Table(keys.length * 2);
+			int mask = newTable.keys.length - 1;
+			for (int j = keys.length; --j >= 0;) {
+				Object value = values.get(j);
+				if (value != null) {
+					int i = hash(keys[j]) & mask;
+					while (newTable.values.get(i) != null) {
+						i = (i + 1) & mask;
+					}
+					newTable.put(i, keys[j], value);
+				}
+			}
+			newTable.size = size;
+			return newTable;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>
+ * Thread-safe map with primitive <code>long</code> keys and non-negative
+ * <code>int</code> values, used to intern the name and descriptor pairs of the
+ * members (see {@link SymbolTable}) without boxing their identifier.
+ * </p>
+ * <p>
+ * Same structure as {@link LongHashMap}: lock-free lookups, insertions locking
+ * their segment. A slot stores its value plus one, <code>0</code> marks a free
+ * slot.
+ * </p>
+ */
+class LongIntHashMap {
+
+	/**
+	 * Value returned for a key which is not in the map.
+	 */
+	static final int NO_VALUE = -1;
+
+	private static final int SEGMENTS = 16; // power of 2
+	private static final int INITIAL_CAPACITY = 64; // power of 2
+
+	private final Segment[] segments;
+
+	LongIntHashMap() {
+		segments = new Segment[SEGMENTS];
+		for (int i = SEGMENTS; --i >= 0;) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Gets the value of the given key, without locking.
+	 *
+	 * @param key the key
+	 * @return the value, or {@link #NO_VALUE} if the key is not in the map
+	 */
+	int get(long key) {
+		int hash = LongHashMap.hash(key);
+		return getSegment(hash).table.get(key, hash) - 1;
+	}
+
+	/**
+	 * Puts the given value if the given key is not in the map yet.
+	 *
+	 * @param key   the key
+	 * @param value the value, positive or zero
+	 * @return the value already in the map, or {@link #NO_VALUE} if the given value
+	 *         has been put
+	 */
+	int putIfAbsent(long key, int value) {
+		assert (value >= 0);
+		int hash = LongHashMap.hash(key);
+		return getSegment(hash).putIfAbsent(key, hash, value + 1) - 1;
+	}
+
+	private Segment getSegment(int hash) {
+		// the high bits select the segment, the low bits the slot
+		Segment segment = segments[hash >>> 28];
+		assert (segment != null);
+		return segment;
+	}
+
+	private static class Segment {
+
+		volatile Table table;
+
+		Segment() {
+			table = new Table(INITIAL_CAPACITY);
+		}
+
+		synchronized int putIfAbsent(long key, int hash, int slotValue) {
+			Table localTable = table;
+			int mask = localTable.keys.length - 1;
+			int i = hash & mask;
+			for (;; i = (i + 1) & mask) {
+				int existingSlotValue = localTable.slotValues.get(i);
+				if (existingSlotValue == 0) {
+					break;
+				}
+				if (localTable.keys[i] == key) {
+					return existingSlotValue;
+				}
+			}
+			localTable.put(i, key, slotValue);
+			if (++localTable.size * 2 > localTable.keys.length) {
+				table = localTable.grow();
+			}
+			return 0;
+		}
+	}
+
+	private static class Table {
+
+		final long[] keys;
+		final AtomicIntegerArray slotValues; // value plus one, 0 for a free slot
+		int size; // guarded by the segment
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			slotValues = new AtomicIntegerArray(capacity);
+		}
+
+		int get(long key, int hash) {
+			int mask = keys.length - 1;
+			for (int i = hash & mask;; i = (i + 1) & mask) {
+				int slotValue = slotValues.get(i);
+				if (slotValue == 0 || keys[i] == key) {
+					return slotValue;
+				}
+			}
+		}
+
+		void put(int i, long key, int slotValue) {
+			keys[i] = key;
+			// publishes the key
+			slotValues.set(i, slotValue);
+		}
+
+		/**
+		 * Copies this table to a table twice larger, not yet visible to the lookups.
+		 */
+		Table grow() {
+			Table newTable = new Table(keys.length * 2);
+			int mask = newTable.keys.length - 1;
+			for (int j = keys.length; --j >= 0;) {
+				int slotValue = slotValues.get(j);
+				if (slotValue != 0) {
+					int i = LongHashMap.hash(keys[j]) & mask;
+					while (newTable.slotValues.get(i) != 0) {
+						i = (i + 1) & mask;
+					}
+					newTable.put(i, keys[j], slotValue);
+				}
+			}
+			newTable.size = size;
+			return newTable;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Cache of the keys of the members referenced by the analyzed code (see
+ * {@link SymbolTable#getMemberKey(String, String, String)}), used by a single
+ * thread.
+ * </p>
+ * <p>
+ * ASM reads each string of the constant pool of a class once, so the
+ * instructions of a class reference a member with the same owner, name and
+ * descriptor strings. The same holds for the references read from an analysis
+ * binary file ({@link StringTable}). The keys are therefore cached by the
+ * identity of these strings: a member is interned once per class instead of
+ * once per instruction, without hashing nor comparing its strings.
+ * </p>
+ * <p>
+ * The cache is direct-mapped: a member replaces the member cached in the same
+ * slot.
+ * </p>
+ */
+class MemberKeys {
+
+	private static final int CAPACITY = 4096; // power of 2
+	private static final int SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(CAPACITY);
+
+	private final SymbolTable symbols;
+	private final @Nullable String[] owners;
+	private final @Nullable String[] names;
+	private final @Nullable String[] descriptors;
+	private final long[] keys;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param symbols the symbols to intern the members not cached
+	 */
+	MemberKeys(SymbolTable symbols) {
+		this.symbols = symbols;
+		this.owners = new String[CAPACITY];
+		this.names = new String[CAPACITY];
+		this.descriptors = new String[CAPACITY];
+		this.keys = new long[CAPACITY];
+	}
+
+	/**
+	 * Gets the key of the given member.
+	 *
+	 * @param owner      the type declaring the member
+	 * @param name       the member name
+	 * @param descriptor the member descriptor
+	 * @return the key, see {@link SymbolTable#getMemberKey(String, String, String)}
+	 */
+	long getKey(String owner, String name, String descriptor) {
+		int hash = (System.identityHashCode(owner) * 31 + System.identityHashCode(name)) * 31
+				+ System.identityHashCode(descriptor);
+		int i = (hash * 0x9E3779B9) >>> SHIFT;
+		if (owners[i] == owner && names[i] == name && descriptors[i] == descriptor) { // NOSONAR identity
+			return keys[i];
+		}
+		long key = symbols.getMemberKey(owner, name, descriptor);
+		owners[i] = owner;
+		names[i] = name;
+		descriptors[i] = descriptor;
+		keys[i] = key;
+		return key;
+	}
+}
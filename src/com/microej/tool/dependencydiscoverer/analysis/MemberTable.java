@@ -0,0 +1,77 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Hashed table of the members (methods or fields) declared by a class, keyed
+ * by the identifier of their name and descriptor pair (see
+ * {@link SymbolTable#getMemberId(String, String)}).
+ * </p>
+ * <p>
+ * The table is an open addressing table with linear probing. It is filled once
+ * when the class is loaded, then only read.
+ * </p>
+ *
+ * @param <M> the type of the members
+ */
+class MemberTable<M> {
+
+	private final int[] keys;
+	private final @Nullable Object[] members; // null slots are free
+
+	/**
+	 * Creates an empty table.
+	 *
+	 * @param size the number of members of the table
+	 */
+	MemberTable(int size) {
+		int capacity = Integer.highestOneBit(Math.max(size, 1) * 2) * 2; // load factor below 1/2
+		keys = new int[capacity];
+		members = new Object[capacity];
+	}
+
+	/**
+	 * Puts the given member in the table.
+	 *
+	 * @param memberId the identifier of the name and descriptor of the member
+	 * @param member   the member
+	 */
+	void put(int memberId, M member) {
+		int mask = keys.length - 1;
+		int i = hash(memberId) & mask;
+		while (members[i] != null && keys[i] != memberId) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = memberId;
+		members[i] = member;
+	}
+
+	/**
+	 * Gets the member with the given name and descriptor.
+	 *
+	 * @param memberId the identifier of the name and descriptor of the member
+	 * @return the member, or <code>null</code> if the class doesn't declare it
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	M get(int memberId) {
+		int mask = keys.length - 1;
+		for (int i = hash(memberId) & mask;; i = (i + 1) & mask) {
+			Object member = members[i];
+			if (member == null || keys[i] == memberId) {
+				return (M) member;
+			}
+		}
+	}
+
+	private static int hash(int memberId) {
+		return memberId * 0x9E3779B9;
+	}
+}
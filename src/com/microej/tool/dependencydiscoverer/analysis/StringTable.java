@@ -0,0 +1,183 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microej.tool.dependencydiscoverer.filesystem.BinaryFiles;
+
+/**
+ * <p>
+ * Strings of a binary file of the analysis ({@link AnalysisStateFile},
+ * {@link JarSummaries}), stored once then referenced by their <code>int</code>
+ * index.
+ * </p>
+ * <p>
+ * These files also store the references found in the code of methods, keyed
+ * by {@link #getMethodKey(String, String, String)}:
+ *
+ * <pre>
+ * int number of methods
+ * for each method: declaring class, name, descriptor, int number of strings, references
+ * </pre>
+ */
+class StringTable {
+
+	private final LinkedHashMap<String, Integer> indexes;
+
+	/**
+	 * Creates an empty table.
+	 */
+	StringTable() {
+		this.indexes = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Adds a string to the table, unless it is already in the table.
+	 *
+	 * @param string the string
+	 */
+	void add(String string) {
+		if (!indexes.containsKey(string)) {
+			indexes.put(string, Integer.valueOf(indexes.size()));
+		}
+	}
+
+	/**
+	 * Adds the strings of the given methods to the table.
+	 *
+	 * @param methodKeys the keys of the methods
+	 * @param methods    the method keys to the references of the methods
+	 */
+	void addMethods(List<String> methodKeys, Map<String, String[]> methods) {
+		for (String methodKey : methodKeys) {
+			String[] references = methods.get(methodKey);
+			assert (methodKey != null && references != null);
+			for (String part : splitMethodKey(methodKey)) {
+				assert (part != null);
+				add(part);
+			}
+			for (String reference : references) {
+				assert (reference != null);
+				add(reference);
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of a string of the table.
+	 *
+	 * @param string the string
+	 * @return the index
+	 */
+	int getIndex(String string) {
+		Integer index = indexes.get(string);
+		assert (index != null);
+		return index.intValue();
+	}
+
+	/**
+	 * Writes the table: its number of strings then the strings.
+	 *
+	 * @param out the stream
+	 * @throws IOException if the table can't be written
+	 */
+	void write(DataOutputStream out) throws IOException {
+		out.writeInt(indexes.size());
+		for (String string : indexes.keySet()) {
+			assert (string != null);
+			BinaryFiles.putString(out, string);
+		}
+	}
+
+	/**
+	 * Writes the given methods, which strings are in the table.
+	 *
+	 * @param out        the stream
+	 * @param methodKeys the keys of the methods
+	 * @param methods    the method keys to the references of the methods
+	 * @throws IOException if the methods can't be written
+	 */
+	void writeMethods(DataOutputStream out, List<String> methodKeys, Map<String, String[]> methods)
+			throws IOException {
+		out.writeInt(methodKeys.size());
+		for (String methodKey : methodKeys) {
+			String[] references = methods.get(methodKey);
+			assert (methodKey != null && references != null);
+			for (String part : splitMethodKey(methodKey)) {
+				assert (part != null);
+				out.writeInt(getIndex(part));
+			}
+			out.writeInt(references.length);
+			for (String reference : references) {
+				assert (reference != null);
+				out.writeInt(getIndex(reference));
+			}
+		}
+	}
+
+	/**
+	 * Reads a table written by {@link #write(DataOutputStream)}.
+	 *
+	 * @param buffer the buffer
+	 * @return the strings, by index
+	 */
+	static String[] read(ByteBuffer buffer) {
+		String[] strings = new String[buffer.getInt()];
+		for (int i = 0; i < strings.length; ++i) {
+			strings[i] = BinaryFiles.getString(buffer);
+		}
+		return strings;
+	}
+
+	/**
+	 * Reads methods written by
+	 * {@link #writeMethods(DataOutputStream, List, Map)}.
+	 *
+	 * @param buffer  the buffer
+	 * @param strings the strings of the table, by index
+	 * @param methods the map completed with the method keys and their references
+	 */
+	static void readMethods(ByteBuffer buffer, String[] strings, Map<String, String[]> methods) {
+		for (int i = buffer.getInt(); --i >= 0;) {
+			String owner = strings[buffer.getInt()];
+			String name = strings[buffer.getInt()];
+			String descriptor = strings[buffer.getInt()];
+			String[] references = new String[buffer.getInt()];
+			for (int j = 0; j < references.length; ++j) {
+				references[j] = strings[buffer.getInt()];
+			}
+			assert (owner != null && name != null && descriptor != null);
+			methods.put(getMethodKey(owner, name, descriptor), references);
+		}
+	}
+
+	/**
+	 * Gets the key of a method.
+	 *
+	 * @param owner      the class declaring the method
+	 * @param name       the method name
+	 * @param descriptor the method descriptor
+	 * @return the method key
+	 */
+	static String getMethodKey(String owner, String name, String descriptor) {
+		// a class name doesn't contain '.' and a method name doesn't contain '('
+		return owner + '.' + name + descriptor;
+	}
+
+	private static String[] splitMethodKey(String methodKey) {
+		int nameStart = methodKey.indexOf('.') + 1;
+		int descriptorStart = methodKey.indexOf('(', nameStart);
+		return new String[] { methodKey.substring(0, nameStart - 1), methodKey.substring(nameStart, descriptorStart),
+				methodKey.substring(descriptorStart) };
+	}
+}
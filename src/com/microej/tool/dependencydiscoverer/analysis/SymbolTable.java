@@ -0,0 +1,125 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Interned symbols of the analysis: type names, members names and descriptors
+ * are mapped to dense <code>int</code> identifiers.
+ * </p>
+ * <p>
+ * A member (method or field) is identified by a <code>long</code> key packing
+ * the identifier of its owner and the identifier of its name and descriptor
+ * pair, so that the dependencies tables are probed without allocating a
+ * reference object for each instruction. The code of a class references its
+ * members with the same strings, so the keys are cached by {@link MemberKeys}
+ * rather than interned again for each instruction.
+ * </p>
+ * <p>
+ * The lookups don't lock.
+ * </p>
+ */
+class SymbolTable {
+
+	private final ConcurrentHashMap<String, Integer> symbols;
+	private final AtomicInteger nextSymbol;
+
+	/**
+	 * Packed name and descriptor identifiers to the member identifier.
+	 */
+	private final LongIntHashMap members;
+	private final AtomicInteger nextMember;
+
+	SymbolTable() {
+		symbols = new ConcurrentHashMap<>();
+		nextSymbol = new AtomicInteger();
+		members = new LongIntHashMap();
+		nextMember = new AtomicInteger();
+	}
+
+	/**
+	 * Gets the identifier of the given symbol, interns it if needed.
+	 *
+	 * @param symbol the symbol
+	 * @return the symbol identifier
+	 */
+	int getId(String symbol) {
+		Integer id = symbols.get(symbol);
+		if (id == null) {
+			Integer newId = Integer.valueOf(nextSymbol.getAndIncrement());
+			id = symbols.putIfAbsent(symbol, newId);
+			if (id == null) {
+				id = newId;
+			}
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Gets the interned symbols, to resolve their identifiers once the analysis
+	 * is done.
+	 *
+	 * @return the symbols indexed by their identifier, <code>null</code> for an
+	 *         unused identifier
+	 */
+	String[] getSymbols() {
+		String[] names = new String[nextSymbol.get()];
+		for (Map.Entry<String, Integer> entry : symbols.entrySet()) {
+			names[entry.getValue().intValue()] = entry.getKey();
+		}
+		return names;
+	}
+
+	/**
+	 * Gets the key of the given member.
+	 *
+	 * @param owner      the type declaring the member
+	 * @param name       the member name
+	 * @param descriptor the member descriptor
+	 * @return the key packing the owner identifier in its high bits and the name
+	 *         and descriptor pair identifier in its low bits
+	 */
+	long getMemberKey(String owner, String name, String descriptor) {
+		return pack(getId(owner), getMemberId(name, descriptor));
+	}
+
+	/**
+	 * Gets the identifier of the given name and descriptor pair, interns it if
+	 * needed.
+	 *
+	 * @param name       the member name
+	 * @param descriptor the member descriptor
+	 * @return the member identifier
+	 */
+	int getMemberId(String name, String descriptor) {
+		long pair = pack(getId(name), getId(descriptor));
+		int memberId = members.get(pair);
+		if (memberId == LongIntHashMap.NO_VALUE) {
+			int newMemberId = nextMember.getAndIncrement();
+			memberId = members.putIfAbsent(pair, newMemberId);
+			if (memberId == LongIntHashMap.NO_VALUE) {
+				memberId = newMemberId;
+			}
+		}
+		return memberId;
+	}
+
+	/**
+	 * Packs the given identifiers in a key.
+	 *
+	 * @param high the identifier stored in the high bits
+	 * @param low  the identifier stored in the low bits
+	 * @return the key
+	 */
+	static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+}
@@ -23,6 +23,13 @@ public class TypeDependency extends Dependency {
 	@Nullable
 	public ClassNode classfile;
 
+	/**
+	 * The loaded {@link #classfile}, with its member tables. <code>null</code> if
+	 * {@link #isNotFound()}
+	 */
+	@Nullable
+	AnalyzedClassfile analyzedClassfile;
+
 	/**
 	 * Instantiate a {@code TypeDependency} object from {@code type} argument
 	 *
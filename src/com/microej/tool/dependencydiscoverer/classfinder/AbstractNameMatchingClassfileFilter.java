@@ -12,7 +12,8 @@ import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * <p>
- * Accept class files that match given classe names.
+ * Accept class files that match given classe names. Subclasses compile the
+ * expected names once, so that {@link #accept(String)} doesn't loop over them.
  * </p>
  */
 public abstract class AbstractNameMatchingClassfileFilter implements IJavaClassfileFilter {
@@ -34,25 +35,14 @@ public abstract class AbstractNameMatchingClassfileFilter implements IJavaClassf
 		}
 	}
 
-	@Override
-	public final boolean accept(String name) {
-		for(String expectedRelativeClassfilename : expectedRelativeClassfilenames){
-			String localExpectedRelativeClassfilename = expectedRelativeClassfilename;
-			assert (localExpectedRelativeClassfilename != null);
-			if (match(name, localExpectedRelativeClassfilename)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
-	 * @param name                          of the class
-	 * @param expectedRelativeClassfilename , name of the class to compare with
-	 *                                      without package informations
-	 * @return {@code true} is the parameters match, {@code false} otherwise.
+	 * Gets the expected class file names.
+	 *
+	 * @return the expected class file names, on the form a/b/C.class
 	 */
-	protected abstract boolean match(String name, String expectedRelativeClassfilename);
+	public String[] getExpectedRelativeClassfilenames() {
+		return expectedRelativeClassfilenames;
+	}
 
 	@Override
 	public int hashCode() {
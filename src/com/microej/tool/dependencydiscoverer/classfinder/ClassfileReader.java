@@ -0,0 +1,37 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A {@link ClassReader} which gives access to the content of the class file it
+ * reads, for instance to hash it.
+ */
+public class ClassfileReader extends ClassReader {
+
+	private final byte[] content;
+
+	/**
+	 * Creates a reader of the given class file content.
+	 *
+	 * @param content the content of the class file
+	 */
+	public ClassfileReader(byte[] content) {
+		super(content);
+		this.content = content;
+	}
+
+	/**
+	 * Gets the content of the class file.
+	 *
+	 * @return the content, which must not be modified
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+}
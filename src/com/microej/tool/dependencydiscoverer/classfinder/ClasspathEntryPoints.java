@@ -0,0 +1,162 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Entry points declared by the classpath entries metadata: the
+ * <code>Main-Class</code> attribute of their manifest and the providers listed
+ * in their <code>META-INF/services</code> files.
+ * </p>
+ * <p>
+ * Class names are returned on the form a.b.C, in classpath order.
+ * </p>
+ */
+public class ClasspathEntryPoints {
+
+	/**
+	 * Entry point standing for the main method of the <code>Main-Class</code> of
+	 * each classpath entry manifest.
+	 */
+	public static final String MAIN_CLASS = "Main-Class";
+
+	/**
+	 * Entry point standing for the providers listed in the
+	 * <code>META-INF/services</code> files of the classpath entries.
+	 */
+	public static final String SERVICES = "META-INF/services";
+
+	/**
+	 * Descriptor of the <code>main</code> method of a main class.
+	 */
+	public static final String MAIN_METHOD = "main([Ljava/lang/String;)V";
+
+	private static final String MANIFEST = "META-INF/MANIFEST.MF";
+	private static final String SERVICES_PREFIX = SERVICES + '/';
+
+	private ClasspathEntryPoints() {
+		// static methods only
+	}
+
+	/**
+	 * Gets the main classes declared by the manifests of the given classpath.
+	 *
+	 * @param classpath the classpath (may be composed of directories or Jar files)
+	 * @return the main classes names
+	 * @throws IOException if a classpath entry can't be read
+	 */
+	public static List<String> getMainClasses(File[] classpath) throws IOException {
+		ArrayList<String> mainClasses = new ArrayList<>();
+		for (File path : classpath) {
+			Manifest manifest = null;
+			if (path.isDirectory()) {
+				File manifestFile = new File(path, MANIFEST);
+				if (manifestFile.isFile()) {
+					try (InputStream in = new FileInputStream(manifestFile)) {
+						manifest = new Manifest(in);
+					}
+				}
+			} else if (isJarFile(path)) {
+				JarFilePool pool = JarFilePool.getInstance();
+				synchronized (pool) {
+					manifest = pool.get(path.getPath()).getManifest();
+				}
+			}
+			if (manifest != null) {
+				String mainClass = manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+				if (mainClass != null && !mainClass.trim().isEmpty()) {
+					mainClasses.add(mainClass.trim());
+				}
+			}
+		}
+		return mainClasses;
+	}
+
+	/**
+	 * Gets the service providers listed in the <code>META-INF/services</code>
+	 * files of the given classpath.
+	 *
+	 * @param classpath the classpath (may be composed of directories or Jar files)
+	 * @return the providers classes names
+	 * @throws IOException if a classpath entry can't be read
+	 */
+	public static List<String> getServiceProviders(File[] classpath) throws IOException {
+		ArrayList<String> providers = new ArrayList<>();
+		for (File path : classpath) {
+			if (path.isDirectory()) {
+				File[] servicesFiles = new File(path, SERVICES).listFiles();
+				if (servicesFiles == null) {
+					continue;
+				}
+				Arrays.sort(servicesFiles);
+				for (File servicesFile : servicesFiles) {
+					if (servicesFile.isFile()) {
+						try (InputStream in = new FileInputStream(servicesFile)) {
+							readProviders(in, providers);
+						}
+					}
+				}
+			} else if (isJarFile(path)) {
+				JarFilePool pool = JarFilePool.getInstance();
+				synchronized (pool) {
+					JarFile jarFile = pool.get(path.getPath());
+					Enumeration<JarEntry> entries = jarFile.entries();
+					while (entries.hasMoreElements()) {
+						JarEntry entry = entries.nextElement();
+						String name = entry.getName();
+						if (!entry.isDirectory() && name.startsWith(SERVICES_PREFIX)
+								&& name.indexOf('/', SERVICES_PREFIX.length()) == -1) {
+							try (InputStream in = jarFile.getInputStream(entry)) {
+								readProviders(in, providers);
+							}
+						}
+					}
+				}
+			}
+		}
+		return providers;
+	}
+
+	/**
+	 * Reads the providers of a services file: one class name per line, comments
+	 * start with '#'.
+	 */
+	private static void readProviders(InputStream in, List<String> providers) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			int comment = line.indexOf('#');
+			String provider = (comment == -1 ? line : line.substring(0, comment)).trim();
+			if (!provider.isEmpty() && !providers.contains(provider)) {
+				providers.add(provider);
+			}
+		}
+	}
+
+	private static boolean isJarFile(@Nullable File path) {
+		return path != null && path.isFile()
+				&& JavaClassFinder.getFinderHolder(path).getJavaClassFinder() instanceof JarJavaClassFinder;
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.microej.tool.dependencydiscoverer.DependencyDiscovererError;
+import com.microej.tool.dependencydiscoverer.error.ErrorHandler;
+
+/**
+ * <p>
+ * Index of all the class files available in a classpath.
+ * </p>
+ * <p>
+ * The index is built once by listing every Jar file of the classpath, and maps
+ * each class file name (on the form a/b/C.class) to the first Jar file that
+ * contains it, so that a lookup by name is a single hash probe instead of a
+ * visit of the whole classpath. The index is built again once a classpath entry
+ * has been modified (size or last modification time).
+ * </p>
+ * <p>
+ * Directories are not listed: the class file is probed directly in the
+ * directories that precede the Jar file in the classpath.
+ * </p>
+ */
+public class ClasspathIndex {
+
+	/**
+	 * Parsing options to load only the signature of a class: its hierarchy and the
+	 * declarations of its members, without the methods code.
+	 */
+	public static final int SIGNATURE_ONLY = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+			| ClassReader.SKIP_FRAMES;
+
+	/**
+	 * Cache classpath (paths joined with {@link File#pathSeparator}) to its index.
+	 */
+	private static final HashMap<String, ClasspathIndex> indexesCache = new HashMap<>();
+
+	/**
+	 * Sizes and last modification times of the classpath entries when the index
+	 * has been built.
+	 */
+	private final String stamp;
+
+	/**
+	 * Class file name to the first listed classpath entry that contains it.
+	 */
+	private final HashMap<String, ClasspathEntry> classfiles;
+
+	/**
+	 * Classpath entries which class files are probed on each lookup (directories),
+	 * in classpath order.
+	 */
+	private final List<ClasspathEntry> probedEntries;
+
+	/**
+	 * Classpath entries that can't be handled by any {@link JavaClassFinder}.
+	 */
+	private final List<String> invalidPaths;
+
+	private ClasspathIndex(String stamp) {
+		this.stamp = stamp;
+		classfiles = new HashMap<>();
+		probedEntries = new ArrayList<>();
+		invalidPaths = new ArrayList<>();
+	}
+
+	/**
+	 * Gets the index of the given classpath from the cache if it has already been
+	 * built and if the classpath entries have not been modified since. Else,
+	 * builds it and saves it in the cache.
+	 * <p>
+	 * Invalid classpath entries are reported as warnings to the given error
+	 * handler.
+	 *
+	 * @param classpath    the classpath to index (may be composed of directories
+	 *                     or Jar files)
+	 * @param errorHandler
+	 * @return the index of the given classpath
+	 * @throws IOException if any IO error occurs
+	 */
+	public static ClasspathIndex getIndex(File[] classpath, ErrorHandler errorHandler) throws IOException {
+		StringBuilder keyBuilder = new StringBuilder();
+		StringBuilder stampBuilder = new StringBuilder();
+		for (File path : classpath) {
+			keyBuilder.append(path.getPath()).append(File.pathSeparatorChar);
+			stampBuilder.append(path.length()).append(':').append(path.lastModified()).append(File.pathSeparatorChar);
+		}
+		String key = keyBuilder.toString();
+		String stamp = stampBuilder.toString();
+		assert (stamp != null);
+		ClasspathIndex index = indexesCache.get(key);
+		if (index == null || !index.stamp.equals(stamp)) {
+			// the stale index is replaced
+			index = new ClasspathIndex(stamp);
+			index.build(classpath);
+			indexesCache.put(key, index);
+		}
+		for (String invalidPath : index.invalidPaths) {
+			assert (invalidPath != null);
+			errorHandler.addNoFile(new DependencyDiscovererError().invalidClasspath(invalidPath).setIsWarning(true));
+		}
+		return index;
+	}
+
+	private void build(File[] classpath) throws IOException {
+		int nPaths = classpath.length;
+		for (int i = -1; ++i < nPaths;) { // keep order, in classpath notion it may be important
+			File path = classpath[i];
+			JavaClassFinder finder = JavaClassFinder.getFinderHolder(path).getJavaClassFinder();
+			if (finder == null) {
+				// Invalid classpath entry
+				String absolutePath = path.getPath();
+				assert (absolutePath != null);
+				invalidPaths.add(absolutePath);
+				continue;
+			}
+			ClasspathEntry entry = new ClasspathEntry(path, finder, i);
+			if (!finder.isListed()) {
+				probedEntries.add(entry);
+				continue;
+			}
+			for (String name : finder.getClassfileNames(path)) {
+				if (!classfiles.containsKey(name)) {
+					// the first classpath entry hides the next ones
+					classfiles.put(name, entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the classpath entry containing the given class file.
+	 *
+	 * @param classfileName the class file name on the form a/b/C.class
+	 * @return the classpath entry (directory or Jar file) containing the class
+	 *         file, or <code>null</code> if the class file is not in the classpath
+	 * @throws IOException if a classpath entry can't be read
+	 */
+	public @Nullable File getContainer(String classfileName) throws IOException {
+		ClasspathEntry entry = getEntry(classfileName);
+		return entry == null ? null : entry.path;
+	}
+
+	private @Nullable ClasspathEntry getEntry(String classfileName) throws IOException {
+		ClasspathEntry entry = classfiles.get(classfileName);
+		for (ClasspathEntry probedEntry : probedEntries) {
+			if (entry != null && probedEntry.position > entry.position) {
+				break; // the listed entry is first in the classpath
+			}
+			if (probedEntry.finder.containsClassfile(probedEntry.path, classfileName)) {
+				return probedEntry;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Loads the given class file from the classpath entry that contains it.
+	 *
+	 * @param classfileName the class file name on the form a/b/C.class
+	 * @return the loaded class, or <code>null</code> if the class file is not in
+	 *         the classpath or can't be read
+	 * @throws IOException if the classpath entry can't be opened
+	 */
+	public @Nullable ClassNode load(String classfileName) throws IOException {
+		return load(classfileName, 0);
+	}
+
+	/**
+	 * Loads the given class file from the classpath entry that contains it, with
+	 * the given parsing options.
+	 *
+	 * @param classfileName  the class file name on the form a/b/C.class
+	 * @param parsingOptions the {@link ClassReader} parsing options (see
+	 *                       {@link #SIGNATURE_ONLY})
+	 * @return the loaded class, or <code>null</code> if the class file is not in
+	 *         the classpath or can't be read
+	 * @throws IOException if the classpath entry can't be opened
+	 */
+	public @Nullable ClassNode load(String classfileName, int parsingOptions) throws IOException {
+		ClasspathEntry entry = getEntry(classfileName);
+		if (entry == null) {
+			return null;
+		}
+		return entry.finder.loadClassfile(entry.path, classfileName, parsingOptions);
+	}
+
+	/**
+	 * Loads the class with the given name from the classpath entry that contains
+	 * it.
+	 *
+	 * @param typeName the class name on the form a/b/C
+	 * @return the loaded class, or <code>null</code> if the class is not in the
+	 *         classpath or can't be read
+	 * @throws IOException if the classpath entry can't be opened
+	 * @see #load(String)
+	 */
+	public @Nullable ClassNode loadType(String typeName) throws IOException {
+		return loadType(typeName, 0);
+	}
+
+	/**
+	 * Loads the class with the given name from the classpath entry that contains
+	 * it, with the given parsing options.
+	 *
+	 * @param typeName       the class name on the form a/b/C
+	 * @param parsingOptions the {@link ClassReader} parsing options (see
+	 *                       {@link #SIGNATURE_ONLY})
+	 * @return the loaded class, or <code>null</code> if the class is not in the
+	 *         classpath or can't be read
+	 * @throws IOException if the classpath entry can't be opened
+	 * @see #load(String, int)
+	 */
+	public @Nullable ClassNode loadType(String typeName, int parsingOptions) throws IOException {
+		return load(typeName + JavaClassfileNoFilter.CLASS_EXT, parsingOptions);
+	}
+
+	/**
+	 * Loads the classes with the given names in a batch: the classes are grouped
+	 * by the classpath entry that contains them, and each classpath entry is read
+	 * once for all its classes.
+	 *
+	 * @param typeNames      the classes names on the form a/b/C
+	 * @param parsingOptions the {@link ClassReader} parsing options (see
+	 *                       {@link #SIGNATURE_ONLY})
+	 * @return the loaded classes by name. The classes that are not in the
+	 *         classpath or that can't be read are missing.
+	 * @throws IOException if a classpath entry can't be opened
+	 */
+	public Map<String, ClassNode> loadTypes(Collection<String> typeNames, int parsingOptions) throws IOException {
+		// classpath order, so that the classpath entries are swept one after the other
+		LinkedHashMap<ClasspathEntry, List<String>> classfilesByEntry = new LinkedHashMap<>();
+		for (String typeName : typeNames) {
+			String classfileName = typeName + JavaClassfileNoFilter.CLASS_EXT;
+			ClasspathEntry entry = getEntry(classfileName);
+			if (entry != null) {
+				List<String> classfileNames = classfilesByEntry.get(entry);
+				if (classfileNames == null) {
+					classfileNames = new ArrayList<>();
+					classfilesByEntry.put(entry, classfileNames);
+				}
+				classfileNames.add(classfileName);
+			}
+		}
+		HashMap<String, ClassNode> classes = new HashMap<>();
+		for (Map.Entry<ClasspathEntry, List<String>> entryClassfiles : classfilesByEntry.entrySet()) {
+			ClasspathEntry entry = entryClassfiles.getKey();
+			List<String> classfileNames = entryClassfiles.getValue();
+			assert (entry != null && classfileNames != null);
+			for (ClassReader cr : entry.finder.readClassfiles(entry.path, classfileNames)) {
+				assert (cr != null);
+				ClassNode classfile = JavaClassFinder.getNode(cr, parsingOptions);
+				classes.put(classfile.name, classfile);
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Reads the class with the given name from the classpath entry that contains
+	 * it, without parsing it.
+	 *
+	 * @param typeName the class name on the form a/b/C
+	 * @return the reader of the class, or <code>null</code> if the class is not in
+	 *         the classpath or can't be read
+	 * @throws IOException if the classpath entry can't be opened
+	 */
+	public @Nullable ClassfileReader readType(String typeName) throws IOException {
+		ClasspathEntry entry = getEntry(typeName + JavaClassfileNoFilter.CLASS_EXT);
+		if (entry == null) {
+			return null;
+		}
+		return entry.finder.readClassfile(entry.path, typeName + JavaClassfileNoFilter.CLASS_EXT);
+	}
+
+	/**
+	 * Parses a class read by {@link #readType(String)}, as
+	 * {@link #loadType(String, int)} does.
+	 *
+	 * @param cr             the reader of the class
+	 * @param parsingOptions the {@link ClassReader} parsing options (see
+	 *                       {@link #SIGNATURE_ONLY})
+	 * @return the parsed class
+	 */
+	public static ClassNode parse(ClassReader cr, int parsingOptions) {
+		return JavaClassFinder.getNode(cr, parsingOptions);
+	}
+
+	/**
+	 * A classpath entry, shared by all the class files it contains.
+	 */
+	private static class ClasspathEntry {
+
+		final File path;
+		final JavaClassFinder finder;
+		final int position;
+
+		ClasspathEntry(File path, JavaClassFinder finder, int position) {
+			this.path = path;
+			this.finder = finder;
+			this.position = position;
+		}
+	}
+}
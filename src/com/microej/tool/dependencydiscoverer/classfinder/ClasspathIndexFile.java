@@ -0,0 +1,264 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.microej.tool.dependencydiscoverer.filesystem.BinaryFiles;
+import com.microej.tool.dependencydiscoverer.filesystem.IDataWriter;
+
+/**
+ * <p>
+ * Persistent index of the entries of JAR files, saved in a binary file so that
+ * the next runs don't have to open the JAR files to list their entries.
+ * </p>
+ * <p>
+ * Each JAR file is indexed by its path, size and last modification time. An
+ * indexed JAR file that has been modified since is stale and is listed again.
+ * The index file is read at once and the entries of a JAR file are decoded
+ * only the first time they are requested. The file is not memory-mapped, so
+ * that it can be replaced when the index is saved.
+ * </p>
+ * <p>
+ * File format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, int number of JAR files
+ * for each JAR file: path, long size, long last modified, int entries length, entries
+ * entries: int number of entries
+ * for each entry (sorted): unsigned short length of the prefix shared with the previous entry, suffix
+ * </pre>
+ *
+ * Strings are stored as an unsigned short length followed by UTF-8 bytes.
+ */
+public class ClasspathIndexFile {
+
+	private static final int MAGIC = 0x44444958; // DDIX
+	private static final int VERSION = 1;
+
+	private final File file;
+
+	/**
+	 * Indexed JAR file path to its record, in the index file order.
+	 */
+	private final LinkedHashMap<String, Record> records;
+
+	private boolean modified;
+
+	private ClasspathIndexFile(File file) {
+		this.file = file;
+		this.records = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Loads the index from the given file. If the file doesn't exist or is not a
+	 * valid index, an empty index is returned.
+	 *
+	 * @param file the index file
+	 * @return the loaded index
+	 */
+	public static ClasspathIndexFile load(File file) {
+		ClasspathIndexFile index = new ClasspathIndexFile(file);
+		if (file.isFile()) {
+			try {
+				index.readRecords(BinaryFiles.read(file));
+			} catch (IOException | RuntimeException e) { // NOSONAR an invalid index is rebuilt
+				index.records.clear();
+			}
+		}
+		return index;
+	}
+
+	private void readRecords(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			return;
+		}
+		int nRecords = buffer.getInt();
+		for (int i = nRecords; --i >= 0;) {
+			String path = BinaryFiles.getString(buffer);
+			long size = buffer.getLong();
+			long lastModified = buffer.getLong();
+			int length = buffer.getInt();
+			ByteBuffer entries = buffer.slice();
+			entries.limit(length);
+			buffer.position(buffer.position() + length);
+			records.put(path, new Record(size, lastModified, entries));
+		}
+	}
+
+	/**
+	 * Gets the file of this index.
+	 *
+	 * @return the index file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the indexed entries of the given JAR file.
+	 *
+	 * @param jarFile the JAR file
+	 * @return the entries names, or <code>null</code> if the JAR file is not
+	 *         indexed or if its index is stale
+	 */
+	public synchronized @Nullable HashSet<String> getEntries(File jarFile) {
+		String path = jarFile.getAbsolutePath();
+		Record record = records.get(path);
+		if (record == null) {
+			return null;
+		}
+		if (!record.isUpToDate(jarFile)) {
+			// stale index
+			records.remove(path);
+			modified = true;
+			return null;
+		}
+		try {
+			return record.decode();
+		} catch (BufferUnderflowException e) {
+			records.remove(path);
+			modified = true;
+			return null;
+		}
+	}
+
+	/**
+	 * Indexes the entries of the given JAR file.
+	 *
+	 * @param jarFile the JAR file
+	 * @param entries the entries names of the JAR file
+	 */
+	public synchronized void putEntries(File jarFile, HashSet<String> entries) {
+		records.put(jarFile.getAbsolutePath(),
+				new Record(jarFile.length(), jarFile.lastModified(), encode(entries)));
+		modified = true;
+	}
+
+	/**
+	 * Saves the index in its file if it has been modified since it has been
+	 * loaded. Indexed JAR files that don't exist anymore are removed.
+	 * <p>
+	 * The index is written to a temporary file which is then moved to the index
+	 * file, so that an index file is never partially written.
+	 *
+	 * @throws IOException if the index can't be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		File parent = file.getAbsoluteFile().getParentFile();
+		assert (parent != null);
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Can't create directory " + parent);
+		}
+		final ArrayList<String> paths = new ArrayList<>();
+		for (String path : records.keySet()) {
+			if (new File(path).isFile()) {
+				paths.add(path);
+			}
+		}
+		BinaryFiles.write(file, new IDataWriter() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(paths.size());
+				for (String path : paths) {
+					assert (path != null);
+					Record record = records.get(path);
+					assert (record != null);
+					BinaryFiles.putString(out, path);
+					out.writeLong(record.size);
+					out.writeLong(record.lastModified);
+					ByteBuffer entries = record.entries.duplicate();
+					out.writeInt(entries.remaining());
+					byte[] bytes = new byte[entries.remaining()];
+					entries.get(bytes);
+					out.write(bytes);
+				}
+			}
+		});
+		modified = false;
+	}
+
+	private static ByteBuffer encode(HashSet<String> entries) {
+		List<String> sortedEntries = new ArrayList<>(entries);
+		Collections.sort(sortedEntries);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(sortedEntries.size());
+			String previous = "";
+			for (String entry : sortedEntries) {
+				assert (entry != null);
+				int prefix = 0;
+				int max = Math.min(Math.min(previous.length(), entry.length()), 0xFFFF);
+				while (prefix < max && previous.charAt(prefix) == entry.charAt(prefix)) {
+					++prefix;
+				}
+				out.writeShort(prefix);
+				String suffix = entry.substring(prefix);
+				assert (suffix != null);
+				BinaryFiles.putString(out, suffix);
+				previous = entry;
+			}
+		} catch (IOException e) {
+			// can't occur in memory
+			throw new IllegalStateException(e);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		assert (buffer != null);
+		return buffer;
+	}
+
+	/**
+	 * The index of a JAR file. Entries are kept encoded until requested.
+	 */
+	private static class Record {
+
+		final long size;
+		final long lastModified;
+		final ByteBuffer entries;
+
+		Record(long size, long lastModified, ByteBuffer entries) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.entries = entries;
+		}
+
+		boolean isUpToDate(File jarFile) {
+			return jarFile.length() == size && jarFile.lastModified() == lastModified;
+		}
+
+		HashSet<String> decode() {
+			ByteBuffer buffer = entries.duplicate();
+			int nEntries = buffer.getInt();
+			HashSet<String> result = new HashSet<>(nEntries * 2);
+			String previous = "";
+			for (int i = nEntries; --i >= 0;) {
+				int prefix = buffer.getShort() & 0xFFFF;
+				String entry = previous.substring(0, prefix) + BinaryFiles.getString(buffer);
+				result.add(entry);
+				previous = entry;
+			}
+			return result;
+		}
+	}
+}
@@ -6,6 +6,8 @@
  */
 package com.microej.tool.dependencydiscoverer.classfinder;
 
+import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * <p>
@@ -14,6 +16,11 @@ package com.microej.tool.dependencydiscoverer.classfinder;
  */
 public class ExactClassfileFilter extends AbstractNameMatchingClassfileFilter {
 
+	/**
+	 * Accepted class files names.
+	 */
+	private final HashSet<String> expectedNames;
+
 	/**
 	 * Instantiate an exact class filter, the filter is case sensitive.
 	 *
@@ -21,11 +28,12 @@ public class ExactClassfileFilter extends AbstractNameMatchingClassfileFilter {
 	 */
 	public ExactClassfileFilter(String[] classnames){
 		super(classnames);
+		expectedNames = new HashSet<>(Arrays.asList(getExpectedRelativeClassfilenames()));
 	}
 
 	@Override
-	protected boolean match(String name, String expectedRelativeClassfilename) {
-		return name.equals(expectedRelativeClassfilename);
+	public boolean accept(String name) {
+		return expectedNames.contains(name);
 	}
 
 }
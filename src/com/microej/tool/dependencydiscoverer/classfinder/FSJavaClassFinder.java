@@ -7,9 +7,26 @@
 package com.microej.tool.dependencydiscoverer.classfinder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.microej.tool.dependencydiscoverer.filesystem.FileVisitable;
+import com.microej.tool.dependencydiscoverer.filesystem.RecursiveFileSystemVisitor;
 import com.microej.tool.dependencydiscoverer.filesystem.fs.FSDir;
+import com.microej.tool.dependencydiscoverer.filesystem.fs.FSFile;
 
 /**
  * <p>
@@ -24,17 +41,119 @@ public class FSJavaClassFinder extends JavaClassFinder {
 	private static final HashMap<String, FSDir> directoriesCache = new HashMap<>();
 
 	/**
+	 * Cache directory path to the names of its files, to check the case of the
+	 * probed class files. Shared by the threads loading classes.
+	 */
+	private static final ConcurrentHashMap<String, Set<String>> listingsCache = new ConcurrentHashMap<>();
+
+	/**
+	 * Exact class names are probed directly in the directory, the directory tree
+	 * is visited only for the other filters.
+	 *
 	 * @param path directory containing Java element (package or class). Must be an
 	 *             existing directory
 	 * @see File#isDirectory()
 	 */
 	@Override
 	protected void visit(File path) {
+		IJavaClassfileFilter javaClassNameFilter = this.javaClassNameFilter;
+		if (javaClassNameFilter instanceof ExactClassfileFilter) {
+			// classNodeData can't be null by construction
+			Map<String, ClassNode> classNodeData = this.classNodeData;
+			assert (classNodeData != null);
+			for (String name : ((ExactClassfileFilter) javaClassNameFilter).getExpectedRelativeClassfilenames()) {
+				assert (name != null);
+				ClassReader cr = readClassfile(path, name);
+				if (cr != null) {
+					ClassNode cn = getNode(cr, parsingOptions);
+					classNodeData.put(cn.name, cn);
+				}
+			}
+		} else {
+			getDirectory(path).visitUsing(this);
+		}
+	}
+
+	@Override
+	protected boolean isListed() {
+		// probing a file is cheaper than listing the directory tree
+		return false;
+	}
+
+	@Override
+	protected boolean containsClassfile(File path, String classfileName) {
+		if (!Files.isRegularFile(path.toPath().resolve(classfileName))) {
+			return false;
+		}
+		// on a case insensitive file system, a file with another case must not hide
+		// the class of the next classpath entries: the case of each name of the path
+		// is checked against the listing of its directory
+		File directory = path;
+		int start = 0;
+		int end;
+		while ((end = classfileName.indexOf('/', start)) != -1) {
+			String name = classfileName.substring(start, end);
+			assert (name != null);
+			if (!containsName(directory, name)) {
+				return false;
+			}
+			directory = new File(directory, name);
+			start = end + 1;
+		}
+		String name = classfileName.substring(start);
+		assert (name != null);
+		return containsName(directory, name);
+	}
+
+	private static boolean containsName(File directory, String name) {
+		String key = directory.getPath();
+		Set<String> names = listingsCache.get(key);
+		if (names == null || !names.contains(name)) {
+			// listed again: the file may have been created since the directory was listed
+			String[] list = directory.list();
+			names = list == null ? Collections.<String>emptySet() : new HashSet<>(Arrays.asList(list));
+			listingsCache.put(key, names);
+		}
+		return names.contains(name);
+	}
+
+	@Override
+	protected Collection<String> getClassfileNames(final File path) {
+		final ArrayList<String> names = new ArrayList<>();
+		getDirectory(path).visitUsing(new RecursiveFileSystemVisitor() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public void visitFile(FileVisitable file) {
+				String name = canonize(path, file);
+				if (name.endsWith(JavaClassfileNoFilter.CLASS_EXT)) {
+					names.add(name);
+				}
+			}
+		});
+		return names;
+	}
+
+	@Override
+	protected @Nullable ClassfileReader readClassfile(File path, String classfileName) {
+		File classfile = new File(path, classfileName);
+		if (!Files.isRegularFile(classfile.toPath())) {
+			return null;
+		}
+		ClassfileReader cr;
+		try {
+			cr = getReader(new FSFile(classfile));
+		} catch (IOException e) {
+			return null;
+		}
+		// the file system may be case insensitive
+		return classfileName.equals(cr.getClassName() + JavaClassfileNoFilter.CLASS_EXT) ? cr : null;
+	}
+
+	private static FSDir getDirectory(File path) {
 		FSDir directory = directoriesCache.get(path.getPath());
 		if (directory == null) {
 			directory = new FSDir(path);
 			directoriesCache.put(path.getPath(), directory);
 		}
-		directory.visitUsing(this);
+		return directory;
 	}
 }
@@ -0,0 +1,116 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Warm-up of the JAR files entries cache, done before the analysis.
+ * </p>
+ * <p>
+ * The central directories of the JAR files are read in parallel on a thread
+ * pool, instead of one after another the first time each JAR file is looked up
+ * during the analysis.
+ * </p>
+ */
+public class JarEntriesPrewarm {
+
+	private int jarFiles;
+	private int entries;
+	private long elapsedTime;
+
+	private JarEntriesPrewarm() {
+		// use run(File[], int)
+	}
+
+	/**
+	 * Reads the entries of the JAR files of the given classpath in parallel. A JAR
+	 * file that can't be read is skipped: the error is reported when it is looked
+	 * up during the analysis.
+	 *
+	 * @param classpath the classpath (may be composed of directories or Jar files)
+	 * @param nThreads  the number of threads reading the JAR files (at least 1)
+	 * @return the prewarm report
+	 */
+	public static JarEntriesPrewarm run(File[] classpath, int nThreads) {
+		JarEntriesPrewarm prewarm = new JarEntriesPrewarm();
+		long start = System.currentTimeMillis();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (final File path : classpath) {
+				assert (path != null);
+				if (!(JavaClassFinder.getFinderHolder(path).getJavaClassFinder() instanceof JarJavaClassFinder)) {
+					continue;
+				}
+				results.add(executor.submit(new Callable<Integer>() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public Integer call() throws IOException {
+						return Integer.valueOf(JarJavaClassFinder.prewarmEntries(path));
+					}
+				}));
+			}
+			for (Future<Integer> result : results) {
+				try {
+					prewarm.entries += result.get().intValue();
+					++prewarm.jarFiles;
+				} catch (ExecutionException e) {
+					// skip this JAR file, it will be visited again by the analysis
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		prewarm.elapsedTime = System.currentTimeMillis() - start;
+		return prewarm;
+	}
+
+	/**
+	 * Gets the number of JAR files read.
+	 *
+	 * @return the number of JAR files
+	 */
+	public int getJarFiles() {
+		return jarFiles;
+	}
+
+	/**
+	 * Gets the number of entries of the JAR files read.
+	 *
+	 * @return the number of entries
+	 */
+	public int getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Gets the duration of the prewarm.
+	 *
+	 * @return the elapsed time in milliseconds
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	@Override
+	public String toString() {
+		return jarFiles + " JAR files (" + entries + " entries) prewarmed in " + elapsedTime + " ms.";
+	}
+}
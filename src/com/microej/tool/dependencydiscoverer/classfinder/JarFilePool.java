@@ -0,0 +1,304 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.jar.JarFile;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.microej.tool.dependencydiscoverer.filesystem.jar.RandomAccessJarFile;
+
+/**
+ * <p>
+ * Bounded pool of opened {@link JarFile}, shared by all the
+ * {@link JarJavaClassFinder}.
+ * </p>
+ * <p>
+ * Opening a JAR file parses its central directory, which is a slow operation.
+ * The pool keeps the most recently used JAR files opened and closes the least
+ * recently used ones when the memory retained by the opened JAR files (their
+ * parsed central directories, see {@link PooledJarFile#getFootprint()}) exceeds
+ * {@link #getMaxBytes()}, or when their number exceeds {@link #getMaxSize()},
+ * which bounds the opened files.
+ * </p>
+ * <p>
+ * A JAR file returned by {@link #get(String)} may be closed by any later call
+ * to the pool, so it must be used while holding the pool monitor.
+ * </p>
+ * <p>
+ * The pool also keeps a random access view of the opened JAR files (see
+ * {@link PooledJarFile#getContent()}), which reads only the entries it is asked
+ * for. It can be read without holding the pool monitor once acquired (see
+ * {@link RandomAccessJarFile#acquire()}): it is then closed with its JAR file
+ * once released.
+ * </p>
+ */
+public class JarFilePool {
+
+	/**
+	 * Default maximum number of opened JAR files.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 64;
+
+	/**
+	 * Default maximum memory retained by the opened JAR files, in bytes.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+	private static final JarFilePool INSTANCE = new JarFilePool();
+
+	/**
+	 * Opened JAR files, from the least recently used to the most recently used.
+	 */
+	private final LinkedHashMap<String, PooledJarFile> openedJarFiles;
+
+	private int maxSize;
+	private long maxBytes;
+	private long footprint;
+	private long hits;
+	private long misses;
+
+	private JarFilePool() {
+		maxSize = DEFAULT_MAX_SIZE;
+		maxBytes = DEFAULT_MAX_BYTES;
+		openedJarFiles = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets the pool shared by all the JAR finders.
+	 *
+	 * @return the shared pool
+	 */
+	public static JarFilePool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the opened JAR file of the given path, opens it if it is not in the
+	 * pool.
+	 *
+	 * @param path the JAR file path
+	 * @return the opened JAR file
+	 * @throws IOException if the JAR file can't be opened
+	 */
+	public synchronized JarFile get(String path) throws IOException {
+		return getPooled(path).getJarFile();
+	}
+
+	/**
+	 * Gets the pooled JAR file of the given path, opens it if it is not in the
+	 * pool. Use it to get both the opened JAR file and its content with a single
+	 * lookup.
+	 *
+	 * @param path the JAR file path
+	 * @return the pooled JAR file
+	 * @throws IOException if the JAR file can't be opened
+	 */
+	public synchronized PooledJarFile getPooled(String path) throws IOException {
+		PooledJarFile jarFile = openedJarFiles.get(path);
+		if (jarFile != null) {
+			++hits;
+			return jarFile;
+		}
+		++misses;
+		jarFile = new PooledJarFile(this, path, new JarFile(path, false));
+		openedJarFiles.put(path, jarFile);
+		footprint += jarFile.getFootprint();
+		evict();
+		return jarFile;
+	}
+
+	/**
+	 * Closes the least recently used JAR files until the pool fits in its bounds.
+	 * The most recently used JAR file, the one being used, is kept.
+	 */
+	private void evict() {
+		Iterator<PooledJarFile> iterator = openedJarFiles.values().iterator();
+		while (openedJarFiles.size() > 1 && (openedJarFiles.size() > maxSize || footprint > maxBytes)) {
+			PooledJarFile jarFile = iterator.next();
+			footprint -= jarFile.getFootprint();
+			jarFile.close();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of opened JAR files. The least recently used JAR
+	 * files are closed if the pool is larger than the new maximum size.
+	 *
+	 * @param maxSize the maximum number of opened JAR files (at least 1)
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 * Gets the maximum number of opened JAR files.
+	 *
+	 * @return the maximum number of opened JAR files
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum memory retained by the opened JAR files. The least recently
+	 * used JAR files are closed if the pool retains more memory, except the most
+	 * recently used one.
+	 *
+	 * @param maxBytes the maximum memory in bytes (at least 1)
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/**
+	 * Gets the maximum memory retained by the opened JAR files.
+	 *
+	 * @return the maximum memory in bytes
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Gets the estimated memory retained by the opened JAR files.
+	 *
+	 * @return the memory in bytes
+	 */
+	public synchronized long getFootprint() {
+		return footprint;
+	}
+
+	/**
+	 * Gets the number of requests served by an already opened JAR file.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of requests that needed to open a JAR file.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Closes all the opened JAR files and drops their content. The hits and misses
+	 * counters are kept.
+	 */
+	public synchronized void close() {
+		for (PooledJarFile jarFile : openedJarFiles.values()) {
+			jarFile.close();
+		}
+		openedJarFiles.clear();
+		footprint = 0;
+	}
+
+	/**
+	 * A JAR file of the pool. It must be used while holding the pool monitor.
+	 */
+	public static class PooledJarFile {
+
+		/**
+		 * Estimated heap size of an entry of an opened {@link JarFile}: its central
+		 * directory header and name.
+		 */
+		private static final int JAR_ENTRY_FOOTPRINT = 96;
+
+		private final JarFilePool pool;
+		private final String path;
+		private final JarFile jarFile;
+		private @Nullable RandomAccessJarFile content;
+		private boolean contentLoaded;
+		private boolean closed;
+		private long footprint;
+
+		PooledJarFile(JarFilePool pool, String path, JarFile jarFile) {
+			this.pool = pool;
+			this.path = path;
+			this.jarFile = jarFile;
+			this.footprint = (long) jarFile.size() * JAR_ENTRY_FOOTPRINT;
+		}
+
+		/**
+		 * Gets the opened JAR file.
+		 *
+		 * @return the opened JAR file
+		 */
+		public JarFile getJarFile() {
+			return jarFile;
+		}
+
+		/**
+		 * Gets the random access view of the JAR file, reads its central directory
+		 * the first time. It must be acquired to be read once the pool monitor is
+		 * released.
+		 *
+		 * @return the content of the JAR file, or <code>null</code> if it can't be
+		 *         read by random access: it must be read from {@link #getJarFile()}
+		 */
+		public @Nullable RandomAccessJarFile getContent() {
+			if (!contentLoaded && !closed) {
+				contentLoaded = true;
+				RandomAccessJarFile localContent;
+				try {
+					localContent = RandomAccessJarFile.load(new File(path));
+				} catch (IOException e) {
+					localContent = null; // read from the opened JAR file
+				}
+				content = localContent;
+				if (localContent != null) {
+					footprint += localContent.getFootprint();
+					pool.footprint += localContent.getFootprint();
+					pool.evict();
+				}
+			}
+			return content;
+		}
+
+		/**
+		 * Gets the estimated memory retained by this JAR file.
+		 *
+		 * @return the memory in bytes
+		 */
+		public long getFootprint() {
+			return footprint;
+		}
+
+		void close() {
+			closed = true;
+			RandomAccessJarFile localContent = content;
+			if (localContent != null) {
+				localContent.close();
+			}
+			content = null;
+			try {
+				jarFile.close();
+			} catch (IOException e) {
+				// nothing to do, the JAR file is not used anymore
+			}
+		}
+	}
+}
@@ -8,14 +8,23 @@ package com.microej.tool.dependencydiscoverer.classfinder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool.PooledJarFile;
+import com.microej.tool.dependencydiscoverer.filesystem.jar.JarEntryVisitable;
 import com.microej.tool.dependencydiscoverer.filesystem.jar.JarFileVisitable;
+import com.microej.tool.dependencydiscoverer.filesystem.jar.RandomAccessJarFile;
 
 /**
  * <p>
@@ -27,7 +36,24 @@ public class JarJavaClassFinder extends JavaClassFinder {
 	/**
 	 * Cache JAR name to JAR entries Names.
 	 */
-	private static final HashMap<String, HashSet<String>> entriesCache = new HashMap<>();
+	private static final HashMap<String, CachedEntries> entriesCache = new HashMap<>();
+
+	/**
+	 * Persistent index of JAR entries, shared between runs. <code>null</code> if
+	 * the JAR entries are not persisted.
+	 */
+	private static @Nullable ClasspathIndexFile indexFile;
+
+	/**
+	 * Sets the persistent index in which the JAR entries are looked up before
+	 * opening a JAR file, and saved after.
+	 *
+	 * @param indexFile the persistent index, or <code>null</code> to not persist
+	 *                  the JAR entries
+	 */
+	public static void setIndexFile(@Nullable ClasspathIndexFile indexFile) {
+		JarJavaClassFinder.indexFile = indexFile;
+	}
 
 	/**
 	 * @param jarFile must be an existing Jar file
@@ -37,21 +63,10 @@ public class JarJavaClassFinder extends JavaClassFinder {
 	protected void visit(File jarFile) throws IOException {
 		// Hotspot Optimization: check if the entry is in the given jar filename.
 		// The JAR file is opened (slow operation) only if entries cache has not been
-		// computed and when loading the expected available resource
+		// computed or if it has been closed by the JAR files pool
 		String path = jarFile.getPath();
-		HashSet<String> entries = entriesCache.get(path);
-		if (entries == null) {
-			// First time this JAR is visited => compute the cache
-			entries = new HashSet<>();
-			try (JarFile jf = new JarFile(path, false)) {
-				Enumeration<JarEntry> entriesVect = jf.entries();
-				while (entriesVect.hasMoreElements()) {
-					JarEntry entry = entriesVect.nextElement();
-					entries.add(entry.getName());
-				}
-			}
-			entriesCache.put(path, entries);
-		}
+		assert (path != null);
+		HashSet<String> entries = getEntries(path);
 
 		// the filter can't be null by construction
 		IJavaClassfileFilter javaClassNameFilter = this.javaClassNameFilter;
@@ -64,10 +79,219 @@ public class JarJavaClassFinder extends JavaClassFinder {
 			}
 		}
 		if (!v.isEmpty()) {
-			// at least one entry matches the filter => open the JAR file again
-			try (JarFile jf = new JarFile(path)) {
-				new JarFileVisitable(jf, v.elements()).visitUsing(this);
+			// at least one entry matches the filter => get the JAR file from the pool
+			JarFilePool pool = JarFilePool.getInstance();
+			synchronized (pool) {
+				PooledJarFile pooledJarFile = pool.getPooled(path);
+				new JarFileVisitable(pooledJarFile.getJarFile(), v.elements(), pooledJarFile.getContent())
+						.visitUsing(this);
+			}
+		}
+	}
+
+	@Override
+	protected Collection<String> getClassfileNames(File jarFile) throws IOException {
+		String path = jarFile.getPath();
+		assert (path != null);
+		ArrayList<String> names = new ArrayList<>();
+		for (String entry : getEntries(path)) {
+			if (entry.endsWith(JavaClassfileNoFilter.CLASS_EXT)) {
+				names.add(entry);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Reads the given class file by random access to the JAR file, without holding
+	 * the JAR files pool monitor, or else from the opened JAR file.
+	 */
+	@Override
+	protected @Nullable ClassfileReader readClassfile(File jarFile, String classfileName) throws IOException {
+		String path = jarFile.getPath();
+		assert (path != null);
+		JarFilePool pool = JarFilePool.getInstance();
+		RandomAccessJarFile content;
+		synchronized (pool) {
+			PooledJarFile pooledJarFile = pool.getPooled(path);
+			content = pooledJarFile.getContent();
+			if (content == null || !content.acquire()) {
+				return readClassfile(pooledJarFile.getJarFile(), classfileName);
 			}
 		}
+		try {
+			byte[] classfile = content.read(classfileName);
+			return classfile == null ? null : new ClassfileReader(classfile);
+		} catch (IOException e) {
+			return null;
+		} finally {
+			content.release();
+		}
+	}
+
+	private static @Nullable ClassfileReader readClassfile(JarFile jf, String classfileName) {
+		JarEntry entry = jf.getJarEntry(classfileName);
+		if (entry == null) {
+			return null;
+		}
+		try {
+			return getReader(new JarEntryVisitable(jf, entry));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the given class files by random access to the JAR file, or else in a
+	 * single sweep of the JAR file entries, in the order of its central
+	 * directory, instead of looking up each entry.
+	 */
+	@Override
+	protected List<ClassReader> readClassfiles(File jarFile, Collection<String> classfileNames)
+			throws IOException {
+		String path = jarFile.getPath();
+		assert (path != null);
+		HashSet<String> remainingNames = new HashSet<>(classfileNames);
+		ArrayList<ClassReader> readers = new ArrayList<>();
+		JarFilePool pool = JarFilePool.getInstance();
+		RandomAccessJarFile content;
+		synchronized (pool) {
+			PooledJarFile pooledJarFile = pool.getPooled(path);
+			content = pooledJarFile.getContent();
+			if (content == null || !content.acquire()) {
+				readClassfiles(pooledJarFile.getJarFile(), remainingNames, readers);
+				return readers;
+			}
+		}
+		try {
+			for (String classfileName : remainingNames) {
+				assert (classfileName != null);
+				try {
+					byte[] classfile = content.read(classfileName);
+					if (classfile != null) {
+						readers.add(new ClassfileReader(classfile));
+					}
+				} catch (IOException e) {
+					// skip this class file, as readClassfile(File, String)
+				}
+			}
+		} finally {
+			content.release();
+		}
+		return readers;
+	}
+
+	private static void readClassfiles(JarFile jf, HashSet<String> remainingNames, List<ClassReader> readers) {
+		Enumeration<JarEntry> entries = jf.entries();
+		while (!remainingNames.isEmpty() && entries.hasMoreElements()) {
+			JarEntry entry = entries.nextElement();
+			if (!remainingNames.remove(entry.getName())) {
+				continue;
+			}
+			try {
+				readers.add(getReader(new JarEntryVisitable(jf, entry)));
+			} catch (IOException e) {
+				// skip this class file, as readClassfile(File, String)
+			}
+		}
+	}
+
+	/**
+	 * Gets the entries names of the given JAR file from the cache. The JAR file is
+	 * opened only the first time it is requested, unless its entries are in the
+	 * persistent index.
+	 */
+	private static HashSet<String> getEntries(String path) throws IOException {
+		return getEntries(path, true);
+	}
+
+	/**
+	 * Reads the entries names of the given JAR file in the cache. The JAR file is
+	 * opened without the JAR files pool, so that this method can be called
+	 * concurrently.
+	 *
+	 * @param jarFile the JAR file
+	 * @return the number of entries of the JAR file
+	 * @throws IOException if the JAR file can't be read
+	 * @see JarEntriesPrewarm
+	 */
+	static int prewarmEntries(File jarFile) throws IOException {
+		String path = jarFile.getPath();
+		assert (path != null);
+		return getEntries(path, false).size();
+	}
+
+	private static HashSet<String> getEntries(String path, boolean pooled) throws IOException {
+		// a JAR file modified since it has been cached is read again
+		File file = new File(path);
+		long length = file.length();
+		long lastModified = file.lastModified();
+		CachedEntries cachedEntries;
+		synchronized (entriesCache) {
+			cachedEntries = entriesCache.get(path);
+		}
+		if (cachedEntries != null && cachedEntries.matches(length, lastModified)) {
+			return cachedEntries.entries;
+		}
+		HashSet<String> entries = null;
+		ClasspathIndexFile indexFile = JarJavaClassFinder.indexFile;
+		if (indexFile != null) {
+			entries = indexFile.getEntries(file);
+		}
+		if (entries == null) {
+			// First time this JAR is visited => compute the cache
+			if (pooled) {
+				JarFilePool pool = JarFilePool.getInstance();
+				synchronized (pool) {
+					entries = readEntries(pool.get(path));
+				}
+			} else {
+				try (JarFile jarFile = new JarFile(path, false)) {
+					entries = readEntries(jarFile);
+				}
+			}
+			if (indexFile != null) {
+				indexFile.putEntries(file, entries);
+			}
+		}
+		synchronized (entriesCache) {
+			cachedEntries = entriesCache.get(path);
+			if (cachedEntries != null && cachedEntries.matches(length, lastModified)) {
+				return cachedEntries.entries; // read concurrently
+			}
+			entriesCache.put(path, new CachedEntries(entries, length, lastModified));
+		}
+		return entries;
+	}
+
+	private static HashSet<String> readEntries(JarFile jarFile) {
+		HashSet<String> entries = new HashSet<>();
+		Enumeration<JarEntry> entriesVect = jarFile.entries();
+		while (entriesVect.hasMoreElements()) {
+			JarEntry entry = entriesVect.nextElement();
+			entries.add(entry.getName());
+		}
+		return entries;
+	}
+
+	/**
+	 * The entries names of a JAR file, with the size and the last modification
+	 * time of the JAR file when they have been read.
+	 */
+	private static class CachedEntries {
+
+		final HashSet<String> entries;
+		final long length;
+		final long lastModified;
+
+		CachedEntries(HashSet<String> entries, long length, long lastModified) {
+			this.entries = entries;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		boolean matches(long length, long lastModified) {
+			return this.length == length && this.lastModified == lastModified;
+		}
 	}
 }
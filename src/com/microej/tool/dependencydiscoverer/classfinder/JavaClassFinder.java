@@ -9,12 +9,19 @@ package com.microej.tool.dependencydiscoverer.classfinder;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 
 import com.microej.tool.dependencydiscoverer.DependencyDiscovererError;
@@ -34,6 +41,11 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 */
 	public static final String JAR_EXT = ".jar";
 
+	/**
+	 * .zip extension in a String
+	 */
+	public static final String ZIP_EXT = ".zip";
+
 	/**
 	 * HashMap of loaded classNodes
 	 */
@@ -52,6 +64,11 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 */
 	protected @Nullable IJavaClassfileFilter javaClassNameFilter;
 
+	/**
+	 * The {@link ClassReader} parsing options of the found classes.
+	 */
+	protected int parsingOptions;
+
 	private @Nullable File path;
 
 	/**
@@ -68,6 +85,9 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 * cache variable for future accesses.
 	 * <p>
 	 * The pool variable is directly modified instead of returning it.
+	 * <p>
+	 * Exact class names are looked up in the {@link ClasspathIndex} of the given
+	 * classpath instead of visiting every classpath entry.
 	 *
 	 * @param pool                List where are added classfiles founds
 	 * @param classpath           the classpath where to search class files (may be
@@ -81,6 +101,39 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	public static void find(Map<String, ClassNode> pool, @NonNull File[] classpath,
 			IJavaClassfileFilter javaClassNameFilter, ErrorHandler errorHandler)
 					throws IOException {
+		find(pool, classpath, javaClassNameFilter, errorHandler, 0);
+	}
+
+	/**
+	 * <p>
+	 * Visits the given path like {@link #find(Map, File[], IJavaClassfileFilter, ErrorHandler)},
+	 * and loads the found classes with the given parsing options.
+	 * </p>
+	 *
+	 * @param pool                List where are added classfiles founds
+	 * @param classpath           the classpath where to search class files (may be
+	 *                            composed of directories or Jar files)
+	 * @param javaClassNameFilter the filter to use (may be <code>null</code>)
+	 * @param errorHandler
+	 * @param parsingOptions      the {@link ClassReader} parsing options (see
+	 *                            {@link ClasspathIndex#SIGNATURE_ONLY})
+	 * @throws IOException if any IO error occurs
+	 */
+	public static void find(Map<String, ClassNode> pool, @NonNull File[] classpath,
+			IJavaClassfileFilter javaClassNameFilter, ErrorHandler errorHandler, int parsingOptions)
+					throws IOException {
+
+		if (javaClassNameFilter instanceof ExactClassfileFilter) {
+			ClasspathIndex index = ClasspathIndex.getIndex(classpath, errorHandler);
+			for (String name : ((ExactClassfileFilter) javaClassNameFilter).getExpectedRelativeClassfilenames()) {
+				assert (name != null);
+				ClassNode cn = index.load(name, parsingOptions);
+				if (cn != null) {
+					pool.put(cn.name, cn);
+				}
+			}
+			return;
+		}
 
 		JavaClassFinder concreteJavaClassFinder;
 		int nPaths = classpath.length;
@@ -89,7 +142,7 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 
 			concreteJavaClassFinder = getFinderHolder(path).getJavaClassFinder();
 			if (concreteJavaClassFinder != null) {
-				concreteJavaClassFinder.concreteFind(path, javaClassNameFilter, pool);
+				concreteJavaClassFinder.concreteFind(path, javaClassNameFilter, pool, parsingOptions);
 			} else {
 				// Invalid classpath entry
 				String absolutePath = path.getPath();
@@ -106,7 +159,7 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 * @param path
 	 * @return pathType of the input path
 	 */
-	private static FinderHolder getFinderHolder(File path) {
+	static FinderHolder getFinderHolder(File path) {
 		@Nullable
 		FinderHolder type = pathTypes.get(path.getPath());
 		if(type==null) {
@@ -114,6 +167,8 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 				type = new FinderHolder(new FSJavaClassFinder());
 			} else if (path.isFile() && path.getName().endsWith(JAR_EXT)) {
 				type = new FinderHolder(new JarJavaClassFinder());
+			} else if (path.isFile() && path.getName().endsWith(ZIP_EXT)) {
+				type = new FinderHolder(new ZipJavaClassFinder());
 			} else {
 				type = new FinderHolder(null);
 			}
@@ -139,12 +194,14 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 * @param javaClassNameFilter the java class name to use (can be
 	 *                            <code>null</code>)
 	 * @param pool                the class file data pool to populate
+	 * @param parsingOptions      the {@link ClassReader} parsing options
 	 * @throws IOException if any IO error occurs
 	 */
 	protected void concreteFind(File path, @Nullable IJavaClassfileFilter javaClassNameFilter,
-			Map<String, ClassNode> pool)
+			Map<String, ClassNode> pool, int parsingOptions)
 					throws IOException {
 		this.path = path;
+		this.parsingOptions = parsingOptions;
 		this.javaClassNameFilter = javaClassNameFilter == null ? new JavaClassfileNoFilter() : javaClassNameFilter;
 		classNodeData = pool;
 		visit(path);
@@ -160,6 +217,104 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 */
 	protected abstract void visit(File path) throws IOException;
 
+	/**
+	 * <p>
+	 * Lists the class files available in the given path.
+	 * </p>
+	 *
+	 * @param path the root of the listing
+	 * @return the class file names, canonized on the form a/b/C.class
+	 * @throws IOException if any IO error occurs
+	 */
+	protected abstract Collection<String> getClassfileNames(File path) throws IOException;
+
+	/**
+	 * <p>
+	 * Tells whether the class files of the given path are listed once by the
+	 * {@link ClasspathIndex}, or probed on each lookup using
+	 * {@link #containsClassfile(File, String)}.
+	 * </p>
+	 *
+	 * @return <code>true</code> if the class files are listed,
+	 *         <code>false</code> if they are probed
+	 */
+	protected boolean isListed() {
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Checks whether the given class file is available in the given path.
+	 * </p>
+	 *
+	 * @param path          the root where the class file is looked up
+	 * @param classfileName the class file name, canonized on the form a/b/C.class
+	 * @return <code>true</code> if the class file is available
+	 * @throws IOException if any IO error occurs
+	 */
+	protected boolean containsClassfile(File path, String classfileName) throws IOException {
+		return getClassfileNames(path).contains(classfileName);
+	}
+
+	/**
+	 * <p>
+	 * Reads the bytes of the given class file from the given path, without parsing
+	 * them.
+	 * </p>
+	 *
+	 * @param path          the root where the class file is located
+	 * @param classfileName the class file name, canonized on the form a/b/C.class
+	 * @return the reader of the class, or <code>null</code> if the class file
+	 *         can't be found or read
+	 * @throws IOException if the given path can't be opened
+	 */
+	protected abstract @Nullable ClassfileReader readClassfile(File path, String classfileName) throws IOException;
+
+	/**
+	 * <p>
+	 * Reads the bytes of the given class files from the given path, without
+	 * parsing them. The default implementation reads the class files one after
+	 * the other.
+	 * </p>
+	 *
+	 * @param path           the root where the class files are located
+	 * @param classfileNames the class files names, canonized on the form
+	 *                       a/b/C.class
+	 * @return the readers of the class files that have been found and read
+	 * @throws IOException if the given path can't be opened
+	 */
+	protected List<ClassReader> readClassfiles(File path, Collection<String> classfileNames) throws IOException {
+		ArrayList<ClassReader> readers = new ArrayList<>();
+		for (String classfileName : classfileNames) {
+			assert (classfileName != null);
+			ClassReader cr = readClassfile(path, classfileName);
+			if (cr != null) {
+				readers.add(cr);
+			}
+		}
+		return readers;
+	}
+
+	/**
+	 * <p>
+	 * Loads the given class file from the given path.
+	 * </p>
+	 *
+	 * @param path           the root where the class file is located
+	 * @param classfileName  the class file name, canonized on the form a/b/C.class
+	 * @param parsingOptions the {@link ClassReader} parsing options
+	 * @return the loaded class, or <code>null</code> if the class file can't be
+	 *         found or read
+	 * @throws IOException if the given path can't be opened
+	 */
+	protected @Nullable ClassNode loadClassfile(File path, String classfileName, int parsingOptions)
+			throws IOException {
+		ClassReader cr = readClassfile(path, classfileName);
+		// the class is parsed outside of the reading locks, so that classes can be
+		// parsed concurrently
+		return cr == null ? null : getNode(cr, parsingOptions);
+	}
+
 	/**
 	 * <p>
 	 * Apply the {@link IJavaClassfileFilter} to the given file and add its
@@ -169,29 +324,20 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 	 */
 	@Override
 	public void visitFile(FileVisitable file) {
-		String name = file.getName();
-		// canonize
 		// path cannot be null by construction
+		File path = this.path;
 		assert (path != null);
-		String absolutePath = path.getAbsolutePath();
-		if(name.startsWith(absolutePath)){
-			name = name.substring(absolutePath.length()+1, name.length()); // +1: remove separator
-		}
-
-		String separator = File.separator;
-		assert (separator != null);
-		name = name.replace(separator, "/");//always use '/' as separator (jars use '/' and filesystem depends on the OS)
+		String name = canonize(path, file);
 
 		// the filter can't be null by construction
 		assert (javaClassNameFilter != null);
-		assert (name != null);
 		if (!javaClassNameFilter.accept(name)) {
 			return;
 		}
 
 		ClassNode cn;
 		try {
-			cn = getNode(file);
+			cn = getNode(file, parsingOptions);
 		} catch (IOException e) {
 			return;
 		}
@@ -202,13 +348,123 @@ public abstract class JavaClassFinder extends RecursiveFileSystemVisitor {
 
 	}
 
-	private static ClassNode getNode(FileVisitable file) throws IOException {
-		ClassReader cr = new ClassReader(file.getInputStream());
+	/**
+	 * Canonizes the name of the given file on the form a/b/C.ext, relatively to
+	 * the given root.
+	 *
+	 * @param root the root of the visit
+	 * @param file the visited file
+	 * @return the canonized name of the file
+	 */
+	protected static String canonize(File root, FileVisitable file) {
+		String name = file.getName();
+		String absolutePath = root.getAbsolutePath();
+		if(name.startsWith(absolutePath)){
+			name = name.substring(absolutePath.length()+1, name.length()); // +1: remove separator
+		}
+
+		String separator = File.separator;
+		assert (separator != null);
+		name = name.replace(separator, "/");//always use '/' as separator (jars use '/' and filesystem depends on the OS)
+		assert (name != null);
+		return name;
+	}
+
+	/**
+	 * Reads the class of the given file.
+	 *
+	 * @param file the class file to read
+	 * @return the read class
+	 * @throws IOException if the file can't be read
+	 */
+	protected static ClassNode getNode(FileVisitable file) throws IOException {
+		return getNode(file, 0);
+	}
+
+	/**
+	 * Reads the class of the given file with the given parsing options.
+	 *
+	 * @param file           the class file to read
+	 * @param parsingOptions the {@link ClassReader} parsing options
+	 * @return the read class
+	 * @throws IOException if the file can't be read
+	 */
+	protected static ClassNode getNode(FileVisitable file, int parsingOptions) throws IOException {
+		return getNode(getReader(file), parsingOptions);
+	}
+
+	/**
+	 * Reads the bytes of the class of the given file, without parsing them.
+	 *
+	 * @param file the class file to read
+	 * @return the reader of the class
+	 * @throws IOException if the file can't be read
+	 */
+	protected static ClassfileReader getReader(FileVisitable file) throws IOException {
+		return new ClassfileReader(file.getContent());
+	}
+
+	/**
+	 * Parses the class of the given reader with the given parsing options.
+	 * <p>
+	 * When the code is skipped ({@link ClassReader#SKIP_CODE}), only the member
+	 * table of the class is kept: its name, its super types and the names,
+	 * descriptors and access flags of its methods and fields.
+	 *
+	 * @param cr             the reader of the class
+	 * @param parsingOptions the {@link ClassReader} parsing options
+	 * @return the parsed class
+	 */
+	protected static ClassNode getNode(ClassReader cr, int parsingOptions) {
 		ClassNode cn = new ClassNode();
-		cr.accept(cn, 0);
+		if ((parsingOptions & ClassReader.SKIP_CODE) != 0) {
+			cr.accept(new MemberTableVisitor(cn), parsingOptions);
+		} else {
+			cr.accept(cn, parsingOptions);
+		}
 		return cn;
 	}
 
+	/**
+	 * Forwards to a {@link ClassNode} the declarations of a class and of its
+	 * members only. Annotations, attributes, inner classes and generic signatures
+	 * are dropped.
+	 */
+	private static class MemberTableVisitor extends ClassVisitor {
+
+		private final ClassNode cn;
+
+		MemberTableVisitor(ClassNode cn) {
+			super(Opcodes.ASM9);
+			this.cn = cn;
+		}
+
+		@Override
+		public void visit(int version, int access, String name, @Nullable String signature,
+				@Nullable String superName, String @Nullable [] interfaces) {
+			cn.visit(version, access, name, null, superName, interfaces);
+		}
+
+		@Override
+		public @Nullable FieldVisitor visitField(int access, String name, String descriptor,
+				@Nullable String signature, @Nullable Object value) {
+			cn.visitField(access, name, descriptor, null, null);
+			return null;
+		}
+
+		@Override
+		public @Nullable MethodVisitor visitMethod(int access, String name, String descriptor,
+				@Nullable String signature, String @Nullable [] exceptions) {
+			cn.visitMethod(access, name, descriptor, null, null);
+			return null;
+		}
+
+		@Override
+		public void visitEnd() {
+			cn.visitEnd();
+		}
+	}
+
 }
 
 class FinderHolder {
@@ -6,7 +6,8 @@
  */
 package com.microej.tool.dependencydiscoverer.classfinder;
 
-
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * <p>
@@ -15,21 +16,53 @@ package com.microej.tool.dependencydiscoverer.classfinder;
  */
 public class WildCardClassfileFilter extends AbstractNameMatchingClassfileFilter {
 
+	/**
+	 * Sorted prefixes of the accepted class files. No prefix is a prefix of another
+	 * one.
+	 */
+	private final String[] prefixes;
+
 	/**
 	 *
 	 * @param classnames
 	 */
 	public WildCardClassfileFilter(String[] classnames){
 		super(classnames);
+		String[] expectedRelativeClassfilenames = getExpectedRelativeClassfilenames();
+		String[] sortedPrefixes = new String[expectedRelativeClassfilenames.length];
+		for (int i = sortedPrefixes.length; --i >= 0;) {
+			// remove *.class
+			String expectedRelativeClassfilename = expectedRelativeClassfilenames[i];
+			sortedPrefixes[i] = expectedRelativeClassfilename.substring(0,
+					expectedRelativeClassfilename.length() - (JavaClassfileNoFilter.CLASS_EXT.length() + 1));
+		}
+		Arrays.sort(sortedPrefixes);
+		// a prefix hides the next ones that start with it
+		ArrayList<String> prefixesList = new ArrayList<>();
+		for (String prefix : sortedPrefixes) {
+			assert (prefix != null);
+			if (prefixesList.isEmpty() || !prefix.startsWith(prefixesList.get(prefixesList.size() - 1))) {
+				prefixesList.add(prefix);
+			}
+		}
+		String[] prefixesArray = prefixesList.toArray(new String[prefixesList.size()]);
+		assert (prefixesArray != null);
+		this.prefixes = prefixesArray;
 	}
 
 	@Override
-	protected boolean match(String name, String expectedRelativeClassfilename) {
-		// remove *.class
-		String substring = expectedRelativeClassfilename.substring(0, expectedRelativeClassfilename.length()-(JavaClassfileNoFilter.CLASS_EXT.length()+1));
-		assert (substring != null);
-		expectedRelativeClassfilename = substring;
-		return name.startsWith(expectedRelativeClassfilename) && name.endsWith(JavaClassfileNoFilter.CLASS_EXT);
+	public boolean accept(String name) {
+		if (!name.endsWith(JavaClassfileNoFilter.CLASS_EXT)) {
+			return false;
+		}
+		// the only prefix that may match is the greatest one lower or equal to the
+		// name, because no prefix starts with another one
+		int index = Arrays.binarySearch(prefixes, name);
+		if (index >= 0) {
+			return true;
+		}
+		index = -index - 2; // insertion point - 1
+		return index >= 0 && name.startsWith(prefixes[index]);
 	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.classfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.microej.tool.dependencydiscoverer.filesystem.jar.RepositoryZipFile;
+
+/**
+ * <p>
+ * Repository ZIP file ({@link RepositoryZipFile}) structure visit entry point.
+ * The class files of the ZIP file and of its nested JAR files are read in
+ * place, the ZIP file is never extracted.
+ * </p>
+ * <p>
+ * An opened ZIP file is kept until the end of the run (see {@link #close()}),
+ * as long as its size and last modification time are unchanged.
+ * </p>
+ */
+public class ZipJavaClassFinder extends JavaClassFinder {
+
+	/**
+	 * Cache ZIP file path to the opened ZIP file.
+	 */
+	private static final HashMap<String, CachedZipFile> zipFilesCache = new HashMap<>();
+
+	/**
+	 * @param zipFile must be an existing ZIP file
+	 * @see File#isFile()
+	 */
+	@Override
+	protected void visit(File zipFile) throws IOException {
+		RepositoryZipFile repositoryZipFile = getZipFile(zipFile);
+
+		// the filter can't be null by construction
+		IJavaClassfileFilter javaClassNameFilter = this.javaClassNameFilter;
+		assert (javaClassNameFilter != null);
+		// classNodeData can't be null by construction
+		Map<String, ClassNode> classNodeData = this.classNodeData;
+		assert (classNodeData != null);
+
+		for (String name : repositoryZipFile.getClassfileNames()) {
+			if (javaClassNameFilter.accept(name)) {
+				ClassReader cr = readClassfile(repositoryZipFile, name);
+				if (cr != null) {
+					ClassNode cn = getNode(cr, parsingOptions);
+					classNodeData.put(cn.name, cn);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Collection<String> getClassfileNames(File zipFile) throws IOException {
+		return getZipFile(zipFile).getClassfileNames();
+	}
+
+	@Override
+	protected @Nullable ClassfileReader readClassfile(File zipFile, String classfileName) throws IOException {
+		return readClassfile(getZipFile(zipFile), classfileName);
+	}
+
+	private static @Nullable ClassfileReader readClassfile(RepositoryZipFile zipFile, String classfileName) {
+		try {
+			byte[] content = zipFile.read(classfileName);
+			return content == null ? null : new ClassfileReader(content);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Opens the given ZIP file in the cache of the opened ZIP files, so that the
+	 * analysis reads it without opening it again. Use it to check that the ZIP file
+	 * can be read in place before the analysis.
+	 *
+	 * @param zipFile the ZIP file
+	 * @throws IOException if the ZIP file can't be read in place (ZIP64 or
+	 *                     malformed)
+	 */
+	public static void open(File zipFile) throws IOException {
+		getZipFile(zipFile);
+	}
+
+	/**
+	 * Drops the opened ZIP files, so that their mapped regions can be released.
+	 * The ZIP files are opened again by the next run.
+	 */
+	public static void close() {
+		synchronized (zipFilesCache) {
+			zipFilesCache.clear();
+		}
+	}
+
+	/**
+	 * Gets the given ZIP file from the cache. The ZIP file is opened and its nested
+	 * JAR files are indexed only the first time it is requested, or when it has
+	 * been modified since.
+	 */
+	private static RepositoryZipFile getZipFile(File zipFile) throws IOException {
+		String path = zipFile.getPath();
+		long length = zipFile.length();
+		long lastModified = zipFile.lastModified();
+		synchronized (zipFilesCache) {
+			CachedZipFile cachedZipFile = zipFilesCache.get(path);
+			if (cachedZipFile == null || !cachedZipFile.matches(length, lastModified)) {
+				cachedZipFile = new CachedZipFile(RepositoryZipFile.open(zipFile), length, lastModified);
+				zipFilesCache.put(path, cachedZipFile);
+			}
+			return cachedZipFile.zipFile;
+		}
+	}
+
+	/**
+	 * An opened ZIP file, valid while its size and last modification time are
+	 * unchanged.
+	 */
+	private static class CachedZipFile {
+
+		final RepositoryZipFile zipFile;
+		final long length;
+		final long lastModified;
+
+		CachedZipFile(RepositoryZipFile zipFile, long length, long lastModified) {
+			this.zipFile = zipFile;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		boolean matches(long length, long lastModified) {
+			return this.length == length && this.lastModified == lastModified;
+		}
+	}
+}
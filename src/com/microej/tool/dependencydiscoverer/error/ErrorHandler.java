@@ -57,7 +57,7 @@ public class ErrorHandler {
 	 * @param filename
 	 * @param ex       the error
 	 */
-	public void addErrorOnSource(char @Nullable [] source, @Nullable String filename, Error ex) {
+	public synchronized void addErrorOnSource(char @Nullable [] source, @Nullable String filename, Error ex) {
 		allNotifications.add(new ErrorNotification(source, filename, ex));
 		currentNotification++;
 	}
@@ -155,7 +155,7 @@ public class ErrorHandler {
 	 * @return {@code true} if the error handler contains fatals
 	 *         errors,{@code false} otherwise
 	 */
-	public boolean hasError(){
+	public synchronized boolean hasError(){
 		for (int i=currentNotification+1; --i>=0;){
 			ErrorNotification elem = allNotifications.get(i);
 			assert (elem != null);
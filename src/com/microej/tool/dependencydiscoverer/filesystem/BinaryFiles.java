@@ -0,0 +1,95 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * <p>
+ * Utilities of the binary files of the tool (indexes, analysis state, caches).
+ * </p>
+ * <p>
+ * These files are big-endian. Strings are stored as an unsigned short length
+ * followed by UTF-8 bytes. A file is read at once in the heap rather than
+ * memory-mapped, so that it can be replaced while it is used, and it is
+ * written to a temporary file which is then moved to the file, so that it is
+ * never partially written.
+ * </p>
+ */
+public class BinaryFiles {
+
+	private BinaryFiles() {
+		// empty private constructor to prevent instantiations
+	}
+
+	/**
+	 * Reads the given file.
+	 *
+	 * @param file the file to read
+	 * @return a buffer on the file content
+	 * @throws IOException if the file can't be read
+	 */
+	public static ByteBuffer read(File file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		assert (buffer != null);
+		return buffer;
+	}
+
+	/**
+	 * Writes the given file, replacing it if it exists. The parent directory of
+	 * the file must exist.
+	 *
+	 * @param file   the file to write
+	 * @param writer the writer of the file content
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(File file, IDataWriter writer) throws IOException {
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				writer.write(out);
+			}
+			FileUtils.move(tmpFile, file, true);
+		} finally {
+			// the temporary file remains only if it has not been moved
+			Files.deleteIfExists(tmpFile.toPath());
+		}
+	}
+
+	/**
+	 * Writes a string.
+	 *
+	 * @param out    the stream
+	 * @param string the string, at most 65535 bytes long in UTF-8
+	 * @throws IOException if the string can't be written
+	 */
+	public static void putString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string.
+	 *
+	 * @param buffer the buffer
+	 * @return the string
+	 */
+	public static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
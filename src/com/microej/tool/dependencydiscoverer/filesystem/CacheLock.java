@@ -0,0 +1,382 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Exclusive lock on an entry of a cache directory shared by several processes,
+ * such as the repository downloaded or extracted in the cache.
+ * </p>
+ * <p>
+ * An entry is produced by the owner of its lock only: it is first written to a
+ * staging file or directory next to the entry, then published by renaming it
+ * to the entry. An entry that exists is therefore complete and is never
+ * replaced. A process that needs an entry being produced by another process
+ * waits for the lock, then finds the published entry.
+ * </p>
+ * <p>
+ * A process using an entry holds a shared lock on it, so that the entry is not
+ * evicted while it is read: an entry is deleted by the owner of its exclusive
+ * lock only.
+ * </p>
+ * <p>
+ * The lock is held on a <code>&lt;name&gt;.lock</code> file of the cache
+ * directory, which is kept once released. The staging files left by a process
+ * that stopped while producing the entry are deleted by the next owner of the
+ * exclusive lock.
+ * </p>
+ */
+public class CacheLock implements AutoCloseable {
+
+	/**
+	 * Extension of the lock files.
+	 */
+	public static final String LOCK_FILE_EXT = ".lock";
+
+	/**
+	 * Extension of the staging files and directories.
+	 */
+	public static final String STAGING_FILE_EXT = ".tmp";
+
+	/**
+	 * Separates the entry name from the unique part of the name of a staging file.
+	 */
+	private static final String STAGING_INFIX = ".staging-";
+
+	/**
+	 * Lock file path to the lock of the threads of this process: a file lock is
+	 * held by the whole process, so that it can't be taken twice.
+	 */
+	private static final HashMap<String, PathLock> pathLocks = new HashMap<>();
+
+	private final File cacheDir;
+	private final String name;
+	private final PathLock pathLock;
+	private final boolean shared;
+	private final @Nullable FileChannel channel;
+	private final @Nullable FileLock fileLock;
+	private final boolean waited;
+
+	private CacheLock(File cacheDir, String name, PathLock pathLock, boolean shared, @Nullable FileChannel channel,
+			@Nullable FileLock fileLock, boolean waited) {
+		this.cacheDir = cacheDir;
+		this.name = name;
+		this.pathLock = pathLock;
+		this.shared = shared;
+		this.channel = channel;
+		this.fileLock = fileLock;
+		this.waited = waited;
+	}
+
+	/**
+	 * Locks the given cache entry, waiting for the process or the thread that owns
+	 * the lock to release it. The staging files of a previous owner are deleted.
+	 *
+	 * @param cacheDir the cache directory, created if needed
+	 * @param name     the name of the cache entry
+	 * @return the lock, to be closed once the entry has been published
+	 * @throws IOException if the lock file can't be created
+	 */
+	public static CacheLock lock(File cacheDir, String name) throws IOException {
+		CacheLock lock = lockExclusive(cacheDir, name, true);
+		assert (lock != null);
+		return lock;
+	}
+
+	/**
+	 * Locks the given cache entry if no other process or thread owns or uses it.
+	 * The staging files of a previous owner are deleted.
+	 *
+	 * @param cacheDir the cache directory, created if needed
+	 * @param name     the name of the cache entry
+	 * @return the lock, or <code>null</code> if the entry is locked
+	 * @throws IOException if the lock file can't be created
+	 */
+	public static @Nullable CacheLock tryLock(File cacheDir, String name) throws IOException {
+		return lockExclusive(cacheDir, name, false);
+	}
+
+	/**
+	 * Takes a shared lock on the given cache entry, to use it: the entry can't be
+	 * produced or deleted until the lock is released. Waits for the process or the
+	 * thread that owns the exclusive lock to release it.
+	 *
+	 * @param cacheDir the cache directory, created if needed
+	 * @param name     the name of the cache entry
+	 * @return the shared lock, to be closed once the entry is no longer used
+	 * @throws IOException if the lock file can't be created
+	 */
+	public static CacheLock lockShared(File cacheDir, String name) throws IOException {
+		File lockFile = getLockFile(cacheDir, name);
+		PathLock pathLock = getPathLock(lockFile);
+		Lock threadLock = pathLock.threads.readLock();
+		boolean waited = !threadLock.tryLock();
+		if (waited) {
+			threadLock.lock();
+		}
+		try {
+			synchronized (pathLock) {
+				// the file lock is shared by the threads of this process using the entry
+				if (pathLock.readers == 0) {
+					Files.createDirectories(cacheDir.toPath());
+					FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+							StandardOpenOption.READ, StandardOpenOption.WRITE);
+					try {
+						FileLock fileLock = channel.tryLock(0, Long.MAX_VALUE, true);
+						if (fileLock == null) {
+							waited = true;
+							fileLock = channel.lock(0, Long.MAX_VALUE, true);
+						}
+						pathLock.sharedChannel = channel;
+						pathLock.sharedFileLock = fileLock;
+					} catch (IOException | RuntimeException e) {
+						channel.close();
+						throw e;
+					}
+				}
+				++pathLock.readers;
+			}
+			return new CacheLock(cacheDir, name, pathLock, true, null, null, waited);
+		} catch (IOException | RuntimeException e) {
+			threadLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the file locked to lock the given cache entry. Its modification time
+	 * may be updated without releasing the lock.
+	 *
+	 * @param cacheDir the cache directory
+	 * @param name     the name of the cache entry
+	 * @return the lock file
+	 */
+	public static File getLockFile(File cacheDir, String name) {
+		return new File(cacheDir, name + LOCK_FILE_EXT);
+	}
+
+	private static PathLock getPathLock(File lockFile) {
+		String path = lockFile.getAbsolutePath();
+		synchronized (pathLocks) {
+			PathLock pathLock = pathLocks.get(path);
+			if (pathLock == null) {
+				pathLock = new PathLock();
+				pathLocks.put(path, pathLock);
+			}
+			return pathLock;
+		}
+	}
+
+	private static @Nullable CacheLock lockExclusive(File cacheDir, String name, boolean wait) throws IOException {
+		File lockFile = getLockFile(cacheDir, name);
+		PathLock pathLock = getPathLock(lockFile);
+		Lock threadLock = pathLock.threads.writeLock();
+		boolean waited = !threadLock.tryLock();
+		if (waited) {
+			if (!wait) {
+				return null;
+			}
+			threadLock.lock();
+		}
+		try {
+			Files.createDirectories(cacheDir.toPath());
+			FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+			try {
+				FileLock fileLock = channel.tryLock();
+				if (fileLock == null) {
+					if (!wait) {
+						channel.close();
+						threadLock.unlock();
+						return null;
+					}
+					waited = true;
+					fileLock = channel.lock();
+				}
+				CacheLock lock = new CacheLock(cacheDir, name, pathLock, false, channel, fileLock, waited);
+				lock.deleteStagingFiles();
+				return lock;
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			threadLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Tells whether another process or thread owned the lock when it was
+	 * requested, so that the entry may have been published meanwhile.
+	 *
+	 * @return <code>true</code> if the lock has been waited for
+	 */
+	public boolean hasWaited() {
+		return waited;
+	}
+
+	/**
+	 * Creates a new staging file for the entry, in the cache directory so that it
+	 * can be published by a rename.
+	 *
+	 * @return the staging file
+	 * @throws IOException if the file can't be created
+	 */
+	public File createStagingFile() throws IOException {
+		assert (!shared);
+		return File.createTempFile(name + STAGING_INFIX, STAGING_FILE_EXT, cacheDir);
+	}
+
+	/**
+	 * Creates a new staging directory for the entry, in the cache directory so that
+	 * it can be published by a rename.
+	 *
+	 * @return the staging directory
+	 * @throws IOException if the directory can't be created
+	 */
+	public File createStagingDirectory() throws IOException {
+		File directory = createStagingFile();
+		Files.delete(directory.toPath());
+		Files.createDirectory(directory.toPath());
+		return directory;
+	}
+
+	/**
+	 * Publishes the given staging file or directory as the cache entry, by
+	 * renaming it atomically when the file system supports it. An existing entry
+	 * is not replaced: the staging file is deleted instead.
+	 *
+	 * @param staging the staging file or directory
+	 * @return the cache entry
+	 * @throws IOException if the staging file can't be renamed
+	 */
+	public File publish(File staging) throws IOException {
+		assert (!shared);
+		File entry = new File(cacheDir, name);
+		if (entry.exists()) {
+			deleteStagingFile(staging);
+			return entry;
+		}
+		FileUtils.move(staging, entry, false);
+		return entry;
+	}
+
+	/**
+	 * Withdraws the cache entry by renaming it atomically to a staging file or
+	 * directory, so that no process finds a partially deleted entry. The staging
+	 * file is to be deleted by the caller, or else by the next owner of the lock.
+	 *
+	 * @return the staging file or directory, or <code>null</code> if the entry
+	 *         doesn't exist
+	 * @throws IOException if the entry can't be renamed
+	 */
+	public @Nullable File withdraw() throws IOException {
+		assert (!shared);
+		File entry = new File(cacheDir, name);
+		if (!entry.exists()) {
+			return null;
+		}
+		File staging = createStagingFile();
+		Files.delete(staging.toPath());
+		FileUtils.move(entry, staging, false);
+		return staging;
+	}
+
+	/**
+	 * Releases the lock, so that the next process or thread waiting for it finds
+	 * the published entry.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (shared) {
+			try {
+				synchronized (pathLock) {
+					if (--pathLock.readers == 0) {
+						FileLock sharedFileLock = pathLock.sharedFileLock;
+						FileChannel sharedChannel = pathLock.sharedChannel;
+						pathLock.sharedFileLock = null;
+						pathLock.sharedChannel = null;
+						assert (sharedFileLock != null && sharedChannel != null);
+						sharedFileLock.release();
+						sharedChannel.close();
+					}
+				}
+			} finally {
+				pathLock.threads.readLock().unlock();
+			}
+		} else {
+			FileLock localFileLock = fileLock;
+			FileChannel localChannel = channel;
+			assert (localFileLock != null && localChannel != null);
+			try {
+				localFileLock.release();
+				localChannel.close();
+			} finally {
+				pathLock.threads.writeLock().unlock();
+			}
+		}
+	}
+
+	private void deleteStagingFiles() {
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		String prefix = name + STAGING_INFIX;
+		for (File file : files) {
+			String fileName = file.getName();
+			if (fileName.startsWith(prefix) && fileName.endsWith(STAGING_FILE_EXT)) {
+				deleteStagingFile(file);
+			}
+		}
+	}
+
+	private static void deleteStagingFile(File staging) {
+		if (staging.isDirectory()) {
+			FileUtils.deleteFolder(staging);
+		} else {
+			try {
+				Files.deleteIfExists(staging.toPath());
+			} catch (IOException e) {
+				// deleted by the next owner of the lock
+			}
+		}
+	}
+
+	/**
+	 * The locks of a cache entry in this process.
+	 */
+	private static class PathLock {
+
+		/**
+		 * Lock of the threads producing (write lock) or using (read lock) the entry.
+		 */
+		final ReentrantReadWriteLock threads = new ReentrantReadWriteLock();
+
+		/**
+		 * Number of threads using the entry, which share the file lock.
+		 */
+		int readers;
+		@Nullable
+		FileChannel sharedChannel;
+		@Nullable
+		FileLock sharedFileLock;
+	}
+}
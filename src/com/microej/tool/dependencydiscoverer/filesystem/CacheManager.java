@@ -0,0 +1,338 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Keeps the size of the cache entries bounded by evicting the least recently
+ * used ones: the repositories downloaded or extracted in the cache.
+ * </p>
+ * <p>
+ * The last access time of an entry is the modification time of its lock file
+ * (see {@link CacheLock}), updated each time a run uses the entry, or else the
+ * modification time of the entry itself. An entry is evicted with the files
+ * named after it (its JAR files index, its fingerprint and its partial
+ * download), by the owner of its exclusive lock: the entries used by running
+ * processes are never evicted. The entry is first withdrawn by an atomic
+ * rename, then deleted, so that no process finds it partially deleted. The
+ * other files of the cache, such as the JAR summaries, are neither evicted nor
+ * counted in the size of the entries.
+ * </p>
+ */
+public class CacheManager {
+
+	/**
+	 * Prefix of the names of the cache entries.
+	 */
+	public static final String ENTRY_PREFIX = "dd-";
+
+	/**
+	 * Extensions of the files named after a cache entry, evicted with it.
+	 */
+	private static final String[] ENTRY_FILES_EXTS = { ".index", ".fingerprint", HttpDownloader.PARTIAL_FILE_EXT,
+			HttpDownloader.PARTIAL_FILE_EXT + HttpDownloader.PROGRESS_FILE_EXT };
+
+	private static final long MEGABYTE = 1024L * 1024;
+
+	private final File cacheDir;
+
+	/**
+	 * Creates a manager of the given cache directory.
+	 *
+	 * @param cacheDir the cache directory
+	 */
+	public CacheManager(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Records that the given entry is used now.
+	 *
+	 * @param name the name of the cache entry
+	 */
+	public void recordAccess(String name) {
+		try {
+			Path lockFile = CacheLock.getLockFile(cacheDir, name).toPath();
+			if (!Files.exists(lockFile)) {
+				Files.createFile(lockFile);
+			}
+			Files.setLastModifiedTime(lockFile, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// the entry is considered as used at its last recorded access
+		}
+	}
+
+	/**
+	 * Gets the entries of the cache, from the least recently used to the most
+	 * recently used.
+	 *
+	 * @return the cache entries
+	 */
+	public List<CacheEntry> getEntries() {
+		ArrayList<CacheEntry> entries = new ArrayList<>();
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return entries;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (name.startsWith(ENTRY_PREFIX) && !isEntryFile(name)) {
+				File lockFile = CacheLock.getLockFile(cacheDir, name);
+				long lastAccess = lockFile.isFile() ? lockFile.lastModified() : file.lastModified();
+				long size = getSize(file);
+				for (String ext : ENTRY_FILES_EXTS) {
+					size += getSize(new File(cacheDir, name + ext));
+				}
+				entries.add(new CacheEntry(name, size, lastAccess));
+			}
+		}
+		Collections.sort(entries, new Comparator<CacheEntry>() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public int compare(CacheEntry e1, CacheEntry e2) {
+				int cmp = Long.compare(e1.lastAccess, e2.lastAccess);
+				return cmp != 0 ? cmp : e1.name.compareTo(e2.name);
+			}
+		});
+		return entries;
+	}
+
+	/**
+	 * Gets the size of the whole cache directory.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getSize() {
+		return getSize(cacheDir);
+	}
+
+	/**
+	 * Evicts the least recently used entries until the entries of the cache are
+	 * not larger than the given size. The entries used by a running process are
+	 * skipped, and so are the entries which can't be deleted.
+	 *
+	 * @param maxSize the maximum size of the cache entries in bytes
+	 * @return the evicted entries
+	 */
+	public List<CacheEntry> evict(long maxSize) {
+		ArrayList<CacheEntry> evicted = new ArrayList<>();
+		List<CacheEntry> entries = getEntries();
+		long size = 0;
+		for (CacheEntry entry : entries) {
+			size += entry.size;
+		}
+		for (CacheEntry entry : entries) {
+			if (size <= maxSize) {
+				break;
+			}
+			try (CacheLock lock = CacheLock.tryLock(cacheDir, entry.name)) {
+				if (lock == null) {
+					continue; // in use
+				}
+				if (delete(entry.name, lock)) {
+					size -= entry.size;
+					evicted.add(entry);
+				}
+			} catch (IOException e) {
+				// kept until the next eviction
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Deletes the entries of the cache, except the entries used by a running
+	 * process, then the other files of the cache, such as the JAR summaries,
+	 * which are produced again when needed. The lock files are kept.
+	 *
+	 * @return the deleted entries
+	 */
+	public List<CacheEntry> clean() {
+		List<CacheEntry> deleted = evict(0);
+		File[] files = cacheDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				// the files named after an entry in use are kept with it
+				if (!name.startsWith(ENTRY_PREFIX) && !name.endsWith(CacheLock.LOCK_FILE_EXT)
+						&& !name.endsWith(CacheLock.STAGING_FILE_EXT)) {
+					delete(file);
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Gets a report of the cache usage: the size of the cache directory, the size
+	 * of its entries and the entries, from the most recently used to the least
+	 * recently used.
+	 *
+	 * @param maxSize the maximum size of the cache entries in bytes, 0 if the
+	 *                size is not bounded
+	 * @return the report
+	 */
+	public String getStats(long maxSize) {
+		List<CacheEntry> entries = getEntries();
+		StringBuilder sb = new StringBuilder();
+		long entriesSize = 0;
+		for (CacheEntry entry : entries) {
+			entriesSize += entry.size;
+		}
+		sb.append("Cache ").append(cacheDir.getPath()).append(": ").append(toMegabytes(getSize())).append(" MB, ")
+				.append(entries.size()).append(" entries: ").append(toMegabytes(entriesSize)).append(" MB");
+		if (maxSize > 0) {
+			sb.append(" (max ").append(toMegabytes(maxSize)).append(" MB)");
+		}
+		sb.append('.');
+		long now = System.currentTimeMillis();
+		for (int i = entries.size(); --i >= 0;) {
+			CacheEntry entry = entries.get(i);
+			sb.append(System.lineSeparator()).append("  ").append(entry.name).append(": ")
+					.append(toMegabytes(entry.size)).append(" MB, last used ")
+					.append(Math.max(0, now - entry.lastAccess) / 60000).append(" min ago");
+		}
+		String stats = sb.toString();
+		assert (stats != null);
+		return stats;
+	}
+
+	private static String toMegabytes(long size) {
+		String megabytes = String.format("%.1f", Double.valueOf((double) size / MEGABYTE));
+		assert (megabytes != null);
+		return megabytes;
+	}
+
+	private static boolean isEntryFile(String name) {
+		if (name.endsWith(CacheLock.LOCK_FILE_EXT) || name.endsWith(CacheLock.STAGING_FILE_EXT)) {
+			return true;
+		}
+		for (String ext : ENTRY_FILES_EXTS) {
+			if (name.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the given entry and the files named after it, which are deleted
+	 * first since they are not used without the entry.
+	 *
+	 * @return <code>true</code> if they have all been deleted
+	 */
+	private boolean delete(String name, CacheLock lock) throws IOException {
+		for (String ext : ENTRY_FILES_EXTS) {
+			if (!delete(new File(cacheDir, name + ext))) {
+				return false;
+			}
+		}
+		File staging = lock.withdraw();
+		// a staging file which remains is deleted by the next owner of the lock
+		return staging == null || delete(staging);
+	}
+
+	private static boolean delete(File file) {
+		if (file.isDirectory()) {
+			FileUtils.deleteFolder(file);
+			return !file.exists();
+		}
+		try {
+			Files.deleteIfExists(file.toPath());
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static long getSize(File file) {
+		if (!file.exists()) {
+			return 0;
+		}
+		if (!file.isDirectory()) {
+			return file.length();
+		}
+		final long[] size = new long[1];
+		try {
+			Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public FileVisitResult visitFile(@Nullable Path path, @Nullable BasicFileAttributes attrs) {
+					if (attrs != null) {
+						size[0] += attrs.size();
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(@Nullable Path path, @Nullable IOException e) {
+					// deleted concurrently
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			// partial size
+		}
+		return size[0];
+	}
+
+	/**
+	 * An entry of the cache.
+	 */
+	public static class CacheEntry {
+
+		private final String name;
+		private final long size;
+		private final long lastAccess;
+
+		CacheEntry(String name, long size, long lastAccess) {
+			this.name = name;
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+
+		/**
+		 * Gets the name of the entry in the cache directory.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the size of the entry and of the files named after it.
+		 *
+		 * @return the size in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Gets the last access time of the entry.
+		 *
+		 * @return the time in milliseconds since the epoch
+		 */
+		public long getLastAccess() {
+			return lastAccess;
+		}
+	}
+}
@@ -6,18 +6,31 @@
  */
 package com.microej.tool.dependencydiscoverer.filesystem;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -28,7 +41,38 @@ import org.eclipse.jdt.annotation.Nullable;
  * {@link FileUtils#mkDirs(File, String)}.
  */
 public class FileUtils {
-	private static final int BUFFER_SIZE = 4096;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Buffers copying the extracted entries, reused by each thread.
+	 */
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {// NOSONAR java 8 compliance except lambda
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Filter extracting all the entries of a zip file.
+	 */
+	public static final IZipEntryFilter ALL_ENTRIES = new IZipEntryFilter() {// NOSONAR java 8 compliance except lambda
+		@Override
+		public boolean accept(String name) {
+			return true;
+		}
+	};
+
+	/**
+	 * Filter extracting only the JAR files of a zip file which may contain
+	 * classes: the sources and javadoc archives are skipped.
+	 */
+	public static final IZipEntryFilter CODE_JAR_ENTRIES = new IZipEntryFilter() {// NOSONAR java 8 compliance except lambda
+		@Override
+		public boolean accept(String name) {
+			return name.endsWith(".jar") && !name.endsWith("-sources.jar") && !name.endsWith("-javadoc.jar");
+		}
+	};
 
 	private FileUtils() {
 		// empty private constructor to prevent instantiations
@@ -43,30 +87,69 @@ public class FileUtils {
 	 *         error occured.
 	 */
 	public static boolean unZip(File zipfile, File outdir) {
-		try (ZipInputStream in = new ZipInputStream(new FileInputStream(zipfile));) {
-			ZipEntry entry;
-			String fileName;
-			String path;
-			while ((entry = in.getNextEntry()) != null) {
-				fileName = entry.getName();
-				// Creates the architecture.
-				if (entry.isDirectory()) {
-					assert (fileName != null);
-					mkDirs(outdir, fileName);
-					continue;
-				}
+		return unZip(zipfile, outdir, ALL_ENTRIES, Runtime.getRuntime().availableProcessors());
+	}
 
-				// Get the path to the file.
-				path = path(fileName);
-				if (path != null) {
-					// Make sure its parent folders exists.
-					mkDirs(outdir,path);
+	/**
+	 * Extract the entries of a zip file accepted by the given filter to an output
+	 * directory.
+	 * <p>
+	 * The zip file is read through its central directory, and the entries are
+	 * written in parallel on a bounded pool of threads. The directories are
+	 * created once, before their files are written. Entries which would be
+	 * extracted outside of the output directory are skipped.
+	 *
+	 * @param zipfile  Input .zip file
+	 * @param outdir   Output directory
+	 * @param filter   the filter of the extracted entries
+	 * @param nThreads the number of threads writing the entries (at least 1)
+	 * @return {@code true} if the zipfile as been unziped, {@code false} if an
+	 *         error occured.
+	 */
+	public static boolean unZip(File zipfile, File outdir, IZipEntryFilter filter, int nThreads) {
+		try (final ZipFile zip = new ZipFile(zipfile)) {
+			Path root = outdir.toPath().toAbsolutePath().normalize();
+			HashSet<Path> directories = new HashSet<>();
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+			try {
+				List<Future<Void>> results = new ArrayList<>();
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					final ZipEntry entry = entries.nextElement();
+					String name = entry.getName();
+					assert (name != null);
+					final Path file = root.resolve(name).normalize();
+					if (!filter.accept(name) || !file.startsWith(root)) {
+						continue;
+					}
+					// Creates the architecture.
+					Path dir = entry.isDirectory() ? file : file.getParent();
+					if (dir != null && directories.add(dir)) {
+						Files.createDirectories(dir);
+					}
+					if (!entry.isDirectory()) {
+						results.add(executor.submit(new Callable<Void>() {// NOSONAR java 8 compliance except lambda
+							@Override
+							public @Nullable Void call() throws IOException {
+								unzipFile(zip, entry, file);
+								return null;
+							}
+						}));
+					}
 				}
-
-				unzipFile(in, outdir, fileName);
+				for (Future<Void> result : results) {
+					result.get();
+				}
+			} finally {
+				// the zip file is closed once no entry is being written
+				executor.shutdownNow();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
 			}
 			return true;
-		} catch (IOException e) {
+		} catch (IOException | ExecutionException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			return false;
 		}
 	}
@@ -112,14 +195,70 @@ public class FileUtils {
 		}
 	}
 
-	private static void unzipFile(ZipInputStream in, File outdir, @Nullable String name) throws IOException {
-		if (name != null) {
-			byte[] buffer = new byte[BUFFER_SIZE];
-			try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(new File(outdir, name)))) {
-				int count = -1;
-				while ((count = in.read(buffer)) != -1) {
-					out.write(buffer, 0, count);
-				}
+	/**
+	 * Renames a file or a directory, atomically when the file system supports it.
+	 *
+	 * @param source          the file to rename
+	 * @param target          the new name
+	 * @param replaceExisting <code>true</code> to replace an existing target file
+	 * @throws IOException if the file can't be renamed
+	 */
+	public static void move(File source, File target, boolean replaceExisting) throws IOException {
+		Path sourcePath = source.toPath();
+		Path targetPath = target.toPath();
+		try {
+			if (replaceExisting) {
+				Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} else {
+				Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+			}
+		} catch (AtomicMoveNotSupportedException e) {
+			if (replaceExisting) {
+				Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.move(sourcePath, targetPath);
+			}
+		}
+	}
+
+	/**
+	 * Creates a SHA-1 digest.
+	 *
+	 * @return the digest
+	 */
+	public static MessageDigest newSha1Digest() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			assert (digest != null);
+			return digest;
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Converts the given bytes, such as a digest, to lowercase hexadecimal.
+	 *
+	 * @param bytes the bytes
+	 * @return the hexadecimal string
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+		}
+		String hex = sb.toString();
+		assert (hex != null);
+		return hex;
+	}
+
+	private static void unzipFile(ZipFile zip, ZipEntry entry, Path file) throws IOException {
+		byte[] buffer = BUFFERS.get();
+		try (InputStream in = zip.getInputStream(entry); OutputStream out = Files.newOutputStream(file)) {
+			int count = -1;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
 			}
 		}
 	}
@@ -161,13 +300,4 @@ public class FileUtils {
 		}
 		return dir;
 	}
-
-	private static @Nullable String path(@Nullable String name) {
-		if (name != null) {
-			int s = name.lastIndexOf(File.separatorChar);
-			return s == -1 ? null : name.substring(0, s);
-		} else {
-			return null;
-		}
-	}
 }
\ No newline at end of file
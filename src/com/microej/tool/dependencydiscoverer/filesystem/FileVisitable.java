@@ -6,6 +6,7 @@
  */
 package com.microej.tool.dependencydiscoverer.filesystem;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -26,4 +27,26 @@ public abstract class FileVisitable implements IFileSystemVisitable {
 	 */
 	public abstract InputStream getInputStream() throws IOException;
 
+	/**
+	 * Reads the whole file content. By default, the content is read from
+	 * {@link #getInputStream()}; subclasses read it without going through a stream
+	 * when they can.
+	 *
+	 * @return the file content
+	 * @throws IOException
+	 */
+	public byte[] getContent() throws IOException {
+		try (InputStream in = getInputStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int nbRead;
+			while ((nbRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, nbRead);
+			}
+			byte[] content = out.toByteArray();
+			assert (content != null);
+			return content;
+		}
+	}
+
 }
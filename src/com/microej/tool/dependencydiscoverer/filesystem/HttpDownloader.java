@@ -0,0 +1,436 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Downloads a file over HTTP to a partial file which survives an interrupted
+ * download.
+ * </p>
+ * <p>
+ * When the server accepts byte ranges, the file is downloaded by chunks, on
+ * several connections in parallel. The downloaded chunks are recorded in a
+ * progress file next to the partial file, so that the next download only
+ * requests the missing chunks. The chunks are requested with the validator
+ * (entity tag or last modification date) of the first download: if the file
+ * has been modified on the server since, or if the server gives no validator,
+ * the download restarts from the beginning. When the server doesn't accept
+ * byte ranges, the file is downloaded in a single request.
+ * </p>
+ * <p>
+ * Once downloaded, the file is checked against the expected SHA-1, if given,
+ * or else against the SHA-1 published by the server next to it
+ * (<code>&lt;url&gt;.sha1</code>), if any. A published value which is not a
+ * SHA-1, such as an error page served with a success status, is ignored. A file
+ * which doesn't match is deleted with its progress file. The progress file is kept
+ * until the check passes, so that a check that couldn't be done is retried by
+ * the next download without requesting the chunks again.
+ * </p>
+ * <p>
+ * Progress file format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, url, validator, long length, int chunk size, int chunks bitmap length, chunks bitmap
+ * </pre>
+ *
+ * Strings are stored as an unsigned short length followed by UTF-8 bytes.
+ */
+public class HttpDownloader {
+
+	/**
+	 * Extension of the partial files.
+	 */
+	public static final String PARTIAL_FILE_EXT = ".part";
+
+	/**
+	 * Extension of the progress files.
+	 */
+	public static final String PROGRESS_FILE_EXT = ".progress";
+
+	/**
+	 * Extension of the published checksum of a file.
+	 */
+	public static final String CHECKSUM_EXT = ".sha1";
+
+	/**
+	 * Default size of the downloaded chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private static final int MAGIC = 0x4444444C; // DDDL
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int CONNECT_TIMEOUT = 30000;
+	private static final int READ_TIMEOUT = 60000;
+
+	private final int nConnections;
+	private final int chunkSize;
+
+	/**
+	 * Creates a downloader.
+	 *
+	 * @param nConnections the maximum number of chunks downloaded in parallel (at
+	 *                     least 1)
+	 * @param chunkSize    the size of the downloaded chunks
+	 */
+	public HttpDownloader(int nConnections, int chunkSize) {
+		this.nConnections = Math.max(1, nConnections);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Downloads the given URL to the given partial file, checked against its
+	 * published checksum, if any.
+	 *
+	 * @param url         the URL of the file to download
+	 * @param partialFile the partial file
+	 * @return <code>true</code> if the file has been checked, <code>false</code> if
+	 *         no checksum is published
+	 * @throws IOException if the file can't be downloaded, or if it doesn't match
+	 *                     its published checksum
+	 * @see #download(URL, File, String)
+	 */
+	public boolean download(URL url, File partialFile) throws IOException {
+		return download(url, partialFile, null);
+	}
+
+	/**
+	 * Downloads the given URL to the given partial file, resuming a previous
+	 * download if possible. The partial file is complete and checked when this
+	 * method returns: it is then ready to be renamed.
+	 *
+	 * @param url              the URL of the file to download
+	 * @param partialFile      the partial file
+	 * @param expectedChecksum the hexadecimal SHA-1 of the file (see
+	 *                         {@link #isChecksum(String)}), or <code>null</code>
+	 *                         to check the file against its published checksum
+	 * @return <code>true</code> if the file has been checked, <code>false</code> if
+	 *         no checksum is expected nor published
+	 * @throws IOException if the file can't be downloaded, or if it doesn't match
+	 *                     its checksum
+	 */
+	public boolean download(URL url, File partialFile, @Nullable String expectedChecksum) throws IOException {
+		File progressFile = new File(partialFile.getPath() + PROGRESS_FILE_EXT);
+		String protocol = url.getProtocol().toLowerCase(Locale.ROOT);
+		if (!protocol.equals("http") && !protocol.equals("https")) {
+			// no byte ranges nor published checksum
+			copy(url.openConnection(), partialFile);
+			return expectedChecksum != null && check(url, partialFile, progressFile, expectedChecksum);
+		}
+
+		HttpURLConnection head = open(url);
+		head.setRequestMethod("HEAD");
+		boolean headSupported = head.getResponseCode() == HttpURLConnection.HTTP_OK;
+		long length = head.getContentLengthLong();
+		String validator = getValidator(head);
+		boolean acceptRanges = "bytes".equalsIgnoreCase(head.getHeaderField("Accept-Ranges"));
+		head.disconnect();
+
+		if (headSupported && acceptRanges && length > 0) {
+			Progress progress = Progress.load(progressFile);
+			if (progress == null || !progress.matches(url, validator, length, chunkSize)
+					|| partialFile.length() != length) {
+				Files.deleteIfExists(partialFile.toPath());
+				progress = new Progress(url.toString(), validator, length, chunkSize);
+				// the chunks are written at their position
+				try (RandomAccessFile file = new RandomAccessFile(partialFile, "rw")) {
+					file.setLength(length);
+				}
+			}
+			downloadChunks(url, partialFile, progressFile, progress);
+		} else {
+			Files.deleteIfExists(progressFile.toPath());
+			copy(open(url), partialFile);
+		}
+
+		// the progress is kept until the file is checked, so that a failed check is
+		// retried without downloading the file again
+		String checksum = expectedChecksum != null ? expectedChecksum : getPublishedChecksum(url);
+		if (checksum == null) {
+			Files.deleteIfExists(progressFile.toPath());
+			return false;
+		}
+		return check(url, partialFile, progressFile, checksum);
+	}
+
+	/**
+	 * Tells whether the given value is a hexadecimal SHA-1 (40 digits).
+	 *
+	 * @param value the value to test
+	 * @return <code>true</code> if the value is a SHA-1
+	 */
+	public static boolean isChecksum(String value) {
+		if (value.length() != 40) {
+			return false;
+		}
+		for (int i = value.length(); --i >= 0;) {
+			char c = value.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the downloaded file against the given checksum, deleting it with its
+	 * progress file if it doesn't match.
+	 */
+	private static boolean check(URL url, File partialFile, File progressFile, String checksum) throws IOException {
+		if (!checksum.equalsIgnoreCase(ZipFingerprint.sha1(partialFile))) {
+			Files.deleteIfExists(progressFile.toPath());
+			Files.deleteIfExists(partialFile.toPath());
+			throw new IOException("checksum mismatch: " + url);
+		}
+		Files.deleteIfExists(progressFile.toPath());
+		return true;
+	}
+
+	private void downloadChunks(final URL url, File partialFile, final File progressFile, final Progress progress)
+			throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(nConnections);
+		try (final FileChannel channel = FileChannel.open(partialFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			List<Future<Void>> results = new ArrayList<>();
+			for (int i = 0; i < progress.getChunks(); ++i) {
+				if (progress.isDone(i)) {
+					continue;
+				}
+				final int chunk = i;
+				results.add(executor.submit(new Callable<Void>() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public @Nullable Void call() throws IOException {
+						downloadChunk(url, channel, progress, chunk);
+						// a chunk is recorded once it is on the disk, not only in the page cache
+						channel.force(false);
+						synchronized (progress) {
+							progress.setDone(chunk);
+							progress.save(progressFile);
+						}
+						return null;
+					}
+				}));
+			}
+			IOException error = null;
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					// the other chunks are still downloaded, for the next download
+					Throwable cause = e.getCause();
+					if (error == null) {
+						error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("download interrupted: " + url, e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void downloadChunk(URL url, FileChannel channel, Progress progress, int chunk)
+			throws IOException {
+		long start = (long) chunk * progress.chunkSize;
+		long end = Math.min(start + progress.chunkSize, progress.length) - 1;
+		HttpURLConnection connection = open(url);
+		connection.setRequestProperty("Range", "bytes=" + start + '-' + end);
+		if (!progress.validator.isEmpty()) {
+			connection.setRequestProperty("If-Range", progress.validator);
+		}
+		checkResponse(connection, HttpURLConnection.HTTP_PARTIAL);
+		String contentRange = connection.getHeaderField("Content-Range");
+		if (contentRange == null || !contentRange.startsWith("bytes " + start + '-' + end + '/')) {
+			// the file has been modified on the server
+			throw new IOException("unexpected range " + contentRange + ": " + url);
+		}
+		long position = start;
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			while (position <= end
+					&& (count = in.read(buffer, 0, (int) Math.min(buffer.length, end + 1 - position))) != -1) {
+				ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+				while (data.hasRemaining()) {
+					position += channel.write(data, position);
+				}
+			}
+		}
+		if (position != end + 1) {
+			throw new IOException("truncated range " + start + '-' + end + ": " + url);
+		}
+	}
+
+	private static void copy(URLConnection connection, File partialFile) throws IOException {
+		try (InputStream in = connection.getInputStream()) {
+			Files.copy(in, partialFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Gets the SHA-1 published next to the given URL.
+	 *
+	 * @return the hexadecimal SHA-1, or <code>null</code> if no checksum is
+	 *         published or if the published value is not a SHA-1
+	 */
+	private static @Nullable String getPublishedChecksum(URL url) throws IOException {
+		HttpURLConnection connection = open(new URL(url.toString() + CHECKSUM_EXT));
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			connection.disconnect();
+			return null;
+		}
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			// the checksum may be followed by the file name
+			String[] tokens = line == null ? new String[0] : line.trim().split("\\s+");
+			return tokens.length == 0 || !isChecksum(tokens[0]) ? null : tokens[0];
+		}
+	}
+
+	private static HttpURLConnection open(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		return connection;
+	}
+
+	private static void checkResponse(HttpURLConnection connection, int expectedCode) throws IOException {
+		int code = connection.getResponseCode();
+		if (code != expectedCode) {
+			connection.disconnect();
+			throw new IOException("unexpected HTTP response " + code + ": " + connection.getURL());
+		}
+	}
+
+	private static String getValidator(HttpURLConnection connection) {
+		String etag = connection.getHeaderField("ETag");
+		// weak entity tags can't validate a range
+		if (etag != null && !etag.startsWith("W/")) {
+			return etag;
+		}
+		String lastModified = connection.getHeaderField("Last-Modified");
+		return lastModified == null ? "" : lastModified;
+	}
+
+	/**
+	 * The chunks of a partial file already downloaded.
+	 */
+	private static class Progress {
+
+		final String url;
+		final String validator;
+		final long length;
+		final int chunkSize;
+		private final BitSet done;
+
+		Progress(String url, String validator, long length, int chunkSize) {
+			this(url, validator, length, chunkSize, new BitSet());
+		}
+
+		private Progress(String url, String validator, long length, int chunkSize, BitSet done) {
+			this.url = url;
+			this.validator = validator;
+			this.length = length;
+			this.chunkSize = chunkSize;
+			this.done = done;
+		}
+
+		boolean matches(URL url, String validator, long length, int chunkSize) {
+			// without validator, the modification of the file can't be detected
+			return this.url.equals(url.toString()) && !validator.isEmpty() && this.validator.equals(validator)
+					&& this.length == length && this.chunkSize == chunkSize;
+		}
+
+		int getChunks() {
+			return (int) ((length + chunkSize - 1) / chunkSize);
+		}
+
+		boolean isDone(int chunk) {
+			return done.get(chunk);
+		}
+
+		void setDone(int chunk) {
+			done.set(chunk);
+		}
+
+		static @Nullable Progress load(File progressFile) {
+			if (!progressFile.isFile()) {
+				return null;
+			}
+			try {
+				ByteBuffer buffer = BinaryFiles.read(progressFile);
+				if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+					return null;
+				}
+				String url = BinaryFiles.getString(buffer);
+				String validator = BinaryFiles.getString(buffer);
+				long length = buffer.getLong();
+				int chunkSize = buffer.getInt();
+				byte[] bitmap = new byte[buffer.getInt()];
+				buffer.get(bitmap);
+				return new Progress(url, validator, length, chunkSize, BitSet.valueOf(bitmap));
+			} catch (IOException | RuntimeException e) { // NOSONAR an invalid progress restarts the download
+				return null;
+			}
+		}
+
+		/**
+		 * Saves the progress to a temporary file which is then moved to the progress
+		 * file, so that a progress file is never partially written.
+		 */
+		void save(File progressFile) throws IOException {
+			BinaryFiles.write(progressFile, new IDataWriter() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public void write(DataOutputStream out) throws IOException {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					BinaryFiles.putString(out, url);
+					BinaryFiles.putString(out, validator);
+					out.writeLong(length);
+					out.writeInt(chunkSize);
+					byte[] bitmap = done.toByteArray();
+					out.writeInt(bitmap.length);
+					out.write(bitmap);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,26 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the content of a binary file.
+ *
+ * @see BinaryFiles#write(java.io.File, IDataWriter)
+ */
+public interface IDataWriter {
+
+	/**
+	 * Writes the content of the file.
+	 *
+	 * @param out the stream of the file
+	 * @throws IOException if the content can't be written
+	 */
+	void write(DataOutputStream out) throws IOException;
+}
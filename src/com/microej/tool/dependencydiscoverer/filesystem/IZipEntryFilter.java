@@ -0,0 +1,23 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+/**
+ * Selects the entries of a ZIP file to extract.
+ *
+ * @see FileUtils#unZip(java.io.File, java.io.File, IZipEntryFilter, int)
+ */
+public interface IZipEntryFilter {
+
+	/**
+	 * Tells whether the given file entry must be extracted.
+	 *
+	 * @param name the entry name, on the form a/b/c.ext
+	 * @return <code>true</code> if the entry is extracted
+	 */
+	boolean accept(String name);
+}
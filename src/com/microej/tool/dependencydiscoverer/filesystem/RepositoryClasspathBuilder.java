@@ -0,0 +1,150 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Builds the classpath of a repository with an Ivy or Maven layout, keeping a
+ * single revision of each module.
+ * </p>
+ * <p>
+ * The JAR files of a module revision are stored in a
+ * <code>organisation/module/revision/</code> directory, where the organisation
+ * is either a single directory (<code>ej.api/edc/1.3.3/</code>) or split on its
+ * dots (<code>org/apache/ant/ant/1.9.9/</code>). A directory is a revision
+ * directory if it is at least three levels below the repository root, if its
+ * name starts with a digit and if it contains JAR files. Among the revision
+ * directories of a module, only the pinned revision, or else the newest one (see
+ * {@link RevisionComparator}), is added to the classpath. The other directories,
+ * including the ones named like a revision (<code>com/example/3d/</code>), are
+ * explored and their JAR files are all added.
+ * </p>
+ * <p>
+ * The JAR files which don't contain classes (sources and javadoc) are skipped.
+ * </p>
+ */
+public class RepositoryClasspathBuilder {
+
+	private static final int REVISION_DIR_MIN_DEPTH = 3;
+
+	/**
+	 * Module key (<code>organisation#module</code>) to its pinned revision.
+	 */
+	private final HashMap<String, String> pinnedRevisions = new HashMap<>();
+
+	/**
+	 * Pins the revision of a module: this revision is added to the classpath
+	 * instead of the newest one, if it is in the repository.
+	 *
+	 * @param organisation the organisation of the module, such as
+	 *                     <code>org.apache.ant</code>
+	 * @param module       the module name
+	 * @param revision     the pinned revision
+	 */
+	public void pin(String organisation, String module, String revision) {
+		pinnedRevisions.put(getModuleKey(organisation, module), revision);
+	}
+
+	/**
+	 * Adds the JAR files of the given repository directory to the classpath.
+	 *
+	 * @param classpath     the classpath to complete
+	 * @param repositoryDir the repository directory
+	 */
+	public void addJars(List<String> classpath, File repositoryDir) {
+		addJars(classpath, repositoryDir, "", 0);
+	}
+
+	private void addJars(List<String> classpath, File dir, String relativePath, int depth) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (int i = files.length; --i >= 0;) {
+			File file = files[i];
+			if (isCodeJar(file)) {
+				classpath.add(file.getAbsolutePath());
+			}
+		}
+
+		ArrayList<File> revisionDirs = new ArrayList<>();
+		for (File subdir : files) {
+			if (!subdir.isDirectory()) {
+				continue;
+			}
+			String name = subdir.getName();
+			if (isRevisionDir(name, depth + 1) && containsCodeJars(subdir)) {
+				revisionDirs.add(subdir);
+			} else {
+				// an organisation or a module may be named like a revision (3d)
+				addJars(classpath, subdir, relativePath.isEmpty() ? name : relativePath + '/' + name, depth + 1);
+			}
+		}
+		File revisionDir = selectRevision(revisionDirs, pinnedRevisions.get(getModuleKey(relativePath)));
+		if (revisionDir != null) {
+			addJars(classpath, revisionDir, relativePath + '/' + revisionDir.getName(), depth + 1);
+		}
+	}
+
+	private static @Nullable File selectRevision(List<File> revisionDirs, @Nullable String pinnedRevision) {
+		File latestRevisionDir = null;
+		for (File revisionDir : revisionDirs) {
+			String revision = revisionDir.getName();
+			if (revision.equals(pinnedRevision)) {
+				return revisionDir;
+			}
+			if (latestRevisionDir == null
+					|| RevisionComparator.INSTANCE.compare(revision, latestRevisionDir.getName()) > 0) {
+				latestRevisionDir = revisionDir;
+			}
+		}
+		return latestRevisionDir;
+	}
+
+	private static boolean isRevisionDir(String name, int depth) {
+		return depth >= REVISION_DIR_MIN_DEPTH && !name.isEmpty() && Character.isDigit(name.charAt(0));
+	}
+
+	private static boolean containsCodeJars(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (isCodeJar(file)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isCodeJar(File file) {
+		return FileUtils.CODE_JAR_ENTRIES.accept(file.getName()) && file.isFile();
+	}
+
+	/**
+	 * Gets the key of the module stored in the given directory, relative to the
+	 * repository root.
+	 */
+	private static @Nullable String getModuleKey(String moduleRelativePath) {
+		int index = moduleRelativePath.lastIndexOf('/');
+		if (index == -1) {
+			return null;
+		}
+		return getModuleKey(moduleRelativePath.substring(0, index), moduleRelativePath.substring(index + 1));
+	}
+
+	private static String getModuleKey(String organisation, String module) {
+		return organisation.replace('/', '.') + '#' + module;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Compares the revisions of a module, such as <code>1.2.10</code>,
+ * <code>1.2.9</code> or <code>2.0.0-RC1</code>.
+ * </p>
+ * <p>
+ * A revision is split into numeric and textual parts, separated by
+ * <code>.</code>, <code>-</code>, <code>_</code> or <code>+</code> or by a
+ * change between digits and letters. The numeric parts are compared as numbers
+ * and the textual parts are compared case-insensitively. A numeric part is
+ * greater than a textual part, so that a qualified revision is older than the
+ * release: <code>1.0-RC1 &lt; 1.0 &lt; 1.0.1</code>.
+ * </p>
+ */
+public class RevisionComparator implements Comparator<String> {
+
+	/**
+	 * The revisions comparator.
+	 */
+	public static final RevisionComparator INSTANCE = new RevisionComparator();
+
+	@Override
+	public int compare(@Nullable String revision1, @Nullable String revision2) {
+		assert (revision1 != null && revision2 != null);
+		List<String> parts1 = split(revision1);
+		List<String> parts2 = split(revision2);
+		int size = Math.min(parts1.size(), parts2.size());
+		for (int i = 0; i < size; ++i) {
+			int cmp = compareParts(parts1.get(i), parts2.get(i));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		if (parts1.size() != parts2.size()) {
+			// 1.0 < 1.0.1 but 1.0-RC1 < 1.0
+			if (parts1.size() > parts2.size()) {
+				return isNumeric(parts1.get(size)) ? 1 : -1;
+			} else {
+				return isNumeric(parts2.get(size)) ? -1 : 1;
+			}
+		}
+		return revision1.compareTo(revision2);
+	}
+
+	private static int compareParts(String part1, String part2) {
+		boolean numeric1 = isNumeric(part1);
+		boolean numeric2 = isNumeric(part2);
+		if (numeric1 && numeric2) {
+			// compare the numbers without overflow: the longest is the greatest
+			String number1 = stripLeadingZeros(part1);
+			String number2 = stripLeadingZeros(part2);
+			int cmp = Integer.compare(number1.length(), number2.length());
+			return cmp != 0 ? cmp : number1.compareTo(number2);
+		} else if (numeric1) {
+			return 1;
+		} else if (numeric2) {
+			return -1;
+		} else {
+			return part1.compareToIgnoreCase(part2);
+		}
+	}
+
+	private static List<String> split(String revision) {
+		ArrayList<String> parts = new ArrayList<>();
+		int start = 0;
+		int length = revision.length();
+		for (int i = 0; i <= length; ++i) {
+			boolean end = i == length;
+			if (end || isSeparator(revision.charAt(i))) {
+				if (i > start) {
+					parts.add(revision.substring(start, i));
+				}
+				start = i + 1;
+			} else if (i > start
+					&& Character.isDigit(revision.charAt(i)) != Character.isDigit(revision.charAt(i - 1))) {
+				parts.add(revision.substring(start, i));
+				start = i;
+			}
+		}
+		return parts;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '.' || c == '-' || c == '_' || c == '+';
+	}
+
+	private static boolean isNumeric(String part) {
+		return Character.isDigit(part.charAt(0));
+	}
+
+	private static String stripLeadingZeros(String number) {
+		int i = 0;
+		while (i < number.length() - 1 && number.charAt(i) == '0') {
+			++i;
+		}
+		String stripped = number.substring(i);
+		assert (stripped != null);
+		return stripped;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * SHA-1 of a ZIP file, remembered in a fingerprint file so that a large ZIP
+ * file is hashed again only when it is modified.
+ * </p>
+ * <p>
+ * The fingerprint file records the path, size and last modification time of
+ * the ZIP file with its last computed hash. When they still match, the recorded
+ * hash is returned without reading the ZIP file. The fingerprint may also
+ * record the digest of the ZIP central directory, which lists the CRC-32 of
+ * every entry: when it is checked, a ZIP file which metadata changed but which
+ * central directory is the same (for instance a copied or touched file) is not
+ * hashed again, and a ZIP file rewritten with the same metadata is detected.
+ * </p>
+ * <p>
+ * File format (big-endian):
+ *
+ * <pre>
+ * int magic, int version, path, long size, long last modified, central directory digest, hash
+ * </pre>
+ *
+ * Strings are stored as an unsigned short length followed by UTF-8 bytes.
+ */
+public class ZipFingerprint {
+
+	private static final int MAGIC = 0x44445A46; // DDZF
+	private static final int VERSION = 1;
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	/**
+	 * Size of the regions of the ZIP file mapped in memory to be hashed.
+	 */
+	private static final long HASH_REGION_SIZE = 64L * 1024 * 1024;
+
+	private final String path;
+	private final long size;
+	private final long lastModified;
+	private final String centralDirectoryDigest;
+	private final String hash;
+
+	private ZipFingerprint(String path, long size, long lastModified, String centralDirectoryDigest, String hash) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.centralDirectoryDigest = centralDirectoryDigest;
+		this.hash = hash;
+	}
+
+	/**
+	 * Gets the SHA-1 of the given ZIP file, from its fingerprint file if the ZIP
+	 * file has not been modified since. The fingerprint file is updated when the
+	 * ZIP file is hashed.
+	 *
+	 * @param zipFile                the ZIP file
+	 * @param fingerprintFile        the fingerprint file of the ZIP file
+	 * @param checkCentralDirectory  <code>true</code> to compare the central
+	 *                               directories of the ZIP file instead of
+	 *                               trusting its size and last modification time
+	 * @return the hexadecimal SHA-1 of the ZIP file, or <code>null</code> if it
+	 *         can't be read
+	 */
+	public static @Nullable String getHash(File zipFile, File fingerprintFile, boolean checkCentralDirectory) {
+		String path = zipFile.getAbsolutePath();
+		assert (path != null);
+		long size = zipFile.length();
+		long lastModified = zipFile.lastModified();
+		ZipFingerprint fingerprint = load(fingerprintFile);
+		boolean sameFile = fingerprint != null && fingerprint.path.equals(path);
+		try {
+			String centralDirectoryDigest = "";
+			if (checkCentralDirectory) {
+				String digest = getCentralDirectoryDigest(zipFile);
+				centralDirectoryDigest = digest == null ? "" : digest;
+			}
+			if (fingerprint != null && sameFile) {
+				boolean sameMetadata = fingerprint.size == size && fingerprint.lastModified == lastModified;
+				if (!checkCentralDirectory && sameMetadata) {
+					return fingerprint.hash;
+				}
+				if (checkCentralDirectory && !centralDirectoryDigest.isEmpty()
+						&& centralDirectoryDigest.equals(fingerprint.centralDirectoryDigest)) {
+					if (!sameMetadata) {
+						save(fingerprintFile, new ZipFingerprint(path, size, lastModified, centralDirectoryDigest,
+								fingerprint.hash));
+					}
+					return fingerprint.hash;
+				}
+			}
+			String hash = sha1(zipFile);
+			save(fingerprintFile, new ZipFingerprint(path, size, lastModified, centralDirectoryDigest, hash));
+			return hash;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Computes the SHA-1 of the given file. The file is mapped in memory by large
+	 * regions instead of being copied through a stream.
+	 *
+	 * @param file the file to hash
+	 * @return the hexadecimal SHA-1
+	 * @throws IOException if the file can't be read
+	 */
+	public static String sha1(File file) throws IOException {
+		MessageDigest digest = FileUtils.newSha1Digest();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += HASH_REGION_SIZE) {
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(HASH_REGION_SIZE, size - position)));
+			}
+		}
+		return FileUtils.toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the SHA-1 of the central directory of the given ZIP file.
+	 *
+	 * @return the hexadecimal SHA-1, or <code>null</code> if the end of the central
+	 *         directory is not found (ZIP64 archives are not supported)
+	 */
+	private static @Nullable String getCentralDirectoryDigest(File zipFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+			if (tailSize < END_SIZE) {
+				return null;
+			}
+			ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - tailSize, tailSize);
+			tail.order(ByteOrder.LITTLE_ENDIAN);
+			int end = tailSize - END_SIZE;
+			while (end >= 0 && tail.getInt(end) != END_SIGNATURE) {
+				--end;
+			}
+			if (end < 0) {
+				return null;
+			}
+			long centralDirectorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+			long centralDirectoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+			if (centralDirectoryOffset + centralDirectorySize > size - tailSize + end) {
+				return null; // ZIP64 or malformed
+			}
+			MessageDigest digest = FileUtils.newSha1Digest();
+			digest.update(channel.map(FileChannel.MapMode.READ_ONLY, centralDirectoryOffset, centralDirectorySize));
+			return FileUtils.toHex(digest.digest());
+		}
+	}
+
+	private static @Nullable ZipFingerprint load(File fingerprintFile) {
+		if (!fingerprintFile.isFile()) {
+			return null;
+		}
+		try {
+			ByteBuffer buffer = BinaryFiles.read(fingerprintFile);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			return new ZipFingerprint(BinaryFiles.getString(buffer), buffer.getLong(), buffer.getLong(),
+					BinaryFiles.getString(buffer), BinaryFiles.getString(buffer));
+		} catch (IOException | RuntimeException e) { // NOSONAR an invalid fingerprint is computed again
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the given fingerprint. The fingerprint is written to a temporary file
+	 * which is then moved to the fingerprint file, so that a fingerprint file is
+	 * never partially written. A fingerprint that can't be saved is computed again
+	 * by the next run.
+	 */
+	private static void save(File fingerprintFile, final ZipFingerprint fingerprint) {
+		File parent = fingerprintFile.getAbsoluteFile().getParentFile();
+		if (parent == null || (!parent.isDirectory() && !parent.mkdirs())) {
+			return;
+		}
+		try {
+			BinaryFiles.write(fingerprintFile, new IDataWriter() {// NOSONAR java 8 compliance except lambda
+				@Override
+				public void write(DataOutputStream out) throws IOException {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					BinaryFiles.putString(out, fingerprint.path);
+					out.writeLong(fingerprint.size);
+					out.writeLong(fingerprint.lastModified);
+					BinaryFiles.putString(out, fingerprint.centralDirectoryDigest);
+					BinaryFiles.putString(out, fingerprint.hash);
+				}
+			});
+		} catch (IOException e) {
+			// the ZIP file is hashed again by the next run
+		}
+	}
+}
@@ -10,7 +10,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 import com.microej.tool.dependencydiscoverer.filesystem.FileVisitable;
 
@@ -39,6 +42,29 @@ public class FSFile extends FileVisitable {
 		return new FileInputStream(wrappedFile);
 	}
 
+	/**
+	 * Reads the file content straight in an array of the file size, instead of
+	 * copying it through a stream.
+	 */
+	@Override
+	public byte[] getContent() throws IOException {
+		try (FileChannel channel = FileChannel.open(wrappedFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("file too large: " + wrappedFile);
+			}
+			byte[] content = new byte[(int) size];
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// read until the end of the file
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("file truncated while read: " + wrappedFile);
+			}
+			return content;
+		}
+	}
+
 	@Override
 	public String getName() {
 		String pathName = wrappedFile.getAbsolutePath();
@@ -11,6 +11,8 @@ import java.io.InputStream;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.microej.tool.dependencydiscoverer.filesystem.FileVisitable;
 
 /**
@@ -22,6 +24,7 @@ public class JarEntryVisitable extends FileVisitable {
 
 	private final JarFile owner;
 	private final JarEntry wrappedEntry;
+	private final @Nullable RandomAccessJarFile contentOwner;
 
 	/**
 	 * Constructor
@@ -30,8 +33,21 @@ public class JarEntryVisitable extends FileVisitable {
 	 * @param wrappedEntry jar file to visit.
 	 */
 	public JarEntryVisitable(JarFile owner, JarEntry wrappedEntry) {
+		this(owner, wrappedEntry, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param owner        jarFile containing the entry.
+	 * @param wrappedEntry jar file to visit.
+	 * @param contentOwner the random access view of the jarFile, from which the
+	 *                     entry content is read. May be null.
+	 */
+	public JarEntryVisitable(JarFile owner, JarEntry wrappedEntry, @Nullable RandomAccessJarFile contentOwner) {
 		this.owner = owner;
 		this.wrappedEntry = wrappedEntry;
+		this.contentOwner = contentOwner;
 	}
 
 	@Override
@@ -39,6 +55,22 @@ public class JarEntryVisitable extends FileVisitable {
 		return owner.getInputStream(wrappedEntry);
 	}
 
+	/**
+	 * Reads the entry content from the random access view of its JAR file if any.
+	 */
+	@Override
+	public byte[] getContent() throws IOException {
+		RandomAccessJarFile localContentOwner = contentOwner;
+		if (localContentOwner != null) {
+			byte[] content = localContentOwner.read(getName());
+			if (content == null) {
+				throw new IOException("entry not found: " + getName());
+			}
+			return content;
+		}
+		return super.getContent();
+	}
+
 	@Override
 	public String getName() {
 		String name = wrappedEntry.getName();
@@ -12,6 +12,8 @@ import java.util.NoSuchElementException;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.microej.tool.dependencydiscoverer.filesystem.DirectoryVisitable;
 import com.microej.tool.dependencydiscoverer.filesystem.IDirectoryIterator;
 import com.microej.tool.dependencydiscoverer.filesystem.IFileSystemVisitable;
@@ -35,6 +37,12 @@ public class JarFileVisitable extends DirectoryVisitable {
 	 */
 	protected Enumeration<JarEntry> entries;
 
+	/**
+	 * The random access view of the JAR file, from which the entries are read.
+	 * May be null.
+	 */
+	protected @Nullable RandomAccessJarFile contentEntry;
+
 	/**
 	 * Default constructor (visit all entries)
 	 *
@@ -56,16 +64,31 @@ public class JarFileVisitable extends DirectoryVisitable {
 		this.entries = entries;
 	}
 
+	/**
+	 * Constructor to visit only provided entries, read from the random access
+	 * view of the JAR file
+	 *
+	 * @param wrappedEntry jar file to visit.
+	 * @param entries      the subset of entries to visit.
+	 * @param contentEntry the random access view of the jar file. May be null.
+	 */
+	public JarFileVisitable(JarFile wrappedEntry, Enumeration<JarEntry> entries,
+			@Nullable RandomAccessJarFile contentEntry) {
+		this(wrappedEntry, entries);
+		this.contentEntry = contentEntry;
+	}
+
 	@Override
 	public IDirectoryIterator iterator() {
 		Enumeration<JarEntry> entries = this.entries;
+		RandomAccessJarFile contentEntry = this.contentEntry;
 		return new IDirectoryIterator() {
 			@Override
 			public IFileSystemVisitable next() {
 				if (!hasNext()) {
 					throw new NoSuchElementException();
 				}
-				return new JarEntryVisitable(wrappedEntry, entries.nextElement());
+				return new JarEntryVisitable(wrappedEntry, entries.nextElement(), contentEntry);
 			}
 
 			@Override
@@ -0,0 +1,470 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem.jar;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Read-only view of a JAR file read by random access: a JAR file read with
+ * positional reads of its channel, or a JAR file stored in a buffer, such as a
+ * region of a mapped archive (see {@link RepositoryZipFile}).
+ * </p>
+ * <p>
+ * The central directory is read and parsed once, it is the only part of the JAR
+ * file kept in memory. The content of an entry is read on demand from its local
+ * header: a stored entry is copied straight in its content array, and a
+ * deflated entry is read and inflated with buffers reused by each thread. The
+ * entries can be read concurrently.
+ * </p>
+ * <p>
+ * Only the archives without ZIP64 records are read.
+ * </p>
+ * <p>
+ * A JAR file read from its channel keeps the channel open until it is closed.
+ * A thread reading it without a guarantee that it is not closed meanwhile
+ * brackets its reads with {@link #acquire()} and {@link #release()}: the
+ * channel is closed once released by all its readers.
+ * </p>
+ */
+public class RandomAccessJarFile implements Closeable {
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final int CENTRAL_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final int ZIP64_MARKER = 0xFFFF;
+
+	/**
+	 * Estimated heap size of an entry of the central directory once parsed
+	 * (entry, name string and hash map node), in addition to its header.
+	 */
+	private static final int ENTRY_FOOTPRINT = 96;
+
+	/**
+	 * Local header, then compressed bytes of the entry being read by the current
+	 * thread, grown as needed.
+	 */
+	private static final ThreadLocal<byte[]> READ_BUFFERS = new ThreadLocal<byte[]>() {// NOSONAR java 8 compliance except lambda
+		@Override
+		protected byte[] initialValue() {
+			return new byte[8192];
+		}
+	};
+
+	private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {// NOSONAR java 8 compliance except lambda
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater(true);
+		}
+	};
+
+	private final Source archive;
+	private final HashMap<String, Entry> entries;
+	private final long footprint;
+
+	private int readers; // guarded by this
+	private boolean closed; // guarded by this
+
+	private RandomAccessJarFile(Source archive, HashMap<String, Entry> entries, long footprint) {
+		this.archive = archive;
+		this.entries = entries;
+		this.footprint = footprint;
+	}
+
+	/**
+	 * Opens the given JAR file and reads its central directory. The JAR file stays
+	 * open until {@link #close()} is called.
+	 *
+	 * @param file the JAR file
+	 * @return the JAR file, or <code>null</code> if it can't be read by random
+	 *         access (ZIP64 or malformed): it must be read with a
+	 *         {@link java.util.jar.JarFile}
+	 * @throws IOException if the JAR file can't be read
+	 */
+	public static @Nullable RandomAccessJarFile load(File file) throws IOException {
+		Path path = file.toPath();
+		assert (path != null);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		assert (channel != null);
+		RandomAccessJarFile jarFile = null;
+		try {
+			jarFile = open(new ChannelSource(path, channel));
+			return jarFile;
+		} finally {
+			if (jarFile == null) {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads a JAR file from the given buffer, for instance a JAR file nested in
+	 * another archive. The buffer is not copied.
+	 *
+	 * @param archive the content of the JAR file, from its position to its limit
+	 * @return the JAR file, or <code>null</code> if the content is not a JAR file
+	 *         that can be read (ZIP64 or malformed)
+	 */
+	public static @Nullable RandomAccessJarFile wrap(ByteBuffer archive) {
+		ByteBuffer buffer = archive.slice();
+		assert (buffer != null);
+		try {
+			return open(new BufferSource(buffer));
+		} catch (IOException e) {
+			return null; // truncated
+		}
+	}
+
+	private static @Nullable RandomAccessJarFile open(Source archive) throws IOException {
+		long size = archive.size();
+		if (size < END_SIZE) {
+			return null;
+		}
+		// the end of central directory record is followed by a comment
+		int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+		byte[] tail = new byte[tailSize];
+		long tailOffset = size - tailSize;
+		archive.read(tailOffset, tail, 0, tailSize);
+		ByteBuffer tailBuffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+		int end = tailSize - END_SIZE;
+		while (end >= 0 && tailBuffer.getInt(end) != END_SIGNATURE) {
+			--end;
+		}
+		if (end < 0) {
+			return null;
+		}
+		int count = tailBuffer.getShort(end + 10) & 0xFFFF;
+		long directorySize = tailBuffer.getInt(end + 12) & 0xFFFFFFFFL;
+		long directoryOffset = tailBuffer.getInt(end + 16) & 0xFFFFFFFFL;
+		long endOffset = tailOffset + end;
+		if (count == ZIP64_MARKER || directoryOffset + directorySize > endOffset) {
+			return null; // ZIP64 or malformed
+		}
+		byte[] directory = new byte[(int) directorySize];
+		archive.read(directoryOffset, directory, 0, directory.length);
+		HashMap<String, Entry> entries = readCentralDirectory(ByteBuffer.wrap(directory), count, directoryOffset);
+		return entries == null ? null
+				: new RandomAccessJarFile(archive, entries, directorySize + (long) count * ENTRY_FOOTPRINT);
+	}
+
+	private static @Nullable HashMap<String, Entry> readCentralDirectory(ByteBuffer directory, int count,
+			long directoryOffset) {
+		directory.order(ByteOrder.LITTLE_ENDIAN);
+		int end = directory.limit();
+		HashMap<String, Entry> entries = new HashMap<>(count * 2);
+		int position = 0;
+		for (int i = 0; i < count; ++i) {
+			if (position + CENTRAL_HEADER_SIZE > end || directory.getInt(position) != CENTRAL_SIGNATURE) {
+				return null;
+			}
+			int method = directory.getShort(position + 10) & 0xFFFF;
+			long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+			long size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+			int nameLength = directory.getShort(position + 28) & 0xFFFF;
+			int extraLength = directory.getShort(position + 30) & 0xFFFF;
+			int commentLength = directory.getShort(position + 32) & 0xFFFF;
+			long localHeaderOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+			if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE
+					|| localHeaderOffset >= directoryOffset || position + CENTRAL_HEADER_SIZE + nameLength > end) {
+				return null; // ZIP64 or malformed
+			}
+			String name = new String(directory.array(), position + CENTRAL_HEADER_SIZE, nameLength,
+					StandardCharsets.UTF_8);
+			entries.put(name, new Entry(method, (int) compressedSize, (int) size, localHeaderOffset));
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	/**
+	 * Tells whether the JAR file contains the given entry.
+	 *
+	 * @param name the entry name
+	 * @return <code>true</code> if the entry exists
+	 */
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Gets the names of the entries of the JAR file.
+	 *
+	 * @return the entries names
+	 */
+	public Set<String> getNames() {
+		Set<String> names = Collections.unmodifiableSet(entries.keySet());
+		assert (names != null);
+		return names;
+	}
+
+	/**
+	 * Gets the estimated heap size of this JAR file: its parsed central directory.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getFootprint() {
+		return footprint;
+	}
+
+	/**
+	 * Reads the content of the given entry.
+	 *
+	 * @param name the entry name
+	 * @return the content of the entry, or <code>null</code> if the entry doesn't
+	 *         exist
+	 * @throws IOException if the entry is malformed or compressed with another
+	 *                     method than deflate, or if the JAR file is closed
+	 */
+	public byte @Nullable [] read(String name) throws IOException {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			return null;
+		}
+		byte[] buffer = READ_BUFFERS.get();
+		long local = entry.localHeaderOffset;
+		archive.read(local, buffer, 0, LOCAL_HEADER_SIZE);
+		ByteBuffer header = ByteBuffer.wrap(buffer, 0, LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt(0) != LOCAL_SIGNATURE) {
+			throw new IOException("invalid local header: " + name);
+		}
+		long dataOffset = local + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF)
+				+ (header.getShort(28) & 0xFFFF);
+		if (dataOffset + entry.compressedSize > archive.size()) {
+			throw new IOException("truncated entry: " + name);
+		}
+		byte[] content = new byte[entry.size];
+		if (entry.method == STORED) {
+			archive.read(dataOffset, content, 0, content.length);
+		} else if (entry.method == DEFLATED) {
+			int compressedSize = entry.compressedSize;
+			if (buffer.length < compressedSize) {
+				buffer = new byte[Math.max(compressedSize, buffer.length * 2)];
+				READ_BUFFERS.set(buffer);
+			}
+			archive.read(dataOffset, buffer, 0, compressedSize);
+			inflate(buffer, compressedSize, content, name);
+		} else {
+			throw new IOException("unsupported compression method: " + name);
+		}
+		return content;
+	}
+
+	private static void inflate(byte[] input, int compressedSize, byte[] content, String name) throws IOException {
+		Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		inflater.setInput(input, 0, compressedSize);
+		try {
+			int length = 0;
+			while (length < content.length && !inflater.finished()) {
+				int inflated = inflater.inflate(content, length, content.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != content.length) {
+				throw new IOException("invalid entry size: " + name);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("invalid deflated entry: " + name, e);
+		}
+	}
+
+	/**
+	 * Registers a reader of this JAR file: it is not closed until the reader calls
+	 * {@link #release()}.
+	 *
+	 * @return <code>true</code> if the reader has been registered,
+	 *         <code>false</code> if the JAR file is already closed
+	 */
+	public synchronized boolean acquire() {
+		if (closed) {
+			return false;
+		}
+		++readers;
+		return true;
+	}
+
+	/**
+	 * Unregisters a reader registered by {@link #acquire()}, closes the JAR file if
+	 * it has been closed meanwhile.
+	 */
+	public synchronized void release() {
+		assert (readers > 0);
+		if (--readers == 0 && closed) {
+			closeArchive();
+		}
+	}
+
+	/**
+	 * Closes the JAR file, once released by its readers.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			if (readers == 0) {
+				closeArchive();
+			}
+		}
+	}
+
+	private void closeArchive() {
+		try {
+			archive.close();
+		} catch (IOException e) {
+			// nothing to do, the JAR file is not used anymore
+		}
+	}
+
+	/**
+	 * The bytes of the JAR file.
+	 */
+	private abstract static class Source {
+
+		abstract long size();
+
+		/**
+		 * Reads exactly the given number of bytes at the given position.
+		 */
+		abstract void read(long position, byte[] destination, int offset, int length) throws IOException;
+
+		void close() throws IOException {
+			// nothing to release by default
+		}
+	}
+
+	/**
+	 * A JAR file read from its channel. A thread interrupted while reading closes
+	 * the channel for all the threads: the channel is then opened again, unless it
+	 * has been closed by {@link #close()}.
+	 */
+	private static class ChannelSource extends Source {
+
+		private final Path path;
+		private final long size;
+		private volatile FileChannel channel;
+		private boolean closed; // guarded by this
+
+		ChannelSource(Path path, FileChannel channel) throws IOException {
+			this.path = path;
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		@Override
+		long size() {
+			return size;
+		}
+
+		@Override
+		void read(long position, byte[] destination, int offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(destination, offset, length);
+			long readPosition = position;
+			while (buffer.hasRemaining()) {
+				FileChannel localChannel = channel;
+				int read;
+				try {
+					// positional reads don't move the channel position: concurrent reads are safe
+					read = localChannel.read(buffer, readPosition);
+				} catch (ClosedByInterruptException e) {
+					reopen(localChannel);
+					throw e;
+				} catch (ClosedChannelException e) {
+					// closed by the interrupt of another thread
+					reopen(localChannel);
+					continue;
+				}
+				if (read < 0) {
+					throw new EOFException();
+				}
+				readPosition += read;
+			}
+		}
+
+		private synchronized void reopen(FileChannel closedChannel) throws IOException {
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+			if (channel == closedChannel) {
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+			}
+		}
+
+		@Override
+		synchronized void close() throws IOException {
+			closed = true;
+			channel.close();
+		}
+	}
+
+	private static class BufferSource extends Source {
+
+		private final ByteBuffer buffer;
+
+		BufferSource(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		long size() {
+			return buffer.limit();
+		}
+
+		@Override
+		void read(long position, byte[] destination, int offset, int length) throws IOException {
+			if (position + length > buffer.limit()) {
+				throw new EOFException();
+			}
+			ByteBuffer data = buffer.duplicate();
+			data.position((int) position);
+			data.get(destination, offset, length);
+		}
+	}
+
+	/**
+	 * An entry of the central directory.
+	 */
+	private static class Entry {
+
+		final int method;
+		final int compressedSize;
+		final int size;
+		final long localHeaderOffset;
+
+		Entry(int method, int compressedSize, int size, long localHeaderOffset) {
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.filesystem.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * <p>
+ * Read-only view of the class files of a ZIP file, such as a module repository
+ * or a class files archive, read in place without extracting them: the class
+ * files of the ZIP file itself and the class files of its nested JAR files.
+ * </p>
+ * <p>
+ * The central directory of the ZIP file is read once, and the ZIP file is
+ * mapped in memory once, by regions of at most 2 GB: each class file and nested
+ * JAR file is a slice of the region which contains it, so that the number of
+ * mappings doesn't grow with the number of entries. A stored JAR file is read
+ * straight from its slice. A deflated JAR file is inflated in memory
+ * when it is indexed or read, and may be inflated again after a garbage
+ * collection.
+ * </p>
+ * <p>
+ * The class files of the ZIP file are indexed first, then the class files of
+ * the nested JAR files in the order of the central directory: a class file
+ * available in several JAR files is read from the first one. The class files
+ * can be read concurrently.
+ * </p>
+ * <p>
+ * Only the ZIP files without ZIP64 records are read, nested JAR files larger
+ * than 2 GB or which can't be read are skipped.
+ * </p>
+ */
+public class RepositoryZipFile {
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final int CENTRAL_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final int ZIP64_MARKER = 0xFFFF;
+	private static final String JAR_EXT = ".jar";
+	private static final String CLASS_EXT = ".class";
+
+	/**
+	 * Distance between the starts of two consecutive mapped regions. The regions
+	 * are {@link #MAX_REGION_SIZE} long and overlap: an entry up to 1 GB is in the
+	 * region starting before its local header, a larger entry is mapped on its
+	 * own.
+	 */
+	private static final long REGION_STEP = 1L << 30;
+	private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * Size of the chunks of compressed bytes given to the inflater.
+	 */
+	private static final int INFLATE_CHUNK_SIZE = 64 * 1024;
+
+	private final List<NestedJarFile> jarFiles;
+
+	/**
+	 * Class file name to the class file of the ZIP file.
+	 */
+	private final LinkedHashMap<String, MappedEntry> topLevelClassfiles;
+
+	/**
+	 * Class file name to the first JAR file which contains it, for the class files
+	 * which are not in the ZIP file itself.
+	 */
+	private final LinkedHashMap<String, NestedJarFile> classfiles;
+
+	/**
+	 * Names of all the class files.
+	 */
+	private final Set<String> classfileNames;
+
+	private RepositoryZipFile(List<NestedJarFile> jarFiles, LinkedHashMap<String, MappedEntry> topLevelClassfiles,
+			LinkedHashMap<String, NestedJarFile> classfiles) {
+		this.jarFiles = jarFiles;
+		this.topLevelClassfiles = topLevelClassfiles;
+		this.classfiles = classfiles;
+		LinkedHashSet<String> names = new LinkedHashSet<>(topLevelClassfiles.keySet());
+		names.addAll(classfiles.keySet());
+		Set<String> unmodifiableNames = Collections.unmodifiableSet(names);
+		assert (unmodifiableNames != null);
+		this.classfileNames = unmodifiableNames;
+	}
+
+	/**
+	 * Opens the given ZIP file and indexes its class files and the class files of
+	 * its nested JAR files. Nothing is written to disk.
+	 *
+	 * @param file the ZIP file
+	 * @return the opened ZIP file
+	 * @throws IOException if the ZIP file can't be read (ZIP64 or malformed)
+	 */
+	public static RepositoryZipFile open(File file) throws IOException {
+		ArrayList<NestedJarFile> jarFiles = new ArrayList<>();
+		LinkedHashMap<String, MappedEntry> topLevelClassfiles = new LinkedHashMap<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer centralDirectory = readCentralDirectory(channel, file);
+			// the mappings stay valid once the channel is closed
+			ByteBuffer[] regions = mapRegions(channel);
+			while (centralDirectory.hasRemaining()) {
+				int position = centralDirectory.position();
+				if (centralDirectory.remaining() < CENTRAL_HEADER_SIZE
+						|| centralDirectory.getInt(position) != CENTRAL_SIGNATURE) {
+					throw new IOException("invalid central directory: " + file);
+				}
+				int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+				long compressedSize = centralDirectory.getInt(position + 20) & 0xFFFFFFFFL;
+				long size = centralDirectory.getInt(position + 24) & 0xFFFFFFFFL;
+				int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+				int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+				int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+				long localHeaderOffset = centralDirectory.getInt(position + 42) & 0xFFFFFFFFL;
+				byte[] nameBytes = new byte[nameLength];
+				centralDirectory.position(position + CENTRAL_HEADER_SIZE);
+				centralDirectory.get(nameBytes);
+				centralDirectory.position(position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+				String name = new String(nameBytes, StandardCharsets.UTF_8);
+				boolean jarFile = name.endsWith(JAR_EXT);
+				boolean classfile = name.endsWith(CLASS_EXT) && !topLevelClassfiles.containsKey(name);
+				if ((jarFile || classfile) && (method == STORED || method == DEFLATED)
+						&& compressedSize <= Integer.MAX_VALUE && size <= Integer.MAX_VALUE) {
+					ByteBuffer data = sliceData(channel, regions, localHeaderOffset, compressedSize);
+					if (data != null && jarFile) {
+						jarFiles.add(new NestedJarFile(name, method, data, (int) size));
+					} else if (data != null) {
+						topLevelClassfiles.put(name, new MappedEntry(name, method, data, (int) size));
+					}
+				}
+			}
+		}
+		LinkedHashMap<String, NestedJarFile> classfiles = new LinkedHashMap<>();
+		for (NestedJarFile jarFile : jarFiles) {
+			RandomAccessJarFile content = jarFile.getContent();
+			if (content == null) {
+				continue;
+			}
+			for (String name : content.getNames()) {
+				if (name.endsWith(CLASS_EXT) && !topLevelClassfiles.containsKey(name)
+						&& !classfiles.containsKey(name)) {
+					classfiles.put(name, jarFile);
+				}
+			}
+		}
+		return new RepositoryZipFile(jarFiles, topLevelClassfiles, classfiles);
+	}
+
+	private static ByteBuffer readCentralDirectory(FileChannel channel, File file) throws IOException {
+		long size = channel.size();
+		int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+		if (tailSize < END_SIZE) {
+			throw new IOException("not a ZIP file: " + file);
+		}
+		ByteBuffer tail = read(channel, size - tailSize, tailSize);
+		int end = tailSize - END_SIZE;
+		while (end >= 0 && tail.getInt(end) != END_SIGNATURE) {
+			--end;
+		}
+		if (end < 0) {
+			throw new IOException("not a ZIP file: " + file);
+		}
+		int count = tail.getShort(end + 10) & 0xFFFF;
+		long centralDirectorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+		long centralDirectoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+		if (count == ZIP64_MARKER || centralDirectoryOffset + centralDirectorySize > size - tailSize + end) {
+			throw new IOException("ZIP64 or malformed ZIP file: " + file);
+		}
+		return read(channel, centralDirectoryOffset, (int) centralDirectorySize);
+	}
+
+	/**
+	 * Maps the whole file by regions starting every {@link #REGION_STEP} bytes.
+	 */
+	private static ByteBuffer[] mapRegions(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int count = (int) ((size + REGION_STEP - 1) / REGION_STEP);
+		ByteBuffer[] regions = new ByteBuffer[count];
+		for (int i = 0; i < count; ++i) {
+			long start = i * REGION_STEP;
+			ByteBuffer region = channel.map(MapMode.READ_ONLY, start, Math.min(MAX_REGION_SIZE, size - start));
+			region.order(ByteOrder.LITTLE_ENDIAN);
+			regions[i] = region;
+		}
+		return regions;
+	}
+
+	/**
+	 * Slices the data of the entry which local header is at the given offset from
+	 * the mapped region which contains it.
+	 *
+	 * @return the data, or <code>null</code> if the local header is invalid
+	 */
+	private static @Nullable ByteBuffer sliceData(FileChannel channel, ByteBuffer[] regions, long localHeaderOffset,
+			long compressedSize) throws IOException {
+		int index = (int) (localHeaderOffset / REGION_STEP);
+		if (index >= regions.length) {
+			return null;
+		}
+		ByteBuffer region = regions[index];
+		long regionStart = index * REGION_STEP;
+		int localHeader = (int) (localHeaderOffset - regionStart);
+		if (localHeader + LOCAL_HEADER_SIZE > region.limit() || region.getInt(localHeader) != LOCAL_SIGNATURE) {
+			return null;
+		}
+		long dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE + (region.getShort(localHeader + 26) & 0xFFFF)
+				+ (region.getShort(localHeader + 28) & 0xFFFF);
+		if (dataOffset + compressedSize > channel.size()) {
+			return null;
+		}
+		if (dataOffset + compressedSize - regionStart > region.limit()) {
+			// larger than the overlap of the regions
+			return channel.map(MapMode.READ_ONLY, dataOffset, compressedSize);
+		}
+		ByteBuffer data = region.duplicate();
+		data.limit((int) (dataOffset + compressedSize - regionStart));
+		data.position((int) (dataOffset - regionStart));
+		return data.slice();
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("unexpected end of file");
+			}
+		}
+		buffer.flip();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * Gets the names of the nested JAR files, in the order of the central
+	 * directory.
+	 *
+	 * @return the JAR files names
+	 */
+	public List<String> getJarNames() {
+		ArrayList<String> names = new ArrayList<>();
+		for (NestedJarFile jarFile : jarFiles) {
+			names.add(jarFile.name);
+		}
+		return names;
+	}
+
+	/**
+	 * Gets the names of the class files of the ZIP file and of its nested JAR
+	 * files.
+	 *
+	 * @return the class files names, on the form a/b/C.class
+	 */
+	public Set<String> getClassfileNames() {
+		return classfileNames;
+	}
+
+	/**
+	 * Reads the given class file from the ZIP file, or else from the first nested
+	 * JAR file which contains it.
+	 *
+	 * @param classfileName the class file name, on the form a/b/C.class
+	 * @return the content of the class file, or <code>null</code> if it doesn't
+	 *         exist
+	 * @throws IOException if the class file can't be read
+	 */
+	public byte @Nullable [] read(String classfileName) throws IOException {
+		MappedEntry classfile = topLevelClassfiles.get(classfileName);
+		if (classfile != null) {
+			byte[] content = classfile.readData();
+			if (content == null) {
+				throw new IOException("invalid class file: " + classfileName);
+			}
+			return content;
+		}
+		NestedJarFile jarFile = classfiles.get(classfileName);
+		if (jarFile == null) {
+			return null;
+		}
+		RandomAccessJarFile content = jarFile.getContent();
+		if (content == null) {
+			throw new IOException("invalid nested JAR file: " + jarFile.name);
+		}
+		return content.read(classfileName);
+	}
+
+	/**
+	 * An entry of the ZIP file which data is a slice of the mapped ZIP file.
+	 */
+	private static class MappedEntry {
+
+		final String name;
+		final int method;
+
+		/**
+		 * The mapped data of the entry: its content if it is stored, its compressed
+		 * bytes if it is deflated.
+		 */
+		final ByteBuffer data;
+		final int size;
+
+		MappedEntry(String name, int method, ByteBuffer data, int size) {
+			this.name = name;
+			this.method = method;
+			this.data = data;
+			this.size = size;
+		}
+
+		/**
+		 * Reads the content of the entry, inflating it if needed.
+		 *
+		 * @return the content, or <code>null</code> if it can't be read
+		 */
+		byte @Nullable [] readData() {
+			if (method == STORED) {
+				ByteBuffer stored = data.duplicate();
+				if (stored.remaining() != size) {
+					return null;
+				}
+				byte[] content = new byte[size];
+				stored.get(content);
+				return content;
+			}
+			return inflate();
+		}
+
+		private byte @Nullable [] inflate() {
+			ByteBuffer compressed = data.duplicate();
+			byte[] content = new byte[size];
+			byte[] input = new byte[Math.min(INFLATE_CHUNK_SIZE, Math.max(1, compressed.remaining()))];
+			Inflater inflater = new Inflater(true);
+			try {
+				int length = 0;
+				while (length < content.length && !inflater.finished()) {
+					if (inflater.needsInput()) {
+						if (!compressed.hasRemaining()) {
+							break;
+						}
+						int chunk = Math.min(input.length, compressed.remaining());
+						compressed.get(input, 0, chunk);
+						inflater.setInput(input, 0, chunk);
+					}
+					int inflated = inflater.inflate(content, length, content.length - length);
+					if (inflated == 0 && inflater.needsDictionary()) {
+						break;
+					}
+					length += inflated;
+				}
+				return length == content.length ? content : null;
+			} catch (DataFormatException e) {
+				return null;
+			} finally {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * A JAR file nested in the ZIP file.
+	 */
+	private static class NestedJarFile extends MappedEntry {
+
+		private @Nullable RandomAccessJarFile stored;
+		private @Nullable SoftReference<RandomAccessJarFile> inflated;
+
+		NestedJarFile(String name, int method, ByteBuffer data, int size) {
+			super(name, method, data, size);
+		}
+
+		/**
+		 * Gets the content of the JAR file, inflating it if needed.
+		 *
+		 * @return the JAR file, or <code>null</code> if it can't be read
+		 */
+		synchronized @Nullable RandomAccessJarFile getContent() {
+			if (method == STORED) {
+				RandomAccessJarFile localStored = stored;
+				if (localStored == null) {
+					localStored = RandomAccessJarFile.wrap(data.duplicate());
+					stored = localStored;
+				}
+				return localStored;
+			}
+			SoftReference<RandomAccessJarFile> localInflated = inflated;
+			RandomAccessJarFile content = localInflated == null ? null : localInflated.get();
+			if (content == null) {
+				byte[] bytes = readData();
+				if (bytes == null) {
+					return null;
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				assert (buffer != null);
+				content = RandomAccessJarFile.wrap(buffer);
+				inflated = new SoftReference<>(content);
+			}
+			return content;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.microej.tool.dependencydiscoverer.analysis.DependencyDiscoverer;
 import com.microej.tool.dependencydiscoverer.analysis.FieldDependency;
 import com.microej.tool.dependencydiscoverer.analysis.MethodDependency;
 import com.microej.tool.dependencydiscoverer.analysis.TypeDependency;
@@ -35,6 +36,11 @@ public abstract class AbstractDependencyWriter implements IDependencyWriter {
 	 */
 	protected @Nullable List<MethodDependency> methodsDep;
 
+	/**
+	 * The provenance tracked by the analysis
+	 */
+	protected String provenance = DependencyDiscoverer.PROVENANCE_NONE;
+
 	@Override
 	public void setTypeDependencies(List<TypeDependency> deps) {
 		this.typesDep = deps;
@@ -49,4 +55,24 @@ public abstract class AbstractDependencyWriter implements IDependencyWriter {
 	public void setMethodDependencies(List<MethodDependency> deps) {
 		this.methodsDep = deps;
 	}
+
+	@Override
+	public void setProvenance(String provenance) {
+		this.provenance = provenance;
+	}
+
+	/**
+	 * @return {@code true} if the references to the dependencies are counted.
+	 */
+	protected boolean isHitsPrinted() {
+		return isCallersPrinted() || DependencyDiscoverer.PROVENANCE_COUNT.equals(provenance);
+	}
+
+	/**
+	 * @return {@code true} if the users and callers of the dependencies are
+	 *         tracked.
+	 */
+	protected boolean isCallersPrinted() {
+		return DependencyDiscoverer.PROVENANCE_FULL.equals(provenance);
+	}
 }
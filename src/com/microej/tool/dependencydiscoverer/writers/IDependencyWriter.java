@@ -48,4 +48,13 @@ public interface IDependencyWriter {
 	 * @param methodsRef
 	 */
 	public void setMethodDependencies(List<MethodDependency> methodsRef);
+
+	/**
+	 * Sets the provenance tracked by the analysis, printed with each dependency.
+	 *
+	 * @param provenance <code>none</code>, <code>count</code> (references
+	 *                   counters) or <code>full</code> (counters, users and
+	 *                   callers).
+	 */
+	public void setProvenance(String provenance);
 }
@@ -7,9 +7,12 @@
 package com.microej.tool.dependencydiscoverer.writers;
 
 import java.io.PrintStream;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.microej.tool.dependencydiscoverer.analysis.Dependency;
+
 /**
  * A dependency writer that will save the result in a .json file with an json
  * formating
@@ -26,14 +29,26 @@ public class JsonDependencyWriter extends ProcessedDependencyWriter {
 	}
 
 	@Override
-	protected void writeElementWithAttributeName(PrintStream out, String element, String attributeName) {
+	protected void writeElementWithAttributeName(PrintStream out, String element, String attributeName,
+			Dependency dep) {
 		writeElementStart(out, element);
 		if (this.comaToWrite) {
 			writeComma(out);
 		}
 
 		out.println("\t\t\t{");
-		out.println("\t\t\t\t\"name\":\"" + attributeName + "\"");
+		out.print("\t\t\t\t\"name\":\"" + attributeName + "\"");
+		if (isHitsPrinted()) {
+			out.println(",");
+			out.print("\t\t\t\t\"references\":" + dep.getHits());
+		}
+		if (isCallersPrinted()) {
+			out.println(",");
+			writeArray(out, "users", getUserNames(dep));
+			out.println(",");
+			writeArray(out, "callers", getCallerNames(dep));
+		}
+		out.println();
 		out.print("\t\t\t}");
 
 		this.comaToWrite = true;
@@ -71,6 +86,17 @@ public class JsonDependencyWriter extends ProcessedDependencyWriter {
 		}
 	}
 
+	private static void writeArray(PrintStream out, String key, List<String> names) {
+		out.print("\t\t\t\t\"" + key + "\":[");
+		for (int i = 0; i < names.size(); i++) {
+			if (i > 0) {
+				out.print(",");
+			}
+			out.print("\"" + names.get(i) + "\"");
+		}
+		out.print("]");
+	}
+
 	private void writeComma(PrintStream out) {
 		comaToWrite = false;
 		out.println(",");
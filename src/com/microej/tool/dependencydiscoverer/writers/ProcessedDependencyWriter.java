@@ -7,7 +7,10 @@
 package com.microej.tool.dependencydiscoverer.writers;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
+import com.microej.tool.dependencydiscoverer.analysis.Dependency;
 import com.microej.tool.dependencydiscoverer.analysis.FieldDependency;
 import com.microej.tool.dependencydiscoverer.analysis.MethodDependency;
 import com.microej.tool.dependencydiscoverer.analysis.MethodReference;
@@ -33,7 +36,7 @@ public abstract class ProcessedDependencyWriter extends AbstractDependencyWriter
 		for (TypeDependency dep : typesDep) {
 			if (dep.isNotFound()) {
 				String serialType = JavaDescriptorSerializer.serializeFullTypeName(dep.getName());
-				writeElementWithAttributeName(out, TYPE, serialType);
+				writeElementWithAttributeName(out, TYPE, serialType, dep);
 			}
 		}
 
@@ -42,7 +45,7 @@ public abstract class ProcessedDependencyWriter extends AbstractDependencyWriter
 			if (dep.isNotFound()) {
 				String serialField = JavaDescriptorSerializer.serializeField(dep.getFieldReference().getTypeName(),
 						dep.getFieldReference().getFieldName());
-				writeElementWithAttributeName(out, FIELD, serialField);
+				writeElementWithAttributeName(out, FIELD, serialField, dep);
 			}
 		}
 
@@ -52,7 +55,7 @@ public abstract class ProcessedDependencyWriter extends AbstractDependencyWriter
 				MethodReference ref = dep.getMethodRef();
 				String serialMethod = JavaDescriptorSerializer.serializeMethodTypePrintableDescriptor(ref.getOwner(), ref.getName(),
 						ref.getDescriptor());
-				writeElementWithAttributeName(out, METHOD, serialMethod);
+				writeElementWithAttributeName(out, METHOD, serialMethod, dep);
 
 			}
 		}
@@ -63,7 +66,7 @@ public abstract class ProcessedDependencyWriter extends AbstractDependencyWriter
 				MethodReference ref = dep.getMethodRef();
 				String serialMethod = JavaDescriptorSerializer.serializeMethodTypePrintableDescriptor(ref.getOwner(), ref.getName(),
 						ref.getDescriptor());
-				writeElementWithAttributeName(out, NATIVE, serialMethod);
+				writeElementWithAttributeName(out, NATIVE, serialMethod, dep);
 			}
 		}
 
@@ -89,8 +92,43 @@ public abstract class ProcessedDependencyWriter extends AbstractDependencyWriter
 	 *                      {@link ProcessedDependencyWriter#NATIVE} or
 	 *                      {@link ProcessedDependencyWriter#TYPE}.
 	 * @param attributeName formatted name of the dependency.
+	 * @param dep           the dependency, to write its provenance.
 	 */
-	protected abstract void writeElementWithAttributeName(PrintStream out, String element, String attributeName);
+	protected abstract void writeElementWithAttributeName(PrintStream out, String element, String attributeName,
+			Dependency dep);
+
+	/**
+	 * Gets the formatted names of the classes that use the given dependency.
+	 *
+	 * @param dep the dependency.
+	 * @return the names, empty if the users are not tracked.
+	 */
+	protected List<String> getUserNames(Dependency dep) {
+		ArrayList<String> names = new ArrayList<>();
+		if (isCallersPrinted()) {
+			for (String user : dep.getUsers()) {
+				names.add(JavaDescriptorSerializer.serializeFullTypeName(user));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Gets the formatted names of the methods that call the given dependency.
+	 *
+	 * @param dep the dependency.
+	 * @return the names, empty if the callers are not tracked.
+	 */
+	protected List<String> getCallerNames(Dependency dep) {
+		ArrayList<String> names = new ArrayList<>();
+		if (isCallersPrinted()) {
+			for (MethodReference caller : dep.getCallers()) {
+				names.add(JavaDescriptorSerializer.serializeMethodTypePrintableDescriptor(caller.getOwner(),
+						caller.getName(), caller.getDescriptor()));
+			}
+		}
+		return names;
+	}
 
 	/**
 	 * Write the end element of the implemented format on the given output stream.
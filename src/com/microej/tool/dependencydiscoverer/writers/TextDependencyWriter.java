@@ -8,8 +8,10 @@ package com.microej.tool.dependencydiscoverer.writers;
 
 import java.io.PrintStream;
 
+import com.microej.tool.dependencydiscoverer.analysis.Dependency;
 import com.microej.tool.dependencydiscoverer.analysis.FieldDependency;
 import com.microej.tool.dependencydiscoverer.analysis.MethodDependency;
+import com.microej.tool.dependencydiscoverer.analysis.MethodReference;
 import com.microej.tool.dependencydiscoverer.analysis.TypeDependency;
 
 /**
@@ -24,6 +26,7 @@ public class TextDependencyWriter extends AbstractDependencyWriter {
 		for (TypeDependency dep : typesDep) {
 			if (dep.isNotFound()) {
 				out.println(dep.getName());
+				writeProvenance(out, dep);
 			}
 		}
 
@@ -33,6 +36,7 @@ public class TextDependencyWriter extends AbstractDependencyWriter {
 			if (dep.isNotFound()) {
 				out.println(new StringBuilder().append(dep.getFieldReference().getTypeName()).append('.')
 						.append(dep.getFieldReference().getFieldName()));
+				writeProvenance(out, dep);
 			}
 		}
 
@@ -41,6 +45,7 @@ public class TextDependencyWriter extends AbstractDependencyWriter {
 		for (MethodDependency dep : methodsDep) {
 			if (dep.isNotFound()) {
 				out.println(dep.getMethodRef());
+				writeProvenance(out, dep);
 			}
 		}
 
@@ -49,8 +54,26 @@ public class TextDependencyWriter extends AbstractDependencyWriter {
 		for (MethodDependency dep : methodsDep) {
 			if (dep.isNative()) {
 				out.println(new StringBuilder("[NATIVE] ").append(dep.getMethodRef()));
+				writeProvenance(out, dep);
 			}
 		}
 
 	}
+
+	/**
+	 * Prints the provenance of the given dependency on indented lines below it.
+	 */
+	private void writeProvenance(PrintStream out, Dependency dep) {
+		if (isHitsPrinted()) {
+			out.println("\treferences: " + dep.getHits());
+		}
+		if (isCallersPrinted()) {
+			for (String user : dep.getUsers()) {
+				out.println("\tused by: " + user);
+			}
+			for (MethodReference caller : dep.getCallers()) {
+				out.println("\tcalled by: " + caller);
+			}
+		}
+	}
 }
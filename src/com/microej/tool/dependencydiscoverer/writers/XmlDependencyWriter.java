@@ -7,6 +7,9 @@
 package com.microej.tool.dependencydiscoverer.writers;
 
 import java.io.PrintStream;
+import java.util.List;
+
+import com.microej.tool.dependencydiscoverer.analysis.Dependency;
 
 /**
  * A dependency writer that will save the result in a .xml file with an xml
@@ -15,6 +18,8 @@ import java.io.PrintStream;
 public class XmlDependencyWriter extends ProcessedDependencyWriter {
 
 	private static final String XML_DESCRIPTION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+	private static final String USER = "user";
+	private static final String CALLER = "caller";
 
 	@Override
 	protected void writeStartElement(PrintStream out, String key) {
@@ -23,8 +28,26 @@ public class XmlDependencyWriter extends ProcessedDependencyWriter {
 	}
 
 	@Override
-	protected void writeElementWithAttributeName(PrintStream out, String element, String attributeName) {
-		out.println("\t<" + element + " name=\"" + attributeName + "\"/>");
+	protected void writeElementWithAttributeName(PrintStream out, String element, String attributeName,
+			Dependency dep) {
+		out.print("\t<" + element + " name=\"" + attributeName + "\"");
+		if (isHitsPrinted()) {
+			out.print(" references=\"" + dep.getHits() + "\"");
+		}
+		List<String> users = getUserNames(dep);
+		List<String> callers = getCallerNames(dep);
+		if (users.isEmpty() && callers.isEmpty()) {
+			out.println("/>");
+			return;
+		}
+		out.println(">");
+		for (String user : users) {
+			out.println("\t\t<" + USER + " name=\"" + user + "\"/>");
+		}
+		for (String caller : callers) {
+			out.println("\t\t<" + CALLER + " name=\"" + caller + "\"/>");
+		}
+		out.println("\t</" + element + ">");
 	}
 
 	@Override
@@ -11,10 +11,12 @@ import org.junit.experimental.categories.Categories.ExcludeCategory;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.microej.tool.dependencydiscoverer.analysis.TestsSymbolTable;
+
 @RunWith(Categories.class)
 @ExcludeCategory(IgnoredTest.class)
 @SuiteClasses({ Tests.class, TestsXml.class, TestsXmlWriter.class, TestsJsonWriter.class, TestsCLI.class,
-	TestsClassfinder.class, TestModuleInfo.class })
+	TestsClassfinder.class, TestModuleInfo.class, TestsSymbolTable.class })
 public class BuildTestSuite {
 
 }
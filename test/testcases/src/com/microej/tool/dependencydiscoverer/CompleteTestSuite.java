@@ -10,9 +10,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.microej.tool.dependencydiscoverer.analysis.TestsSymbolTable;
+
 @RunWith(Suite.class)
 @SuiteClasses({ Tests.class, TestsXml.class, TestsXmlWriter.class, TestsJsonWriter.class, TestsCLI.class,
-	TestsClassfinder.class, TestModuleInfo.class })
+	TestsClassfinder.class, TestModuleInfo.class, TestsSymbolTable.class })
 public class CompleteTestSuite {
 
 }
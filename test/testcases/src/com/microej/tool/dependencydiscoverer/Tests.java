@@ -9,19 +9,26 @@ package com.microej.tool.dependencydiscoverer;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.util.ArrayList;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import com.microej.tool.dependencydiscoverer.DependencyDiscovererError.ErrorMessageConstants;
 import com.microej.tool.dependencydiscoverer.error.ErrorDescription;
 import com.microej.tool.dependencydiscoverer.error.ErrorTaskContainer;
+import com.microej.tool.dependencydiscoverer.filesystem.FileUtils;
 
 
 public class Tests {
@@ -30,6 +37,8 @@ public class Tests {
 
 	public String classpath;
 	public String againstClasspath;
+	public boolean waves;
+	public int prefetchThreads;
 
 	@Before
 	public void setup(){
@@ -127,6 +136,11 @@ public class Tests {
 		testEntryPointDoesNotExist("a*");
 	}
 
+	@Test
+	public void testMethodEntryPointDoesNotExist(){
+		testEntryPointDoesNotExist(PACKAGE+"Dep2#bar");
+	}
+
 	public void testEntryPointOK(String ep){
 		runDep(ep);
 	}
@@ -175,6 +189,27 @@ public class Tests {
 	}
 
 	public String runDep(String ep){
+		return runDep(ep, DependencyDiscovererDefaultOptions.THREADS);
+	}
+
+	public String runDep(String ep, int threads){
+		return runDep(ep, threads, DependencyDiscovererDefaultOptions.STREAMING);
+	}
+
+	public String runDep(String ep, int threads, boolean streaming){
+		return runDep(ep, threads, streaming, DependencyDiscovererDefaultOptions.PROVENANCE);
+	}
+
+	public String runDep(String ep, int threads, boolean streaming, String provenance){
+		return runDep(ep, threads, streaming, provenance, null);
+	}
+
+	public String runDep(String ep, int threads, boolean streaming, String provenance, String stateFile){
+		return runDep(ep, threads, streaming, provenance, stateFile, null);
+	}
+
+	public String runDep(String ep, int threads, boolean streaming, String provenance, String stateFile,
+			String summariesDir){
 		File f;
 		try {
 			f = File.createTempFile("ddtests", ".output");
@@ -186,6 +221,17 @@ public class Tests {
 		dd.setAgainstClasspath(againstClasspath);
 		dd.setClasspath(classpath);
 		dd.setEntryPoints(ep);
+		dd.setThreads(threads);
+		dd.setStreaming(streaming);
+		dd.setWaves(waves);
+		dd.setPrefetchThreads(prefetchThreads);
+		dd.setProvenance(provenance);
+		if (stateFile != null) {
+			dd.setStateFile(stateFile);
+		}
+		if (summariesDir != null) {
+			dd.setSummariesDir(summariesDir);
+		}
 		dd.execute();
 
 		FileInputStream fis = null;
@@ -234,6 +280,353 @@ public class Tests {
 		testEntryPointOK("*");
 	}
 
+	@Test
+	public void testParallelAnalysis(){
+		String sequentialResult = runDep("*");
+		Assert.assertFalse(sequentialResult.isEmpty());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(sequentialResult, runDep("*", 4));
+		}
+	}
+
+	@Test
+	public void testProvenance() throws IOException{
+		String result = runDep("*");
+		Assert.assertFalse(result.isEmpty());
+		// the provenance is printed on indented lines below each dependency
+		String count = runDep("*", 1, false, "count");
+		String full = runDep("*", 1, false, "full");
+		Assert.assertEquals(result, removeIndentedLines(count));
+		Assert.assertEquals(result, removeIndentedLines(full));
+		Assert.assertEquals(full, runDep("*", 4, false, "full"));
+
+		String eol = System.lineSeparator();
+		String field = "java/lang/System.out" + eol + "\treferences: 1" + eol;
+		Assert.assertTrue(count, count.contains(field + "com/"));
+		Assert.assertTrue(full, full.contains(field
+				+ "\tcalled by: com/microej/tool/dependencydiscoverer/test/paths/DepField1.foo()V" + eol));
+		Assert.assertTrue(full, full.contains("com/microej/tool/dependencydiscoverer/test/paths/Foo" + eol
+				+ "\treferences: 5" + eol + "\tused by: com/microej/tool/dependencydiscoverer/test/paths/DepOverride" + eol));
+
+		// the state file is not replayed: its references have no provenance
+		File stateFile = File.createTempFile("ddtests", ".state");
+		stateFile.delete();
+		try {
+			String state = stateFile.getAbsolutePath();
+			runDep("*", 1, false, DependencyDiscovererDefaultOptions.PROVENANCE, state);
+			Assert.assertEquals(full, runDep("*", 1, false, "full", state));
+		} finally {
+			stateFile.delete();
+		}
+	}
+
+	private static String removeIndentedLines(String content) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : content.split(System.lineSeparator())) {
+			if (!line.startsWith("\t")) {
+				sb.append(line).append(System.lineSeparator());
+			}
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testMemberResolutions() throws IOException{
+		File resolutionClasspath = Files.createTempDirectory("ddtests").toFile();
+		File resolutionDir = new File(resolutionClasspath, "resolution");
+		Assert.assertTrue(resolutionDir.mkdirs());
+		String initialClasspath = classpath;
+		classpath = classpath + File.pathSeparator + resolutionClasspath.getAbsolutePath();
+		try {
+			// Sub extends Base, Sub declares foo() and the f field, none declares bar() nor g
+			writeClass(resolutionDir, newClass("resolution/Base", "java/lang/Object", false));
+			ClassWriter sub = newClass("resolution/Sub", "resolution/Base", false);
+			addMethod(sub, Opcodes.ACC_PUBLIC, "foo", "java/lang/System", "gc");
+			sub.visitField(Opcodes.ACC_PUBLIC, "f", "I", null, null).visitEnd();
+			writeClass(resolutionDir, sub);
+			// Impl implements I, which declares a default method and a static method
+			ClassWriter itf = newClass("resolution/I", "java/lang/Object", true);
+			addMethod(itf, Opcodes.ACC_PUBLIC, "d", "java/lang/System", "runFinalization");
+			addMethod(itf, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "s", "java/lang/Thread", "yield");
+			writeClass(resolutionDir, itf);
+			writeClass(resolutionDir, newClass("resolution/Impl", "java/lang/Object", false, "resolution/I"));
+
+			ClassWriter baseFirst = newClass("resolution/BaseFirst", "java/lang/Object", false);
+			addReferences(baseFirst, "resolution/Base", "resolution/Sub");
+			writeClass(resolutionDir, baseFirst);
+			ClassWriter subFirst = newClass("resolution/SubFirst", "java/lang/Object", false);
+			addReferences(subFirst, "resolution/Sub", "resolution/Base");
+			writeClass(resolutionDir, subFirst);
+			ClassWriter defaults = newClass("resolution/Defaults", "java/lang/Object", false);
+			MethodVisitor mv = defaults.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+			mv.visitCode();
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "resolution/Impl", "d", "()V", false);
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "resolution/I", "d", "()V", true);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, "resolution/I", "s", "()V", true);
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+			writeClass(resolutionDir, defaults);
+
+			// a member not found from Base is cached as not found for Base: it is
+			// still found in Sub, and the members missing from both are looked up in the
+			// first super class out of the classpath
+			String[] expected = { "java/lang/Object", "java/lang/System", "resolution/Base.f", "resolution/Base.g",
+					"resolution/Sub.g", "java/lang/Object.bar()V", "java/lang/Object.foo()V",
+					"java/lang/System.gc()V" };
+			runDep("resolution.BaseFirst", expected);
+			runDep("resolution.SubFirst", expected);
+			String result = runDep("resolution.BaseFirst");
+			Assert.assertEquals(result, runDep("resolution.BaseFirst", 4));
+			Assert.assertEquals(result, removeIndentedLines(runDep("resolution.BaseFirst", 1, false, "count")));
+			Assert.assertEquals(result, removeIndentedLines(runDep("resolution.BaseFirst", 4, false, "count")));
+
+			// the default method is resolved from the implementation and from the interface
+			runDep("resolution.Defaults", new String[] { "java/lang/Object", "java/lang/System", "java/lang/Thread",
+					"java/lang/System.runFinalization()V", "java/lang/Thread.yield()V" });
+			result = runDep("resolution.Defaults");
+			Assert.assertEquals(result, removeIndentedLines(runDep("resolution.Defaults", 4, false, "count")));
+		} finally {
+			classpath = initialClasspath;
+			FileUtils.deleteFolder(resolutionClasspath);
+		}
+	}
+
+	private static ClassWriter newClass(String name, String superName, boolean isInterface, String... interfaces) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		int access = Opcodes.ACC_PUBLIC | (isInterface ? Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT : 0);
+		cw.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+		return cw;
+	}
+
+	/**
+	 * Adds a method which calls the given static method.
+	 */
+	private static void addMethod(ClassWriter cw, int access, String name, String owner, String calledName) {
+		MethodVisitor mv = cw.visitMethod(access, name, "()V", null, null);
+		mv.visitCode();
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, owner, calledName, "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * Adds a static method which references the foo() and bar() methods and the f
+	 * and g fields of each given class, in this order.
+	 */
+	private static void addReferences(ClassWriter cw, String... owners) {
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+		mv.visitCode();
+		for (String owner : owners) {
+			for (String name : new String[] { "foo", "bar" }) {
+				mv.visitInsn(Opcodes.ACONST_NULL);
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, name, "()V", false);
+			}
+			for (String name : new String[] { "f", "g" }) {
+				mv.visitInsn(Opcodes.ACONST_NULL);
+				mv.visitFieldInsn(Opcodes.GETFIELD, owner, name, "I");
+				mv.visitInsn(Opcodes.POP);
+			}
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void writeClass(File dir, ClassWriter cw) throws IOException {
+		cw.visitEnd();
+		byte[] content = cw.toByteArray();
+		String name = new ClassReader(content).getClassName();
+		Files.write(new File(dir, name.substring(name.lastIndexOf('/') + 1) + ".class").toPath(), content);
+	}
+
+	@Test
+	public void testIncrementalAnalysis() throws IOException{
+		File stateFile = File.createTempFile("ddtests", ".state");
+		stateFile.delete();
+		String state = stateFile.getAbsolutePath();
+		String provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+		try {
+			String result = runDep("*");
+			Assert.assertFalse(result.isEmpty());
+			// first run: all the methods are analyzed
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, state));
+			Assert.assertTrue(stateFile.isFile());
+			// next runs: the references of the unchanged classes are replayed
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, state));
+			// the state file is not replayed when the provenance is tracked
+			Assert.assertEquals(runDep("*", 1, false, "full"), runDep("*", 4, false, "full", state));
+			Assert.assertEquals(runDep(PACKAGE+"A"), runDep(PACKAGE+"A", 1, false, provenance, state));
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, state));
+		} finally {
+			stateFile.delete();
+		}
+	}
+
+	@Test
+	public void testIncrementalAnalysisModifiedClass() throws IOException{
+		File stateFile = File.createTempFile("ddtests", ".state");
+		stateFile.delete();
+		String state = stateFile.getAbsolutePath();
+		String provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+		File changedClasspath = Files.createTempDirectory("ddtests").toFile();
+		File classfile = new File(changedClasspath, "incremental/Changed.class");
+		Assert.assertTrue(classfile.getParentFile().mkdirs());
+		String initialClasspath = classpath;
+		classpath = classpath + File.pathSeparator + changedClasspath.getAbsolutePath();
+		try {
+			Files.write(classfile.toPath(), getChangedClass(false));
+			String result = runDep("incremental.Changed");
+			Assert.assertEquals(result, runDep("incremental.Changed", 1, false, provenance, state));
+
+			// the class is rewritten: its code is read again
+			long lastModified = classfile.lastModified();
+			Files.write(classfile.toPath(), getChangedClass(true));
+			Assert.assertTrue(classfile.setLastModified(lastModified + 10000));
+			String changedResult = runDep("incremental.Changed");
+			Assert.assertNotEquals(result, changedResult);
+			Assert.assertEquals(changedResult, runDep("incremental.Changed", 1, false, provenance, state));
+
+			// the class is touched without being changed: its references are replayed
+			Assert.assertTrue(classfile.setLastModified(lastModified + 20000));
+			Assert.assertEquals(changedResult, runDep("incremental.Changed", 1, false, provenance, state));
+			Assert.assertEquals(changedResult, runDep("incremental.Changed", 4, false, provenance, state));
+		} finally {
+			classpath = initialClasspath;
+			stateFile.delete();
+			FileUtils.deleteFolder(changedClasspath);
+		}
+	}
+
+	/**
+	 * Generates a class which method calls {@code Dep2.foo()}, or else creates a
+	 * {@code Dep2}.
+	 */
+	private static byte[] getChangedClass(boolean changed) {
+		String dep2 = PACKAGE.replace('.', '/') + "Dep2";
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "incremental/Changed", null, "java/lang/Object", null);
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+		mv.visitCode();
+		if (changed) {
+			mv.visitTypeInsn(Opcodes.NEW, dep2);
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, dep2, "<init>", "()V", false);
+			mv.visitInsn(Opcodes.POP);
+		} else {
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, dep2, "foo", "()V", false);
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	@Test
+	public void testJarSummaries() throws IOException{
+		File summariesDir = Files.createTempDirectory("ddtests").toFile();
+		String summaries = summariesDir.getAbsolutePath();
+		String provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+		try {
+			String result = runDep("*");
+			Assert.assertFalse(result.isEmpty());
+			// first run: the JAR files are summarized
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, null, summaries));
+			// next runs: the summaries are loaded from the cache
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, null, summaries));
+			// the summaries are not replayed when the provenance is tracked
+			Assert.assertEquals(runDep("*", 1, false, "full"), runDep("*", 4, false, "full", null, summaries));
+			Assert.assertEquals(runDep(PACKAGE+"A"), runDep(PACKAGE+"A", 1, false, provenance, null, summaries));
+		} finally {
+			FileUtils.deleteFolder(summariesDir);
+		}
+	}
+
+	@Test
+	public void testMethodEntryPoints(){
+		runDep(PACKAGE+"Dep2#<init>", new String[]{"java/lang/Object", "java/lang/Object.<init>()V"});
+		Assert.assertEquals(runDep(PACKAGE+"Dep2"), runDep(PACKAGE+"Dep2#foo()V"));
+		Assert.assertEquals(runDep(PACKAGE+"Dep2"), runDep(PACKAGE+"Dep2#foo,"+PACKAGE+"Dep2#<init>()V"));
+		Assert.assertEquals(runDep(PACKAGE+"Dep2"), runDep(PACKAGE+"Dep2#foo()V,"+PACKAGE+"Dep2"));
+	}
+
+	@Test
+	public void testServicesEntryPoints() throws IOException{
+		File servicesClasspath = Files.createTempDirectory("ddtests").toFile();
+		File servicesDir = new File(servicesClasspath, "META-INF/services");
+		Assert.assertTrue(servicesDir.mkdirs());
+		FileOutputStream out = new FileOutputStream(new File(servicesDir, "java.lang.Runnable"));
+		try {
+			out.write((PACKAGE+"Dep2\n").getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		String expected = runDep(PACKAGE+"Dep2");
+		String initialClasspath = classpath;
+		classpath = classpath + File.pathSeparator + servicesClasspath.getAbsolutePath();
+		try {
+			Assert.assertEquals(expected, runDep("META-INF/services"));
+		} finally {
+			classpath = initialClasspath;
+			FileUtils.deleteFolder(servicesClasspath);
+		}
+	}
+
+	@Test
+	public void testStreamingAnalysis(){
+		String result = runDep("*");
+		Assert.assertFalse(result.isEmpty());
+		Assert.assertEquals(result, runDep("*", 1, true));
+		Assert.assertEquals(result, runDep("*", 4, true));
+		Assert.assertEquals(runDep(PACKAGE+"A"), runDep(PACKAGE+"A", 1, true));
+	}
+
+	@Test
+	public void testWaves() throws IOException{
+		String result = runDep("*");
+		String resultA = runDep(PACKAGE+"A");
+		String full = runDep("*", 1, false, "full");
+		Assert.assertFalse(result.isEmpty());
+		String provenance = DependencyDiscovererDefaultOptions.PROVENANCE;
+		File summariesDir = Files.createTempDirectory("ddtests").toFile();
+		waves = true;
+		try {
+			Assert.assertEquals(result, runDep("*"));
+			Assert.assertEquals(result, runDep("*", 1, true));
+			Assert.assertEquals(full, runDep("*", 1, false, "full"));
+			Assert.assertEquals(result, runDep("*", 1, false, provenance, null, summariesDir.getAbsolutePath()));
+			Assert.assertEquals(resultA, runDep(PACKAGE+"A"));
+		} finally {
+			waves = false;
+			FileUtils.deleteFolder(summariesDir);
+		}
+	}
+
+	@Test
+	public void testPrefetch(){
+		String result = runDep("*");
+		String resultA = runDep(PACKAGE+"A");
+		String full = runDep("*", 1, false, "full");
+		Assert.assertFalse(result.isEmpty());
+		prefetchThreads = 2;
+		try {
+			Assert.assertEquals(result, runDep("*"));
+			Assert.assertEquals(result, runDep("*", 4));
+			Assert.assertEquals(full, runDep("*", 1, true, "full"));
+			Assert.assertEquals(resultA, runDep(PACKAGE+"A"));
+			waves = true;
+			Assert.assertEquals(result, runDep("*"));
+		} finally {
+			prefetchThreads = 0;
+			waves = false;
+		}
+	}
+
 	@Test
 	public void testDep1(){
 		runDep(PACKAGE+"Dep1", new String[]{"java/lang/Object", "java/lang/Object.<init>()V"});
@@ -158,6 +158,12 @@ public class TestsCLI {
 		runTestOnOptions(arguments, optionsList);
 	}
 
+	@Test
+	public void provenanceOptionInvalid() {
+		String[] arguments = new String[] { REPOSITORY_URL, "none", "-D", projectDirPath, "--provenance", "all" };
+		Assert.assertEquals(CommandLine.ExitCode.USAGE, runTestRedirectedLogs(arguments));
+	}
+
 	@Test
 	public void cleanCacheOption() {
 		new File(cacheDirPath).mkdirs();
@@ -210,6 +216,113 @@ public class TestsCLI {
 				new String[] { new File(ddCLI.getOptions().getAgainstClasspath()).getName() });
 	}
 
+	@Test
+	public void useProvidedRepoZipIndexFile() {
+		File testDir = new File(cacheDirPath, "testDir");
+		File testJarInDir = new File(testDir, "testZip.jar");
+		File testZipInDir = new File(testDir, "testZip.zip");
+		File fileToZip = new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class");
+
+		Assert.assertTrue(testDir.mkdir());
+		Assert.assertTrue(wrapInZip(fileToZip, testJarInDir));
+		Assert.assertTrue(wrapInZip(testJarInDir, testZipInDir));
+		new File(projectDirPath, "classpath").mkdirs();
+
+		String[] arguments = new String[] { "-D", projectDirPath, CACHE_DIR, testDir.getPath(),
+				"--repository-file",
+				testZipInDir.getPath() };
+
+		runTestRedirectedLogs(arguments);
+		// the JAR files entries are persisted next to the unzipped repository
+		Assert.assertTrue(new File(ddCLI.getOptions().getIndexFile()).isFile());
+	}
+
+	@Test
+	public void useProvidedRepoZipInPlace() {
+		File testDir = new File(cacheDirPath, "testDir");
+		File testJarInDir = new File(testDir, "testZip.jar");
+		File testZipInDir = new File(testDir, "testZip.zip");
+		File fileToZip = new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class");
+
+		Assert.assertTrue(testDir.mkdir());
+		Assert.assertTrue(wrapInZip(fileToZip, testJarInDir));
+		Assert.assertTrue(wrapInZip(testJarInDir, testZipInDir));
+
+		String[] arguments = new String[] { "-D", projectDirPath, CACHE_DIR, testDir.getPath(),
+				"--repository-file", testZipInDir.getPath(), "--repository-in-place" };
+
+		runTestRedirectedLogs(arguments);
+		// the ZIP file is the classpath entry
+		performAssertion(new String[] { "testZip.zip" },
+				new String[] { new File(ddCLI.getOptions().getAgainstClasspath()).getName() });
+	}
+
+	@Test
+	public void useProvidedRepoZipInPlaceLatestOnly() {
+		File testDir = new File(cacheDirPath, "testDir");
+		File testJarInDir = new File(testDir, "testZip.jar");
+		File testZipInDir = new File(testDir, "testZip.zip");
+		File fileToZip = new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class");
+
+		Assert.assertTrue(testDir.mkdir());
+		Assert.assertTrue(wrapInZip(fileToZip, testJarInDir));
+		Assert.assertTrue(wrapInZip(testJarInDir, testZipInDir));
+
+		// the revisions can't be selected in the ZIP file read in place
+		String[] arguments = new String[] { "-D", projectDirPath, CACHE_DIR, testDir.getPath(),
+				"--repository-file", testZipInDir.getPath(), "--repository-in-place", "--repository-latest-only" };
+		Assert.assertEquals(CommandLine.ExitCode.USAGE, runTestRedirectedLogs(arguments));
+		ddCLI = new DependencyDiscovererCLI();
+		arguments = new String[] { "-D", projectDirPath, CACHE_DIR, testDir.getPath(), "--repository-file",
+				testZipInDir.getPath(), "--repository-in-place", "--repository-pinned-revisions", "ej.api#edc=1.2.0" };
+		Assert.assertEquals(CommandLine.ExitCode.USAGE, runTestRedirectedLogs(arguments));
+		Assert.assertNull(ddCLI.getOptions());
+	}
+
+	@Test
+	public void useRepositorySha1() {
+		// the SHA-1 must be 40 hexadecimal digits
+		String[] arguments = new String[] { "-D", projectDirPath, CACHE_DIR, cacheDirPath, REPOSITORY_URL, "none",
+				"--repository-sha1", "not-a-sha1" };
+		Assert.assertEquals(CommandLine.ExitCode.USAGE, runTestRedirectedLogs(arguments));
+		// only a downloaded repository is checked
+		ddCLI = new DependencyDiscovererCLI();
+		arguments = new String[] { "-D", projectDirPath, CACHE_DIR, cacheDirPath, REPOSITORY_DIR, cacheDirPath,
+				"--repository-sha1", "da39a3ee5e6b4b0d3255bfef95601890afd80709" };
+		Assert.assertEquals(CommandLine.ExitCode.USAGE, runTestRedirectedLogs(arguments));
+		Assert.assertNull(ddCLI.getOptions());
+	}
+
+	@Test
+	public void useProvidedZip64RepoZipInPlace() {
+		File testDir = new File(cacheDirPath, "testDir");
+		File testJarInDir = new File(testDir, "testZip.jar");
+		File testZipInDir = new File(testDir, "testZip.zip");
+		File fileToZip = new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class");
+
+		Assert.assertTrue(testDir.mkdir());
+		Assert.assertTrue(wrapInZip(fileToZip, testJarInDir));
+		// more than 65535 entries: ZIP64 records
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(testZipInDir))) {
+			out.putNextEntry(new ZipEntry(testJarInDir.getName()));
+			out.write(Files.readAllBytes(testJarInDir.toPath()));
+			out.closeEntry();
+			for (int i = 0; i < 0xFFFF; ++i) {
+				out.putNextEntry(new ZipEntry("r/" + i + ".txt"));
+				out.closeEntry();
+			}
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+
+		String[] arguments = new String[] { "-D", projectDirPath, CACHE_DIR, testDir.getPath(),
+				"--repository-file", testZipInDir.getPath(), "--repository-in-place" };
+
+		runTestRedirectedLogs(arguments);
+		// the ZIP file can't be read in place: it is extracted
+		performAssertion(new String[] { "testZip.jar" },
+				new String[] { new File(ddCLI.getOptions().getAgainstClasspath()).getName() });
+	}
 
 	@Test
 	public void useProvidedRepoDir() {
@@ -10,11 +10,25 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -26,17 +40,36 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 import org.objectweb.asm.tree.ClassNode;
 
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathEntryPoints;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathIndex;
+import com.microej.tool.dependencydiscoverer.classfinder.ClasspathIndexFile;
 import com.microej.tool.dependencydiscoverer.classfinder.ExactClassfileFilter;
 import com.microej.tool.dependencydiscoverer.classfinder.IJavaClassfileFilter;
+import com.microej.tool.dependencydiscoverer.classfinder.JarEntriesPrewarm;
+import com.microej.tool.dependencydiscoverer.classfinder.JarFilePool;
+import com.microej.tool.dependencydiscoverer.classfinder.JarJavaClassFinder;
 import com.microej.tool.dependencydiscoverer.classfinder.JavaClassFinder;
 import com.microej.tool.dependencydiscoverer.classfinder.WildCardClassfileFilter;
+import com.microej.tool.dependencydiscoverer.classfinder.ZipJavaClassFinder;
 import com.microej.tool.dependencydiscoverer.error.ErrorHandler;
+import com.microej.tool.dependencydiscoverer.filesystem.CacheLock;
+import com.microej.tool.dependencydiscoverer.filesystem.CacheManager;
 import com.microej.tool.dependencydiscoverer.filesystem.FileUtils;
+import com.microej.tool.dependencydiscoverer.filesystem.HttpDownloader;
+import com.microej.tool.dependencydiscoverer.filesystem.RepositoryClasspathBuilder;
+import com.microej.tool.dependencydiscoverer.filesystem.RevisionComparator;
+import com.microej.tool.dependencydiscoverer.filesystem.ZipFingerprint;
+import com.microej.tool.dependencydiscoverer.filesystem.jar.RandomAccessJarFile;
+import com.microej.tool.dependencydiscoverer.filesystem.jar.RepositoryZipFile;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 public class TestsClassfinder {
 
 	private static final String PACKAGE_NAME = "com/microej/tool/dependencydiscoverer/test/paths/";
-	private static final String HOME_TO_TEST_CLASSES = "/testPaths/bin-classpath/com/microej/tool/dependencydiscoverer/test/paths";
+	private static final String HOME_TO_TEST_CLASSES = "/testpaths/bin-classpath/com/microej/tool/dependencydiscoverer/test/paths";
 
 	private String ddHome = "";
 	private String testDirPath;
@@ -200,6 +233,810 @@ public class TestsClassfinder {
 		runTestEntryPoints(entriesAndExpected, classpaths);
 	}
 
+	@Test
+	public void testIndexClasspathOrder() {
+		printTestHeader();
+		File classpath1 = new File(testDirPath + "/classpath1/A.jar");
+		File classpath2 = new File(testDirPath + "/classpath2/B.jar");
+		File classpath3 = new File(testDirPath + "/classpath3/B.jar");
+		Assert.assertTrue(classpath3.getParentFile().mkdir());
+		Assert.assertTrue(wrapInZip(new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class"), classpath3));
+
+		try {
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { classpath1, classpath3, classpath2 },
+					errorHandler);
+			Assert.assertEquals(classpath1, index.getContainer("A.class"));
+			Assert.assertEquals(classpath3, index.getContainer("B.class"));
+			Assert.assertNull(index.getContainer("C.class"));
+			Assert.assertNotNull(index.load("B.class"));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testIndexProbedDirectory() {
+		printTestHeader();
+		File jar = new File(testDirPath + "/classpath2/B.jar");
+		File dir = new File(testDirPath + "/classpath3");
+		Assert.assertTrue(dir.mkdir());
+		try {
+			File classfile = new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class");
+			Files.copy(classfile.toPath(), new File(dir, "b.class").toPath());
+			File packageDir = new File(dir, PACKAGE_NAME);
+			Assert.assertTrue(packageDir.mkdirs());
+			Files.copy(classfile.toPath(), new File(packageDir, "B.class").toPath());
+			Assert.assertEquals(jar, ClasspathIndex.getIndex(new File[] { jar, dir }, errorHandler).getContainer("B.class"));
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { dir, jar }, errorHandler);
+			Assert.assertEquals(dir, index.getContainer(PACKAGE_NAME + "B.class"));
+			// a class file with another case doesn't hide the next classpath entries, even
+			// on a case insensitive file system
+			Assert.assertEquals(jar, index.getContainer("B.class"));
+			Assert.assertNull(index.getContainer("C.class"));
+			Assert.assertNull(index.getContainer(PACKAGE_NAME.toUpperCase() + "B.class"));
+
+			// a probed class file is not read, only loaded: a file created since the
+			// directory was listed is found, then its class name is checked
+			Files.copy(classfile.toPath(), new File(packageDir, "New.class").toPath());
+			Assert.assertEquals(dir, index.getContainer(PACKAGE_NAME + "New.class"));
+			Assert.assertNull(index.load(PACKAGE_NAME + "New.class"));
+
+			// exact lookups don't need to visit the directory
+			Map<String, ClassNode> allClassNodes = new HashMap<String, ClassNode>();
+			File classesDir = new File(ddHome + "/testpaths/bin-classpath");
+			JavaClassFinder.find(allClassNodes, new File[] { classesDir },
+					new ExactClassfileFilter(new String[] { PACKAGE_NAME.replace('/', '.') + "B" }), errorHandler);
+			Assert.assertEquals(1, allClassNodes.size());
+			Assert.assertNotNull(allClassNodes.get(PACKAGE_NAME + "B"));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testIndexModifiedJar() {
+		printTestHeader();
+		File jar = new File(testDirPath + "/classpath3/X.jar");
+		Assert.assertTrue(jar.getParentFile().mkdir());
+		Assert.assertTrue(wrapInZip(new File(ddHome + HOME_TO_TEST_CLASSES + "/A.class"), jar));
+		try {
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { jar }, errorHandler);
+			Assert.assertEquals(jar, index.getContainer("A.class"));
+			Assert.assertSame(index, ClasspathIndex.getIndex(new File[] { jar }, errorHandler));
+
+			// the JAR file is replaced at the same path between two runs
+			JarFilePool.getInstance().close();
+			Files.delete(jar.toPath());
+			Assert.assertTrue(wrapInZip(new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class"), jar));
+			Assert.assertTrue(jar.setLastModified(jar.lastModified() + 10000));
+			index = ClasspathIndex.getIndex(new File[] { jar }, errorHandler);
+			Assert.assertNull(index.getContainer("A.class"));
+			Assert.assertEquals(jar, index.getContainer("B.class"));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testIndexSignatureOnly() {
+		printTestHeader();
+		File classpath2 = new File(testDirPath + "/classpath2/B.jar");
+		try {
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { classpath2 }, errorHandler);
+			ClassNode full = index.load("B.class");
+			ClassNode signature = index.load("B.class", ClasspathIndex.SIGNATURE_ONLY);
+			Assert.assertNotNull(full);
+			Assert.assertNotNull(signature);
+			Assert.assertEquals(full.superName, signature.superName);
+			Assert.assertEquals(full.methods.size(), signature.methods.size());
+			for (int i = 0; i < full.methods.size(); i++) {
+				Assert.assertEquals(full.methods.get(i).desc, signature.methods.get(i).desc);
+				Assert.assertTrue(full.methods.get(i).instructions.size() > 0);
+				Assert.assertEquals(0, signature.methods.get(i).instructions.size());
+			}
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testJarEntriesPrewarm() {
+		printTestHeader();
+		File classpath1 = new File(testDirPath + "/classpath1/A.jar");
+		File classpath2 = new File(testDirPath + "/classpath2/B.jar");
+		File dir = new File(testDirPath + "/classpath2");
+		JarEntriesPrewarm prewarm = JarEntriesPrewarm.run(new File[] { classpath1, dir, classpath2 }, 2);
+		Assert.assertEquals(2, prewarm.getJarFiles());
+		Assert.assertTrue(prewarm.getEntries() >= 2);
+		try {
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { classpath1, classpath2 }, errorHandler);
+			Assert.assertEquals(classpath1, index.getContainer("A.class"));
+			Assert.assertEquals(classpath2, index.getContainer("B.class"));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testClasspathEntryPoints() {
+		printTestHeader();
+		File jar = new File(testDirPath + "/entrypoints.jar");
+		File dir = new File(testDirPath + "/entrypoints");
+		File servicesDir = new File(dir, "META-INF/services");
+		Assert.assertTrue(servicesDir.mkdirs());
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "com.a.Main");
+		try {
+			try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+				out.putNextEntry(new ZipEntry("META-INF/services/com.a.Service"));
+				out.write("# providers\ncom.a.Provider1\n\ncom.a.Provider2 # default\n".getBytes("UTF-8"));
+				out.closeEntry();
+			}
+			try (FileOutputStream out = new FileOutputStream(new File(servicesDir, "com.b.Service"))) {
+				out.write("com.b.Provider\ncom.a.Provider1\n".getBytes("UTF-8"));
+			}
+			File[] classpath = new File[] { jar, dir };
+			Assert.assertEquals(Arrays.asList("com.a.Main"), ClasspathEntryPoints.getMainClasses(classpath));
+			Assert.assertEquals(Arrays.asList("com.a.Provider1", "com.a.Provider2", "com.b.Provider"),
+					ClasspathEntryPoints.getServiceProviders(classpath));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			JarFilePool.getInstance().close();
+		}
+	}
+
+	@Test
+	public void testRandomAccessJarFile() {
+		printTestHeader();
+		File jar = new File(testDirPath + "/random-access.jar");
+		byte[] content = new byte[100000];
+		for (int i = 0; i < content.length; ++i) {
+			content[i] = (byte) (i % 7 == 0 ? i : 'a');
+		}
+		try {
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+				out.putNextEntry(new ZipEntry("a/Deflated.class"));
+				out.write(content);
+				out.closeEntry();
+				ZipEntry stored = new ZipEntry("a/Stored.class");
+				stored.setMethod(ZipEntry.STORED);
+				stored.setSize(content.length);
+				CRC32 crc = new CRC32();
+				crc.update(content);
+				stored.setCrc(crc.getValue());
+				out.putNextEntry(stored);
+				out.write(content);
+				out.closeEntry();
+				out.putNextEntry(new ZipEntry("a/Empty.class"));
+				out.closeEntry();
+			}
+			RandomAccessJarFile jarFile = RandomAccessJarFile.load(jar);
+			Assert.assertNotNull(jarFile);
+			Assert.assertArrayEquals(content, jarFile.read("a/Deflated.class"));
+			Assert.assertArrayEquals(content, jarFile.read("a/Stored.class"));
+			Assert.assertArrayEquals(new byte[0], jarFile.read("a/Empty.class"));
+			Assert.assertTrue(jarFile.contains("a/Stored.class"));
+			Assert.assertFalse(jarFile.contains("a/Missing.class"));
+			Assert.assertNull(jarFile.read("a/Missing.class"));
+			// only the central directory is kept in memory
+			Assert.assertTrue(jarFile.getFootprint() < jar.length() / 10);
+
+			// a thread interrupted while reading doesn't close the JAR file for the others
+			Thread.currentThread().interrupt();
+			try {
+				jarFile.read("a/Stored.class");
+			} catch (IOException e) {
+				// closed by the interrupt
+			} finally {
+				Thread.interrupted();
+			}
+			Assert.assertArrayEquals(content, jarFile.read("a/Stored.class"));
+
+			// a JAR file closed while read is closed once released
+			Assert.assertTrue(jarFile.acquire());
+			jarFile.close();
+			Assert.assertFalse(jarFile.acquire());
+			Assert.assertArrayEquals(content, jarFile.read("a/Deflated.class"));
+			jarFile.release();
+			try {
+				jarFile.read("a/Deflated.class");
+				Assert.fail();
+			} catch (IOException e) {
+				// closed
+			}
+
+			JarFilePool pool = JarFilePool.getInstance();
+			long hits = pool.getHits();
+			long misses = pool.getMisses();
+			Assert.assertSame(pool.getPooled(jar.getPath()).getContent(), pool.getPooled(jar.getPath()).getContent());
+			Assert.assertEquals(hits + 1, pool.getHits());
+			Assert.assertEquals(misses + 1, pool.getMisses());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			JarFilePool.getInstance().close();
+		}
+	}
+
+	@Test
+	public void testZipFingerprint() {
+		printTestHeader();
+		File zip = new File(testDirPath + "/repository.zip");
+		File fingerprint = new File(testDirPath + "/cache/repository.zip.fingerprint");
+		try {
+			writeStoredZip(zip, "content1");
+			long lastModified = zip.lastModified();
+			String hash = ZipFingerprint.sha1(zip);
+			Assert.assertEquals(hash, ZipFingerprint.getHash(zip, fingerprint, false));
+			Assert.assertTrue(fingerprint.isFile());
+
+			// same size and modification time: the recorded hash is trusted...
+			writeStoredZip(zip, "content2");
+			Assert.assertTrue(zip.setLastModified(lastModified));
+			String newHash = ZipFingerprint.sha1(zip);
+			Assert.assertNotEquals(hash, newHash);
+			Assert.assertEquals(hash, ZipFingerprint.getHash(zip, fingerprint, false));
+			// ...unless the central directory is checked
+			Assert.assertEquals(newHash, ZipFingerprint.getHash(zip, fingerprint, true));
+
+			// touched: same central directory, not hashed again
+			Assert.assertTrue(zip.setLastModified(lastModified + 10000));
+			Assert.assertEquals(newHash, ZipFingerprint.getHash(zip, fingerprint, true));
+			Assert.assertEquals(newHash, ZipFingerprint.getHash(zip, fingerprint, false));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void writeStoredZip(File zip, String content) throws IOException {
+		byte[] bytes = content.getBytes("UTF-8");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			ZipEntry entry = new ZipEntry("a.txt");
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(bytes.length);
+			entry.setTime(0);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			entry.setCrc(crc.getValue());
+			out.putNextEntry(entry);
+			out.write(bytes);
+			out.closeEntry();
+		}
+	}
+
+	@Test
+	public void testRepositoryZipFile() {
+		printTestHeader();
+		File zip = new File(testDirPath + "/repository.zip");
+		try {
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+				putZipEntry(out, "a/A.jar", Files.readAllBytes(new File(testDirPath + "/classpath1/A.jar").toPath()),
+						false);
+				putZipEntry(out, "b/B.ivy", "<ivy-module/>".getBytes("UTF-8"), false);
+				putZipEntry(out, "b/B.jar", Files.readAllBytes(new File(testDirPath + "/classpath2/B.jar").toPath()),
+						true);
+			}
+			RepositoryZipFile repositoryZipFile = RepositoryZipFile.open(zip);
+			Assert.assertEquals(Arrays.asList("a/A.jar", "b/B.jar"), repositoryZipFile.getJarNames());
+			Assert.assertEquals(new HashSet<String>(Arrays.asList("A.class", "B.class")),
+					repositoryZipFile.getClassfileNames());
+			Assert.assertArrayEquals(Files.readAllBytes(new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class").toPath()),
+					repositoryZipFile.read("B.class"));
+			Assert.assertNull(repositoryZipFile.read("C.class"));
+
+			// the ZIP file is a classpath entry, nothing is extracted
+			File classpath2 = new File(testDirPath + "/classpath2/C.jar");
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { zip, classpath2 }, errorHandler);
+			Assert.assertEquals(zip, index.getContainer("A.class"));
+			Assert.assertEquals(zip, index.getContainer("B.class"));
+			Assert.assertEquals(classpath2, index.getContainer("C.class"));
+			Assert.assertNotNull(index.load("A.class"));
+			Assert.assertNotNull(index.load("B.class"));
+			Assert.assertFalse(new File(testDirPath + "/a").exists());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testClassfilesZipFile() {
+		printTestHeader();
+		File zip = new File(testDirPath + "/classes.zip");
+		try {
+			byte[] b = Files.readAllBytes(new File(ddHome + HOME_TO_TEST_CLASSES + "/B.class").toPath());
+			byte[] c = Files.readAllBytes(new File(ddHome + HOME_TO_TEST_CLASSES + "/C.class").toPath());
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+				putZipEntry(out, "B.class", b, true);
+				putZipEntry(out, "a/A.jar", Files.readAllBytes(new File(testDirPath + "/classpath1/A.jar").toPath()),
+						false);
+			}
+			// the class files of the ZIP file are found with those of its nested JAR files
+			RepositoryZipFile repositoryZipFile = RepositoryZipFile.open(zip);
+			Assert.assertEquals(new HashSet<String>(Arrays.asList("A.class", "B.class")),
+					repositoryZipFile.getClassfileNames());
+			Assert.assertArrayEquals(b, repositoryZipFile.read("B.class"));
+			ClasspathIndex index = ClasspathIndex.getIndex(new File[] { zip }, errorHandler);
+			Assert.assertEquals(zip, index.getContainer("B.class"));
+			Assert.assertNotNull(index.load("B.class"));
+
+			// the modified ZIP file is opened again
+			long lastModified = zip.lastModified();
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+				putZipEntry(out, "C.class", c, false);
+			}
+			Assert.assertTrue(zip.setLastModified(lastModified + 10000));
+			index = ClasspathIndex.getIndex(new File[] { zip }, errorHandler);
+			Assert.assertNull(index.getContainer("B.class"));
+			Assert.assertEquals(zip, index.getContainer("C.class"));
+			Assert.assertNotNull(index.load("C.class"));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			ZipJavaClassFinder.close();
+		}
+	}
+
+	@Test
+	public void testUnZip() {
+		printTestHeader();
+		File zip = new File(testDirPath + "/repository.zip");
+		File outdir = new File(testDirPath + "/repository");
+		try {
+			byte[] content = Files.readAllBytes(new File(testDirPath + "/classpath1/A.jar").toPath());
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+				putZipEntry(out, "a/", new byte[0], true);
+				putZipEntry(out, "a/b/A.jar", content, false);
+				putZipEntry(out, "a/b/A-sources.jar", content, false);
+				putZipEntry(out, "a/b/A-javadoc.jar", content, true);
+				putZipEntry(out, "a/b/A.ivy", "<ivy-module/>".getBytes("UTF-8"), false);
+				putZipEntry(out, "a/c/C.jar", content, true);
+				putZipEntry(out, "../evil.jar", content, false);
+			}
+			Assert.assertTrue(FileUtils.unZip(zip, outdir, FileUtils.CODE_JAR_ENTRIES, 2));
+			Assert.assertArrayEquals(content, Files.readAllBytes(new File(outdir, "a/b/A.jar").toPath()));
+			Assert.assertArrayEquals(content, Files.readAllBytes(new File(outdir, "a/c/C.jar").toPath()));
+			Assert.assertFalse(new File(outdir, "a/b/A-sources.jar").exists());
+			Assert.assertFalse(new File(outdir, "a/b/A-javadoc.jar").exists());
+			Assert.assertFalse(new File(outdir, "a/b/A.ivy").exists());
+			Assert.assertFalse(new File(testDirPath, "evil.jar").exists());
+
+			File allOutdir = new File(testDirPath + "/all");
+			Assert.assertTrue(FileUtils.unZip(zip, allOutdir));
+			Assert.assertTrue(new File(allOutdir, "a/b/A.ivy").isFile());
+			Assert.assertTrue(new File(allOutdir, "a/b/A-sources.jar").isFile());
+			Assert.assertFalse(FileUtils.unZip(new File(testDirPath + "/missing.zip"), allOutdir));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testCacheLock() {
+		printTestHeader();
+		final File cacheDir = new File(testDirPath + "/cache");
+		final File entry = new File(cacheDir, "entry");
+		final boolean[] waitedAndPublished = new boolean[2];
+		try {
+			Assert.assertTrue(cacheDir.mkdir());
+			File staleStaging = new File(cacheDir, "entry.staging-1" + CacheLock.STAGING_FILE_EXT);
+			Assert.assertTrue(staleStaging.createNewFile());
+			Thread waiter;
+			try (CacheLock lock = CacheLock.lock(cacheDir, "entry")) {
+				Assert.assertFalse(lock.hasWaited());
+				Assert.assertFalse(staleStaging.exists());
+
+				waiter = new Thread(new Runnable() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public void run() {
+						try (CacheLock waiterLock = CacheLock.lock(cacheDir, "entry")) {
+							waitedAndPublished[0] = waiterLock.hasWaited();
+							waitedAndPublished[1] = new File(entry, "content").isFile();
+						} catch (IOException e) {
+							// checked below
+						}
+					}
+				});
+				waiter.start();
+				long timeout = System.currentTimeMillis() + 10000;
+				while (waiter.getState() != Thread.State.WAITING && System.currentTimeMillis() < timeout) {
+					Thread.sleep(10);
+				}
+
+				File staging = lock.createStagingDirectory();
+				Assert.assertTrue(new File(staging, "content").createNewFile());
+				Assert.assertFalse(entry.exists());
+				Assert.assertEquals(entry, lock.publish(staging));
+				Assert.assertFalse(staging.exists());
+				Assert.assertTrue(entry.isDirectory());
+
+				// a published entry is never replaced
+				File otherStaging = lock.createStagingDirectory();
+				Assert.assertEquals(entry, lock.publish(otherStaging));
+				Assert.assertFalse(otherStaging.exists());
+				Assert.assertTrue(new File(entry, "content").isFile());
+			}
+			waiter.join(10000);
+			Assert.assertTrue(waitedAndPublished[0]);
+			Assert.assertTrue(waitedAndPublished[1]);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testCacheManager() {
+		printTestHeader();
+		File cacheDir = new File(testDirPath + "/cache");
+		try {
+			writeFile(new File(cacheDir, "dd-a/org/a.jar"), 1000);
+			writeFile(new File(cacheDir, "dd-a.index"), 100);
+			writeFile(new File(cacheDir, "dd-b.zip"), 1000);
+			writeFile(new File(cacheDir, "dd-b.zip.fingerprint"), 10);
+			writeFile(new File(cacheDir, "dd-c/org/c.jar"), 1000);
+			writeFile(new File(cacheDir, "summaries/s"), 500);
+			CacheManager cacheManager = new CacheManager(cacheDir);
+			long now = System.currentTimeMillis();
+			String[] names = { "dd-a", "dd-b.zip", "dd-c" };
+			for (int i = 0; i < names.length; i++) {
+				cacheManager.recordAccess(names[i]);
+				Assert.assertTrue(CacheLock.getLockFile(cacheDir, names[i]).setLastModified(now - (3 - i) * 60000));
+			}
+
+			List<CacheManager.CacheEntry> entries = cacheManager.getEntries();
+			Assert.assertEquals(3, entries.size());
+			for (int i = 0; i < names.length; i++) {
+				Assert.assertEquals(names[i], entries.get(i).getName());
+			}
+			Assert.assertEquals(1100, entries.get(0).getSize());
+			Assert.assertEquals(1010, entries.get(1).getSize());
+			Assert.assertEquals(3610, cacheManager.getSize());
+
+			// the least recently used entry is in use: the next one is evicted, the
+			// summaries are not counted in the 3110 bytes of the entries
+			try (CacheLock lock = CacheLock.lockShared(cacheDir, "dd-a")) {
+				List<CacheManager.CacheEntry> evicted = cacheManager.evict(2200);
+				Assert.assertEquals(1, evicted.size());
+				Assert.assertEquals("dd-b.zip", evicted.get(0).getName());
+			}
+			Assert.assertTrue(new File(cacheDir, "dd-a/org/a.jar").isFile());
+			Assert.assertFalse(new File(cacheDir, "dd-b.zip").exists());
+			Assert.assertFalse(new File(cacheDir, "dd-b.zip.fingerprint").exists());
+			Assert.assertTrue(new File(cacheDir, "dd-c/org/c.jar").isFile());
+			Assert.assertTrue(cacheManager.getStats(2200).contains("dd-c"));
+			for (String name : cacheDir.list()) {
+				Assert.assertFalse(name, name.endsWith(CacheLock.STAGING_FILE_EXT));
+			}
+
+			cacheManager.evict(0);
+			Assert.assertTrue(cacheManager.getEntries().isEmpty());
+			Assert.assertTrue(new File(cacheDir, "summaries/s").isFile());
+
+			// an entry in use is kept by the cleaning, the other files are deleted
+			writeFile(new File(cacheDir, "dd-d/org/d.jar"), 1000);
+			writeFile(new File(cacheDir, "dd-d.index"), 100);
+			writeFile(new File(cacheDir, "dd-e.zip"), 1000);
+			try (CacheLock lock = CacheLock.lockShared(cacheDir, "dd-d")) {
+				List<CacheManager.CacheEntry> deleted = cacheManager.clean();
+				Assert.assertEquals(1, deleted.size());
+				Assert.assertEquals("dd-e.zip", deleted.get(0).getName());
+			}
+			Assert.assertTrue(new File(cacheDir, "dd-d/org/d.jar").isFile());
+			Assert.assertTrue(new File(cacheDir, "dd-d.index").isFile());
+			Assert.assertFalse(new File(cacheDir, "summaries").exists());
+			cacheManager.clean();
+			Assert.assertTrue(cacheManager.getEntries().isEmpty());
+			Assert.assertFalse(new File(cacheDir, "dd-d.index").exists());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testHttpDownloader() {
+		printTestHeader();
+		final byte[] content = new byte[100000];
+		new Random(0).nextBytes(content);
+		final String[] checksum = new String[1];
+		final boolean[] checksumFailing = new boolean[1];
+		final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		final Set<String> failingRanges = Collections.synchronizedSet(new HashSet<String>());
+		HttpServer server;
+		try {
+			server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		server.createContext("/", new HttpHandler() {// NOSONAR java 8 compliance except lambda
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = content;
+				int code = 200;
+				Headers headers = exchange.getResponseHeaders();
+				if (exchange.getRequestURI().getPath().endsWith(HttpDownloader.CHECKSUM_EXT)) {
+					if (checksumFailing[0]) {
+						// the connection is closed without response
+						throw new IOException("checksum unavailable");
+					}
+					body = (checksum[0] + "  repo.zip").getBytes(StandardCharsets.UTF_8);
+				} else {
+					headers.set("Accept-Ranges", "bytes");
+					headers.set("ETag", "\"v1\"");
+					String range = exchange.getRequestHeaders().getFirst("Range");
+					if (range != null) {
+						ranges.add(range);
+						if (failingRanges.remove(range)) {
+							exchange.sendResponseHeaders(500, -1);
+							exchange.close();
+							return;
+						}
+						String[] bounds = range.substring("bytes=".length()).split("-");
+						int start = Integer.parseInt(bounds[0]);
+						int end = Integer.parseInt(bounds[1]);
+						body = Arrays.copyOfRange(content, start, end + 1);
+						headers.set("Content-Range", "bytes " + start + '-' + end + '/' + content.length);
+						code = 206;
+					}
+				}
+				if (exchange.getRequestMethod().equals("HEAD")) {
+					headers.set("Content-Length", Integer.toString(body.length));
+					exchange.sendResponseHeaders(code, -1);
+				} else {
+					exchange.sendResponseHeaders(code, body.length);
+					exchange.getResponseBody().write(body);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		try {
+			URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/repo.zip");
+			File partialFile = new File(testDirPath + "/repo.zip" + HttpDownloader.PARTIAL_FILE_EXT);
+			File progressFile = new File(partialFile.getPath() + HttpDownloader.PROGRESS_FILE_EXT);
+			Assert.assertTrue(partialFile.getParentFile().isDirectory() || partialFile.getParentFile().mkdirs());
+			File expectedFile = new File(testDirPath + "/expected.zip");
+			Files.write(expectedFile.toPath(), content);
+			checksum[0] = ZipFingerprint.sha1(expectedFile);
+			HttpDownloader downloader = new HttpDownloader(3, 16 * 1024);
+
+			// the 7 chunks are downloaded, the third one fails
+			failingRanges.add("bytes=32768-49151");
+			try {
+				downloader.download(url, partialFile);
+				Assert.fail("download should fail");
+			} catch (IOException e) {
+				// expected
+			}
+			Assert.assertEquals(7, ranges.size());
+			Assert.assertTrue(progressFile.isFile());
+
+			// only the failed chunk is downloaded again, the progress is kept when the
+			// checksum can't be checked
+			ranges.clear();
+			checksumFailing[0] = true;
+			try {
+				downloader.download(url, partialFile);
+				Assert.fail("checksum failure should be reported");
+			} catch (IOException e) {
+				// expected
+			}
+			Assert.assertEquals(Arrays.asList("bytes=32768-49151"), ranges);
+			Assert.assertTrue(progressFile.isFile());
+
+			// no chunk is downloaded again to check the checksum
+			ranges.clear();
+			checksumFailing[0] = false;
+			Assert.assertTrue(downloader.download(url, partialFile));
+			Assert.assertTrue(ranges.isEmpty());
+			Assert.assertArrayEquals(content, Files.readAllBytes(partialFile.toPath()));
+			Assert.assertFalse(progressFile.exists());
+
+			// a file which doesn't match the published checksum is deleted
+			Files.delete(partialFile.toPath());
+			checksum[0] = "0000000000000000000000000000000000000000";
+			try {
+				downloader.download(url, partialFile);
+				Assert.fail("checksum mismatch should be detected");
+			} catch (IOException e) {
+				// expected
+			}
+			Assert.assertFalse(partialFile.exists());
+			Assert.assertFalse(progressFile.exists());
+
+			// the expected checksum is checked instead of the published one
+			String sha1 = ZipFingerprint.sha1(expectedFile);
+			Assert.assertTrue(downloader.download(url, partialFile, sha1.toUpperCase(Locale.ROOT)));
+			Assert.assertFalse(progressFile.exists());
+			checksum[0] = sha1;
+			try {
+				downloader.download(url, partialFile, "1111111111111111111111111111111111111111");
+				Assert.fail("checksum mismatch should be detected");
+			} catch (IOException e) {
+				// expected
+			}
+			Assert.assertFalse(partialFile.exists());
+
+			// a published value which is not a SHA-1 is ignored: the file is not checked
+			checksum[0] = "<html><body>Not found</body></html>";
+			Assert.assertFalse(downloader.download(url, partialFile));
+			Assert.assertArrayEquals(content, Files.readAllBytes(partialFile.toPath()));
+			Assert.assertFalse(progressFile.exists());
+
+			Assert.assertTrue(HttpDownloader.isChecksum(sha1));
+			Assert.assertFalse(HttpDownloader.isChecksum(sha1.substring(1)));
+			Assert.assertFalse(HttpDownloader.isChecksum(sha1.substring(1) + 'g'));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void testRepositoryClasspathBuilder() {
+		printTestHeader();
+		String[] orderedRevisions = { "1.0-RC1", "1.0", "1.0.1", "1.2.9", "1.2.10", "2.0.0-alpha", "2.0.0-beta",
+				"2.0.0" };
+		for (int i = 1; i < orderedRevisions.length; i++) {
+			Assert.assertTrue(orderedRevisions[i - 1] + " < " + orderedRevisions[i],
+					RevisionComparator.INSTANCE.compare(orderedRevisions[i - 1], orderedRevisions[i]) < 0);
+			Assert.assertTrue(orderedRevisions[i] + " > " + orderedRevisions[i - 1],
+					RevisionComparator.INSTANCE.compare(orderedRevisions[i], orderedRevisions[i - 1]) > 0);
+		}
+
+		File repoDir = new File(testDirPath + "/repository");
+		try {
+			// Maven layout
+			writeFile(new File(repoDir, "org/apache/ant/ant/1.9.9/ant-1.9.9.jar"), 10);
+			writeFile(new File(repoDir, "org/apache/ant/ant/1.10.1/ant-1.10.1.jar"), 10);
+			writeFile(new File(repoDir, "org/apache/ant/ant/1.10.1/ant-1.10.1-sources.jar"), 10);
+			writeFile(new File(repoDir, "org/apache/ant/ant/1.10.1/ant-1.10.1-javadoc.jar"), 10);
+			// the newest revision without code is ignored
+			writeFile(new File(repoDir, "org/apache/ant/ant/1.11.0/ant-1.11.0.pom"), 10);
+			// Ivy layout
+			writeFile(new File(repoDir, "ej.api/edc/1.2.3/edc-1.2.3.jar"), 10);
+			writeFile(new File(repoDir, "ej.api/edc/1.3.3/edc-1.3.3.jar"), 10);
+			writeFile(new File(repoDir, "ej.api/bon/1.3.0/bon-1.3.0.jar"), 10);
+			writeFile(new File(repoDir, "ej.api/bon/1.4.0/bon-1.4.0.jar"), 10);
+			// organisation named like a revision, without JAR files
+			writeFile(new File(repoDir, "com/example/3d/lib/1.0/lib-1.0.jar"), 10);
+			writeFile(new File(repoDir, "com/example/3d/lib/2.0/lib-2.0.jar"), 10);
+			writeFile(new File(repoDir, "com/example/3d/viewer/1.0/viewer-1.0.jar"), 10);
+			// outside of the layout
+			writeFile(new File(repoDir, "lib/a-1.0.jar"), 10);
+			writeFile(new File(repoDir, "lib/a-2.0.jar"), 10);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+
+		RepositoryClasspathBuilder builder = new RepositoryClasspathBuilder();
+		builder.pin("ej.api", "bon", "1.3.0");
+		builder.pin("ej.api", "edc", "0.1.0");
+		builder.pin("com.example.3d", "viewer", "1.0");
+		List<String> classpath = new ArrayList<>();
+		builder.addJars(classpath, repoDir);
+		HashSet<String> names = new HashSet<>();
+		for (String jar : classpath) {
+			names.add(new File(jar).getName());
+		}
+		Assert.assertEquals(new HashSet<>(Arrays.asList("ant-1.10.1.jar", "edc-1.3.3.jar", "bon-1.3.0.jar",
+				"lib-2.0.jar", "viewer-1.0.jar", "a-1.0.jar", "a-2.0.jar")), names);
+		Assert.assertEquals(7, classpath.size());
+	}
+
+	private static void writeFile(File file, int size) throws IOException {
+		Assert.assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+		Files.write(file.toPath(), new byte[size]);
+	}
+
+	private static void putZipEntry(ZipOutputStream out, String name, byte[] content, boolean stored)
+			throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		if (stored) {
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(content.length);
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			entry.setCrc(crc.getValue());
+		}
+		out.putNextEntry(entry);
+		out.write(content);
+		out.closeEntry();
+	}
+
+	@Test
+	public void testMultipleNamesFilters() {
+		printTestHeader();
+		IJavaClassfileFilter wildcard = new WildCardClassfileFilter(
+				new String[] { "com.b.*", "com.a.*", "com.a.sub.*", "org.C*" });
+		Assert.assertTrue(wildcard.accept("com/a/A.class"));
+		Assert.assertTrue(wildcard.accept("com/a/sub/A.class"));
+		Assert.assertTrue(wildcard.accept("com/b/B.class"));
+		Assert.assertTrue(wildcard.accept("org/Cat.class"));
+		Assert.assertFalse(wildcard.accept("com/a/A.txt"));
+		Assert.assertFalse(wildcard.accept("com/c/C.class"));
+		Assert.assertFalse(wildcard.accept("org/D.class"));
+		Assert.assertFalse(wildcard.accept("com/A.class"));
+		Assert.assertTrue(new WildCardClassfileFilter(new String[] { "*" }).accept("A.class"));
+
+		IJavaClassfileFilter exact = new ExactClassfileFilter(new String[] { "com.a.A", "com.b.B" });
+		Assert.assertTrue(exact.accept("com/a/A.class"));
+		Assert.assertTrue(exact.accept("com/b/B.class"));
+		Assert.assertFalse(exact.accept("com/a/B.class"));
+	}
+
+	@Test
+	public void testJarFilePool() {
+		printTestHeader();
+		String jar1 = testDirPath + "/classpath1/A.jar";
+		String jar2 = testDirPath + "/classpath2/B.jar";
+		JarFilePool pool = JarFilePool.getInstance();
+		int maxSize = pool.getMaxSize();
+		long maxBytes = pool.getMaxBytes();
+		try {
+			pool.setMaxSize(1);
+			long hits = pool.getHits();
+			long misses = pool.getMisses();
+			Assert.assertSame(pool.get(jar1), pool.get(jar1));
+			pool.get(jar2); // evicts jar1
+			pool.get(jar1);
+			Assert.assertEquals(hits + 1, pool.getHits());
+			Assert.assertEquals(misses + 3, pool.getMisses());
+
+			// bounded by the memory retained by the JAR files
+			pool.setMaxSize(maxSize);
+			pool.close();
+			long footprint1 = pool.getPooled(jar1).getFootprint();
+			pool.getPooled(jar1).getContent();
+			Assert.assertTrue(pool.getFootprint() > footprint1);
+			pool.setMaxBytes(pool.getFootprint());
+			pool.get(jar2); // evicts jar1
+			Assert.assertEquals(pool.getPooled(jar2).getFootprint(), pool.getFootprint());
+			pool.setMaxBytes(1); // keeps the most recently used JAR file
+			Assert.assertEquals(pool.getPooled(jar2).getFootprint(), pool.getFootprint());
+			misses = pool.getMisses();
+			pool.get(jar1);
+			pool.get(jar2);
+			Assert.assertEquals(misses + 2, pool.getMisses());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			pool.close();
+			pool.setMaxSize(maxSize);
+			pool.setMaxBytes(maxBytes);
+		}
+	}
+
+	@Test
+	public void testClasspathIndexFile() {
+		printTestHeader();
+		File jar = new File(testDirPath + "/classpath1/A.jar");
+		File file = new File(testDirPath + "/dd-repository.index");
+		ClasspathIndexFile indexFile = ClasspathIndexFile.load(file);
+		try {
+			JarJavaClassFinder.setIndexFile(indexFile);
+			ClasspathIndex.getIndex(new File[] { jar }, errorHandler);
+			indexFile.save();
+			Assert.assertTrue(file.isFile());
+
+			HashSet<String> entries = ClasspathIndexFile.load(file).getEntries(jar);
+			Assert.assertNotNull(entries);
+			Assert.assertTrue(entries.contains("A.class"));
+
+			// a modified JAR file is indexed again
+			Assert.assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+			Assert.assertNull(ClasspathIndexFile.load(file).getEntries(jar));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		} finally {
+			JarJavaClassFinder.setIndexFile(null);
+		}
+	}
+
 	@After
 	public void cleanup() {
 
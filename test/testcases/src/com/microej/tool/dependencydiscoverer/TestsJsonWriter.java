@@ -9,6 +9,7 @@ package com.microej.tool.dependencydiscoverer;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -171,6 +172,23 @@ public class TestsJsonWriter {
 		assertJsonOutput(deps);
 	}
 
+	@Test
+	public void testProvenance() {
+		TypeDependency dep = createTypeDependency(OBJECT_TYPE);
+		dep.addHit();
+		dep.setUsers(Arrays.asList(STRING_TYPE, SYSTEM_TYPE));
+		typesDep.add(dep);
+		writer.setProvenance("full");
+		writeDependencies();
+
+		String eol = System.lineSeparator();
+		String deps = "{" + eol + "\t\"require\":{" + eol + "\t\t" + TYPE + ":[" + eol + "\t\t\t{" + eol
+				+ "\t\t\t\t\"name\":\"" + OBJECT_TYPE_DECODE + "\"," + eol + "\t\t\t\t\"references\":1," + eol
+				+ "\t\t\t\t\"users\":[\"" + STRING_TYPE_DECODE + "\",\"" + SYSTEM_TYPE_DECODE + "\"]," + eol
+				+ "\t\t\t\t\"callers\":[]" + eol + "\t\t\t}" + eol + "\t\t]" + eol + "\t}" + eol + "}";
+		assertJsonOutput(deps);
+	}
+
 	@Test
 	public void testMultipleTypeDep() {
 		typesDep.add(createTypeDependency(OBJECT_TYPE));
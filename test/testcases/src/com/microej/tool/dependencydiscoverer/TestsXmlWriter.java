@@ -9,6 +9,7 @@ package com.microej.tool.dependencydiscoverer;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -271,6 +272,27 @@ public class TestsXmlWriter {
 	}
 
 
+	@Test
+	public void testProvenance () {
+		TypeDependency dep = createTypeDependency(OBJECT_TYPE);
+		dep.addHit();
+		dep.addHit();
+		dep.setUsers(Arrays.asList(STRING_TYPE));
+		dep.setCallers(Arrays.asList(new MethodReference(STRING_TYPE, "m", "(I)V")));
+		typesDep.add(dep);
+		methodsDep.add(createMethodDependency(STRING_TYPE, "hashCode", "()I"));
+		writer.setProvenance("full");
+		writeDependencies();
+
+		List<String> deps = new ArrayList<String>();
+		deps.add(String.format("<type name=\"%s\" references=\"2\">"+LINE_SEP, OBJECT_TYPE_DECODE));
+		deps.add(String.format("\t<user name=\"%s\"/>"+LINE_SEP, STRING_TYPE_DECODE));
+		deps.add(String.format("\t<caller name=\"%s\"/>"+LINE_SEP, STRING_TYPE_DECODE + ".m(int)void"));
+		deps.add("</type>"+LINE_SEP);
+		deps.add(String.format("<method name=\"%s\" references=\"0\"/>"+LINE_SEP, STRING_TYPE_DECODE + ".hashCode()int"));
+		assertXmlOutPutList("", deps);
+	}
+
 	private String getExpected (List<String> deps) {
 		StringBuilder builder = new StringBuilder();
 		builder.append(PROLOGUE).append(LINE_SEP).append('<').append(REQUIRES).append('>').append(LINE_SEP);
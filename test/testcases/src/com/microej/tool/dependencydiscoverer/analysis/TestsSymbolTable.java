@@ -0,0 +1,268 @@
+/*
+ * Java
+ *
+ * Copyright 2022 MicroEJ Corp. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be found with this software.
+ */
+package com.microej.tool.dependencydiscoverer.analysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+/**
+ * Tests of the interned symbols of the analysis and of their tables.
+ */
+public class TestsSymbolTable {
+
+	private static final int THREADS = 8;
+
+	@Rule
+	public TestName name = new TestName();
+
+	@Test
+	public void testLongHashMapGrow() {
+		printTestHeader();
+		LongHashMap<String> map = new LongHashMap<>();
+		int size = 10000; // several times the initial capacity of the segments
+		for (int i = 0; i < size; ++i) {
+			Assert.assertNull(map.putIfAbsent(i * 31L, Integer.toString(i)));
+		}
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(Integer.toString(i), map.get(i * 31L));
+			Assert.assertEquals(Integer.toString(i), map.putIfAbsent(i * 31L, "other"));
+		}
+		Assert.assertNull(map.get(-1L));
+		Assert.assertEquals(size, map.values().size());
+	}
+
+	@Test
+	public void testLongHashMapCollidingKeys() {
+		printTestHeader();
+		LongHashMap<String> map = new LongHashMap<>();
+		// keys with the same low or high bits, and keys which hash to the same slot
+		long[] keys = { 0L, 1L, 1L << 32, (1L << 32) | 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE,
+				SymbolTable.pack(7, 0), SymbolTable.pack(0, 7) };
+		ArrayList<Long> collidingKeys = new ArrayList<>();
+		int targetHash = LongHashMap.hash(12345L) & 0xF000003F; // same segment and first slot
+		for (long key = 0; collidingKeys.size() < 20; ++key) {
+			if ((LongHashMap.hash(key) & 0xF000003F) == targetHash) {
+				collidingKeys.add(Long.valueOf(key));
+			}
+		}
+		for (long key : keys) {
+			Assert.assertNull(map.putIfAbsent(key, Long.toString(key)));
+		}
+		for (Long key : collidingKeys) {
+			map.putIfAbsent(key.longValue(), key.toString());
+		}
+		for (long key : keys) {
+			Assert.assertEquals(Long.toString(key), map.get(key));
+		}
+		for (Long key : collidingKeys) {
+			Assert.assertEquals(key.toString(), map.get(key.longValue()));
+		}
+		Assert.assertNull(map.get(2L));
+	}
+
+	@Test
+	public void testLongHashMapConcurrentPutIfAbsent() throws Exception {
+		printTestHeader();
+		final LongHashMap<Object> map = new LongHashMap<>();
+		final int size = 20000;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<List<Object>>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; ++t) {
+				results.add(executor.submit(new Callable<List<Object>>() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public List<Object> call() throws InterruptedException {
+						start.await();
+						// each thread puts its own value for the same keys, the first one wins
+						ArrayList<Object> values = new ArrayList<>();
+						for (int i = 0; i < size; ++i) {
+							Object value = new Object();
+							Object existingValue = map.putIfAbsent(i, value);
+							Object mapValue = map.get(i);
+							Assert.assertSame(existingValue == null ? value : existingValue, mapValue);
+							values.add(mapValue);
+						}
+						return values;
+					}
+				}));
+			}
+			start.countDown();
+			List<Object> firstValues = results.get(0).get();
+			for (Future<List<Object>> result : results) {
+				List<Object> values = result.get();
+				for (int i = 0; i < size; ++i) {
+					Assert.assertSame(firstValues.get(i), values.get(i));
+				}
+			}
+			Assert.assertEquals(size, map.values().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLongIntHashMap() {
+		printTestHeader();
+		LongIntHashMap map = new LongIntHashMap();
+		int size = 10000;
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(SymbolTable.pack(i, -i), i));
+		}
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(i, map.get(SymbolTable.pack(i, -i)));
+			Assert.assertEquals(i, map.putIfAbsent(SymbolTable.pack(i, -i), 0));
+		}
+		// 0 is a value like any other
+		Assert.assertEquals(0, map.get(SymbolTable.pack(0, 0)));
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.get(SymbolTable.pack(1, 1)));
+	}
+
+	@Test
+	public void testSymbolTableRoundTrip() {
+		printTestHeader();
+		SymbolTable symbols = new SymbolTable();
+		String[] names = { "java/lang/Object", "toString", "()Ljava/lang/String;", "", "java/lang/Object" };
+		int[] ids = new int[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			ids[i] = symbols.getId(names[i]);
+		}
+		Assert.assertEquals(ids[0], ids[4]);
+		Assert.assertEquals(ids[0], symbols.getId(new String("java/lang/Object")));
+		String[] symbolNames = symbols.getSymbols();
+		Assert.assertEquals(4, symbolNames.length);
+		for (int i = 0; i < names.length; ++i) {
+			Assert.assertEquals(names[i], symbolNames[ids[i]]);
+		}
+
+		// a member key packs its owner symbol and its name and descriptor pair
+		long key = symbols.getMemberKey("java/lang/Object", "toString", "()Ljava/lang/String;");
+		Assert.assertEquals("java/lang/Object", symbols.getSymbols()[(int) (key >>> 32)]);
+		Assert.assertEquals((int) key, symbols.getMemberId("toString", "()Ljava/lang/String;"));
+		Assert.assertNotEquals((int) key, symbols.getMemberId("toString", "()V"));
+		Assert.assertNotEquals(key, symbols.getMemberKey("java/lang/String", "toString", "()Ljava/lang/String;"));
+	}
+
+	@Test
+	public void testSymbolTableConcurrent() throws Exception {
+		printTestHeader();
+		final SymbolTable symbols = new SymbolTable();
+		final int size = 5000;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<int[]>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; ++t) {
+				results.add(executor.submit(new Callable<int[]>() {// NOSONAR java 8 compliance except lambda
+					@Override
+					public int[] call() throws InterruptedException {
+						start.await();
+						int[] ids = new int[size];
+						for (int i = 0; i < size; ++i) {
+							ids[i] = symbols.getMemberId("m" + i, "()V");
+						}
+						return ids;
+					}
+				}));
+			}
+			start.countDown();
+			int[] firstIds = results.get(0).get();
+			HashSet<Integer> distinctIds = new HashSet<>();
+			for (int id : firstIds) {
+				distinctIds.add(Integer.valueOf(id));
+			}
+			Assert.assertEquals(size, distinctIds.size());
+			for (Future<int[]> result : results) {
+				Assert.assertArrayEquals(firstIds, result.get());
+			}
+			// the names, plus the shared descriptor: an identifier drawn by a thread
+			// which lost the race to intern a symbol is unused
+			int nSymbols = 0;
+			for (String symbolName : symbols.getSymbols()) {
+				if (symbolName != null) {
+					++nSymbols;
+				}
+			}
+			Assert.assertEquals(size + 1, nSymbols);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testMemberKeys() {
+		printTestHeader();
+		SymbolTable symbols = new SymbolTable();
+		MemberKeys memberKeys = new MemberKeys(symbols);
+		String owner = "com/example/A";
+		String name = "foo";
+		String descriptor = "()V";
+		long key = memberKeys.getKey(owner, name, descriptor);
+		Assert.assertEquals(symbols.getMemberKey(owner, name, descriptor), key);
+		Assert.assertEquals(key, memberKeys.getKey(owner, name, descriptor));
+		// equal strings which are not the cached ones give the same key
+		Assert.assertEquals(key, memberKeys.getKey(new String(owner), new String(name), new String(descriptor)));
+		Assert.assertNotEquals(key, memberKeys.getKey(owner, name, "()I"));
+		for (int i = 0; i < 10000; ++i) {
+			String otherName = "m" + i;
+			Assert.assertEquals(symbols.getMemberKey(owner, otherName, descriptor),
+					memberKeys.getKey(owner, otherName, descriptor));
+		}
+		Assert.assertEquals(key, memberKeys.getKey(owner, name, descriptor));
+	}
+
+	@Test
+	public void testMemberTable() {
+		printTestHeader();
+		int size = 100;
+		MemberTable<String> table = new MemberTable<>(size);
+		// identifiers which hash to the same slot (multiples of 2^16), and identifiers
+		// drawn by a symbol table
+		SymbolTable symbols = new SymbolTable();
+		int[] ids = new int[size];
+		for (int i = 0; i < size; ++i) {
+			ids[i] = i % 2 == 0 ? (i + 1) << 16 : symbols.getMemberId("m" + i, "()V");
+			table.put(ids[i], "member" + i);
+		}
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals("member" + i, table.get(ids[i]));
+		}
+		Assert.assertNull(table.get(symbols.getMemberId("missing", "()V")));
+		Assert.assertNull(table.get(-1));
+		// a member put again replaces the previous one
+		table.put(ids[0], "other");
+		Assert.assertEquals("other", table.get(ids[0]));
+		Assert.assertEquals("member1", table.get(ids[1]));
+
+		MemberTable<String> empty = new MemberTable<>(0);
+		Assert.assertNull(empty.get(0));
+		empty.put(0, "member");
+		Assert.assertEquals("member", empty.get(0));
+	}
+
+	private void printTestHeader() {
+		String title = "Launching " + name.getMethodName();
+		StringBuilder bar = new StringBuilder();
+		for (int i = title.length() + 6; --i >= 0;) {
+			bar.append('=');
+		}
+		System.out.println(bar);
+		System.out.println("   " + title + "   ");
+		System.out.println(bar);
+	}
+}